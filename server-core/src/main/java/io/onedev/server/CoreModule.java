@@ -119,6 +119,7 @@ import io.onedev.server.entitymanager.PullRequestUpdateManager;
 import io.onedev.server.entitymanager.PullRequestWatchManager;
 import io.onedev.server.entitymanager.RoleManager;
 import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.entitymanager.StagedValueManager;
 import io.onedev.server.entitymanager.UrlManager;
 import io.onedev.server.entitymanager.UserAuthorizationManager;
 import io.onedev.server.entitymanager.UserManager;
@@ -153,17 +154,27 @@ import io.onedev.server.entitymanager.impl.DefaultPullRequestUpdateManager;
 import io.onedev.server.entitymanager.impl.DefaultPullRequestWatchManager;
 import io.onedev.server.entitymanager.impl.DefaultRoleManager;
 import io.onedev.server.entitymanager.impl.DefaultSettingManager;
+import io.onedev.server.entitymanager.impl.DefaultStagedValueManager;
 import io.onedev.server.entitymanager.impl.DefaultUserAuthorizationManager;
 import io.onedev.server.entitymanager.impl.DefaultUserManager;
 import io.onedev.server.git.GitFilter;
 import io.onedev.server.git.GitPostReceiveCallback;
 import io.onedev.server.git.GitPreReceiveCallback;
+import io.onedev.server.git.RevWalkPool;
 import io.onedev.server.git.config.GitConfig;
+import io.onedev.server.infomanager.AheadBehindInfoManager;
+import io.onedev.server.infomanager.BlameInfoManager;
 import io.onedev.server.infomanager.CodeCommentRelationInfoManager;
 import io.onedev.server.infomanager.CommitInfoManager;
+import io.onedev.server.infomanager.DefaultAheadBehindInfoManager;
+import io.onedev.server.infomanager.DefaultBlameInfoManager;
 import io.onedev.server.infomanager.DefaultCodeCommentRelationInfoManager;
 import io.onedev.server.infomanager.DefaultCommitInfoManager;
+import io.onedev.server.infomanager.DefaultLastCommitsInfoManager;
+import io.onedev.server.infomanager.DefaultLineMappingInfoManager;
 import io.onedev.server.infomanager.DefaultUserInfoManager;
+import io.onedev.server.infomanager.LastCommitsInfoManager;
+import io.onedev.server.infomanager.LineMappingInfoManager;
 import io.onedev.server.infomanager.UserInfoManager;
 import io.onedev.server.maintenance.ApplyDatabaseConstraints;
 import io.onedev.server.maintenance.BackupDatabase;
@@ -171,6 +182,8 @@ import io.onedev.server.maintenance.CheckDataVersion;
 import io.onedev.server.maintenance.CleanDatabase;
 import io.onedev.server.maintenance.DataManager;
 import io.onedev.server.maintenance.DefaultDataManager;
+import io.onedev.server.maintenance.EntityChangeLog;
+import io.onedev.server.maintenance.RebuildTextIndex;
 import io.onedev.server.maintenance.ResetAdminPassword;
 import io.onedev.server.maintenance.RestoreDatabase;
 import io.onedev.server.maintenance.Upgrade;
@@ -185,16 +198,20 @@ import io.onedev.server.notification.DefaultMailManager;
 import io.onedev.server.notification.IssueNotificationManager;
 import io.onedev.server.notification.MailManager;
 import io.onedev.server.notification.PullRequestNotificationManager;
+import io.onedev.server.notification.QueryWatcherIndex;
 import io.onedev.server.notification.WebHookManager;
 import io.onedev.server.persistence.DefaultIdManager;
 import io.onedev.server.persistence.DefaultPersistManager;
+import io.onedev.server.persistence.DefaultQueryMonitor;
 import io.onedev.server.persistence.DefaultSessionManager;
 import io.onedev.server.persistence.DefaultTransactionManager;
 import io.onedev.server.persistence.HibernateInterceptor;
+import io.onedev.server.persistence.HibernateStatisticsSource;
 import io.onedev.server.persistence.IdManager;
 import io.onedev.server.persistence.PersistListener;
 import io.onedev.server.persistence.PersistManager;
 import io.onedev.server.persistence.PrefixedNamingStrategy;
+import io.onedev.server.persistence.QueryMonitor;
 import io.onedev.server.persistence.SessionFactoryProvider;
 import io.onedev.server.persistence.SessionInterceptor;
 import io.onedev.server.persistence.SessionManager;
@@ -213,6 +230,8 @@ import io.onedev.server.search.code.DefaultIndexManager;
 import io.onedev.server.search.code.DefaultSearchManager;
 import io.onedev.server.search.code.IndexManager;
 import io.onedev.server.search.code.SearchManager;
+import io.onedev.server.search.entitytext.DefaultEntityTextManager;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.security.BasicAuthenticationFilter;
 import io.onedev.server.security.CodePullAuthorizationSource;
 import io.onedev.server.security.FilterChainConfigurator;
@@ -236,6 +255,9 @@ import io.onedev.server.util.markdown.DefaultMarkdownManager;
 import io.onedev.server.util.markdown.EntityReferenceManager;
 import io.onedev.server.util.markdown.MarkdownManager;
 import io.onedev.server.util.markdown.MarkdownProcessor;
+import io.onedev.server.util.metrics.DefaultMetricRegistry;
+import io.onedev.server.util.metrics.MetricRegistry;
+import io.onedev.server.util.metrics.MetricSource;
 import io.onedev.server.util.schedule.DefaultTaskScheduler;
 import io.onedev.server.util.schedule.TaskScheduler;
 import io.onedev.server.util.script.ScriptContribution;
@@ -365,17 +387,23 @@ public class CoreModule extends AbstractPluginModule {
 		bind(AttachmentStorageManager.class).to(DefaultAttachmentStorageManager.class);
 		bind(CodeCommentRelationInfoManager.class).to(DefaultCodeCommentRelationInfoManager.class);
 		bind(CodeCommentRelationManager.class).to(DefaultCodeCommentRelationManager.class);
+		bind(LineMappingInfoManager.class).to(DefaultLineMappingInfoManager.class);
+		bind(BlameInfoManager.class).to(DefaultBlameInfoManager.class);
+		bind(LastCommitsInfoManager.class).to(DefaultLastCommitsInfoManager.class);
+		bind(AheadBehindInfoManager.class).to(DefaultAheadBehindInfoManager.class);
 		bind(WorkExecutor.class).to(DefaultWorkExecutor.class);
 		bind(PullRequestNotificationManager.class);
 		bind(CommitNotificationManager.class);
 		bind(BuildNotificationManager.class);
 		bind(IssueNotificationManager.class);
+		bind(QueryWatcherIndex.class);
 		bind(EntityReferenceManager.class);
 		bind(CodeCommentNotificationManager.class);
 		bind(CodeCommentManager.class).to(DefaultCodeCommentManager.class);
 		bind(IssueWatchManager.class).to(DefaultIssueWatchManager.class);
 		bind(IssueChangeManager.class).to(DefaultIssueChangeManager.class);
 		bind(IssueVoteManager.class).to(DefaultIssueVoteManager.class);
+		bind(StagedValueManager.class).to(DefaultStagedValueManager.class);
 		bind(MilestoneManager.class).to(DefaultMilestoneManager.class);
 		bind(Session.class).toProvider(SessionProvider.class);
 		bind(EntityManager.class).toProvider(SessionProvider.class);
@@ -430,10 +458,22 @@ public class CoreModule extends AbstractPluginModule {
         
 		bind(IndexManager.class).to(DefaultIndexManager.class);
 		bind(SearchManager.class).to(DefaultSearchManager.class);
+		bind(EntityTextManager.class).to(DefaultEntityTextManager.class);
+		
+		bind(MetricRegistry.class).to(DefaultMetricRegistry.class);
+		contribute(MetricSource.class, DefaultBatchWorkManager.class);
+		contribute(MetricSource.class, DefaultWorkExecutor.class);
+		contribute(MetricSource.class, DefaultJobManager.class);
+		contribute(MetricSource.class, DefaultIndexManager.class);
+		contribute(MetricSource.class, DefaultEntityTextManager.class);
+		contribute(MetricSource.class, DefaultWebSocketManager.class);
+		contribute(MetricSource.class, DefaultQueryMonitor.class);
+		contribute(MetricSource.class, HibernateStatisticsSource.class);
 		
 		bind(EntityValidator.class).to(DefaultEntityValidator.class);
 		
 		bind(GitFilter.class);
+		bind(RevWalkPool.class);
 		bind(GitPreReceiveCallback.class);
 		bind(GitPostReceiveCallback.class);
 		
@@ -646,6 +686,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(SessionManager.class).to(DefaultSessionManager.class);
 		bind(TransactionManager.class).to(DefaultTransactionManager.class);
 		bind(IdManager.class).to(DefaultIdManager.class);
+		bind(QueryMonitor.class).to(DefaultQueryMonitor.class);
 		bind(Dao.class).to(DefaultDao.class);
 		
 	    TransactionInterceptor transactionInterceptor = new TransactionInterceptor();
@@ -699,8 +740,16 @@ public class CoreModule extends AbstractPluginModule {
 					throws CallbackException {
 			}
 
+			@Override
+			public String onPrepareStatement(String sql) {
+				return sql;
+			}
+
 		});
 	    
+	    contribute(PersistListener.class, EntityChangeLog.class);
+	    contribute(PersistListener.class, DefaultQueryMonitor.class);
+	    
 		bind(XStream.class).toProvider(new com.google.inject.Provider<XStream>() {
 
 			@SuppressWarnings("rawtypes")
@@ -775,6 +824,8 @@ public class CoreModule extends AbstractPluginModule {
 				bind(PersistManager.class).to(CleanDatabase.class);
 			else if (ResetAdminPassword.COMMAND.equals(Bootstrap.command.getName()))
 				bind(PersistManager.class).to(ResetAdminPassword.class);
+			else if (RebuildTextIndex.COMMAND.equals(Bootstrap.command.getName()))
+				bind(PersistManager.class).to(RebuildTextIndex.class);
 			else	
 				throw new RuntimeException("Unrecognized command: " + Bootstrap.command.getName());
 		} else {
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -97,12 +98,14 @@ import io.onedev.server.util.JobLogger;
 import io.onedev.server.util.MatrixRunner;
 import io.onedev.server.util.SecurityUtils;
 import io.onedev.server.util.inputspec.SecretInput;
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
 import io.onedev.server.util.patternset.PatternSet;
 import io.onedev.server.util.script.identity.JobIdentity;
 import io.onedev.server.util.script.identity.ScriptIdentity;
 
 @Singleton
-public class DefaultJobManager implements JobManager, Runnable, CodePullAuthorizationSource {
+public class DefaultJobManager implements JobManager, Runnable, CodePullAuthorizationSource, MetricSource {
 
 	private static final int CHECK_INTERVAL = 1000; // check internal in milli-seconds
 	
@@ -140,6 +143,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	
 	private volatile Thread thread;
 	
+	private volatile Map<Build.Status, Integer> unfinishedBuildCounts = new EnumMap<>(Build.Status.class);
+	
 	@Inject
 	public DefaultJobManager(BuildManager buildManager, UserManager userManager, ListenerRegistry listenerRegistry, 
 			SettingManager settingManager, TransactionManager transactionManager, LogManager logManager, 
@@ -795,7 +800,9 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		
 						@Override
 						public void run() {
+							Map<Build.Status, Integer> buildCounts = new EnumMap<>(Build.Status.class);
 							for (Build build: buildManager.queryUnfinished()) {
+								buildCounts.merge(build.getStatus(), 1, Integer::sum);
 								if (build.getStatus() == Build.Status.RUNNING || build.getStatus() == Build.Status.PENDING) {
 									JobExecution execution = jobExecutions.get(build.getId());
 									if (execution != null) {
@@ -830,6 +837,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 									}
 								} 
 							}
+							unfinishedBuildCounts = buildCounts;
 							for (Iterator<Map.Entry<Long, JobExecution>> it = jobExecutions.entrySet().iterator(); it.hasNext();) {
 								Map.Entry<Long, JobExecution> entry = it.next();
 								Build build = buildManager.get(entry.getKey());
@@ -874,6 +882,17 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		}	
 	}
 	
+	@Override
+	public void collect(MetricCollector collector) {
+		Map<Build.Status, Integer> buildCounts = unfinishedBuildCounts;
+		for (Build.Status status: new Build.Status[] {Build.Status.WAITING, Build.Status.PENDING, Build.Status.RUNNING}) {
+			collector.gauge("onedev_unfinished_builds", "Number of unfinished builds", 
+					buildCounts.getOrDefault(status, 0), "status", status.name().toLowerCase());
+		}
+		collector.gauge("onedev_job_executions", "Number of jobs being executed", jobExecutions.size());
+		collector.gauge("onedev_job_contexts", "Number of jobs with running context", jobContexts.size());
+	}
+	
 	@Listen
 	public void on(BuildSubmitted event) {
 		Build build = event.getBuild();
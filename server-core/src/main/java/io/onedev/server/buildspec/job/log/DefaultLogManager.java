@@ -15,8 +15,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.regex.Pattern;
@@ -30,6 +32,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,11 +48,16 @@ import io.onedev.server.buildspec.job.log.instruction.LogInstructionParser.Instr
 import io.onedev.server.buildspec.job.log.instruction.LogInstructionParser.ParamContext;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.event.build.BuildFinished;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Build;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.JobLogger;
+import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.inputspec.SecretInput;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
 import io.onedev.server.web.websocket.WebSocketManager;
 
 @Singleton
@@ -72,14 +81,28 @@ public class DefaultLogManager implements LogManager {
 	
 	private final BuildManager buildManager;
 	
+	private final TaskScheduler taskScheduler;
+	
+	private final ServerConfig serverConfig;
+	
 	private final Map<Long, LogSnippet> recentSnippets = new ConcurrentHashMap<>();
 	
+	/*
+	 * Builds with new log entries since last push. Browsers are notified once per push 
+	 * interval instead of once per log entry, and then pull all new entries together 
+	 */
+	private final Set<Long> buildsWithNewEntries = ConcurrentHashMap.newKeySet();
+	
+	private String pushTaskId;
+	
 	@Inject
 	public DefaultLogManager(StorageManager storageManager, WebSocketManager webSocketManager, 
-			BuildManager buildManager) {
+			BuildManager buildManager, TaskScheduler taskScheduler, ServerConfig serverConfig) {
 		this.storageManager = storageManager;
 		this.webSocketManager = webSocketManager;
 		this.buildManager = buildManager;
+		this.taskScheduler = taskScheduler;
+		this.serverConfig = serverConfig;
 	}
 	
 	private File getLogFile(Long projectId, Long buildNumber) {
@@ -126,7 +149,7 @@ public class DefaultLogManager implements LogManager {
 							}
 						}
 						
-						webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(buildId));
+						buildsWithNewEntries.add(buildId);
 					}
 				} finally {
 					lock.unlock();
@@ -350,6 +373,39 @@ public class DefaultLogManager implements LogManager {
 		}
 	}
 	
+	private void pushNewEntries() {
+		for (Iterator<Long> it = buildsWithNewEntries.iterator(); it.hasNext();) {
+			Long buildId = it.next();
+			it.remove();
+			webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(buildId));
+		}
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		pushTaskId = taskScheduler.schedule(new SchedulableTask() {
+			
+			@Override
+			public ScheduleBuilder<?> getScheduleBuilder() {
+				return SimpleScheduleBuilder.simpleSchedule()
+						.withIntervalInMilliseconds(serverConfig.getBuildLogPushInterval())
+						.repeatForever();
+			}
+			
+			@Override
+			public void execute() {
+				pushNewEntries();
+			}
+			
+		});
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		taskScheduler.unschedule(pushTaskId);
+		pushNewEntries();
+	}
+	
 	@Sessional
 	@Listen
 	public void on(BuildFinished event) {
@@ -32,6 +32,11 @@ public interface IssueManager extends EntityManager<Issue> {
     
 	void open(Issue issue);
 	
+	/**
+	 * Query issues. Fields of returned issues, as well as their projects, milestones, 
+	 * submitters and last update users are loaded in bulk, so that displaying returned 
+	 * issues does not need to query database for each issue
+	 */
 	List<Issue> query(@Nullable Project project, EntityQuery<Issue> issueQuery, 
 			int firstResult, int maxResults);
 	
@@ -0,0 +1,22 @@
+package io.onedev.server.entitymanager;
+
+import java.util.Collection;
+
+import io.onedev.server.model.StagedValue;
+import io.onedev.server.persistence.dao.EntityManager;
+
+public interface StagedValueManager extends EntityManager<StagedValue> {
+
+	/**
+	 * Stage specified values in current session so that they can be matched via subquery 
+	 * on {@link StagedValue} with returned stage. Staged values are removed before current 
+	 * transaction commits, or when current session closes if there is no transaction
+	 * 
+	 * @param values
+	 * 			values to stage
+	 * @return
+	 * 			stage of staged values
+	 */
+	String stage(Collection<Long> values);
+	
+}
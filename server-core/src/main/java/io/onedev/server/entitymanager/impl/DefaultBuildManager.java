@@ -1,7 +1,9 @@
 package io.onedev.server.entitymanager.impl;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,7 +11,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -41,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.FileUtils;
@@ -49,6 +52,7 @@ import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.BuildParamManager;
 import io.onedev.server.entitymanager.GroupManager;
 import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.build.BuildEvent;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
@@ -76,6 +80,9 @@ import io.onedev.server.search.entity.EntitySort;
 import io.onedev.server.search.entity.EntitySort.Direction;
 import io.onedev.server.search.entity.build.BuildQuery;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.BuildIndex;
+import io.onedev.server.util.CommitStatusCache;
+import io.onedev.server.util.CommitStatusCache.BuildStatus;
 import io.onedev.server.util.ProjectScopedNumber;
 import io.onedev.server.util.SecurityUtils;
 import io.onedev.server.util.facade.BuildFacade;
@@ -91,6 +98,10 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 	
 	private static final int CLEANUP_BATCH = 5000;
 	
+	private static final int DELETE_BATCH = 500;
+	
+	private static final int MAX_CACHED_COMMIT_STATUSES = 100000;
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultBuildManager.class);
 	
 	private final BuildParamManager buildParamManager;
@@ -109,9 +120,11 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 	
 	private final TransactionManager transactionManager;
 	
-	private final Map<Long, BuildFacade> builds = new HashMap<>();
+	private final ExecutorService executorService;
+	
+	private final BuildIndex buildIndex = new BuildIndex();
 	
-	private final ReadWriteLock buildsLock = new ReentrantReadWriteLock();
+	private final CommitStatusCache commitStatusCache = new CommitStatusCache(MAX_CACHED_COMMIT_STATUSES);
 	
 	private final Map<Long, Collection<String>> jobNames = new HashMap<>();
 	
@@ -124,7 +137,7 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 			TaskScheduler taskScheduler, BuildDependenceManager buildDependenceManager,
 			GroupManager groupManager, StorageManager storageManager, 
 			ProjectManager projectManager, SessionManager sessionManager, 
-			TransactionManager transactionManager) {
+			TransactionManager transactionManager, ExecutorService executorService) {
 		super(dao);
 		this.buildParamManager = buildParamManager;
 		this.buildDependenceManager = buildDependenceManager;
@@ -134,6 +147,7 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 		this.taskScheduler = taskScheduler;
 		this.sessionManager = sessionManager;
 		this.transactionManager = transactionManager;
+		this.executorService = executorService;
 	}
 
 	@Transactional
@@ -141,18 +155,23 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 	public void delete(Build build) {
     	super.delete(build);
     	
-		FileUtils.deleteDir(storageManager.getBuildDir(build.getProject().getId(), build.getNumber()));
-		Long buildId = build.getId();
+		File buildDir = storageManager.getBuildDir(build.getProject().getId(), build.getNumber());
+		BuildFacade facade = build.getFacade();
 		transactionManager.runAfterCommit(new Runnable() {
 
 			@Override
 			public void run() {
-				buildsLock.writeLock().lock();
-				try {
-					builds.remove(buildId);
-				} finally {
-					buildsLock.writeLock().unlock();
-				}
+				buildIndex.remove(facade);
+				commitStatusCache.remove(facade.getProjectId(), ObjectId.fromString(facade.getCommitHash()), 
+						facade.getId());
+				executorService.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						FileUtils.deleteDir(buildDir);
+					}
+					
+				});
 			}
 		});
 	}
@@ -190,12 +209,7 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 
 			@Override
 			public void run() {
-				buildsLock.writeLock().lock();
-				try {
-					builds.put(facade.getId(), facade);
-				} finally {
-					buildsLock.writeLock().unlock();
-				}
+				buildIndex.add(facade);
 				jobNamesLock.writeLock().lock();
 				try {
 					populateJobNames(facade.getProjectId(), jobName);
@@ -216,16 +230,8 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 
 				@Override
 				public void run() {
-					buildsLock.writeLock().lock();
-					try {
-						for (Iterator<Map.Entry<Long, BuildFacade>> it = builds.entrySet().iterator(); it.hasNext();) {
-							BuildFacade build = it.next().getValue();
-							if (build.getProjectId().equals(projectId))
-								it.remove();
-						}
-					} finally {
-						buildsLock.writeLock().unlock();
-					}
+					buildIndex.removeProject(projectId);
+					commitStatusCache.removeProject(projectId);
 					jobNamesLock.writeLock().lock();
 					try {
 						for (Iterator<Map.Entry<Long, Collection<String>>> it = jobNames.entrySet().iterator(); it.hasNext();) {
@@ -485,54 +491,58 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 	@Sessional
 	@Override
 	public Map<ObjectId, Map<String, Status>> queryStatus(Project project, Collection<ObjectId> commitIds) {
-		Map<ObjectId, Map<String, Collection<Status>>> commitStatuses = new HashMap<>();
-		
-		Collection<ObjectId> batch = new HashSet<>();
+		Map<ObjectId, Map<String, Status>> overallCommitStatuses = new HashMap<>();
+		Collection<ObjectId> uncachedCommitIds = new HashSet<>();
 		for (ObjectId commitId: commitIds) {
-			batch.add(commitId);
-			if (batch.size() == STATUS_QUERY_BATCH) {
+			Map<String, Status> jobOverallStatuses = commitStatusCache.get(project.getId(), commitId);
+			if (jobOverallStatuses != null)
+				overallCommitStatuses.put(commitId, jobOverallStatuses);
+			else
+				uncachedCommitIds.add(commitId);
+		}
+		
+		if (!uncachedCommitIds.isEmpty()) {
+			long generation = commitStatusCache.getGeneration(project.getId());
+			Map<ObjectId, Map<Long, BuildStatus>> commitStatuses = new HashMap<>();
+			Collection<ObjectId> batch = new HashSet<>();
+			for (ObjectId commitId: uncachedCommitIds) {
+				batch.add(commitId);
+				if (batch.size() == STATUS_QUERY_BATCH) {
+					fillStatus(project, batch, commitStatuses);
+					batch.clear();
+				}
+			}
+			if (!batch.isEmpty())
 				fillStatus(project, batch, commitStatuses);
-				batch.clear();
+			for (ObjectId commitId: uncachedCommitIds) {
+				Map<Long, BuildStatus> buildStatuses = commitStatuses.get(commitId);
+				if (buildStatuses == null)
+					buildStatuses = new HashMap<>();
+				commitStatusCache.seed(project.getId(), commitId, buildStatuses, generation);
+				overallCommitStatuses.put(commitId, CommitStatusCache.getOverallStatuses(buildStatuses.values()));
 			}
 		}
-		if (!batch.isEmpty())
-			fillStatus(project, batch, commitStatuses);
-		Map<ObjectId, Map<String, Status>> overallCommitStatuses = new HashMap<>();
-		for (Map.Entry<ObjectId, Map<String, Collection<Status>>> entry: commitStatuses.entrySet()) {
-			Map<String, Status> jobOverallStatuses = new HashMap<>();
-			for (Map.Entry<String, Collection<Status>> entry2: entry.getValue().entrySet()) 
-				jobOverallStatuses.put(entry2.getKey(), Status.getOverallStatus(entry2.getValue()));
-			overallCommitStatuses.put(entry.getKey(), jobOverallStatuses);
-		}
-		for (ObjectId commitId: commitIds) {
-			if (!overallCommitStatuses.containsKey(commitId))
-				overallCommitStatuses.put(commitId, new HashMap<>());
-		}
 		return overallCommitStatuses;
 	}
 	
 	@SuppressWarnings("unchecked")
 	private void fillStatus(Project project, Collection<ObjectId> commitIds, 
-			Map<ObjectId, Map<String, Collection<Status>>> commitStatuses) {
-		Query<?> query = getSession().createQuery("select commitHash, jobName, status from Build "
+			Map<ObjectId, Map<Long, BuildStatus>> commitStatuses) {
+		Query<?> query = getSession().createQuery("select id, commitHash, jobName, status from Build "
 				+ "where project=:project and commitHash in :commitHashes");
 		query.setParameter("project", project);
 		query.setParameter("commitHashes", commitIds.stream().map(it->it.name()).collect(Collectors.toList()));
 		for (Object[] row: (List<Object[]>)query.list()) {
-			ObjectId commitId = ObjectId.fromString((String) row[0]);
-			String jobName = (String) row[1];
-			Status status = (Status) row[2];
-			Map<String, Collection<Status>> commitStatus = commitStatuses.get(commitId);
+			Long buildId = (Long) row[0];
+			ObjectId commitId = ObjectId.fromString((String) row[1]);
+			String jobName = (String) row[2];
+			Status status = (Status) row[3];
+			Map<Long, BuildStatus> commitStatus = commitStatuses.get(commitId);
 			if (commitStatus == null) {
 				commitStatus = new HashMap<>();
 				commitStatuses.put(commitId, commitStatus);
 			}
-			Collection<Status> jobStatus = commitStatus.get(jobName);
-			if (jobStatus == null) {
-				jobStatus = new HashSet<>();
-				commitStatus.put(jobName, jobStatus);
-			}
-			jobStatus.add(status);
+			commitStatus.put(buildId, new BuildStatus(jobName, status));
 		}
 	}
 	
@@ -546,66 +556,160 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 		return maxId!=null?maxId:0;
 	}
 
+	/*
+	 * Get ids of builds to preserve for specified project in ascending order, or <tt>null</tt> 
+	 * if all builds of the project should be preserved. Ids may contain duplicates if they 
+	 * are matched by multiple preservations
+	 */
+	@Nullable
+	private long[] getIdsToPreserve(Project project) {
+		List<BuildPreservation> preservations = project.getBuildSetting().getHierarchyBuildPreservations(project);
+		if (preservations.isEmpty())
+			return null;
+		
+		long[] idsToPreserve = new long[0];
+		for (BuildPreservation preservation: preservations) {
+			try {
+				BuildQuery query = BuildQuery.parse(project, preservation.getCondition(), false, false);
+				int count;
+				if (preservation.getCount() != null)
+					count = preservation.getCount();
+				else
+					count = Integer.MAX_VALUE;
+				long[] ids = queryIds(project, query, 0, count).stream().mapToLong(Long::longValue).toArray();
+				long[] merged = Arrays.copyOf(idsToPreserve, idsToPreserve.length + ids.length);
+				System.arraycopy(ids, 0, merged, idsToPreserve.length, ids.length);
+				idsToPreserve = merged;
+			} catch (Exception e) {
+				String message = String.format("Error parsing build preserve condition(project: %s, condition: %s)", 
+						project.getName(), preservation.getCondition());
+				logger.error(message, e);
+				return null;
+			}
+		}
+		Arrays.sort(idsToPreserve);
+		return idsToPreserve;
+	}
+	
+	/*
+	 * Query ids of finished builds of specified project in ascending order, starting after 
+	 * specified id. Keyset pagination is used as offset pagination gets slower and slower 
+	 * when paging through millions of builds 
+	 */
+	private List<Long> queryFinishedIds(Project project, long afterId, long maxId) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<Long> criteriaQuery = builder.createQuery(Long.class);
+		Root<Build> root = criteriaQuery.from(Build.class);
+		criteriaQuery.select(root.get(Build.PROP_ID));
+		criteriaQuery.where(
+				builder.equal(root.get(Build.PROP_PROJECT), project), 
+				builder.greaterThan(root.get(Build.PROP_ID), afterId), 
+				builder.lessThanOrEqualTo(root.get(Build.PROP_ID), maxId), 
+				root.get(Build.PROP_STATUS).in(Status.FAILED, Status.CANCELLED, Status.SUCCESSFUL, Status.TIMED_OUT));
+		criteriaQuery.orderBy(builder.asc(root.get(Build.PROP_ID)));
+		
+		Query<Long> query = getSession().createQuery(criteriaQuery);
+		query.setMaxResults(CLEANUP_BATCH);
+		return query.list();
+	}
+	
 	@Override
 	public void execute() {
-		long maxId = getMaxId();
-		Collection<Long> idsToPreserve = new HashSet<>();
-		
-		sessionManager.run(new Runnable() {
+		long maxId = sessionManager.call(new Callable<Long>() {
 
 			@Override
-			public void run() {
-				for (Project project: projectManager.query()) {
-					logger.debug("Populating preserved build ids of project '" + project.getName() + "'...");
-					List<BuildPreservation> preservations = project.getBuildSetting().getHierarchyBuildPreservations(project);
-					if (preservations.isEmpty()) {
-						idsToPreserve.addAll(queryIds(project, new BuildQuery(), 0, Integer.MAX_VALUE));
-					} else {
-						for (BuildPreservation preservation: preservations) {
-							try {
-								BuildQuery query = BuildQuery.parse(project, preservation.getCondition(), false, false);
-								int count;
-								if (preservation.getCount() != null)
-									count = preservation.getCount();
-								else
-									count = Integer.MAX_VALUE;
-								idsToPreserve.addAll(queryIds(project, query, 0, count));
-							} catch (Exception e) {
-								String message = String.format("Error parsing build preserve condition(project: %s, condition: %s)", 
-										project.getName(), preservation.getCondition());
-								logger.error(message, e);
-								idsToPreserve.addAll(queryIds(project, new BuildQuery(), 0, Integer.MAX_VALUE));
-							}
-						}
-					}
-				}
+			public Long call() {
+				return getMaxId();
 			}
 			
 		});
+		List<Long> projectIds = sessionManager.call(new Callable<List<Long>>() {
 
-		EntityCriteria<Build> criteria = newCriteria();
-		AtomicInteger firstResult = new AtomicInteger(0);
+			@Override
+			public List<Long> call() {
+				return projectManager.query().stream().map(it->it.getId()).collect(Collectors.toList());
+			}
+			
+		});
 		
-		while (transactionManager.call(new Callable<Boolean>() {
+		long time = System.currentTimeMillis();
+		long checkedCount = 0;
+		long deletedCount = 0;
+		for (Long projectId: projectIds) {
+			long[] idsToPreserve = sessionManager.call(new Callable<long[]>() {
 
-			@Override
-			public Boolean call() {
-				List<Build> builds = query(criteria, firstResult.get(), CLEANUP_BATCH);
-				if (!builds.isEmpty()) {
-					logger.debug("Checking build preservation: {}->{}", 
-							firstResult.get()+1, firstResult.get()+builds.size());
+				@Override
+				public long[] call() {
+					Project project = projectManager.get(projectId);
+					if (project != null) {
+						logger.debug("Populating preserved build ids of project '" + project.getName() + "'...");
+						return getIdsToPreserve(project);
+					} else {
+						return null;
+					}
 				}
-				for (Build build: builds) {
-					if (build.isFinished() && build.getId() <= maxId && !idsToPreserve.contains(build.getId())) {
-						logger.debug("Deleting build " + build.getFQN() + "...");
-						delete(build);
+				
+			});
+			if (idsToPreserve == null)
+				continue;
+			
+			// Both preserved ids and queried ids are in ascending order, so we can merge them
+			int preservedIndex = 0;
+			long nextPreservedId = preservedIndex<idsToPreserve.length? idsToPreserve[preservedIndex++]: Long.MAX_VALUE;
+			long lastId = 0;
+			while (true) {
+				long afterId = lastId;
+				List<Long> ids = sessionManager.call(new Callable<List<Long>>() {
+
+					@Override
+					public List<Long> call() {
+						return queryFinishedIds(projectManager.load(projectId), afterId, maxId);
 					}
+					
+				});
+				if (ids.isEmpty())
+					break;
+				lastId = ids.get(ids.size()-1);
+				
+				List<Long> idsToDelete = new ArrayList<>();
+				for (Long id: ids) {
+					while (nextPreservedId < id)
+						nextPreservedId = preservedIndex<idsToPreserve.length? idsToPreserve[preservedIndex++]: Long.MAX_VALUE;
+					if (nextPreservedId != id)
+						idsToDelete.add(id);
 				}
-				firstResult.set(firstResult.get() + CLEANUP_BATCH);
-				return builds.size() == CLEANUP_BATCH;
+				
+				for (List<Long> batch: Lists.partition(idsToDelete, DELETE_BATCH)) {
+					transactionManager.run(new Runnable() {
+
+						@Override
+						public void run() {
+							for (Long id: batch) {
+								Build build = get(id);
+								if (build != null) {
+									logger.debug("Deleting build " + build.getFQN() + "...");
+									delete(build);
+								}
+							}
+						}
+						
+					});
+				}
+				
+				checkedCount += ids.size();
+				deletedCount += idsToDelete.size();
+				logger.debug("Checked {} builds, deleted {} builds", checkedCount, deletedCount);
+				
+				if (ids.size() < CLEANUP_BATCH)
+					break;
 			}
-			
-		})) {}
+		}
+		
+		long elapsed = Math.max(System.currentTimeMillis() - time, 1);
+		if (deletedCount != 0) {
+			logger.info("Cleaned up builds: checked {}, deleted {}, took {} seconds ({} builds deleted per second)", 
+					checkedCount, deletedCount, elapsed/1000, deletedCount*1000/elapsed);
+		}
 	}
 
 	@Override
@@ -613,6 +717,25 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 		return CronScheduleBuilder.dailyAtHourAndMinute(0, 0);
 	}
 	
+	@Transactional
+	@Listen
+	public void on(BuildEvent event) {
+		Build build = event.getBuild();
+		Long projectId = build.getProject().getId();
+		ObjectId commitId = ObjectId.fromString(build.getCommitHash());
+		Long buildId = build.getId();
+		String jobName = build.getJobName();
+		Status status = build.getStatus();
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				commitStatusCache.update(projectId, commitId, buildId, jobName, status);
+			}
+			
+		});
+	}
+	
 	@SuppressWarnings("unchecked")
 	@Listen
 	public void on(SystemStarted event) {
@@ -622,7 +745,7 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 		for (Object[] fields: (List<Object[]>)query.list()) {
 			Long buildId = (Long) fields[0];
 			Long projectId = (Long)fields[1];
-			builds.put(buildId, new BuildFacade(buildId, projectId, (String)fields[2]));
+			buildIndex.add(new BuildFacade(buildId, projectId, (String)fields[2]));
 			populateJobNames(projectId, (String)fields[3]);
 		}
 		taskId = taskScheduler.schedule(this);
@@ -712,34 +835,12 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 	
 	@Override
 	public Collection<Long> getIdsByProject(Long projectId) {
-		buildsLock.readLock().lock();
-		try {
-			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				if (build.getProjectId().equals(projectId))
-					buildIds.add(build.getId());
-			}
-			return buildIds;
-		} finally {
-			buildsLock.readLock().unlock();
-		}
+		return buildIndex.getIds(projectId);
 	}
 
 	@Override
 	public Collection<Long> filterIds(Long projectId, Collection<String> commitHashes) {
-		buildsLock.readLock().lock();
-		try {
-			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				if (build.getProjectId().equals(projectId) 
-						&& commitHashes.contains(build.getCommitHash())) {
-					buildIds.add(build.getId());
-				}
-			}
-			return buildIds;
-		} finally {
-			buildsLock.readLock().unlock();
-		}
+		return buildIndex.getIds(projectId, commitHashes);
 	}
 	
 	private void populateJobNames(Long projectId, String jobName) {
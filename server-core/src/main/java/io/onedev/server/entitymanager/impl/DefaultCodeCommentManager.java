@@ -25,8 +25,11 @@ import org.apache.commons.lang3.time.DateUtils;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
@@ -34,7 +37,6 @@ import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.Listen;
@@ -44,9 +46,8 @@ import io.onedev.server.entitymanager.CodeCommentManager;
 import io.onedev.server.event.codecomment.CodeCommentCreated;
 import io.onedev.server.event.codecomment.CodeCommentEvent;
 import io.onedev.server.event.codecomment.CodeCommentUpdated;
-import io.onedev.server.git.GitUtils;
-import io.onedev.server.git.command.RevListCommand;
 import io.onedev.server.infomanager.CommitInfoManager;
+import io.onedev.server.infomanager.LineMappingInfoManager;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.CodeCommentRelation;
 import io.onedev.server.model.Project;
@@ -62,7 +63,6 @@ import io.onedev.server.search.entity.EntitySort;
 import io.onedev.server.search.entity.EntitySort.Direction;
 import io.onedev.server.search.entity.codecomment.CodeCommentQuery;
 import io.onedev.server.util.diff.DiffUtils;
-import io.onedev.server.util.diff.WhitespaceOption;
 
 @Singleton
 public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment> implements CodeCommentManager {
@@ -75,11 +75,15 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 	
 	private final CommitInfoManager commitInfoManager;
 	
+	private final LineMappingInfoManager lineMappingInfoManager;
+	
 	@Inject
-	public DefaultCodeCommentManager(Dao dao, ListenerRegistry listenerRegistry, CommitInfoManager commitInfoManager) {
+	public DefaultCodeCommentManager(Dao dao, ListenerRegistry listenerRegistry, CommitInfoManager commitInfoManager, 
+			LineMappingInfoManager lineMappingInfoManager) {
 		super(dao);
 		this.listenerRegistry = listenerRegistry;
 		this.commitInfoManager = commitInfoManager;
+		this.lineMappingInfoManager = lineMappingInfoManager;
 	}
 
 	@Transactional
@@ -148,6 +152,7 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 		return query(criteria);
 	}
 	
+	@Sessional
 	@Override
 	public Map<CodeComment, PlanarRange> findHistory(Project project, ObjectId commitId, String path) {
 		Map<CodeComment, PlanarRange> comments = new HashMap<>();
@@ -155,30 +160,35 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 		Map<String, Map<String, List<CodeComment>>> possibleComments = new HashMap<>();
 		Collection<String> possiblePaths = Sets.newHashSet(path);
 		possiblePaths.addAll(commitInfoManager.getHistoryPaths(project, path));
-		for (String possiblePath: possiblePaths) {
-			EntityCriteria<CodeComment> criteria = EntityCriteria.of(CodeComment.class);
-			criteria.add(Restrictions.eq("markPos.path", possiblePath));
-			for (CodeComment comment: query(criteria)) {
-				if (comment.getMarkPos().getCommit().equals(commitId.name()) && possiblePath.equals(path)) {
-					comments.put(comment, comment.getMarkPos().getRange());
-				} else {
-					Map<String, List<CodeComment>> commentsOnCommit = 
-							possibleComments.get(comment.getMarkPos().getCommit());
-					if (commentsOnCommit == null) {
-						commentsOnCommit = new HashMap<>();
-						possibleComments.put(comment.getMarkPos().getCommit(), commentsOnCommit);
-					}
-					List<CodeComment> commentsOnPath = commentsOnCommit.get(possiblePath);
-					if (commentsOnPath == null) {
-						commentsOnPath = new ArrayList<>();
-						commentsOnCommit.put(possiblePath, commentsOnPath);
-					}
-					commentsOnPath.add(comment);
+		
+		EntityCriteria<CodeComment> criteria = newCriteria();
+		criteria.add(Restrictions.eq("project", project));
+		criteria.add(Restrictions.in("markPos.path", possiblePaths));
+		for (CodeComment comment: query(criteria)) {
+			String commentPath = comment.getMarkPos().getPath();
+			if (comment.getMarkPos().getCommit().equals(commitId.name()) && commentPath.equals(path)) {
+				comments.put(comment, comment.getMarkPos().getRange());
+			} else {
+				Map<String, List<CodeComment>> commentsOnCommit = 
+						possibleComments.get(comment.getMarkPos().getCommit());
+				if (commentsOnCommit == null) {
+					commentsOnCommit = new HashMap<>();
+					possibleComments.put(comment.getMarkPos().getCommit(), commentsOnCommit);
+				}
+				List<CodeComment> commentsOnPath = commentsOnCommit.get(commentPath);
+				if (commentsOnPath == null) {
+					commentsOnPath = new ArrayList<>();
+					commentsOnCommit.put(commentPath, commentsOnPath);
 				}
+				commentsOnPath.add(comment);
 			}
 		}
 
-		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+		if (possibleComments.isEmpty())
+			return comments;
+		
+		Repository repository = project.getRepository();
+		try (RevWalk revWalk = new RevWalk(repository)) {
 			Date oldestDate = null;
 			List<RevCommit> historyCommits = new ArrayList<>();
 			for (Map.Entry<String, Map<String, List<CodeComment>>> entry: possibleComments.entrySet()) {
@@ -195,15 +205,13 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 			}
 			
 			if (oldestDate != null) {
-				RevListCommand command = new RevListCommand(project.getRepository().getDirectory());
-				command.after(DateUtils.addDays(oldestDate, -1));
-				command.revisions(Lists.newArrayList(commitId.name()));
-				command.count(MAX_HISTORY_COMMITS_TO_CHECK);
-				Set<String> revisions = new HashSet<>(command.call());
-				
 				RevCommit commit = revWalk.parseCommit(commitId);
-				List<String> newLines = GitUtils.readLines(project.getRepository(), commit, path, 
-						WhitespaceOption.DEFAULT);
+				Set<ObjectId> ancestors = getAncestors(repository, commit, DateUtils.addDays(oldestDate, -1));
+				
+				TreeWalk treeWalk = TreeWalk.forPath(repository, path, commit.getTree());
+				if (treeWalk == null)
+					return comments;
+				ObjectId newBlobId = treeWalk.getObjectId(0);
 
 				Collections.sort(historyCommits, new Comparator<RevCommit>() {
 
@@ -215,17 +223,20 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 				});
 				int checkedHistoryFiles = 0;
 				for (RevCommit historyCommit: historyCommits) {
-					if (revisions.contains(historyCommit.name())) {
+					if (ancestors.contains(historyCommit)) {
 						Map<String, List<CodeComment>> commentsOnCommit = 
 								Preconditions.checkNotNull(possibleComments.get(historyCommit.name()));
 						for (Map.Entry<String, List<CodeComment>> pathEntry: commentsOnCommit.entrySet()) {
-							List<String> oldLines = GitUtils.readLines(project.getRepository(), historyCommit, 
-									pathEntry.getKey(), WhitespaceOption.DEFAULT);
-							Map<Integer, Integer> lineMapping = DiffUtils.mapLines(oldLines, newLines);
-							for (CodeComment comment: pathEntry.getValue()) {
-								PlanarRange newRange = DiffUtils.mapRange(lineMapping, comment.getMarkPos().getRange());
-								if (newRange != null) 
-									comments.put(comment, newRange);
+							treeWalk = TreeWalk.forPath(repository, pathEntry.getKey(), historyCommit.getTree());
+							if (treeWalk != null) {
+								ObjectId oldBlobId = treeWalk.getObjectId(0);
+								Map<Integer, Integer> lineMapping = 
+										lineMappingInfoManager.getLineMapping(project, oldBlobId, newBlobId);
+								for (CodeComment comment: pathEntry.getValue()) {
+									PlanarRange newRange = DiffUtils.mapRange(lineMapping, comment.getMarkPos().getRange());
+									if (newRange != null) 
+										comments.put(comment, newRange);
+								}
 							}
 							if (++checkedHistoryFiles == MAX_HISTORY_FILES_TO_CHECK) {
 								return comments;
@@ -241,6 +252,23 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 		} 
 
 	}
+	
+	/*
+	 * Walk ancestors in process instead of forking git rev-list, as this is called each 
+	 * time a file is opened  
+	 */
+	private Set<ObjectId> getAncestors(Repository repository, RevCommit commit, Date after) throws IOException {
+		Set<ObjectId> ancestors = new HashSet<>();
+		try (RevWalk revWalk = new RevWalk(repository)) {
+			revWalk.setRetainBody(false);
+			revWalk.setRevFilter(CommitTimeRevFilter.after(after));
+			revWalk.markStart(revWalk.parseCommit(commit));
+			RevCommit ancestor;
+			while ((ancestor = revWalk.next()) != null && ancestors.size() < MAX_HISTORY_COMMITS_TO_CHECK) 
+				ancestors.add(ancestor.copy());
+		}
+		return ancestors;
+	}
 
 	private Predicate[] getPredicates(Project project, io.onedev.server.search.entity.EntityCriteria<CodeComment> criteria, 
 			PullRequest request, Root<CodeComment> root, CriteriaBuilder builder) {
@@ -16,6 +16,7 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Predicate;
@@ -70,6 +71,7 @@ import io.onedev.server.search.entity.EntitySort;
 import io.onedev.server.search.entity.EntitySort.Direction;
 import io.onedev.server.search.entity.issue.IssueCriteria;
 import io.onedev.server.search.entity.issue.IssueQuery;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.security.permission.AccessProject;
 import io.onedev.server.util.MilestoneAndState;
 import io.onedev.server.util.ProjectScopedNumber;
@@ -100,6 +102,8 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 	
 	private final TransactionManager transactionManager;
 	
+	private final EntityTextManager entityTextManager;
+	
 	private final Map<Long, IssueFacade> issues = new HashMap<>();
 	
 	private final ReadWriteLock issuesLock = new ReentrantReadWriteLock();
@@ -108,7 +112,7 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 	public DefaultIssueManager(Dao dao, IssueFieldManager issueFieldManager, 
 			TransactionManager transactionManager, IssueQuerySettingManager issueQuerySettingManager, 
 			SettingManager settingManager, ListenerRegistry listenerRegistry, 
-			ProjectManager projectManager, UserManager userManager) {
+			ProjectManager projectManager, UserManager userManager, EntityTextManager entityTextManager) {
 		super(dao);
 		this.issueFieldManager = issueFieldManager;
 		this.issueQuerySettingManager = issueQuerySettingManager;
@@ -117,6 +121,7 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 		this.projectManager = projectManager;
 		this.transactionManager = transactionManager;
 		this.userManager = userManager;
+		this.entityTextManager = entityTextManager;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -199,12 +204,14 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 		List<Predicate> predicates = new ArrayList<>();
 		if (project != null) {
 			predicates.add(builder.equal(root.get(Issue.PROP_PROJECT), project));
-		} else if (!SecurityUtils.isAdministrator()) {
-			Collection<Project> projects = projectManager.getPermittedProjects(new AccessProject()); 
-			if (!projects.isEmpty())
-				predicates.add(root.get(Issue.PROP_PROJECT).in(projects));
-			else
-				predicates.add(builder.disjunction());
+		} else {
+			Collection<Long> projectIds = SecurityUtils.getPermittedProjectIds(new AccessProject());
+			if (projectIds != null) {
+				if (!projectIds.isEmpty())
+					predicates.add(root.get(Issue.PROP_PROJECT).get(Project.PROP_ID).in(projectIds));
+				else
+					predicates.add(builder.disjunction());
+			}
 		}
 		if (criteria != null)
 			predicates.add(criteria.getPredicate(root, builder));
@@ -221,7 +228,16 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 
 		List<javax.persistence.criteria.Order> orders = new ArrayList<>();
 		for (EntitySort sort: issueQuery.getSorts()) {
-			if (Issue.ORDER_FIELDS.containsKey(sort.getField())) {
+			if (IssueQuery.isRelevance(sort.getField())) {
+				Expression<Integer> relevance = entityTextManager.getRelevance(root, builder, issueQuery.getCriteria(), 
+						it->getPredicates(project, issueQuery.getCriteria(), it, builder));
+				if (relevance != null) {
+					if (sort.getDirection() == Direction.ASCENDING)
+						orders.add(builder.asc(relevance));
+					else
+						orders.add(builder.desc(relevance));
+				}
+			} else if (Issue.ORDER_FIELDS.containsKey(sort.getField())) {
 				if (sort.getDirection() == Direction.ASCENDING)
 					orders.add(builder.asc(IssueQuery.getPath(root, Issue.ORDER_FIELDS.get(sort.getField()))));
 				else
@@ -256,12 +272,33 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 		query.setFirstResult(firstResult);
 		query.setMaxResults(maxResults);
 		List<Issue> issues = query.getResultList();
-		if (!issues.isEmpty())
+		if (!issues.isEmpty()) {
 			issueFieldManager.populateFields(issues);
+			loadReferences(issues);
+		}
 		
 		return issues;
 	}
 	
+	/*
+	 * Load entities referenced by issues in bulk, so that displaying issues does not
+	 * query database for each issue 
+	 */
+	private void loadReferences(List<Issue> issues) {
+		List<Project> projects = new ArrayList<>();
+		List<Milestone> milestones = new ArrayList<>();
+		List<User> users = new ArrayList<>();
+		for (Issue issue: issues) {
+			projects.add(issue.getProject());
+			milestones.add(issue.getMilestone());
+			users.add(issue.getSubmitter());
+			users.add(issue.getLastUpdate().getUser());
+		}
+		loadInBulk(Project.class, projects);
+		loadInBulk(Milestone.class, milestones);
+		loadInBulk(User.class, users);
+	}
+	
 	@Transactional
 	@Listen
 	public void on(IssueEvent event) {
@@ -12,7 +12,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -519,9 +518,8 @@ public class DefaultProjectManager extends AbstractEntityManager<Project>
 	private Predicate[] getPredicates(io.onedev.server.search.entity.EntityCriteria<Project> criteria, 
 			Root<Project> root, CriteriaBuilder builder) {
 		List<Predicate> predicates = new ArrayList<>();
-		if (!SecurityUtils.isAdministrator()) {
-			Collection<Long> projectIds = getPermittedProjects(new AccessProject())
-					.stream().map(it->it.getId()).collect(Collectors.toSet());
+		Collection<Long> projectIds = SecurityUtils.getPermittedProjectIds(new AccessProject());
+		if (projectIds != null) {
 			if (!projectIds.isEmpty())
 				predicates.add(root.get(Project.PROP_ID).in(projectIds));
 			else
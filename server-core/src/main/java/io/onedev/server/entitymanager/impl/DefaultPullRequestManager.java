@@ -29,6 +29,7 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
@@ -126,6 +127,7 @@ import io.onedev.server.search.entity.EntityQuery;
 import io.onedev.server.search.entity.EntitySort;
 import io.onedev.server.search.entity.EntitySort.Direction;
 import io.onedev.server.search.entity.pullrequest.PullRequestQuery;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.security.permission.ProjectPermission;
 import io.onedev.server.security.permission.ReadCode;
 import io.onedev.server.security.permission.WriteCode;
@@ -176,6 +178,8 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 	
 	private final ExecutorService executorService;
 	
+	private final EntityTextManager entityTextManager;
+	
 	@Inject
 	public DefaultPullRequestManager(Dao dao, PullRequestUpdateManager pullRequestUpdateManager,  
 			PullRequestReviewManager pullRequestReviewManager, UserManager userManager, 
@@ -183,7 +187,7 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 			ListenerRegistry listenerRegistry, SessionManager sessionManager,
 			PullRequestChangeManager pullRequestChangeManager, ExecutorService executorService,
 			PullRequestBuildManager pullRequestBuildManager, TransactionManager transactionManager, 
-			JobManager jobManager, ProjectManager projectManager) {
+			JobManager jobManager, ProjectManager projectManager, EntityTextManager entityTextManager) {
 		super(dao);
 		
 		this.pullRequestUpdateManager = pullRequestUpdateManager;
@@ -198,6 +202,7 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 		this.executorService = executorService;
 		this.jobManager = jobManager;
 		this.projectManager = projectManager;
+		this.entityTextManager = entityTextManager;
 	}
 	
 	@Transactional
@@ -1039,12 +1044,14 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 		List<Predicate> predicates = new ArrayList<>();
 		if (targetProject != null) {
 			predicates.add(builder.equal(root.get("targetProject"), targetProject));
-		} else if (!SecurityUtils.isAdministrator()) {
-			Collection<Project> projects = projectManager.getPermittedProjects(new ReadCode()); 
-			if (!projects.isEmpty())
-				predicates.add(root.get(PullRequest.PROP_TARGET_PROJECT).in(projects));
-			else
-				predicates.add(builder.disjunction());
+		} else {
+			Collection<Long> projectIds = SecurityUtils.getPermittedProjectIds(new ReadCode());
+			if (projectIds != null) {
+				if (!projectIds.isEmpty())
+					predicates.add(root.get(PullRequest.PROP_TARGET_PROJECT).get(Project.PROP_ID).in(projectIds));
+				else
+					predicates.add(builder.disjunction());
+			}
 		}
 		
 		if (criteria != null) 
@@ -1062,7 +1069,16 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 
 		List<javax.persistence.criteria.Order> orders = new ArrayList<>();
 		for (EntitySort sort: requestQuery.getSorts()) {
-			if (sort.getDirection() == Direction.ASCENDING) {
+			if (sort.getField().equals(PullRequest.FIELD_RELEVANCE)) {
+				Expression<Integer> relevance = entityTextManager.getRelevance(root, builder, requestQuery.getCriteria(), 
+						it->getPredicates(targetProject, requestQuery.getCriteria(), it, builder));
+				if (relevance != null) {
+					if (sort.getDirection() == Direction.ASCENDING)
+						orders.add(builder.asc(relevance));
+					else
+						orders.add(builder.desc(relevance));
+				}
+			} else if (sort.getDirection() == Direction.ASCENDING) {
 				orders.add(builder.asc(PullRequestQuery.getPath(
 						root, PullRequest.ORDER_FIELDS.get(sort.getField()))));
 			} else {
@@ -0,0 +1,187 @@
+package io.onedev.server.entitymanager.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.UUID;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.transaction.Synchronization;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.entitymanager.StagedValueManager;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.StagedValue;
+import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.dao.AbstractEntityManager;
+import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+/**
+ * Values are staged and removed with plain JDBC statements, as they are never meant to 
+ * be visible outside of the session staging them. Values left over by crashed sessions
+ * are purged periodically
+ */
+@Singleton
+public class DefaultStagedValueManager extends AbstractEntityManager<StagedValue> 
+		implements StagedValueManager, SchedulableTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultStagedValueManager.class);
+	
+	private static final int BATCH_SIZE = 1000;
+	
+	private static final long PURGE_AGE = 3600L*1000L;
+	
+	private final IdManager idManager;
+	
+	private final TaskScheduler taskScheduler;
+	
+	private String taskId;
+	
+	@Inject
+	public DefaultStagedValueManager(Dao dao, IdManager idManager, TaskScheduler taskScheduler) {
+		super(dao);
+		this.idManager = idManager;
+		this.taskScheduler = taskScheduler;
+	}
+
+	private AbstractEntityPersister getPersister(Session session) {
+		SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) session.getSessionFactory();
+		return (AbstractEntityPersister) sessionFactory.getMetamodel().entityPersister(StagedValue.class);
+	}
+	
+	private String getColumn(AbstractEntityPersister persister, String property) {
+		return persister.getPropertyColumnNames(property)[0];
+	}
+	
+	@Override
+	public String stage(Collection<Long> values) {
+		String stage = UUID.randomUUID().toString();
+		Session session = dao.getSession();
+		AbstractEntityPersister persister = getPersister(session);
+		String sql = "insert into " + persister.getTableName() + " (" 
+				+ persister.getIdentifierColumnNames()[0] + ", " 
+				+ getColumn(persister, StagedValue.PROP_STAGE) + ", " 
+				+ getColumn(persister, StagedValue.PROP_VALUE) + ", " 
+				+ getColumn(persister, StagedValue.PROP_DATE) + ") values (?, ?, ?, ?)";
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		session.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				int count = 0;
+				for (Long value: values) {
+					statement.setLong(1, idManager.nextId(StagedValue.class));
+					statement.setString(2, stage);
+					statement.setLong(3, value);
+					statement.setTimestamp(4, now);
+					statement.addBatch();
+					if (++count % BATCH_SIZE == 0)
+						statement.executeBatch();
+				}
+				if (count % BATCH_SIZE != 0)
+					statement.executeBatch();
+			}
+		});
+		
+		Transaction transaction = session.getTransaction();
+		if (transaction.isActive()) {
+			/*
+			 * Remove in the same transaction so that staged values are never committed 
+			 */
+			transaction.registerSynchronization(new Synchronization() {
+				
+				@Override
+				public void beforeCompletion() {
+					unstage(session, stage);
+				}
+				
+				@Override
+				public void afterCompletion(int status) {
+				}
+				
+			});
+		} else {
+			/*
+			 * Staged values are auto-committed in this case, and we remove them with a 
+			 * separate session as connection of current session is released at the end
+			 */
+			session.addEventListeners(new BaseSessionEventListener() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void end() {
+					try (Session unstageSession = session.getSessionFactory().openSession()) {
+						unstage(unstageSession, stage);
+					} catch (Exception e) {
+						logger.error("Error removing staged values", e);
+					}
+				}
+				
+			});
+		}
+		return stage;
+	}
+	
+	private void unstage(Session session, String stage) {
+		AbstractEntityPersister persister = getPersister(session);
+		String sql = "delete from " + persister.getTableName() 
+				+ " where " + getColumn(persister, StagedValue.PROP_STAGE) + " = ?";
+		session.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				statement.setString(1, stage);
+				statement.executeUpdate();
+			}
+		});
+	}
+	
+	private void purge(long age) {
+		Session session = dao.getSession();
+		AbstractEntityPersister persister = getPersister(session);
+		String sql = "delete from " + persister.getTableName() 
+				+ " where " + getColumn(persister, StagedValue.PROP_DATE) + " < ?";
+		session.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				statement.setTimestamp(1, new Timestamp(System.currentTimeMillis() - age));
+				statement.executeUpdate();
+			}
+		});
+	}
+	
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		purge(0);
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		taskScheduler.unschedule(taskId);
+	}
+	
+	@Sessional
+	@Override
+	public void execute() {
+		purge(PURGE_AGE);
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatHourlyForever();
+	}
+
+}
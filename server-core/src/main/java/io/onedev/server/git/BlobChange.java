@@ -92,9 +92,9 @@ public abstract class BlobChange implements Serializable {
 						if (newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
 							List<String> oldLines = new ArrayList<>();
 							diffBlocks = DiffUtils.diff(
-									oldLines, "a.txt", 
+									oldLines, "a.txt", null, 
 									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
-									WhitespaceOption.DEFAULT);
+									getNewBlob().getBlobId(), WhitespaceOption.DEFAULT);
 						} else {
 							diffBlocks = new ArrayList<>();
 						}
@@ -108,7 +108,7 @@ public abstract class BlobChange implements Serializable {
 							List<String> newLines = new ArrayList<>();
 							diffBlocks = DiffUtils.diff(
 									oldLines, oldBlobIdent.isFile()?oldBlobIdent.path:"a.txt", 
-									newLines, "b.txt", 
+									getOldBlob().getBlobId(), newLines, "b.txt", null, 
 									WhitespaceOption.DEFAULT);
 						} else {
 							diffBlocks = new ArrayList<>();
@@ -123,8 +123,9 @@ public abstract class BlobChange implements Serializable {
 						if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
 							diffBlocks = DiffUtils.diff(
 									oldLines, oldBlobIdent.isFile()?newBlobIdent.path:"a.txt", 
+									getOldBlob().getBlobId(), 
 									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
-									whitespaceOption);
+									getNewBlob().getBlobId(), whitespaceOption);
 						} else { 
 							diffBlocks = new ArrayList<>();
 						}
@@ -0,0 +1,194 @@
+package io.onedev.server.git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.AuthorRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitterRevFilter;
+import org.eclipse.jgit.revwalk.filter.MessageRevFilter;
+import org.eclipse.jgit.revwalk.filter.OrRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import io.onedev.server.git.command.RevListCommand;
+import io.onedev.server.git.command.RevListCommand.Order;
+import io.onedev.server.git.exception.ObjectNotFoundException;
+import io.onedev.server.util.DateUtils;
+
+/**
+ * Run rev-list options specified by {@link RevListCommand} in process with JGit, instead of
+ * forking a native git process. This is used by UI paths where commits are listed page by
+ * page and cost of process forking dominates. Options not supported by JGit (first parent,
+ * author date order, wildcard paths, case sensitive message/author/committer matching)
+ * fall back to run the forked command.
+ */
+public class RevListWalker {
+
+	private final RevWalkPool revWalkPool;
+
+	private final Repository repository;
+
+	public RevListWalker(RevWalkPool revWalkPool, Repository repository) {
+		this.revWalkPool = revWalkPool;
+		this.repository = repository;
+	}
+
+	public List<String> call(RevListCommand options) {
+		if (isSupported(options)) {
+			List<String> commitHashes = new ArrayList<>();
+			walk(options, new Predicate<RevCommit>() {
+
+				@Override
+				public boolean test(RevCommit commit) {
+					commitHashes.add(commit.name());
+					return true;
+				}
+
+			});
+			return commitHashes;
+		} else {
+			return options.call();
+		}
+	}
+
+	/**
+	 * Stream matched commits to specified consumer.
+	 *
+	 * @param consumer
+	 * 			consumer of matched commits. Return <tt>false</tt> to stop the walk
+	 */
+	public void walk(RevListCommand options, Predicate<RevCommit> consumer) {
+		RevWalk revWalk = revWalkPool.borrow(repository);
+		try {
+			if (isSupported(options)) {
+				boolean hasRevisions = false;
+				for (String revision: options.revisions()) {
+					if (revision.startsWith("^")) {
+						revWalk.markUninteresting(revWalk.parseCommit(resolve(revision.substring(1))));
+					} else {
+						revWalk.markStart(revWalk.parseCommit(resolve(revision)));
+						hasRevisions = true;
+					}
+				}
+				if (!hasRevisions) {
+					for (Ref ref: repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS))
+						revWalk.markStart(revWalk.parseCommit(ref.getObjectId()));
+				}
+
+				if (options.order() == Order.TOPO)
+					revWalk.sort(RevSort.TOPO, true);
+				else
+					revWalk.sort(RevSort.COMMIT_TIME_DESC, true);
+
+				List<RevFilter> filters = new ArrayList<>();
+				if (options.before() != null)
+					filters.add(CommitTimeRevFilter.before(parseDate(options.before())));
+				if (options.after() != null)
+					filters.add(CommitTimeRevFilter.after(parseDate(options.after())));
+
+				if (!options.authors().isEmpty()) {
+					List<RevFilter> authorFilters = new ArrayList<>();
+					for (String author: options.authors())
+						authorFilters.add(AuthorRevFilter.create(author));
+					filters.add(or(authorFilters));
+				}
+				if (!options.committers().isEmpty()) {
+					List<RevFilter> committerFilters = new ArrayList<>();
+					for (String committer: options.committers())
+						committerFilters.add(CommitterRevFilter.create(committer));
+					filters.add(or(committerFilters));
+				}
+				if (!options.messages().isEmpty()) {
+					List<RevFilter> messageFilters = new ArrayList<>();
+					for (String message: options.messages())
+						messageFilters.add(MessageRevFilter.create(message));
+					filters.add(or(messageFilters));
+				}
+				if (filters.size() == 1)
+					revWalk.setRevFilter(filters.get(0));
+				else if (filters.size() > 1)
+					revWalk.setRevFilter(AndRevFilter.create(filters));
+
+				if (!options.paths().isEmpty()) {
+					revWalk.setTreeFilter(AndTreeFilter.create(
+							PathFilterGroup.createFromStrings(options.paths()), TreeFilter.ANY_DIFF));
+				}
+
+				int skipped = 0;
+				int count = 0;
+				RevCommit commit;
+				while ((commit = revWalk.next()) != null) {
+					if (skipped < options.skip()) {
+						skipped++;
+					} else {
+						if (!consumer.test(commit) || ++count == options.count())
+							break;
+					}
+				}
+			} else {
+				for (String commitHash: options.call()) {
+					if (!consumer.test(revWalk.parseCommit(ObjectId.fromString(commitHash))))
+						break;
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			revWalkPool.release(revWalk);
+		}
+	}
+
+	public static boolean isSupported(RevListCommand options) {
+		if (options.firstParent() || options.order() == Order.AUTHOR_DATE)
+			return false;
+		if (!options.ignoreCase() && (!options.messages().isEmpty()
+				|| !options.authors().isEmpty() || !options.committers().isEmpty())) {
+			return false;
+		}
+		for (String path: options.paths()) {
+			if (path.length() == 0 || path.contains("*") || path.contains("?") || path.contains("[")
+					|| path.startsWith(":") || path.startsWith("/") || path.endsWith("/")) {
+				return false;
+			}
+		}
+		if (options.before() != null && DateUtils.parseRelaxed(options.before()) == null)
+			return false;
+		if (options.after() != null && DateUtils.parseRelaxed(options.after()) == null)
+			return false;
+		return true;
+	}
+
+	private ObjectId resolve(String revision) throws IOException {
+		ObjectId commitId = repository.resolve(revision);
+		if (commitId != null)
+			return commitId;
+		else
+			throw new ObjectNotFoundException("Revision not found: " + revision);
+	}
+
+	private Date parseDate(String date) {
+		return DateUtils.parseRelaxed(date);
+	}
+
+	private RevFilter or(List<RevFilter> filters) {
+		if (filters.size() == 1)
+			return filters.get(0);
+		else
+			return OrRevFilter.create(filters);
+	}
+
+}
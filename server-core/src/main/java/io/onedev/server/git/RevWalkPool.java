@@ -0,0 +1,126 @@
+package io.onedev.server.git;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.Project;
+import io.onedev.server.storage.StorageManager;
+
+/**
+ * Pool of {@link RevWalk} objects per repository. Reusing a walk avoids re-parsing commit
+ * headers and re-creating object readers for each commit page displayed in UI. A walk is
+ * closed after being borrowed certain times to prevent its object map from growing forever.
+ * Pooled walks of a project are closed when the project is removed.
+ */
+@Singleton
+public class RevWalkPool {
+
+	private static final int MAX_POOLED_WALKS = 4;
+
+	private static final int MAX_WALK_USES = 100;
+
+	private final StorageManager storageManager;
+
+	private final Map<File, Deque<PooledRevWalk>> pool = new HashMap<>();
+
+	@Inject
+	public RevWalkPool(StorageManager storageManager) {
+		this.storageManager = storageManager;
+	}
+
+	public RevWalk borrow(Repository repository) {
+		synchronized (pool) {
+			Deque<PooledRevWalk> walks = pool.get(repository.getDirectory());
+			while (walks != null && !walks.isEmpty()) {
+				PooledRevWalk revWalk = walks.pop();
+				if (revWalk.repository == repository) {
+					revWalk.uses++;
+					return revWalk;
+				} else {
+					// repository object has been re-created
+					revWalk.close();
+				}
+			}
+		}
+		return new PooledRevWalk(repository);
+	}
+
+	public void release(RevWalk revWalk) {
+		PooledRevWalk pooledRevWalk = (PooledRevWalk) revWalk;
+		if (pooledRevWalk.uses < MAX_WALK_USES) {
+			pooledRevWalk.reset();
+			pooledRevWalk.setRevFilter(RevFilter.ALL);
+			pooledRevWalk.setTreeFilter(TreeFilter.ALL);
+			pooledRevWalk.sort(RevSort.NONE);
+			pooledRevWalk.setRetainBody(true);
+			synchronized (pool) {
+				File gitDir = pooledRevWalk.repository.getDirectory();
+				Deque<PooledRevWalk> walks = pool.get(gitDir);
+				if (walks == null) {
+					walks = new ArrayDeque<>();
+					pool.put(gitDir, walks);
+				}
+				if (walks.size() < MAX_POOLED_WALKS) {
+					walks.push(pooledRevWalk);
+					return;
+				}
+			}
+		}
+		pooledRevWalk.close();
+	}
+
+	private void close(Deque<PooledRevWalk> walks) {
+		if (walks != null) {
+			for (PooledRevWalk revWalk: walks)
+				revWalk.close();
+		}
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			File gitDir = storageManager.getProjectGitDir(event.getEntity().getId());
+			synchronized (pool) {
+				close(pool.remove(gitDir));
+			}
+		}
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		synchronized (pool) {
+			for (Deque<PooledRevWalk> walks: pool.values())
+				close(walks);
+			pool.clear();
+		}
+	}
+
+	private static class PooledRevWalk extends RevWalk {
+
+		private final Repository repository;
+
+		private int uses = 1;
+
+		PooledRevWalk(Repository repository) {
+			super(repository);
+			this.repository = repository;
+		}
+
+	}
+
+}
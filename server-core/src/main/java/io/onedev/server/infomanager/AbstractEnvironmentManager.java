@@ -20,6 +20,7 @@ import io.onedev.commons.utils.FileUtils;
 import io.onedev.server.event.system.SystemStopping;
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.EnvironmentConfig;
 import jetbrains.exodus.env.Environments;
@@ -194,6 +195,36 @@ public abstract class AbstractEnvironmentManager {
 		store.put(txn, key, new ArrayByteIterable(bytes));
 	}
 
+	/**
+	 * Put specified entry into store, and remove entries added earliest if the store then 
+	 * holds more than <tt>maxEntries</tt> entries. Order of addition is recorded in the 
+	 * sequence store, which maps increasing sequence numbers to keys of the store. Sequence 
+	 * numbers are encoded in big endian so that cursor iterates them in numeric order
+	 */
+	protected void putBounded(Store store, Store sequenceStore, Transaction txn, ByteIterable key, 
+			ByteIterable value, int maxEntries) {
+		if (store.get(txn, key) == null) {
+			long sequence = 0;
+			try (Cursor cursor = sequenceStore.openCursor(txn)) {
+				if (cursor.getLast())
+					sequence = ByteBuffer.wrap(cursor.getKey().getBytesUnsafe()).getLong() + 1;
+			}
+			sequenceStore.put(txn, new LongByteIterable(sequence), key);
+			
+			long count = sequenceStore.count(txn);
+			if (count > maxEntries) {
+				try (Cursor cursor = sequenceStore.openCursor(txn)) {
+					while (count > maxEntries && cursor.getNext()) {
+						store.delete(txn, cursor.getValue());
+						cursor.deleteCurrent();
+						count--;
+					}
+				}
+			}
+		}
+		store.put(txn, key, value);
+	}
+
 	static class CommitByteIterable extends ArrayByteIterable {
 		CommitByteIterable(ObjectId commit) {
 			super(getBytes(commit));
@@ -0,0 +1,28 @@
+package io.onedev.server.infomanager;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.git.AheadBehind;
+import io.onedev.server.model.Project;
+
+public interface AheadBehindInfoManager {
+
+	/**
+	 * Get ahead/behind counts of specified commits against a base commit. Counts are cached 
+	 * per (base commit, compare commit) pair
+	 * 
+	 * @param project
+	 * 			project to get ahead/behind counts for
+	 * @param baseId
+	 * 			base commit to compare against
+	 * @param compareIds
+	 * 			commits to compare
+	 * @return
+	 * 			map of compare commit to its ahead/behind counts against base commit
+	 */
+	Map<ObjectId, AheadBehind> getAheadBehinds(Project project, ObjectId baseId, Collection<ObjectId> compareIds);
+	
+}
@@ -0,0 +1,32 @@
+package io.onedev.server.infomanager;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.utils.LinearRange;
+import io.onedev.server.git.BlameBlock;
+import io.onedev.server.model.Project;
+
+public interface BlameInfoManager {
+
+	/**
+	 * Get blame of specified file. Blame of whole file is cached per commit and path, and 
+	 * blame of a commit is derived from cached blame of its parent when possible
+	 * 
+	 * @param project
+	 * 			project to get blame for
+	 * @param commitId
+	 * 			commit to blame
+	 * @param path
+	 * 			path of the file to blame
+	 * @param range
+	 * 			0-indexed and inclusive line range to blame, <tt>null</tt> to blame whole file
+	 * @return
+	 * 			blame blocks of specified file
+	 */
+	Collection<BlameBlock> getBlame(Project project, ObjectId commitId, String path, @Nullable LinearRange range);
+	
+}
@@ -0,0 +1,280 @@
+package io.onedev.server.infomanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.AheadBehind;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.storage.StorageManager;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Ahead/behind counts are stored per (base commit, compare commit) pair. When a branch is
+ * fast-forwarded, counts of the new head are derived from counts of the old head by only
+ * walking commits between the old and new head:
+ * <ul>
+ * <li>For compare commit moving from C to C', ahead(B, C') = ahead(B, C) + |C' ^C ^B|, and
+ * behind(B, C') = behind(B, C) - (|C' ^C| - |C' ^C ^B|)
+ * <li>For base commit moving from B to B', behind(B', C) = behind(B, C) + |B' ^B ^C|, and
+ * ahead(B', C) = ahead(B, C) - (|B' ^B| - |B' ^B ^C|)
+ * </ul>
+ * This is done in background for updated branch against default branch, and for all branches
+ * against updated default branch.
+ */
+@Singleton
+public class DefaultAheadBehindInfoManager extends AbstractEnvironmentManager implements AheadBehindInfoManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultAheadBehindInfoManager.class);
+
+	private static final int INFO_VERSION = 2;
+
+	private static final long LOG_FILE_SIZE = 256*1024;
+
+	private static final String INFO_DIR = "aheadBehind";
+
+	private static final String DEFAULT_STORE = "default";
+
+	private static final String SEQUENCE_STORE = "sequence";
+
+	private static final int MAX_ENTRIES = 10000;
+
+	private final StorageManager storageManager;
+
+	private final ProjectManager projectManager;
+
+	private final SessionManager sessionManager;
+
+	@Inject
+	public DefaultAheadBehindInfoManager(StorageManager storageManager, ProjectManager projectManager,
+			SessionManager sessionManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+		this.sessionManager = sessionManager;
+	}
+
+	@Override
+	public Map<ObjectId, AheadBehind> getAheadBehinds(Project project, ObjectId baseId,
+			Collection<ObjectId> compareIds) {
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, DEFAULT_STORE);
+
+		Map<ObjectId, AheadBehind> aheadBehinds = new HashMap<>();
+		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+			revWalk.setRetainBody(false);
+			for (ObjectId compareId: compareIds) {
+				AheadBehind aheadBehind = readAheadBehind(env, store, baseId, compareId);
+				if (aheadBehind == null) {
+					RevCommit baseCommit = revWalk.parseCommit(baseId);
+					RevCommit compareCommit = revWalk.parseCommit(compareId);
+					int ahead = count(revWalk, compareCommit, baseCommit, null);
+					int behind = count(revWalk, baseCommit, compareCommit, null);
+					aheadBehind = new AheadBehind(ahead, behind);
+					writeAheadBehind(env, store, baseId, compareId, aheadBehind);
+				}
+				aheadBehinds.put(compareId, aheadBehind);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return aheadBehinds;
+	}
+
+	/*
+	 * Count commits reachable from start, but not reachable from any of the excluded commits.
+	 * Only commits in the difference and their immediate boundary are parsed
+	 */
+	private int count(RevWalk revWalk, RevCommit start, RevCommit exclude,
+			@Nullable RevCommit anotherExclude) throws IOException {
+		revWalk.reset();
+		revWalk.markStart(start);
+		revWalk.markUninteresting(exclude);
+		if (anotherExclude != null)
+			revWalk.markUninteresting(anotherExclude);
+		int count = 0;
+		while (revWalk.next() != null)
+			count++;
+		return count;
+	}
+
+	@Nullable
+	AheadBehind readAheadBehind(Long projectId, ObjectId baseId, ObjectId compareId) {
+		Environment env = getEnv(projectId.toString());
+		return readAheadBehind(env, getStore(env, DEFAULT_STORE), baseId, compareId);
+	}
+
+	@Nullable
+	private AheadBehind readAheadBehind(Environment env, Store store, ObjectId baseId, ObjectId compareId) {
+		byte[] bytes = env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+
+			@Override
+			public byte[] compute(Transaction txn) {
+				return readBytes(store, txn, getKey(baseId, compareId));
+			}
+
+		});
+		if (bytes != null) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			return new AheadBehind(buffer.getInt(), buffer.getInt());
+		} else {
+			return null;
+		}
+	}
+
+	private void writeAheadBehind(Environment env, Store store, ObjectId baseId, ObjectId compareId,
+			AheadBehind aheadBehind) {
+		ByteBuffer buffer = ByteBuffer.allocate(2*Integer.BYTES);
+		buffer.putInt(aheadBehind.getAhead());
+		buffer.putInt(aheadBehind.getBehind());
+		Store sequenceStore = getStore(env, SEQUENCE_STORE);
+		env.executeInTransaction(new TransactionalExecutable() {
+
+			@Override
+			public void execute(Transaction txn) {
+				putBounded(store, sequenceStore, txn, getKey(baseId, compareId), 
+						new ArrayByteIterable(buffer.array()), MAX_ENTRIES);
+			}
+
+		});
+	}
+
+	private ByteIterable getKey(ObjectId baseId, ObjectId compareId) {
+		byte[] keyBytes = new byte[40];
+		baseId.copyRawTo(keyBytes, 0);
+		compareId.copyRawTo(keyBytes, 20);
+		return new ArrayByteIterable(keyBytes);
+	}
+
+	private void deriveForNewCompare(Environment env, Store store, RevWalk revWalk, ObjectId baseId,
+			ObjectId oldCompareId, ObjectId newCompareId) throws IOException {
+		AheadBehind aheadBehind = readAheadBehind(env, store, baseId, oldCompareId);
+		if (aheadBehind != null && readAheadBehind(env, store, baseId, newCompareId) == null) {
+			RevCommit baseCommit = revWalk.parseCommit(baseId);
+			RevCommit oldCompareCommit = revWalk.parseCommit(oldCompareId);
+			RevCommit newCompareCommit = revWalk.parseCommit(newCompareId);
+			int added = count(revWalk, newCompareCommit, oldCompareCommit, null);
+			int addedAhead = count(revWalk, newCompareCommit, oldCompareCommit, baseCommit);
+			writeAheadBehind(env, store, baseId, newCompareId, new AheadBehind(
+					aheadBehind.getAhead() + addedAhead,
+					aheadBehind.getBehind() - (added - addedAhead)));
+		}
+	}
+
+	private void deriveForNewBase(Environment env, Store store, RevWalk revWalk, ObjectId oldBaseId,
+			ObjectId newBaseId, ObjectId compareId) throws IOException {
+		AheadBehind aheadBehind = readAheadBehind(env, store, oldBaseId, compareId);
+		if (aheadBehind != null && readAheadBehind(env, store, newBaseId, compareId) == null) {
+			RevCommit oldBaseCommit = revWalk.parseCommit(oldBaseId);
+			RevCommit newBaseCommit = revWalk.parseCommit(newBaseId);
+			RevCommit compareCommit = revWalk.parseCommit(compareId);
+			int added = count(revWalk, newBaseCommit, oldBaseCommit, null);
+			int addedBehind = count(revWalk, newBaseCommit, oldBaseCommit, compareCommit);
+			writeAheadBehind(env, store, newBaseId, compareId, new AheadBehind(
+					aheadBehind.getAhead() - (added - addedBehind),
+					aheadBehind.getBehind() + addedBehind));
+		}
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		Project project = event.getProject();
+		String branch = GitUtils.ref2branch(event.getRefName());
+		String defaultBranch = project.getDefaultBranch();
+		if (branch != null && defaultBranch != null
+				&& !event.getOldCommitId().equals(ObjectId.zeroId())
+				&& !event.getNewCommitId().equals(ObjectId.zeroId())) {
+			Long projectId = project.getId();
+			ObjectId oldCommitId = event.getOldCommitId();
+			ObjectId newCommitId = event.getNewCommitId();
+			sessionManager.runAsync(new Runnable() {
+
+				@Override
+				public void run() {
+					Project project = projectManager.get(projectId);
+					if (project == null)
+						return;
+					Environment env = getEnv(projectId.toString());
+					Store store = getStore(env, DEFAULT_STORE);
+					Repository repository = project.getRepository();
+					try (RevWalk revWalk = new RevWalk(repository)) {
+						revWalk.setRetainBody(false);
+						if (!revWalk.isMergedInto(revWalk.parseCommit(oldCommitId), revWalk.parseCommit(newCommitId)))
+							return;
+						if (branch.equals(defaultBranch)) {
+							for (Ref ref: repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+								ObjectId compareId = ref.getObjectId();
+								if (compareId != null && !compareId.equals(newCommitId))
+									deriveForNewBase(env, store, revWalk, oldCommitId, newCommitId, compareId);
+							}
+						} else {
+							ObjectId baseId = project.getObjectId(defaultBranch, false);
+							if (baseId != null)
+								deriveForNewCompare(env, store, revWalk, baseId, oldCommitId, newCommitId);
+						}
+					} catch (Exception e) {
+						logger.error("Error updating ahead/behind info", e);
+					}
+				}
+
+			});
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			removeEnv(event.getEntity().getId().toString());
+	}
+
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		if (!infoDir.exists())
+			FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	@Override
+	protected long getLogFileSize() {
+		return LOG_FILE_SIZE;
+	}
+
+}
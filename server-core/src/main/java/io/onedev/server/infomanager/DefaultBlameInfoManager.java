@@ -0,0 +1,342 @@
+package io.onedev.server.infomanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LinearRange;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.Blob;
+import io.onedev.server.git.BlameBlock;
+import io.onedev.server.git.BlameCommit;
+import io.onedev.server.git.BlobIdent;
+import io.onedev.server.git.command.BlameCommand;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+import io.onedev.server.util.diff.DiffUtils;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Blame of a file at a commit is stored as a list of blame blocks, each encoded as commit
+ * information followed by line ranges. Blame of a single-parent commit is derived from
+ * cached blame of its parent and line diff of the file: unchanged lines inherit blame from
+ * parent, and added/modified lines are attributed to the commit itself. Native git blame
+ * is only run when parent blame is not available, or commit is a merge or root commit,
+ * or the file is renamed. Number of stored blames is bounded per project, and blames 
+ * calculated earliest are removed first.
+ */
+@Singleton
+public class DefaultBlameInfoManager extends AbstractEnvironmentManager implements BlameInfoManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultBlameInfoManager.class);
+
+	private static final int INFO_VERSION = 2;
+
+	private static final long LOG_FILE_SIZE = 1024*1024;
+
+	private static final String INFO_DIR = "blame";
+
+	private static final String DEFAULT_STORE = "default";
+
+	private static final String SEQUENCE_STORE = "sequence";
+
+	private static final int MAX_ENTRIES = 10000;
+
+	private final StorageManager storageManager;
+
+	@Inject
+	public DefaultBlameInfoManager(StorageManager storageManager) {
+		this.storageManager = storageManager;
+	}
+
+	@Override
+	public Collection<BlameBlock> getBlame(Project project, ObjectId commitId, String path,
+			@Nullable LinearRange range) {
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, DEFAULT_STORE);
+
+		Collection<BlameBlock> blocks = readBlame(env, store, commitId, path);
+		if (blocks == null) {
+			if (range != null) {
+				// do not bother to blame whole file if only a range is required
+				return new BlameCommand(project.getGitDir()).commitHash(commitId.name()).file(path).range(range).call();
+			}
+
+			blocks = deriveBlame(project, env, store, commitId, path);
+			if (blocks == null)
+				blocks = new BlameCommand(project.getGitDir()).commitHash(commitId.name()).file(path).call();
+
+			byte[] bytes = encode(blocks);
+			Store sequenceStore = getStore(env, SEQUENCE_STORE);
+			env.executeInTransaction(new TransactionalExecutable() {
+
+				@Override
+				public void execute(Transaction txn) {
+					putBounded(store, sequenceStore, txn, getKey(commitId, path), 
+							new ArrayByteIterable(bytes), getMaxEntries());
+				}
+
+			});
+		}
+
+		if (range != null) {
+			Collection<BlameBlock> rangeBlocks = new ArrayList<>();
+			for (BlameBlock block: blocks) {
+				List<LinearRange> rangesOfBlock = new ArrayList<>();
+				for (LinearRange rangeOfBlock: block.getRanges()) {
+					int from = Math.max(range.getFrom(), rangeOfBlock.getFrom());
+					int to = Math.min(range.getTo(), rangeOfBlock.getTo());
+					if (from <= to)
+						rangesOfBlock.add(new LinearRange(from, to));
+				}
+				if (!rangesOfBlock.isEmpty())
+					rangeBlocks.add(new BlameBlock(block.getCommit(), rangesOfBlock));
+			}
+			return rangeBlocks;
+		} else {
+			return blocks;
+		}
+	}
+
+	int getMaxEntries() {
+		return MAX_ENTRIES;
+	}
+	
+	@Nullable
+	Collection<BlameBlock> readBlame(Long projectId, ObjectId commitId, String path) {
+		Environment env = getEnv(projectId.toString());
+		return readBlame(env, getStore(env, DEFAULT_STORE), commitId, path);
+	}
+
+	@Nullable
+	private Collection<BlameBlock> readBlame(Environment env, Store store, ObjectId commitId, String path) {
+		byte[] bytes = env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+
+			@Override
+			public byte[] compute(Transaction txn) {
+				return readBytes(store, txn, getKey(commitId, path));
+			}
+
+		});
+		if (bytes != null)
+			return decode(bytes);
+		else
+			return null;
+	}
+
+	@Nullable
+	private Collection<BlameBlock> deriveBlame(Project project, Environment env, Store store,
+			ObjectId commitId, String path) {
+		Repository repository = project.getRepository();
+		try (RevWalk revWalk = new RevWalk(repository)) {
+			RevCommit commit = revWalk.parseCommit(commitId);
+			if (commit.getParentCount() != 1)
+				return null;
+			RevCommit parent = revWalk.parseCommit(commit.getParent(0));
+
+			Collection<BlameBlock> parentBlocks = readBlame(env, store, parent, path);
+			if (parentBlocks == null)
+				return null;
+
+			TreeWalk treeWalk = TreeWalk.forPath(repository, path, commit.getTree());
+			if (treeWalk == null)
+				return null;
+			ObjectId blobId = treeWalk.getObjectId(0);
+
+			treeWalk = TreeWalk.forPath(repository, path, parent.getTree());
+			if (treeWalk == null)
+				return null;
+			ObjectId parentBlobId = treeWalk.getObjectId(0);
+
+			if (blobId.equals(parentBlobId))
+				return parentBlocks;
+
+			List<String> lines = readLines(repository, blobId);
+			List<String> parentLines = readLines(repository, parentBlobId);
+			if (lines == null || parentLines == null
+					|| lines.size() + parentLines.size() > DiffUtils.MAX_DIFF_SIZE) {
+				return null;
+			}
+
+			BlameCommit[] parentBlames = new BlameCommit[parentLines.size()];
+			for (BlameBlock block: parentBlocks) {
+				for (LinearRange range: block.getRanges()) {
+					for (int i=range.getFrom(); i<=range.getTo(); i++) {
+						if (i >= parentBlames.length)
+							return null;
+						parentBlames[i] = block.getCommit();
+					}
+				}
+			}
+
+			BlameCommit blameCommit = new BlameCommit(commit.name(), commit.getCommitterIdent(),
+					commit.getAuthorIdent(), commit.getShortMessage());
+			BlameCommit[] blames = new BlameCommit[lines.size()];
+			for (DiffBlock<String> block: DiffUtils.diff(parentLines, lines)) {
+				for (int i=0; i<block.getUnits().size(); i++) {
+					if (block.getOperation() == Operation.EQUAL)
+						blames[block.getNewStart()+i] = parentBlames[block.getOldStart()+i];
+					else if (block.getOperation() == Operation.INSERT)
+						blames[block.getNewStart()+i] = blameCommit;
+				}
+			}
+
+			Map<String, BlameBlock> blocks = new LinkedHashMap<>();
+			int beginLine = 0;
+			for (int i=1; i<=blames.length; i++) {
+				if (blames[i-1] == null)
+					return null;
+				if (i == blames.length || !blames[i-1].equals(blames[i])) {
+					BlameCommit blamed = blames[i-1];
+					BlameBlock block = blocks.get(blamed.getHash());
+					if (block == null) {
+						block = new BlameBlock(blamed, new ArrayList<>());
+						blocks.put(blamed.getHash(), block);
+					}
+					block.getRanges().add(new LinearRange(beginLine, i-1));
+					beginLine = i;
+				}
+			}
+			return blocks.values();
+		} catch (Exception e) {
+			logger.error("Error deriving blame from parent commit", e);
+			return null;
+		}
+	}
+
+	@Nullable
+	private List<String> readLines(Repository repository, ObjectId blobId) {
+		BlobIdent blobIdent = new BlobIdent(null, null, FileMode.REGULAR_FILE.getBits());
+		try (ObjectReader reader = repository.newObjectReader()) {
+			Blob.Text text = new Blob(blobIdent, blobId, reader).getText();
+			return text != null? text.getLines(): null;
+		}
+	}
+
+	private ByteIterable getKey(ObjectId commitId, String path) {
+		byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+		byte[] keyBytes = new byte[20 + pathBytes.length];
+		commitId.copyRawTo(keyBytes, 0);
+		System.arraycopy(pathBytes, 0, keyBytes, 20, pathBytes.length);
+		return new ArrayByteIterable(keyBytes);
+	}
+
+	private void writePerson(DataOutputStream os, PersonIdent person) throws IOException {
+		os.writeUTF(person.getName());
+		os.writeUTF(person.getEmailAddress());
+		os.writeLong(person.getWhen().getTime());
+		os.writeInt(person.getTimeZoneOffset());
+	}
+
+	private PersonIdent readPerson(DataInputStream is) throws IOException {
+		return new PersonIdent(is.readUTF(), is.readUTF(), is.readLong(), is.readInt());
+	}
+
+	private byte[] encode(Collection<BlameBlock> blocks) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream os = new DataOutputStream(baos)) {
+			os.writeInt(blocks.size());
+			byte[] hashBytes = new byte[20];
+			for (BlameBlock block: blocks) {
+				BlameCommit commit = block.getCommit();
+				ObjectId.fromString(commit.getHash()).copyRawTo(hashBytes, 0);
+				os.write(hashBytes);
+				writePerson(os, commit.getCommitter());
+				writePerson(os, commit.getAuthor());
+				os.writeUTF(commit.getSubject());
+				os.writeInt(block.getRanges().size());
+				for (LinearRange range: block.getRanges()) {
+					os.writeInt(range.getFrom());
+					os.writeInt(range.getTo());
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+
+	private Collection<BlameBlock> decode(byte[] bytes) {
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			int blockCount = is.readInt();
+			Collection<BlameBlock> blocks = new ArrayList<>(blockCount);
+			byte[] hashBytes = new byte[20];
+			for (int i=0; i<blockCount; i++) {
+				is.readFully(hashBytes);
+				String hash = ObjectId.fromRaw(hashBytes).name();
+				PersonIdent committer = readPerson(is);
+				PersonIdent author = readPerson(is);
+				BlameCommit commit = new BlameCommit(hash, committer, author, is.readUTF());
+				int rangeCount = is.readInt();
+				List<LinearRange> ranges = new ArrayList<>(rangeCount);
+				for (int j=0; j<rangeCount; j++)
+					ranges.add(new LinearRange(is.readInt(), is.readInt()));
+				blocks.add(new BlameBlock(commit, ranges));
+			}
+			return blocks;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			removeEnv(event.getEntity().getId().toString());
+	}
+
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		if (!infoDir.exists())
+			FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	@Override
+	protected long getLogFileSize() {
+		return LOG_FILE_SIZE;
+	}
+
+}
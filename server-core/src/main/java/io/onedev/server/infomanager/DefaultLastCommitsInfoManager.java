@@ -0,0 +1,311 @@
+package io.onedev.server.infomanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.storage.StorageManager;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Last commits of children of a tree are stored per (commit, path). Distinct commits are
+ * encoded once in a commit table, and each child refers to its last commit by index into
+ * the table, as many children normally share a few commits. Root tree of default branch
+ * is calculated in background when the branch is updated, so that the calculation visiting
+ * the project home page only needs to walk to the previous head. Number of stored entries
+ * is bounded per project, and entries calculated earliest are removed first.
+ */
+@Singleton
+public class DefaultLastCommitsInfoManager extends AbstractEnvironmentManager implements LastCommitsInfoManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultLastCommitsInfoManager.class);
+
+	private static final int INFO_VERSION = 2;
+
+	private static final long LOG_FILE_SIZE = 1024*1024;
+
+	private static final String INFO_DIR = "lastCommits";
+
+	private static final String LEGACY_INFO_DIR = "last_commits";
+
+	private static final int MAX_ENTRIES = 10000;
+
+	private static final String DEFAULT_STORE = "default";
+
+	private static final String SEQUENCE_STORE = "sequence";
+
+	private final StorageManager storageManager;
+
+	private final ProjectManager projectManager;
+
+	private final SessionManager sessionManager;
+
+	private final Map<Long, ObjectId> pendingWarmups = new ConcurrentHashMap<>();
+
+	@Inject
+	public DefaultLastCommitsInfoManager(StorageManager storageManager, ProjectManager projectManager,
+			SessionManager sessionManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+		this.sessionManager = sessionManager;
+	}
+
+	@Override
+	public LastCommitsOfChildren getLastCommitsOfChildren(Project project, ObjectId commitId, @Nullable String path) {
+		String normalizedPath = GitUtils.normalizePath(path);
+		if (normalizedPath == null)
+			normalizedPath = "";
+		String treePath = normalizedPath;
+
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, DEFAULT_STORE);
+		ByteIterable key = getKey(commitId, treePath);
+
+		AtomicBoolean cached = new AtomicBoolean(false);
+		LastCommitsOfChildren.Cache cache = new LastCommitsOfChildren.Cache() {
+
+			@Override
+			public Map<String, Value> getLastCommitsOfChildren(ObjectId cachedCommitId) {
+				byte[] bytes = env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+
+					@Override
+					public byte[] compute(Transaction txn) {
+						return readBytes(store, txn, getKey(cachedCommitId, treePath));
+					}
+
+				});
+				if (bytes != null) {
+					if (cachedCommitId.equals(commitId))
+						cached.set(true);
+					return decode(bytes);
+				} else {
+					return null;
+				}
+			}
+
+		};
+
+		LastCommitsOfChildren lastCommits = new LastCommitsOfChildren(project.getRepository(),
+				commitId, treePath, cache);
+
+		if (!cached.get()) {
+			byte[] bytes = encode(lastCommits);
+			Store sequenceStore = getStore(env, SEQUENCE_STORE);
+			env.executeInTransaction(new TransactionalExecutable() {
+
+				@Override
+				public void execute(Transaction txn) {
+					if (store.get(txn, key) == null)
+						putBounded(store, sequenceStore, txn, key, new ArrayByteIterable(bytes), getMaxEntries());
+				}
+
+			});
+		}
+		return lastCommits;
+	}
+
+	int getMaxEntries() {
+		return MAX_ENTRIES;
+	}
+	
+	@Nullable
+	Map<String, Value> readLastCommits(Long projectId, ObjectId commitId, String path) {
+		Environment env = getEnv(projectId.toString());
+		Store store = getStore(env, DEFAULT_STORE);
+		byte[] bytes = env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+
+			@Override
+			public byte[] compute(Transaction txn) {
+				return readBytes(store, txn, getKey(commitId, path));
+			}
+
+		});
+		return bytes != null? decode(bytes): null;
+	}
+	
+	private ByteIterable getKey(ObjectId commitId, String path) {
+		byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+		byte[] keyBytes = new byte[20 + pathBytes.length];
+		commitId.copyRawTo(keyBytes, 0);
+		System.arraycopy(pathBytes, 0, keyBytes, 20, pathBytes.length);
+		return new ArrayByteIterable(keyBytes);
+	}
+
+	private void writeString(DataOutputStream os, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		os.writeInt(bytes.length);
+		os.write(bytes);
+	}
+
+	private String readString(DataInputStream is) throws IOException {
+		byte[] bytes = new byte[is.readInt()];
+		is.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private byte[] encode(Map<String, Value> lastCommits) {
+		Map<ObjectId, Integer> commitIndexes = new LinkedHashMap<>();
+		List<Value> commits = new ArrayList<>();
+		for (Value value: lastCommits.values()) {
+			if (!commitIndexes.containsKey(value.getId())) {
+				commitIndexes.put(value.getId(), commits.size());
+				commits.add(value);
+			}
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream os = new DataOutputStream(baos)) {
+			os.writeInt(commits.size());
+			byte[] idBytes = new byte[20];
+			for (Value commit: commits) {
+				commit.getId().copyRawTo(idBytes, 0);
+				os.write(idBytes);
+				PersonIdent author = commit.getAuthor();
+				writeString(os, author.getName());
+				writeString(os, author.getEmailAddress());
+				os.writeLong(author.getWhen().getTime());
+				os.writeInt(author.getTimeZoneOffset());
+				os.writeLong(commit.getCommitDate().getTime());
+				writeString(os, commit.getSummary());
+			}
+			os.writeInt(lastCommits.size());
+			for (Map.Entry<String, Value> entry: lastCommits.entrySet()) {
+				writeString(os, entry.getKey());
+				os.writeInt(commitIndexes.get(entry.getValue().getId()));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+
+	private Map<String, Value> decode(byte[] bytes) {
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			int commitCount = is.readInt();
+			Value[] commits = new Value[commitCount];
+			byte[] idBytes = new byte[20];
+			for (int i=0; i<commitCount; i++) {
+				is.readFully(idBytes);
+				ObjectId id = ObjectId.fromRaw(idBytes);
+				PersonIdent author = new PersonIdent(readString(is), readString(is), is.readLong(), is.readInt());
+				Date commitDate = new Date(is.readLong());
+				commits[i] = new Value(id, author, commitDate, readString(is));
+			}
+			int childCount = is.readInt();
+			Map<String, Value> lastCommits = new HashMap<>();
+			for (int i=0; i<childCount; i++)
+				lastCommits.put(readString(is), commits[is.readInt()]);
+			return lastCommits;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		Project project = event.getProject();
+		if (!event.getNewCommitId().equals(ObjectId.zeroId()) && project.getDefaultBranch() != null
+				&& event.getRefName().equals(GitUtils.branch2ref(project.getDefaultBranch()))) {
+			Long projectId = project.getId();
+
+			// only keep latest head if branch is updated while previous warmup is running
+			if (pendingWarmups.put(projectId, event.getNewCommitId()) == null) {
+				sessionManager.runAsync(new Runnable() {
+
+					@Override
+					public void run() {
+						ObjectId commitId;
+						while ((commitId = pendingWarmups.get(projectId)) != null) {
+							try {
+								Project project = projectManager.get(projectId);
+								if (project != null)
+									getLastCommitsOfChildren(project, commitId, null);
+							} catch (Exception e) {
+								logger.error("Error calculating last commits", e);
+							} finally {
+								pendingWarmups.remove(projectId, commitId);
+							}
+						}
+					}
+
+				});
+			}
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			removeEnv(event.getEntity().getId().toString());
+	}
+
+	@Override
+	protected void checkVersion(String envKey) {
+		super.checkVersion(envKey);
+
+		// Serialized files of previous versions are no longer read
+		File legacyInfoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), LEGACY_INFO_DIR);
+		if (legacyInfoDir.exists())
+			FileUtils.deleteDir(legacyInfoDir);
+	}
+
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		if (!infoDir.exists())
+			FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	@Override
+	protected long getLogFileSize() {
+		return LOG_FILE_SIZE;
+	}
+
+}
@@ -0,0 +1,181 @@
+package io.onedev.server.infomanager;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.Blob;
+import io.onedev.server.git.BlobIdent;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+import io.onedev.server.util.diff.DiffUtils;
+import io.onedev.server.util.diff.WhitespaceOption;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Line mapping of a blob pair is stored as a sequence of (old start, new start, length)
+ * integer triples, one for each block of unchanged lines
+ */
+@Singleton
+public class DefaultLineMappingInfoManager extends AbstractEnvironmentManager implements LineMappingInfoManager {
+
+	private static final int INFO_VERSION = 2;
+
+	private static final long LOG_FILE_SIZE = 256*1024;
+
+	private static final String INFO_DIR = "lineMapping";
+
+	private static final String DEFAULT_STORE = "default";
+
+	private static final String SEQUENCE_STORE = "sequence";
+
+	private static final int MAX_ENTRIES = 10000;
+
+	private final StorageManager storageManager;
+
+	@Inject
+	public DefaultLineMappingInfoManager(StorageManager storageManager) {
+		this.storageManager = storageManager;
+	}
+
+	@Override
+	public Map<Integer, Integer> getLineMapping(Project project, ObjectId oldBlobId, ObjectId newBlobId) {
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, DEFAULT_STORE);
+		ByteIterable key = new BlobPairByteIterable(oldBlobId, newBlobId);
+
+		byte[] bytes = env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+
+			@Override
+			public byte[] compute(Transaction txn) {
+				return readBytes(store, txn, key);
+			}
+
+		});
+
+		if (bytes == null) {
+			bytes = calcLineMapping(project, oldBlobId, newBlobId);
+			byte[] valueBytes = bytes;
+			Store sequenceStore = getStore(env, SEQUENCE_STORE);
+			env.executeInTransaction(new TransactionalExecutable() {
+
+				@Override
+				public void execute(Transaction txn) {
+					putBounded(store, sequenceStore, txn, key, new ArrayByteIterable(valueBytes), MAX_ENTRIES);
+				}
+
+			});
+		}
+
+		Map<Integer, Integer> lineMapping = new HashMap<>();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.remaining() >= 3*Integer.BYTES) {
+			int oldStart = buffer.getInt();
+			int newStart = buffer.getInt();
+			int length = buffer.getInt();
+			for (int i=0; i<length; i++)
+				lineMapping.put(oldStart+i, newStart+i);
+		}
+		return lineMapping;
+	}
+
+	private byte[] calcLineMapping(Project project, ObjectId oldBlobId, ObjectId newBlobId) {
+		try (ObjectReader reader = project.getRepository().newObjectReader()) {
+			List<String> oldLines = readLines(reader, oldBlobId);
+			List<String> newLines = readLines(reader, newBlobId);
+			if (oldLines != null && newLines != null
+					&& oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+				List<int[]> equalBlocks = new ArrayList<>();
+				for (DiffBlock<String> block: DiffUtils.diff(oldLines, newLines)) {
+					if (block.getOperation() == Operation.EQUAL)
+						equalBlocks.add(new int[] {block.getOldStart(), block.getNewStart(), block.getUnits().size()});
+				}
+				ByteBuffer buffer = ByteBuffer.allocate(equalBlocks.size()*3*Integer.BYTES);
+				for (int[] equalBlock: equalBlocks) {
+					buffer.putInt(equalBlock[0]);
+					buffer.putInt(equalBlock[1]);
+					buffer.putInt(equalBlock[2]);
+				}
+				return buffer.array();
+			} else {
+				return new byte[0];
+			}
+		}
+	}
+
+	private List<String> readLines(ObjectReader reader, ObjectId blobId) {
+		BlobIdent blobIdent = new BlobIdent(null, null, FileMode.REGULAR_FILE.getBits());
+		Blob.Text text = new Blob(blobIdent, blobId, reader).getText();
+		if (text != null) {
+			List<String> normalizedLines = new ArrayList<>();
+			for (String line: text.getLines())
+				normalizedLines.add(WhitespaceOption.DEFAULT.process(line));
+			return normalizedLines;
+		} else {
+			return null;
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			removeEnv(event.getEntity().getId().toString());
+	}
+
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		if (!infoDir.exists())
+			FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	@Override
+	protected long getLogFileSize() {
+		return LOG_FILE_SIZE;
+	}
+
+	static class BlobPairByteIterable extends ArrayByteIterable {
+
+		BlobPairByteIterable(ObjectId oldBlobId, ObjectId newBlobId) {
+			super(getBytes(oldBlobId, newBlobId));
+		}
+
+		private static byte[] getBytes(ObjectId oldBlobId, ObjectId newBlobId) {
+			byte[] bytes = new byte[40];
+			oldBlobId.copyRawTo(bytes, 0);
+			newBlobId.copyRawTo(bytes, 20);
+			return bytes;
+		}
+
+	}
+
+}
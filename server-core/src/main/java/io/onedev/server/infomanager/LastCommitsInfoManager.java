@@ -0,0 +1,27 @@
+package io.onedev.server.infomanager;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+
+import io.onedev.server.model.Project;
+
+public interface LastCommitsInfoManager {
+
+	/**
+	 * Get last commits of children of specified tree. Result is cached per commit and path,
+	 * and calculation stops as soon as it reaches an ancestor commit with cached result
+	 *
+	 * @param project
+	 * 			project to get last commits for
+	 * @param commitId
+	 * 			get last commits no newer than this commit
+	 * @param path
+	 * 			path of the tree, use empty string or <tt>null</tt> to refer to repository root
+	 * @return
+	 * 			last commits of children of specified tree
+	 */
+	LastCommitsOfChildren getLastCommitsOfChildren(Project project, ObjectId commitId, @Nullable String path);
+
+}
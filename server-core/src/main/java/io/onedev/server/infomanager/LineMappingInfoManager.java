@@ -0,0 +1,28 @@
+package io.onedev.server.infomanager;
+
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.model.Project;
+
+public interface LineMappingInfoManager {
+
+	/**
+	 * Get mapping of unchanged lines between specified blobs. Mapping is calculated with 
+	 * {@link io.onedev.server.util.diff.WhitespaceOption#DEFAULT} and is persisted so that 
+	 * subsequent calls for same blob pair does not need to read and diff blob contents again
+	 * 
+	 * @param project
+	 * 			project containing the blobs
+	 * @param oldBlobId
+	 * 			id of old blob
+	 * @param newBlobId
+	 * 			id of new blob
+	 * @return
+	 * 			map of line index in old blob to line index in new blob, or an empty map if 
+	 * 			either of the blob is binary
+	 */
+	Map<Integer, Integer> getLineMapping(Project project, ObjectId oldBlobId, ObjectId newBlobId);
+	
+}
@@ -1,6 +1,8 @@
 package io.onedev.server.maintenance;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -8,6 +10,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.ZipOutputStream;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -28,12 +31,12 @@ import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.launcher.loader.ManagedSerializedForm;
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
-import io.onedev.commons.utils.ZipUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.RoleManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
 import io.onedev.server.event.system.SystemStarting;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Setting;
 import io.onedev.server.model.Setting.Key;
 import io.onedev.server.model.User;
@@ -47,6 +50,7 @@ import io.onedev.server.model.support.administration.SecuritySetting;
 import io.onedev.server.model.support.administration.SystemSetting;
 import io.onedev.server.model.support.administration.jobexecutor.AutoDiscoveredJobExecutor;
 import io.onedev.server.notification.MailManager;
+import io.onedev.server.persistence.EntityChanges;
 import io.onedev.server.persistence.IdManager;
 import io.onedev.server.persistence.PersistManager;
 import io.onedev.server.persistence.annotation.Sessional;
@@ -77,13 +81,18 @@ public class DefaultDataManager implements DataManager, Serializable {
 	
 	private final RoleManager roleManager;
 	
+	private final EntityChangeLog entityChangeLog;
+	
 	private String backupTaskId;
 	
+	private String incrementalBackupTaskId;
+	
 	@Inject
 	public DefaultDataManager(IdManager idManager, UserManager userManager, 
 			SettingManager settingManager, PersistManager persistManager, 
 			MailManager mailManager, Validator validator, TaskScheduler taskScheduler, 
-			PasswordService passwordService, RoleManager roleManager) {
+			PasswordService passwordService, RoleManager roleManager, 
+			EntityChangeLog entityChangeLog) {
 		this.userManager = userManager;
 		this.settingManager = settingManager;
 		this.validator = validator;
@@ -93,6 +102,7 @@ public class DefaultDataManager implements DataManager, Serializable {
 		this.mailManager = mailManager;
 		this.passwordService = passwordService;
 		this.roleManager = roleManager;
+		this.entityChangeLog = entityChangeLog;
 	}
 	
 	@SuppressWarnings("serial")
@@ -247,25 +257,16 @@ public class DefaultDataManager implements DataManager, Serializable {
 	public void scheduleBackup(BackupSetting backupSetting) {
 		if (backupTaskId != null)
 			taskScheduler.unschedule(backupTaskId);
+		if (incrementalBackupTaskId != null)
+			taskScheduler.unschedule(incrementalBackupTaskId);
+		incrementalBackupTaskId = null;
+		
 		if (backupSetting != null) { 
 			backupTaskId = taskScheduler.schedule(new SchedulableTask() {
 
 				@Override
 				public void execute() {
-					File tempDir = FileUtils.createTempDir("backup");
-					try {
-						File backupDir = new File(Bootstrap.getSiteDir(), Upgrade.DB_BACKUP_DIR);
-						FileUtils.createDir(backupDir);
-						persistManager.exportData(tempDir);
-						File backupFile = new File(backupDir, 
-								DateTimeFormat.forPattern(Upgrade.BACKUP_DATETIME_FORMAT).print(new DateTime()) + ".zip");
-						ZipUtils.zip(tempDir, backupFile);
-					} catch (Exception e) {
-						notifyBackupError(e);
-						throw ExceptionUtils.unchecked(e);
-					} finally {
-						FileUtils.deleteDir(tempDir);
-					}
+					backup(backupSetting.getIncrementalSchedule() != null);
 				}
 
 				@Override
@@ -274,6 +275,72 @@ public class DefaultDataManager implements DataManager, Serializable {
 				}
 				
 			});
+			if (backupSetting.getIncrementalSchedule() != null) {
+				incrementalBackupTaskId = taskScheduler.schedule(new SchedulableTask() {
+
+					@Override
+					public void execute() {
+						backupIncrementally();
+					}
+
+					@Override
+					public ScheduleBuilder<?> getScheduleBuilder() {
+						return CronScheduleBuilder.cronSchedule(backupSetting.getIncrementalSchedule());
+					}
+					
+				});
+			} else {
+				entityChangeLog.stop();
+			}
+		} else {
+			backupTaskId = null;
+			entityChangeLog.stop();
+		}
+	}
+	
+	private File getBackupFile(String suffix) {
+		File backupDir = new File(Bootstrap.getSiteDir(), Upgrade.DB_BACKUP_DIR);
+		FileUtils.createDir(backupDir);
+		return new File(backupDir, 
+				DateTimeFormat.forPattern(Upgrade.BACKUP_DATETIME_FORMAT).print(new DateTime()) + suffix);
+	}
+	
+	private synchronized void backup(boolean trackChanges) {
+		File backupFile = getBackupFile(".zip");
+		
+		/*
+		 * Start tracking before exporting so that changes made during the export are 
+		 * included in next incremental backup 
+		 */
+		if (trackChanges)
+			entityChangeLog.start();
+		else
+			entityChangeLog.stop();
+		try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(backupFile)))) {
+			persistManager.exportData(zos);
+		} catch (Exception e) {
+			entityChangeLog.stop();
+			FileUtils.deleteFile(backupFile);
+			notifyBackupError(e);
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+	
+	private synchronized void backupIncrementally() {
+		EntityChanges changes = entityChangeLog.rotate();
+		if (changes != null) {
+			File backupFile = getBackupFile("-incremental.zip");
+			try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(backupFile)))) {
+				persistManager.exportChanges(zos, changes);
+			} catch (Exception e) {
+				entityChangeLog.putBack(changes);
+				FileUtils.deleteFile(backupFile);
+				notifyBackupError(e);
+				throw ExceptionUtils.unchecked(e);
+			}
+		} else {
+			// No full backup to base on yet, or changes are missing from the log
+			backup(true);
 		}
 	}
 	
@@ -282,6 +349,11 @@ public class DefaultDataManager implements DataManager, Serializable {
 		scheduleBackup(settingManager.getBackupSetting());
 	}
 	
+	@Listen
+	public void on(SystemStopping event) {
+		entityChangeLog.close();
+	}
+	
 	@Sessional
 	protected void notifyBackupError(Throwable e) {
 		User root = userManager.getRoot();
@@ -0,0 +1,462 @@
+package io.onedev.server.maintenance;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.hibernate.CallbackException;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.StringUtils;
+import io.onedev.server.persistence.EntityChanges;
+import io.onedev.server.persistence.PersistListener;
+import io.onedev.server.persistence.PersistManager;
+import io.onedev.server.persistence.TransactionManager;
+
+/**
+ * Log of entity changes since last backup, used to take incremental backups. Changes are
+ * only tracked after a full backup is taken with tracking started, so that incremental
+ * backups can always be replayed on top of a full backup. Committed changes are buffered 
+ * and appended to a log file under backup directory in background so that they survive 
+ * server restart:
+ * <ul>
+ * <li><tt>U &lt;entity&gt; &lt;id&gt;</tt>: entity is inserted or updated
+ * <li><tt>D &lt;entity&gt; &lt;id&gt;</tt>: entity is deleted
+ * <li><tt>T &lt;table&gt;</tt>: table is changed by a bulk update or delete statement
+ * <li><tt>M &lt;entity&gt; &lt;id&gt;</tt>: max id of entity when the log is started
+ * <li><tt>O</tt>: log is loaded
+ * <li><tt>C</tt>: log is closed at server shutdown
+ * </ul>
+ * Changes may be lost if server crashes before buffered changes are written, or if 
+ * writing fails. Such gaps are detected and reported as no changes being tracked, so 
+ * that a full backup will be taken instead. A log not closed cleanly is discarded when 
+ * loaded, and ids of entities inserted since the log is started are checked against 
+ * max ids recorded in the log when it is rotated. 
+ */
+@Singleton
+public class EntityChangeLog implements PersistListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(EntityChangeLog.class);
+	
+	private static final String LOG_FILE = "entity-changes.log";
+
+	private static final String OPENED = "O";
+	
+	private static final String CLOSED = "C";
+	
+
+	private static final Pattern BULK_STATEMENT_PATTERN =
+			Pattern.compile("^\\s*(update|delete\\s+from)\\s+(\\S+)\\s.*$", Pattern.CASE_INSENSITIVE|Pattern.DOTALL);
+
+	private final TransactionManager transactionManager;
+
+	private final Provider<PersistManager> persistManagerProvider;
+
+	private final ExecutorService executorService;
+	
+	private final List<String> buffer = new ArrayList<>();
+	
+	private volatile boolean tracking;
+
+	private volatile Map<String, String> idColumns;
+
+	private volatile Map<String, String> tableNames;
+	
+	private Writer writer;
+
+	@Inject
+	public EntityChangeLog(TransactionManager transactionManager, Provider<PersistManager> persistManagerProvider, 
+			ExecutorService executorService) {
+		this.transactionManager = transactionManager;
+		this.persistManagerProvider = persistManagerProvider;
+		this.executorService = executorService;
+		tracking = getLogFile().exists();
+		if (tracking)
+			open();
+	}
+
+	private File getLogFile() {
+		return new File(Bootstrap.getSiteDir(), Upgrade.DB_BACKUP_DIR + "/" + LOG_FILE);
+	}
+
+	public boolean isTracking() {
+		return tracking;
+	}
+
+	/*
+	 * The log is discarded if it was not closed cleanly, as buffered changes might be lost
+	 */
+	private void open() {
+		List<String> lines = readLines(getLogFile());
+		if (lines.isEmpty() || !lines.get(lines.size()-1).equals(CLOSED)) {
+			logger.warn("Entity change log was not closed cleanly, next backup will be a full backup");
+			stop();
+		} else {
+			append(Lists.newArrayList(OPENED));
+		}
+	}
+	
+	/**
+	 * Write buffered changes and close the log. Should be called at server shutdown, 
+	 * otherwise the log will be discarded when it is loaded next time
+	 */
+	public synchronized void close() {
+		flush();
+		append(Lists.newArrayList(CLOSED));
+		closeWriter();
+	}
+	
+	/**
+	 * Start tracking changes from now on. Should be called right before taking a full
+	 * backup. Changes made during the backup will be included in next incremental
+	 * backup, which is fine as replaying an incremental backup overwrites entities
+	 */
+	public synchronized void start() {
+		tracking = true;
+		closeWriter();
+		File logFile = getLogFile();
+		FileUtils.createDir(logFile.getParentFile());
+		write(logFile, getHighWaterMarks(), false);
+	}
+
+	/**
+	 * Stop tracking changes and discard logged changes
+	 */
+	public synchronized void stop() {
+		tracking = false;
+		synchronized (buffer) {
+			buffer.clear();
+		}
+		closeWriter();
+		File logFile = getLogFile();
+		if (logFile.exists())
+			FileUtils.deleteFile(logFile);
+	}
+
+	/**
+	 * Get changes logged so far and clear the log
+	 *
+	 * @return
+	 * 			logged changes, or <tt>null</tt> if changes are not being tracked or some 
+	 * 			changes are missing from the log, in which case a full backup should be taken
+	 */
+	@Nullable
+	public synchronized EntityChanges rotate() {
+		flush();
+		if (tracking) {
+			closeWriter();
+			File logFile = getLogFile();
+			Map<String, Long> lastHighWaterMarks = new HashMap<>();
+			EntityChanges changes = parse(readLines(logFile), lastHighWaterMarks);
+			List<String> highWaterMarks = getHighWaterMarks();
+			write(logFile, highWaterMarks, false);
+			if (hasGap(changes, lastHighWaterMarks, parse(highWaterMarks))) {
+				logger.warn("Entity changes missing from change log, next backup will be a full backup");
+				return null;
+			} else {
+				return changes;
+			}
+		} else {
+			return null;
+		}
+	}
+	
+	static EntityChanges parse(List<String> lines, Map<String, Long> highWaterMarks) {
+		EntityChanges changes = new EntityChanges();
+		for (String line: lines) {
+			String[] fields = StringUtils.split(line, " ");
+			if (fields[0].equals("U"))
+				changes.update(fields[1], Long.valueOf(fields[2]));
+			else if (fields[0].equals("D"))
+				changes.delete(fields[1], Long.valueOf(fields[2]));
+			else if (fields[0].equals("T"))
+				changes.changeTable(fields[1]);
+			else if (fields[0].equals("M"))
+				highWaterMarks.put(fields[1], Long.valueOf(fields[2]));
+		}
+		return changes;
+	}
+	
+	private Map<String, Long> parse(List<String> highWaterMarkLines) {
+		Map<String, Long> highWaterMarks = new HashMap<>();
+		parse(highWaterMarkLines, highWaterMarks);
+		return highWaterMarks;
+	}
+	
+	private List<String> getHighWaterMarks() {
+		List<String> lines = new ArrayList<>();
+		Session session = persistManagerProvider.get().getSessionFactory().openSession();
+		try {
+			for (String entityName: getTableNames().keySet()) {
+				Long maxId = (Long) session.createQuery("select max(id) from " + entityName).uniqueResult();
+				lines.add("M " + entityName + " " + (maxId != null? maxId: 0));
+			}
+		} finally {
+			session.close();
+		}
+		return lines;
+	}
+	
+	/*
+	 * Entities inserted between two high water marks should all be logged unless their 
+	 * tables are changed as a whole
+	 */
+	private boolean hasGap(EntityChanges changes, Map<String, Long> lastHighWaterMarks, 
+			Map<String, Long> highWaterMarks) {
+		Session session = persistManagerProvider.get().getSessionFactory().openSession();
+		try {
+			for (Map.Entry<String, Long> entry: lastHighWaterMarks.entrySet()) {
+				String entityName = entry.getKey();
+				Long highWaterMark = highWaterMarks.get(entityName);
+				if (highWaterMark != null && highWaterMark > entry.getValue()
+						&& !changes.getChangedTables().contains(getTableNames().get(entityName))) {
+					List<?> ids = session.createQuery("select id from " + entityName 
+							+ " where id > :lastHighWaterMark and id <= :highWaterMark")
+							.setParameter("lastHighWaterMark", entry.getValue())
+							.setParameter("highWaterMark", highWaterMark)
+							.list();
+					if (!changes.getUpdatedIds(entityName).containsAll(ids))
+						return true;
+				}
+			}
+		} finally {
+			session.close();
+		}
+		return false;
+	}
+
+	/**
+	 * Put back changes previously got via {@link #rotate()}, for instance when incremental
+	 * backup fails. Changes are put before changes logged after rotating to keep the order
+	 */
+	public synchronized void putBack(EntityChanges changes) {
+		flush();
+		if (tracking) {
+			closeWriter();
+			File logFile = getLogFile();
+			List<String> lines = new ArrayList<>();
+			for (Map.Entry<String, Set<Long>> entry: changes.getUpdatedIds().entrySet()) {
+				for (Long id: entry.getValue())
+					lines.add("U " + entry.getKey() + " " + id);
+			}
+			for (Map.Entry<String, Set<Long>> entry: changes.getDeletedIds().entrySet()) {
+				for (Long id: entry.getValue())
+					lines.add("D " + entry.getKey() + " " + id);
+			}
+			for (String table: changes.getChangedTables())
+				lines.add("T " + table);
+			lines.addAll(readLines(logFile));
+			write(logFile, lines, false);
+		}
+	}
+
+	private List<String> readLines(File file) {
+		try {
+			return FileUtils.readLines(file, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void write(File file, List<String> lines, boolean append) {
+		try (Writer fileWriter = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file, append), StandardCharsets.UTF_8))) {
+			for (String line: lines)
+				fileWriter.write(line + "\n");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void closeWriter() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+			}
+			writer = null;
+		}
+	}
+
+	private void append(List<String> lines) {
+		if (tracking) {
+			try {
+				if (writer == null) {
+					writer = new BufferedWriter(new OutputStreamWriter(
+							new FileOutputStream(getLogFile(), true), StandardCharsets.UTF_8));
+				}
+				for (String line: lines)
+					writer.write(line + "\n");
+				writer.flush();
+			} catch (IOException e) {
+				logger.error("Error writing entity change log, next backup will be a full backup", e);
+				stop();
+			}
+		}
+	}
+
+	private synchronized void flush() {
+		List<String> lines;
+		synchronized (buffer) {
+			lines = new ArrayList<>(buffer);
+			buffer.clear();
+		}
+		if (!lines.isEmpty())
+			append(lines);
+	}
+	
+	/*
+	 * Changes are buffered and written in background to avoid blocking committing threads 
+	 * with file writes
+	 */
+	private void log(String line) {
+		if (tracking) {
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					boolean flushNeeded;
+					synchronized (buffer) {
+						flushNeeded = buffer.isEmpty();
+						buffer.add(line);
+					}
+					if (flushNeeded) {
+						executorService.execute(new Runnable() {
+
+							@Override
+							public void run() {
+								flush();
+							}
+							
+						});
+					}
+				}
+
+			});
+		}
+	}
+
+	private String getEntityName(Object entity) {
+		return HibernateProxyHelper.getClassWithoutInitializingProxy(entity).getSimpleName();
+	}
+
+	private void initMetadata() {
+		Map<String, String> idColumns = new HashMap<>();
+		Map<String, String> tableNames = new HashMap<>();
+		SessionFactoryImplementor sessionFactory =
+				(SessionFactoryImplementor) persistManagerProvider.get().getSessionFactory();
+		for (EntityPersister persister: sessionFactory.getMetamodel().entityPersisters().values()) {
+			if (persister instanceof AbstractEntityPersister) {
+				AbstractEntityPersister entityPersister = (AbstractEntityPersister) persister;
+				String tableName = entityPersister.getTableName().toLowerCase();
+				idColumns.put(tableName, entityPersister.getIdentifierColumnNames()[0].toLowerCase());
+				tableNames.put(entityPersister.getMappedClass().getSimpleName(), tableName);
+			}
+		}
+		this.idColumns = idColumns;
+		this.tableNames = tableNames;
+	}
+	
+	private Map<String, String> getIdColumns() {
+		if (idColumns == null)
+			initMetadata();
+		return idColumns;
+	}
+	
+	/*
+	 * Map of entity name to lower-cased table name
+	 */
+	private Map<String, String> getTableNames() {
+		if (tableNames == null)
+			initMetadata();
+		return tableNames;
+	}
+
+	@Override
+	public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types)
+			throws CallbackException {
+		return false;
+	}
+
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+			String[] propertyNames, Type[] types) throws CallbackException {
+		log("U " + getEntityName(entity) + " " + id);
+		return false;
+	}
+
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types)
+			throws CallbackException {
+		log("U " + getEntityName(entity) + " " + id);
+		return false;
+	}
+
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types)
+			throws CallbackException {
+		log("D " + getEntityName(entity) + " " + id);
+	}
+
+	/*
+	 * Statements generated by Hibernate to update or delete a single entity always locate
+	 * the entity via id column, other update or delete statements are bulk statements
+	 * and can not be tracked per entity
+	 * 
+	 * @return
+	 * 			lower-cased name of table changed by specified statement if it is a bulk 
+	 * 			statement, or <tt>null</tt> otherwise
+	 */
+	@Nullable
+	static String getBulkTable(String sql, Map<String, String> idColumns) {
+		Matcher matcher = BULK_STATEMENT_PATTERN.matcher(sql);
+		if (matcher.matches()) {
+			String table = matcher.group(2).toLowerCase();
+			String idColumn = idColumns.get(table);
+			String normalizedSql = sql.toLowerCase().replaceAll("\\s+", "");
+			if (idColumn == null || !normalizedSql.endsWith("where" + idColumn + "=?"))
+				return table;
+		}
+		return null;
+	}
+	
+	@Override
+	public String onPrepareStatement(String sql) {
+		if (tracking) {
+			String table = getBulkTable(sql, getIdColumns());
+			if (table != null)
+				log("T " + table);
+		}
+		return sql;
+	}
+
+}
@@ -0,0 +1,56 @@
+package io.onedev.server.maintenance;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.hibernate.Interceptor;
+import org.hibernate.boot.model.naming.PhysicalNamingStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.persistence.DefaultPersistManager;
+import io.onedev.server.persistence.HibernateProperties;
+import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.validation.EntityValidator;
+
+/**
+ * Discard text index of issues and pull requests. The index is rebuilt in background
+ * when server is started next time, and text criterias query database directly until
+ * rebuild is finished.
+ */
+@Singleton
+public class RebuildTextIndex extends DefaultPersistManager {
+
+	public static final String COMMAND = "rebuild-text-index";
+
+	private static final Logger logger = LoggerFactory.getLogger(RebuildTextIndex.class);
+
+	private final StorageManager storageManager;
+
+	@Inject
+	public RebuildTextIndex(PhysicalNamingStrategy physicalNamingStrategy, HibernateProperties properties,
+			Interceptor interceptor, IdManager idManager, Dao dao, EntityValidator validator,
+			TransactionManager transactionManager, StorageManager storageManager) {
+		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator, transactionManager);
+		this.storageManager = storageManager;
+	}
+
+	@Override
+	public void start() {
+		if (Bootstrap.isServerRunning(Bootstrap.installDir)) {
+			logger.error("Please stop server before rebuilding text index");
+			System.exit(1);
+		}
+
+		FileUtils.cleanDir(storageManager.getEntityTextIndexDir());
+
+		logger.info("Text index has been discarded and will be rebuilt when server is started");
+		System.exit(0);
+	}
+
+}
@@ -1,6 +1,8 @@
 package io.onedev.server.maintenance;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -29,28 +31,39 @@ public class RestoreDatabase extends DefaultPersistManager {
 	
 	public static final String COMMAND = "restore-db";
 	
+	private final EntityChangeLog entityChangeLog;
+	
 	@Inject
 	public RestoreDatabase(PhysicalNamingStrategy physicalNamingStrategy,
 			HibernateProperties properties, Interceptor interceptor, 
 			IdManager idManager, Dao dao, EntityValidator validator, 
-			TransactionManager transactionManager) {
+			TransactionManager transactionManager, EntityChangeLog entityChangeLog) {
 		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator, transactionManager);
+		this.entityChangeLog = entityChangeLog;
 	}
 
 	@Override
 	public void start() {
 		if (Bootstrap.command.getArgs().length == 0) {
-			logger.error("Missing backup file parameter. Usage: {} <path to database backup file>", Bootstrap.command.getScript());
+			logger.error("Missing backup file parameter. Usage: {} <path to database backup file> "
+					+ "[<path to incremental backup file> ...]", Bootstrap.command.getScript());
 			System.exit(1);
 		}
-		File backupFile = new File(Bootstrap.command.getArgs()[0]);
-		if (!backupFile.isAbsolute())
-			backupFile = new File(Bootstrap.getBinDir(), backupFile.getPath());
 		
-		if (!backupFile.exists()) {
-			logger.error("Unable to find file: {}", backupFile.getAbsolutePath());
-			System.exit(1);
+		List<File> backupFiles = new ArrayList<>();
+		for (String arg: Bootstrap.command.getArgs()) {
+			File backupFile = new File(arg);
+			if (!backupFile.isAbsolute())
+				backupFile = new File(Bootstrap.getBinDir(), backupFile.getPath());
+			
+			if (!backupFile.exists()) {
+				logger.error("Unable to find file: {}", backupFile.getAbsolutePath());
+				System.exit(1);
+			}
+			backupFiles.add(backupFile);
 		}
+		File backupFile = backupFiles.get(0);
+		List<File> incrementalBackupFiles = backupFiles.subList(1, backupFiles.size());
 		
 		logger.info("Restoring database from {}...", backupFile.getAbsolutePath());
 		
@@ -62,6 +75,9 @@ public class RestoreDatabase extends DefaultPersistManager {
 		Metadata metadata = buildMetadata();
 		sessionFactory = metadata.getSessionFactoryBuilder().applyInterceptor(interceptor).build();
 
+		// Changes logged so far are relative to database being replaced 
+		entityChangeLog.stop();
+		
 		if (backupFile.isFile()) {
 			File dataDir = FileUtils.createTempDir("restore");
 			try {
@@ -73,6 +89,23 @@ public class RestoreDatabase extends DefaultPersistManager {
 		} else {
 			doRestore(metadata, backupFile);
 		}
+		
+		for (File incrementalBackupFile: incrementalBackupFiles) {
+			logger.info("Applying incremental backup {}...", incrementalBackupFile.getAbsolutePath());
+			if (incrementalBackupFile.isFile()) {
+				File dataDir = FileUtils.createTempDir("restore");
+				try {
+					ZipUtils.unzip(incrementalBackupFile, dataDir);
+					doRestoreIncrement(metadata, dataDir);
+				} finally {
+					FileUtils.deleteDir(dataDir);
+				}
+			} else {
+				doRestoreIncrement(metadata, incrementalBackupFile);
+			}
+		}
+		
+		doApplyConstraints(metadata);
 
 		sessionFactory.close();
 		
@@ -104,7 +137,21 @@ public class RestoreDatabase extends DefaultPersistManager {
 		
 		logger.info("Importing data into database...");
 		importData(metadata, dataDir);
+	}
+	
+	private void doRestoreIncrement(Metadata metadata, File dataDir) {
+		if (!new File(dataDir, INCREMENT_FILE).exists()) {
+			logger.error("Not an incremental backup: {}", dataDir.getAbsolutePath());
+			System.exit(1);
+		}
+		migrateData(dataDir);
+		validateData(metadata, dataDir);
 		
+		logger.info("Importing changed data into database...");
+		importChanges(metadata, dataDir);
+	}
+	
+	private void doApplyConstraints(Metadata metadata) {
 		logger.info("Applying foreign key constraints...");
 		try {
 			applyConstraints(metadata);		
@@ -0,0 +1,104 @@
+package io.onedev.server.migration;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.io.STAXEventReader;
+
+import io.onedev.commons.utils.ExceptionUtils;
+
+/**
+ * Read elements under root of a data file one by one with StAX, so that large data
+ * files can be processed without loading whole file into memory.
+ */
+public class DataFileReader implements Closeable {
+
+	private final InputStream is;
+
+	private final XMLEventReader eventReader;
+
+	private final STAXEventReader elementReader = new STAXEventReader();
+	
+	private Element rootElement;
+
+	public DataFileReader(File file) {
+		try {
+			is = new BufferedInputStream(new FileInputStream(file));
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			eventReader = factory.createXMLEventReader(is);
+
+			while (eventReader.hasNext()) {
+				XMLEvent event = eventReader.nextEvent();
+				if (event.isStartElement()) {
+					StartElement startElement = event.asStartElement();
+					rootElement = DocumentHelper.createElement(startElement.getName().getLocalPart());
+					for (Iterator<?> it = startElement.getAttributes(); it.hasNext();) {
+						Attribute attribute = (Attribute) it.next();
+						rootElement.addAttribute(attribute.getName().getLocalPart(), attribute.getValue());
+					}
+					break;
+				}
+			}
+			if (rootElement == null)
+				throw new RuntimeException("No root element found in data file: " + file.getAbsolutePath());
+		} catch (IOException | XMLStreamException e) {
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+
+	/**
+	 * @return
+	 * 			root element of the data file with name and attributes only
+	 */
+	public Element getRootElement() {
+		return rootElement;
+	}
+	
+	/**
+	 * @return
+	 * 			next element under root, or <tt>null</tt> if all elements are read
+	 */
+	@Nullable
+	public Element next() {
+		try {
+			while (eventReader.hasNext()) {
+				if (eventReader.peek().isStartElement())
+					return elementReader.readElement(eventReader);
+				else
+					eventReader.nextEvent();
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			eventReader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			is.close();
+		}
+	}
+
+}
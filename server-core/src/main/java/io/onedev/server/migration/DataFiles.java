@@ -0,0 +1,127 @@
+package io.onedev.server.migration;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.dom4j.Element;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.XMLWriter;
+import org.xml.sax.SAXException;
+
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.commons.utils.FileUtils;
+
+/**
+ * Streaming migration of data files. Elements of a data file are read, migrated and 
+ * written one by one, so that memory usage does not grow with size of data file. Data 
+ * files are independent of each other and are migrated in parallel. 
+ */
+public class DataFiles {
+
+	/**
+	 * Migrate elements of data files in parallel
+	 * 
+	 * @param dataDir
+	 * 			directory containing data files
+	 * @param migrators
+	 * 			map of data file name prefix (for instance "Issues.xml") to migrator of 
+	 * 			elements in matching data files
+	 */
+	public static void migrateElements(File dataDir, Map<String, ElementMigrator> migrators) {
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (File file: dataDir.listFiles()) {
+			for (Map.Entry<String, ElementMigrator> entry: migrators.entrySet()) {
+				if (file.getName().startsWith(entry.getKey())) {
+					tasks.add(new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							migrateElements(file, entry.getValue());
+							return null;
+						}
+						
+					});
+					break;
+				}
+			}
+		}
+		if (tasks.isEmpty())
+			return;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			for (Future<Void> future: executor.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	public static void migrateElements(File dataDir, String fileNamePrefix, ElementMigrator migrator) {
+		Map<String, ElementMigrator> migrators = new HashMap<>();
+		migrators.put(fileNamePrefix, migrator);
+		migrateElements(dataDir, migrators);
+	}
+	
+	/**
+	 * Migrate elements of specified data file. Each element is attached to root element 
+	 * while being migrated, and all children of root element are written out after 
+	 * migration, so that migrator can remove the element by detaching it, or add 
+	 * new elements to the root
+	 */
+	public static void migrateElements(File dataFile, ElementMigrator migrator) {
+		File tempFile = new File(dataFile.getParentFile(), "." + dataFile.getName() + ".migrating");
+		try {
+			try (	DataFileReader reader = new DataFileReader(dataFile);
+					OutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+				OutputFormat format = new OutputFormat();
+				format.setIndent(false);
+				format.setNewlines(false);
+				format.setEncoding(StandardCharsets.UTF_8.name());
+				XMLWriter writer = new XMLWriter(os, format);
+				
+				Element rootElement = reader.getRootElement();
+				writer.startDocument();
+				writer.writeOpen(rootElement);
+				Element element;
+				while ((element = reader.next()) != null) {
+					rootElement.add(element);
+					migrator.migrate(element);
+					for (Element each: rootElement.elements()) 
+						writer.write(each);
+					rootElement.clearContent();
+				}
+				writer.writeClose(rootElement);
+				writer.endDocument();
+				writer.flush();
+			}
+			Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | SAXException e) {
+			throw ExceptionUtils.unchecked(e);
+		} finally {
+			if (tempFile.exists())
+				FileUtils.deleteFile(tempFile);
+		}
+	}
+	
+}
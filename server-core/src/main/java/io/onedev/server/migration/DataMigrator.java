@@ -6,8 +6,10 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
@@ -18,6 +20,7 @@ import org.apache.commons.io.IOUtils;
 import org.dom4j.Element;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.launcher.bootstrap.Bootstrap;
 import io.onedev.commons.utils.FileUtils;
@@ -1568,4 +1571,59 @@ public class DataMigrator {
 	private void migrate36(File dataDir, Stack<Integer> versions) {	
 	}
 	
+	// Move settings of users and projects into separate entities
+	private void migrate37(File dataDir, Stack<Integer> versions) {
+		moveSettings(dataDir, "User", Lists.newArrayList("userProjectQueries", "userIssueQueries", 
+				"userIssueQueryWatches", "issueQueryWatches", "userPullRequestQueries", 
+				"userPullRequestQueryWatches", "pullRequestQueryWatches", "userBuildQueries", 
+				"userBuildQuerySubscriptions", "buildQuerySubscriptions", "buildSetting", "webHooks"));
+		moveSettings(dataDir, "Project", Lists.newArrayList("branchProtections", "tagProtections", 
+				"issueSetting", "buildSetting", "pullRequestSetting", "namedCommitQueries", 
+				"namedCodeCommentQueries", "webHooks"));
+		
+		// Incremental backup: setting entities change along with their owners 
+		File incrementFile = new File(dataDir, "Increment.xml");
+		if (incrementFile.exists()) {
+			VersionedDocument dom = VersionedDocument.fromFile(incrementFile);
+			for (Element element: new ArrayList<>(dom.getRootElement().elements())) {
+				if (element.getName().equals("User") || element.getName().equals("Project")) {
+					Element settingElement = element.createCopy();
+					settingElement.setName(element.getName() + "Setting");
+					dom.getRootElement().add(settingElement);
+				}
+			}
+			dom.writeToFile(incrementFile, false);
+		}
+	}
+	
+	private void moveSettings(File dataDir, String entityName, List<String> settingFields) {
+		for (File file: dataDir.listFiles()) {
+			if (file.getName().startsWith(entityName + "s.xml")) {
+				VersionedDocument dom = VersionedDocument.fromFile(file);
+				VersionedDocument settingDom = new VersionedDocument();
+				Element settingListElement = settingDom.addElement("list");
+				for (Element element: dom.getRootElement().elements()) {
+					String id = element.elementTextTrim("id");
+					Element settingElement = settingListElement.addElement("io.onedev.server.model." + entityName + "Setting");
+					settingElement.addAttribute("revision", "0.0");
+					settingElement.addElement("id").setText(id);
+					for (String settingField: settingFields) {
+						Element fieldElement = element.element(settingField);
+						if (fieldElement != null) 
+							settingElement.add(fieldElement.detach());
+					}
+					element.addElement("setting").setText(id);
+				}
+				dom.writeToFile(file, false);
+				String settingFileName = entityName + "Settings.xml" 
+						+ file.getName().substring((entityName + "s.xml").length());
+				settingDom.writeToFile(new File(dataDir, settingFileName), false);
+			}
+		}
+	}
+	
+	// Database schema changed
+	private void migrate38(File dataDir, Stack<Integer> versions) {
+	}
+	
 }
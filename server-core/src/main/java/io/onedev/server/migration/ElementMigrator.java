@@ -0,0 +1,13 @@
+package io.onedev.server.migration;
+
+import org.dom4j.Element;
+
+public interface ElementMigrator {
+	
+	/**
+	 * Migrate an element of data file. Element can be removed from the data file by 
+	 * detaching it
+	 */
+	void migrate(Element element);
+	
+}
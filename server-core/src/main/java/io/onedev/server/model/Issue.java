@@ -137,6 +137,8 @@ public class Issue extends AbstractEntity implements Referenceable, AttachmentSt
 	
 	public static final String PROP_MILESTONE = "milestone";
 	
+	public static final String FIELD_RELEVANCE = "Relevance";
+	
 	public static final String PROP_FIELDS = "fields";
 		
 	public static final String PROP_ID = "id";
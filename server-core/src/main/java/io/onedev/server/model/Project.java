@@ -16,7 +16,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -26,18 +25,15 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
-import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
-import org.apache.commons.lang3.SerializationUtils;
 import org.dom4j.Element;
 import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.TagCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
@@ -47,7 +43,6 @@ import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
-import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
@@ -57,6 +52,8 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -64,9 +61,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.ListenerRegistry;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LinearRange;
-import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
@@ -87,11 +82,12 @@ import io.onedev.server.git.BlobIdentFilter;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.RefInfo;
 import io.onedev.server.git.Submodule;
-import io.onedev.server.git.command.BlameCommand;
 import io.onedev.server.git.command.ListChangedFilesCommand;
 import io.onedev.server.git.exception.NotFileException;
 import io.onedev.server.git.exception.ObjectNotFoundException;
+import io.onedev.server.infomanager.BlameInfoManager;
 import io.onedev.server.infomanager.CommitInfoManager;
+import io.onedev.server.infomanager.LastCommitsInfoManager;
 import io.onedev.server.migration.VersionedDocument;
 import io.onedev.server.model.Build.Status;
 import io.onedev.server.model.support.BranchProtection;
@@ -161,8 +157,6 @@ public class Project extends AbstractEntity {
 			FIELD_OWNER, PROP_OWNER, 
 			FIELD_UPDATE_DATE, PROP_UPDATE_DATE);
 	
-	private static final int LAST_COMMITS_CACHE_THRESHOLD = 1000;
-	
 	public static final int MAX_UPLOAD_SIZE = 10; // In mega bytes
 	
 	static ThreadLocal<Stack<Project>> stack =  new ThreadLocal<Stack<Project>>() {
@@ -199,15 +193,10 @@ public class Project extends AbstractEntity {
     @OneToMany(mappedBy="project")
     private Collection<Build> builds = new ArrayList<>();
     
-	@Lob
-	@Column(nullable=false, length=65535)
-	@JsonView(DefaultView.class)
-	private ArrayList<BranchProtection> branchProtections = new ArrayList<>();
-	
-	@Lob
-	@Column(nullable=false, length=65535)
-	@JsonView(DefaultView.class)
-	private ArrayList<TagProtection> tagProtections = new ArrayList<>();
+	@ManyToOne(fetch=FetchType.LAZY, cascade=CascadeType.ALL)
+	@JoinColumn(nullable=false, unique=true)
+	@JsonIgnore
+	private ProjectSetting setting = new ProjectSetting();
 	
 	@Column(nullable=false)
 	private Date createDate = new Date();
@@ -257,36 +246,6 @@ public class Project extends AbstractEntity {
 	@OneToMany(mappedBy="project", cascade=CascadeType.REMOVE)
 	private Collection<Milestone> milestones = new ArrayList<>();
 	
-	@Lob
-	@Column(length=65535, nullable=false)
-	@JsonView(DefaultView.class)
-	private ProjectIssueSetting issueSetting = new ProjectIssueSetting();
-	
-	@Lob
-	@Column(length=65535, nullable=false)
-	@JsonView(DefaultView.class)
-	private ProjectBuildSetting buildSetting = new ProjectBuildSetting();
-	
-	@Lob
-	@Column(length=65535, nullable=false)
-	@JsonView(DefaultView.class)
-	private ProjectPullRequestSetting pullRequestSetting = new ProjectPullRequestSetting();
-	
-	@Lob
-	@Column(length=65535)
-	@JsonView(DefaultView.class)
-	private ArrayList<NamedCommitQuery> namedCommitQueries;
-	
-	@Lob
-	@Column(length=65535)
-	@JsonView(DefaultView.class)
-	private ArrayList<NamedCodeCommentQuery> namedCodeCommentQueries;
-	
-	@Lob
-	@Column(length=65535, nullable=false)
-	@JsonView(DefaultView.class)
-	private ArrayList<WebHook> webHooks = new ArrayList<>();
-	
 	private transient Repository repository;
 	
     private transient Map<BlobIdent, Optional<Blob>> blobCache;
@@ -338,20 +297,36 @@ public class Project extends AbstractEntity {
 		this.description = description;
 	}
 
+	public ProjectSetting getSetting() {
+		return setting;
+	}
+
+	public void setSetting(ProjectSetting setting) {
+		this.setting = setting;
+	}
+
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ArrayList<BranchProtection> getBranchProtections() {
-		return branchProtections;
+		return getSetting().getBranchProtections();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setBranchProtections(ArrayList<BranchProtection> branchProtections) {
-		this.branchProtections = branchProtections;
+		getSetting().setBranchProtections(branchProtections);
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ArrayList<TagProtection> getTagProtections() {
-		return tagProtections;
+		return getSetting().getTagProtections();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setTagProtections(ArrayList<TagProtection> tagProtections) {
-		this.tagProtections = tagProtections;
+		getSetting().setTagProtections(tagProtections);
 	}
 
 	public Date getCreateDate() {
@@ -725,79 +700,8 @@ public class Project extends AbstractEntity {
 	}
 	
 	public LastCommitsOfChildren getLastCommitsOfChildren(String revision, @Nullable String path) {
-		if (path == null)
-			path = "";
-		
-		final File cacheDir = new File(
-				OneDev.getInstance(StorageManager.class).getProjectInfoDir(getId()), 
-				"last_commits/" + path + "/onedev_last_commits");
-		
-		final ReadWriteLock lock;
-		try {
-			lock = LockUtils.getReadWriteLock(cacheDir.getCanonicalPath());
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		
-		final Set<ObjectId> commitIds = new HashSet<>(); 
-		
-		lock.readLock().lock();
-		try {
-			if (cacheDir.exists()) {
-				for (String each: cacheDir.list()) 
-					commitIds.add(ObjectId.fromString(each));
-			} 	
-		} finally {
-			lock.readLock().unlock();
-		}
-		
-		org.eclipse.jgit.revwalk.LastCommitsOfChildren.Cache cache;
-		if (!commitIds.isEmpty()) {
-			cache = new org.eclipse.jgit.revwalk.LastCommitsOfChildren.Cache() {
-	
-				@SuppressWarnings("unchecked")
-				@Override
-				public Map<String, Value> getLastCommitsOfChildren(ObjectId commitId) {
-					if (commitIds.contains(commitId)) {
-						lock.readLock().lock();
-						try {
-							byte[] bytes = FileUtils.readFileToByteArray(new File(cacheDir, commitId.name()));
-							return (Map<String, Value>) SerializationUtils.deserialize(bytes);
-						} catch (IOException e) {
-							throw new RuntimeException(e);
-						} finally {
-							lock.readLock().unlock();
-						}
-					} else {
-						return null;
-					}
-				}
-				
-			};
-		} else {
-			cache = null;
-		}
-
-		final AnyObjectId commitId = getObjectId(revision, true);
-		
-		long time = System.currentTimeMillis();
-		LastCommitsOfChildren lastCommits = new LastCommitsOfChildren(getRepository(), commitId, path, cache);
-		long elapsed = System.currentTimeMillis()-time;
-		if (elapsed > LAST_COMMITS_CACHE_THRESHOLD) {
-			lock.writeLock().lock();
-			try {
-				if (!cacheDir.exists())
-					FileUtils.createDir(cacheDir);
-				FileUtils.writeByteArrayToFile(
-						new File(cacheDir, commitId.name()), 
-						SerializationUtils.serialize(lastCommits));
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			} finally {
-				lock.writeLock().unlock();
-			}
-		}
-		return lastCommits;
+		return OneDev.getInstance(LastCommitsInfoManager.class).getLastCommitsOfChildren(
+				this, getObjectId(revision, true), path);
 	}
 
 	@Nullable
@@ -976,59 +880,64 @@ public class Project extends AbstractEntity {
 		this.codeComments = codeComments;
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ProjectIssueSetting getIssueSetting() {
-		return issueSetting;
+		return getSetting().getIssueSetting();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setIssueSetting(ProjectIssueSetting issueSetting) {
-		this.issueSetting = issueSetting;
+		getSetting().setIssueSetting(issueSetting);
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ProjectBuildSetting getBuildSetting() {
-		return buildSetting;
+		return getSetting().getBuildSetting();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setBuildSetting(ProjectBuildSetting buildSetting) {
-		this.buildSetting = buildSetting;
+		getSetting().setBuildSetting(buildSetting);
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ProjectPullRequestSetting getPullRequestSetting() {
-		return pullRequestSetting;
+		return getSetting().getPullRequestSetting();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setPullRequestSetting(ProjectPullRequestSetting pullRequestSetting) {
-		this.pullRequestSetting = pullRequestSetting;
+		getSetting().setPullRequestSetting(pullRequestSetting);
 	}
 	
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ArrayList<NamedCommitQuery> getNamedCommitQueries() {
-		if (namedCommitQueries == null) {
-			namedCommitQueries = new ArrayList<>();
-			namedCommitQueries.add(new NamedCommitQuery("All", "all"));
-			namedCommitQueries.add(new NamedCommitQuery("Default branch", "default-branch"));
-			namedCommitQueries.add(new NamedCommitQuery("Authored by me", "authored-by-me"));
-			namedCommitQueries.add(new NamedCommitQuery("Committed by me", "committed-by-me"));
-			namedCommitQueries.add(new NamedCommitQuery("Committed recently", "after(last week)"));
-		}
-		return namedCommitQueries;
+		return getSetting().getNamedCommitQueries();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setNamedCommitQueries(ArrayList<NamedCommitQuery> namedCommitQueries) {
-		this.namedCommitQueries = namedCommitQueries;
+		getSetting().setNamedCommitQueries(namedCommitQueries);
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ArrayList<NamedCodeCommentQuery> getNamedCodeCommentQueries() {
-		if (namedCodeCommentQueries == null) {
-			namedCodeCommentQueries = new ArrayList<>(); 
-			namedCodeCommentQueries.add(new NamedCodeCommentQuery("All", "all"));
-			namedCodeCommentQueries.add(new NamedCodeCommentQuery("Created by me", "created by me"));
-			namedCodeCommentQueries.add(new NamedCodeCommentQuery("Created recently", "\"Create Date\" is after \"last week\""));
-			namedCodeCommentQueries.add(new NamedCodeCommentQuery("Updated recently", "\"Update Date\" is after \"last week\""));
-		}
-		return namedCodeCommentQueries;
+		return getSetting().getNamedCodeCommentQueries();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setNamedCodeCommentQueries(ArrayList<NamedCodeCommentQuery> namedCodeCommentQueries) {
-		this.namedCodeCommentQueries = namedCodeCommentQueries;
+		getSetting().setNamedCodeCommentQueries(namedCodeCommentQueries);
 	}
 	
 	public Collection<IssueQuerySetting> getUserIssueQuerySettings() {
@@ -1156,12 +1065,16 @@ public class Project extends AbstractEntity {
 	}
 	
 	@Editable
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ArrayList<WebHook> getWebHooks() {
-		return webHooks;
+		return getSetting().getWebHooks();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setWebHooks(ArrayList<WebHook> webHooks) {
-		this.webHooks = webHooks;
+		getSetting().setWebHooks(webHooks);
 	}
 
 	public List<WebHook> getHierarchyWebHooks() {
@@ -1229,14 +1142,9 @@ public class Project extends AbstractEntity {
 	}
 
 	public List<User> getAuthors(String filePath, ObjectId commitId, @Nullable LinearRange range) {
-		BlameCommand cmd = new BlameCommand(getGitDir());
-		cmd.commitHash(commitId.name());
-		cmd.file(filePath);
-		cmd.range(range);
-
 		List<User> authors = new ArrayList<>();
 		UserManager userManager = OneDev.getInstance(UserManager.class);
-		for (BlameBlock block: cmd.call()) {
+		for (BlameBlock block: OneDev.getInstance(BlameInfoManager.class).getBlame(this, commitId, filePath, range)) {
 			User author = userManager.find(block.getCommit().getAuthor());
 			if (author != null && !authors.contains(author))
 				authors.add(author);
@@ -0,0 +1,144 @@
+package io.onedev.server.model;
+
+import java.util.ArrayList;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Type;
+
+import io.onedev.server.model.support.BranchProtection;
+import io.onedev.server.model.support.NamedCodeCommentQuery;
+import io.onedev.server.model.support.NamedCommitQuery;
+import io.onedev.server.model.support.TagProtection;
+import io.onedev.server.model.support.WebHook;
+import io.onedev.server.model.support.build.ProjectBuildSetting;
+import io.onedev.server.model.support.issue.ProjectIssueSetting;
+import io.onedev.server.model.support.pullrequest.ProjectPullRequestSetting;
+
+/**
+ * Settings of a project. They are kept out of project table and fetched lazily, so that
+ * querying projects does not need to load and deserialize settings
+ */
+@Entity
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
+public class ProjectSetting extends AbstractEntity {
+
+	private static final long serialVersionUID = 1L;
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private ArrayList<BranchProtection> branchProtections = new ArrayList<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private ArrayList<TagProtection> tagProtections = new ArrayList<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535, nullable=false)
+	private ProjectIssueSetting issueSetting = new ProjectIssueSetting();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535, nullable=false)
+	private ProjectBuildSetting buildSetting = new ProjectBuildSetting();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535, nullable=false)
+	private ProjectPullRequestSetting pullRequestSetting = new ProjectPullRequestSetting();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535)
+	private ArrayList<NamedCommitQuery> namedCommitQueries;
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535)
+	private ArrayList<NamedCodeCommentQuery> namedCodeCommentQueries;
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535, nullable=false)
+	private ArrayList<WebHook> webHooks = new ArrayList<>();
+
+	public ArrayList<BranchProtection> getBranchProtections() {
+		return branchProtections;
+	}
+
+	public void setBranchProtections(ArrayList<BranchProtection> branchProtections) {
+		this.branchProtections = branchProtections;
+	}
+
+	public ArrayList<TagProtection> getTagProtections() {
+		return tagProtections;
+	}
+
+	public void setTagProtections(ArrayList<TagProtection> tagProtections) {
+		this.tagProtections = tagProtections;
+	}
+
+	public ProjectIssueSetting getIssueSetting() {
+		return issueSetting;
+	}
+
+	public void setIssueSetting(ProjectIssueSetting issueSetting) {
+		this.issueSetting = issueSetting;
+	}
+
+	public ProjectBuildSetting getBuildSetting() {
+		return buildSetting;
+	}
+
+	public void setBuildSetting(ProjectBuildSetting buildSetting) {
+		this.buildSetting = buildSetting;
+	}
+
+	public ProjectPullRequestSetting getPullRequestSetting() {
+		return pullRequestSetting;
+	}
+
+	public void setPullRequestSetting(ProjectPullRequestSetting pullRequestSetting) {
+		this.pullRequestSetting = pullRequestSetting;
+	}
+
+	public ArrayList<NamedCommitQuery> getNamedCommitQueries() {
+		if (namedCommitQueries == null) {
+			namedCommitQueries = new ArrayList<>();
+			namedCommitQueries.add(new NamedCommitQuery("All", "all"));
+			namedCommitQueries.add(new NamedCommitQuery("Default branch", "default-branch"));
+			namedCommitQueries.add(new NamedCommitQuery("Authored by me", "authored-by-me"));
+			namedCommitQueries.add(new NamedCommitQuery("Committed by me", "committed-by-me"));
+			namedCommitQueries.add(new NamedCommitQuery("Committed recently", "after(last week)"));
+		}
+		return namedCommitQueries;
+	}
+
+	public void setNamedCommitQueries(ArrayList<NamedCommitQuery> namedCommitQueries) {
+		this.namedCommitQueries = namedCommitQueries;
+	}
+
+	public ArrayList<NamedCodeCommentQuery> getNamedCodeCommentQueries() {
+		if (namedCodeCommentQueries == null) {
+			namedCodeCommentQueries = new ArrayList<>();
+			namedCodeCommentQueries.add(new NamedCodeCommentQuery("All", "all"));
+			namedCodeCommentQueries.add(new NamedCodeCommentQuery("Created by me", "created by me"));
+			namedCodeCommentQueries.add(new NamedCodeCommentQuery("Created recently", "\"Create Date\" is after \"last week\""));
+			namedCodeCommentQueries.add(new NamedCodeCommentQuery("Updated recently", "\"Update Date\" is after \"last week\""));
+		}
+		return namedCodeCommentQueries;
+	}
+
+	public void setNamedCodeCommentQueries(ArrayList<NamedCodeCommentQuery> namedCodeCommentQueries) {
+		this.namedCodeCommentQueries = namedCodeCommentQueries;
+	}
+
+	public ArrayList<WebHook> getWebHooks() {
+		return webHooks;
+	}
+
+	public void setWebHooks(ArrayList<WebHook> webHooks) {
+		this.webHooks = webHooks;
+	}
+
+}
@@ -148,6 +148,8 @@ public class PullRequest extends AbstractEntity implements Referenceable, Attach
 	
 	public static final String PROP_MERGE_STRATEGY = "mergeStrategy";
 	
+	public static final String FIELD_RELEVANCE = "Relevance";
+	
 	public static final String PROP_CLOSE_INFO = "closeInfo";
 	
 	public static final String PROP_LAST_MERGE_PREVIEW = "lastMergePreview";
@@ -0,0 +1,60 @@
+package io.onedev.server.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Value staged temporarily so that queries can match against a large set of values 
+ * via subquery instead of a huge IN clause. Staged values only live during the query
+ * they are staged for, see {@link io.onedev.server.entitymanager.StagedValueManager}
+ */
+@Entity
+@Table(indexes={@Index(columnList="o_stage"), @Index(columnList="o_date")})
+public class StagedValue extends AbstractEntity {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String PROP_STAGE = "stage";
+	
+	public static final String PROP_VALUE = "value";
+	
+	public static final String PROP_DATE = "date";
+	
+	@Column(nullable=false)
+	private String stage;
+	
+	@Column(nullable=false)
+	private Long value;
+	
+	@Column(nullable=false)
+	private Date date;
+
+	public String getStage() {
+		return stage;
+	}
+
+	public void setStage(String stage) {
+		this.stage = stage;
+	}
+
+	public Long getValue() {
+		return value;
+	}
+
+	public void setValue(Long value) {
+		this.value = value;
+	}
+
+	public Date getDate() {
+		return date;
+	}
+
+	public void setDate(Date date) {
+		this.date = date;
+	}
+
+}
@@ -11,8 +11,10 @@ import javax.annotation.Nullable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Index;
-import javax.persistence.Lob;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
@@ -26,6 +28,8 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.google.common.base.MoreObjects;
 
@@ -116,54 +120,10 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 	@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
     private Collection<Project> projects = new ArrayList<>();
     
-	@Lob
-	@Column(nullable=false, length=65535)
-	private ArrayList<NamedProjectQuery> userProjectQueries = new ArrayList<>();
-	
-	@Lob
-	@Column(nullable=false, length=65535)
-	private ArrayList<NamedIssueQuery> userIssueQueries = new ArrayList<>();
-
-	@Lob
-	@Column(nullable=false, length=65535)
-	private LinkedHashMap<String, Boolean> userIssueQueryWatches = new LinkedHashMap<>();
-	
-	@Lob
-	@Column(nullable=false, length=65535)
-	private LinkedHashMap<String, Boolean> issueQueryWatches = new LinkedHashMap<>();
-	
-	@Lob
-	@Column(nullable=false, length=65535)
-	private ArrayList<NamedPullRequestQuery> userPullRequestQueries = new ArrayList<>();
-
-	@Lob
-	@Column(nullable=false, length=65535)
-	private LinkedHashMap<String, Boolean> userPullRequestQueryWatches = new LinkedHashMap<>();
-
-	@Lob
-	@Column(nullable=false, length=65535)
-	private LinkedHashMap<String, Boolean> pullRequestQueryWatches = new LinkedHashMap<>();
-	
-	@Lob
-	@Column(nullable=false, length=65535)
-	private ArrayList<NamedBuildQuery> userBuildQueries = new ArrayList<>();
-
-	@Lob
-	@Column(nullable=false, length=65535)
-	private LinkedHashSet<String> userBuildQuerySubscriptions = new LinkedHashSet<>();
-
-	@Lob
-	@Column(nullable=false, length=65535)
-	private LinkedHashSet<String> buildQuerySubscriptions = new LinkedHashSet<>();
-	
-	@Lob
-	@Column(length=65535, nullable=false)
-	private UserBuildSetting buildSetting = new UserBuildSetting();
-	
-	@Lob
-	@Column(length=65535, nullable=false)
-	@JsonView(DefaultView.class)
-	private ArrayList<WebHook> webHooks = new ArrayList<>();
+	@ManyToOne(fetch=FetchType.LAZY, cascade=CascadeType.ALL)
+	@JoinColumn(nullable=false, unique=true)
+	@JsonIgnore
+	private UserSetting setting = new UserSetting();
 	
     private transient Collection<Group> groups;
     
@@ -182,12 +142,12 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 
 			@Override
 			public ArrayList<NamedProjectQuery> getUserQueries() {
-				return userProjectQueries;
+				return getSetting().getUserProjectQueries();
 			}
 
 			@Override
 			public void setUserQueries(ArrayList<NamedProjectQuery> userQueries) {
-				userProjectQueries = userQueries;
+				getSetting().setUserProjectQueries(userQueries);
 			}
 
 			@Override
@@ -218,12 +178,12 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 
 			@Override
 			public ArrayList<NamedIssueQuery> getUserQueries() {
-				return userIssueQueries;
+				return getSetting().getUserIssueQueries();
 			}
 
 			@Override
 			public void setUserQueries(ArrayList<NamedIssueQuery> userQueries) {
-				userIssueQueries = userQueries;
+				getSetting().setUserIssueQueries(userQueries);
 			}
 
 			@Override
@@ -232,12 +192,12 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 
 					@Override
 					public LinkedHashMap<String, Boolean> getUserQueryWatches() {
-						return userIssueQueryWatches;
+						return getSetting().getUserIssueQueryWatches();
 					}
 
 					@Override
 					public LinkedHashMap<String, Boolean> getQueryWatches() {
-						return issueQueryWatches;
+						return getSetting().getIssueQueryWatches();
 					}
 					
 				};
@@ -266,12 +226,12 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 
 			@Override
 			public ArrayList<NamedPullRequestQuery> getUserQueries() {
-				return userPullRequestQueries;
+				return getSetting().getUserPullRequestQueries();
 			}
 
 			@Override
 			public void setUserQueries(ArrayList<NamedPullRequestQuery> userQueries) {
-				userPullRequestQueries = userQueries;
+				getSetting().setUserPullRequestQueries(userQueries);
 			}
 
 			@Override
@@ -280,12 +240,12 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 
 					@Override
 					public LinkedHashMap<String, Boolean> getUserQueryWatches() {
-						return userPullRequestQueryWatches;
+						return getSetting().getUserPullRequestQueryWatches();
 					}
 
 					@Override
 					public LinkedHashMap<String, Boolean> getQueryWatches() {
-						return pullRequestQueryWatches;
+						return getSetting().getPullRequestQueryWatches();
 					}
 					
 				};
@@ -314,12 +274,12 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 
 			@Override
 			public ArrayList<NamedBuildQuery> getUserQueries() {
-				return userBuildQueries;
+				return getSetting().getUserBuildQueries();
 			}
 
 			@Override
 			public void setUserQueries(ArrayList<NamedBuildQuery> userQueries) {
-				userBuildQueries = userQueries;
+				getSetting().setUserBuildQueries(userQueries);
 			}
 
 			@Override
@@ -333,12 +293,12 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 
 					@Override
 					public LinkedHashSet<String> getUserQuerySubscriptions() {
-						return userBuildQuerySubscriptions;
+						return getSetting().getUserBuildQuerySubscriptions();
 					}
 
 					@Override
 					public LinkedHashSet<String> getQuerySubscriptions() {
-						return buildQuerySubscriptions;
+						return getSetting().getBuildQuerySubscriptions();
 					}
 					
 				};
@@ -462,20 +422,156 @@ public class User extends AbstractEntity implements AuthenticationInfo {
 		this.projectAuthorizations = projectAuthorizations;
 	}
 	
+	/*
+	 * Settings are stored in a separate entity. Below accessors keep them in JSON of user as before
+	 */
+	@JsonProperty("userProjectQueries")
+	@SuppressWarnings("unused")
+	private ArrayList<NamedProjectQuery> getJsonUserProjectQueries() {
+		return getSetting().getUserProjectQueries();
+	}
+
+	@JsonProperty("userProjectQueries")
+	@SuppressWarnings("unused")
+	private void setJsonUserProjectQueries(ArrayList<NamedProjectQuery> userProjectQueries) {
+		getSetting().setUserProjectQueries(userProjectQueries);
+	}
+
+	@JsonProperty("userIssueQueries")
+	@SuppressWarnings("unused")
+	private ArrayList<NamedIssueQuery> getJsonUserIssueQueries() {
+		return getSetting().getUserIssueQueries();
+	}
+
+	@JsonProperty("userIssueQueries")
+	@SuppressWarnings("unused")
+	private void setJsonUserIssueQueries(ArrayList<NamedIssueQuery> userIssueQueries) {
+		getSetting().setUserIssueQueries(userIssueQueries);
+	}
+
+	@JsonProperty("userIssueQueryWatches")
+	@SuppressWarnings("unused")
+	private LinkedHashMap<String, Boolean> getJsonUserIssueQueryWatches() {
+		return getSetting().getUserIssueQueryWatches();
+	}
+
+	@JsonProperty("userIssueQueryWatches")
+	@SuppressWarnings("unused")
+	private void setJsonUserIssueQueryWatches(LinkedHashMap<String, Boolean> userIssueQueryWatches) {
+		getSetting().setUserIssueQueryWatches(userIssueQueryWatches);
+	}
+
+	@JsonProperty("issueQueryWatches")
+	@SuppressWarnings("unused")
+	private LinkedHashMap<String, Boolean> getJsonIssueQueryWatches() {
+		return getSetting().getIssueQueryWatches();
+	}
+
+	@JsonProperty("issueQueryWatches")
+	@SuppressWarnings("unused")
+	private void setJsonIssueQueryWatches(LinkedHashMap<String, Boolean> issueQueryWatches) {
+		getSetting().setIssueQueryWatches(issueQueryWatches);
+	}
+
+	@JsonProperty("userPullRequestQueries")
+	@SuppressWarnings("unused")
+	private ArrayList<NamedPullRequestQuery> getJsonUserPullRequestQueries() {
+		return getSetting().getUserPullRequestQueries();
+	}
+
+	@JsonProperty("userPullRequestQueries")
+	@SuppressWarnings("unused")
+	private void setJsonUserPullRequestQueries(ArrayList<NamedPullRequestQuery> userPullRequestQueries) {
+		getSetting().setUserPullRequestQueries(userPullRequestQueries);
+	}
+
+	@JsonProperty("userPullRequestQueryWatches")
+	@SuppressWarnings("unused")
+	private LinkedHashMap<String, Boolean> getJsonUserPullRequestQueryWatches() {
+		return getSetting().getUserPullRequestQueryWatches();
+	}
+
+	@JsonProperty("userPullRequestQueryWatches")
+	@SuppressWarnings("unused")
+	private void setJsonUserPullRequestQueryWatches(LinkedHashMap<String, Boolean> userPullRequestQueryWatches) {
+		getSetting().setUserPullRequestQueryWatches(userPullRequestQueryWatches);
+	}
+
+	@JsonProperty("pullRequestQueryWatches")
+	@SuppressWarnings("unused")
+	private LinkedHashMap<String, Boolean> getJsonPullRequestQueryWatches() {
+		return getSetting().getPullRequestQueryWatches();
+	}
+
+	@JsonProperty("pullRequestQueryWatches")
+	@SuppressWarnings("unused")
+	private void setJsonPullRequestQueryWatches(LinkedHashMap<String, Boolean> pullRequestQueryWatches) {
+		getSetting().setPullRequestQueryWatches(pullRequestQueryWatches);
+	}
+
+	@JsonProperty("userBuildQueries")
+	@SuppressWarnings("unused")
+	private ArrayList<NamedBuildQuery> getJsonUserBuildQueries() {
+		return getSetting().getUserBuildQueries();
+	}
+
+	@JsonProperty("userBuildQueries")
+	@SuppressWarnings("unused")
+	private void setJsonUserBuildQueries(ArrayList<NamedBuildQuery> userBuildQueries) {
+		getSetting().setUserBuildQueries(userBuildQueries);
+	}
+
+	@JsonProperty("userBuildQuerySubscriptions")
+	@SuppressWarnings("unused")
+	private LinkedHashSet<String> getJsonUserBuildQuerySubscriptions() {
+		return getSetting().getUserBuildQuerySubscriptions();
+	}
+
+	@JsonProperty("userBuildQuerySubscriptions")
+	@SuppressWarnings("unused")
+	private void setJsonUserBuildQuerySubscriptions(LinkedHashSet<String> userBuildQuerySubscriptions) {
+		getSetting().setUserBuildQuerySubscriptions(userBuildQuerySubscriptions);
+	}
+
+	@JsonProperty("buildQuerySubscriptions")
+	@SuppressWarnings("unused")
+	private LinkedHashSet<String> getJsonBuildQuerySubscriptions() {
+		return getSetting().getBuildQuerySubscriptions();
+	}
+
+	@JsonProperty("buildQuerySubscriptions")
+	@SuppressWarnings("unused")
+	private void setJsonBuildQuerySubscriptions(LinkedHashSet<String> buildQuerySubscriptions) {
+		getSetting().setBuildQuerySubscriptions(buildQuerySubscriptions);
+	}
+	public UserSetting getSetting() {
+		return setting;
+	}
+
+	public void setSetting(UserSetting setting) {
+		this.setting = setting;
+	}
+
+	@JsonProperty
 	public UserBuildSetting getBuildSetting() {
-		return buildSetting;
+		return getSetting().getBuildSetting();
 	}
 
+	@JsonProperty
 	public void setBuildSetting(UserBuildSetting buildSetting) {
-		this.buildSetting = buildSetting;
+		getSetting().setBuildSetting(buildSetting);
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public ArrayList<WebHook> getWebHooks() {
-		return webHooks;
+		return getSetting().getWebHooks();
 	}
 
+	@JsonProperty
+	@JsonView(DefaultView.class)
 	public void setWebHooks(ArrayList<WebHook> webHooks) {
-		this.webHooks = webHooks;
+		getSetting().setWebHooks(webHooks);
 	}
 
 	@Override
@@ -0,0 +1,177 @@
+package io.onedev.server.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Type;
+
+import io.onedev.server.model.support.NamedProjectQuery;
+import io.onedev.server.model.support.WebHook;
+import io.onedev.server.model.support.build.NamedBuildQuery;
+import io.onedev.server.model.support.build.UserBuildSetting;
+import io.onedev.server.model.support.issue.NamedIssueQuery;
+import io.onedev.server.model.support.pullrequest.NamedPullRequestQuery;
+
+/**
+ * Settings of a user. They are kept out of user table and fetched lazily, so that
+ * querying users does not need to load and deserialize settings
+ */
+@Entity
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
+public class UserSetting extends AbstractEntity {
+
+	private static final long serialVersionUID = 1L;
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private ArrayList<NamedProjectQuery> userProjectQueries = new ArrayList<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private ArrayList<NamedIssueQuery> userIssueQueries = new ArrayList<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private LinkedHashMap<String, Boolean> userIssueQueryWatches = new LinkedHashMap<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private LinkedHashMap<String, Boolean> issueQueryWatches = new LinkedHashMap<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private ArrayList<NamedPullRequestQuery> userPullRequestQueries = new ArrayList<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private LinkedHashMap<String, Boolean> userPullRequestQueryWatches = new LinkedHashMap<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private LinkedHashMap<String, Boolean> pullRequestQueryWatches = new LinkedHashMap<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private ArrayList<NamedBuildQuery> userBuildQueries = new ArrayList<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private LinkedHashSet<String> userBuildQuerySubscriptions = new LinkedHashSet<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(nullable=false, length=65535)
+	private LinkedHashSet<String> buildQuerySubscriptions = new LinkedHashSet<>();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535, nullable=false)
+	private UserBuildSetting buildSetting = new UserBuildSetting();
+
+	@Type(type="io.onedev.server.persistence.CompactSerializableType")
+	@Column(length=65535, nullable=false)
+	private ArrayList<WebHook> webHooks = new ArrayList<>();
+
+	public ArrayList<NamedProjectQuery> getUserProjectQueries() {
+		return userProjectQueries;
+	}
+
+	public void setUserProjectQueries(ArrayList<NamedProjectQuery> userProjectQueries) {
+		this.userProjectQueries = userProjectQueries;
+	}
+
+	public ArrayList<NamedIssueQuery> getUserIssueQueries() {
+		return userIssueQueries;
+	}
+
+	public void setUserIssueQueries(ArrayList<NamedIssueQuery> userIssueQueries) {
+		this.userIssueQueries = userIssueQueries;
+	}
+
+	public LinkedHashMap<String, Boolean> getUserIssueQueryWatches() {
+		return userIssueQueryWatches;
+	}
+
+	public void setUserIssueQueryWatches(LinkedHashMap<String, Boolean> userIssueQueryWatches) {
+		this.userIssueQueryWatches = userIssueQueryWatches;
+	}
+
+	public LinkedHashMap<String, Boolean> getIssueQueryWatches() {
+		return issueQueryWatches;
+	}
+
+	public void setIssueQueryWatches(LinkedHashMap<String, Boolean> issueQueryWatches) {
+		this.issueQueryWatches = issueQueryWatches;
+	}
+
+	public ArrayList<NamedPullRequestQuery> getUserPullRequestQueries() {
+		return userPullRequestQueries;
+	}
+
+	public void setUserPullRequestQueries(ArrayList<NamedPullRequestQuery> userPullRequestQueries) {
+		this.userPullRequestQueries = userPullRequestQueries;
+	}
+
+	public LinkedHashMap<String, Boolean> getUserPullRequestQueryWatches() {
+		return userPullRequestQueryWatches;
+	}
+
+	public void setUserPullRequestQueryWatches(LinkedHashMap<String, Boolean> userPullRequestQueryWatches) {
+		this.userPullRequestQueryWatches = userPullRequestQueryWatches;
+	}
+
+	public LinkedHashMap<String, Boolean> getPullRequestQueryWatches() {
+		return pullRequestQueryWatches;
+	}
+
+	public void setPullRequestQueryWatches(LinkedHashMap<String, Boolean> pullRequestQueryWatches) {
+		this.pullRequestQueryWatches = pullRequestQueryWatches;
+	}
+
+	public ArrayList<NamedBuildQuery> getUserBuildQueries() {
+		return userBuildQueries;
+	}
+
+	public void setUserBuildQueries(ArrayList<NamedBuildQuery> userBuildQueries) {
+		this.userBuildQueries = userBuildQueries;
+	}
+
+	public LinkedHashSet<String> getUserBuildQuerySubscriptions() {
+		return userBuildQuerySubscriptions;
+	}
+
+	public void setUserBuildQuerySubscriptions(LinkedHashSet<String> userBuildQuerySubscriptions) {
+		this.userBuildQuerySubscriptions = userBuildQuerySubscriptions;
+	}
+
+	public LinkedHashSet<String> getBuildQuerySubscriptions() {
+		return buildQuerySubscriptions;
+	}
+
+	public void setBuildQuerySubscriptions(LinkedHashSet<String> buildQuerySubscriptions) {
+		this.buildQuerySubscriptions = buildQuerySubscriptions;
+	}
+
+	public UserBuildSetting getBuildSetting() {
+		return buildSetting;
+	}
+
+	public void setBuildSetting(UserBuildSetting buildSetting) {
+		this.buildSetting = buildSetting;
+	}
+
+	public ArrayList<WebHook> getWebHooks() {
+		return webHooks;
+	}
+
+	public void setWebHooks(ArrayList<WebHook> webHooks) {
+		this.webHooks = webHooks;
+	}
+
+}
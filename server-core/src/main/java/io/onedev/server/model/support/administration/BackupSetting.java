@@ -20,6 +20,8 @@ public class BackupSetting implements Serializable, Validatable {
 	
 	private String schedule;
 	
+	private String incrementalSchedule;
+	
 	@Editable(order=100, name="Backup Schedule", description=
 		"Optionally specify a cron expression to schedule database auto-backup. The cron expression format is " +
 		"<em>&lt;seconds&gt; &lt;minutes&gt; &lt;hours&gt; &lt;day-of-month&gt; &lt;month&gt; &lt;day-of-week&gt;</em>." +
@@ -37,6 +39,20 @@ public class BackupSetting implements Serializable, Validatable {
 		this.schedule = schedule;
 	}
 
+	@Editable(order=200, name="Incremental Backup Schedule", description=
+		"Optionally specify a cron expression to take incremental backups between full backups. An incremental "
+		+ "backup only contains entities changed since previous backup, and will be placed into <em>db-backup</em> "
+		+ "folder with suffix <em>-incremental.zip</em>. To restore database, run the restore command with the "
+		+ "full backup followed by subsequent incremental backups in order. A full backup will be taken instead "
+		+ "if there is no previous backup to base on")
+	public String getIncrementalSchedule() {
+		return incrementalSchedule;
+	}
+
+	public void setIncrementalSchedule(String incrementalSchedule) {
+		this.incrementalSchedule = incrementalSchedule;
+	}
+
 	@Override
 	public boolean isValid(ConstraintValidatorContext context) {
 		boolean hasErrors = false;
@@ -49,6 +65,15 @@ public class BackupSetting implements Serializable, Validatable {
 				hasErrors = true;
 			}
 		}
+		if (incrementalSchedule != null) {
+			try {
+				new CronExpression(incrementalSchedule);
+			} catch (ParseException e) {
+				context.buildConstraintViolationWithTemplate(e.getMessage())
+						.addPropertyNode("incrementalSchedule").addConstraintViolation();
+				hasErrors = true;
+			}
+		}
 		return !hasErrors;
 	}
 
@@ -58,10 +58,13 @@ public class IssueNotificationManager {
 	
 	private final SettingManager settingManager;
 	
+	private final QueryWatcherIndex queryWatcherIndex;
+	
 	@Inject
 	public IssueNotificationManager(MarkdownManager markdownManager, MailManager mailManager, 
 			UrlManager urlManager, IssueWatchManager issueWatchManager, UserInfoManager userInfoManager, 
-			UserManager userManager, SettingManager settingManager) {
+			UserManager userManager, SettingManager settingManager, 
+			QueryWatcherIndex queryWatcherIndex) {
 		this.mailManager = mailManager;
 		this.urlManager = urlManager;
 		this.markdownManager = markdownManager;
@@ -69,6 +72,7 @@ public class IssueNotificationManager {
 		this.userInfoManager = userInfoManager;
 		this.userManager = userManager;
 		this.settingManager = settingManager;
+		this.queryWatcherIndex = queryWatcherIndex;
 	}
 	
 	@Transactional
@@ -112,7 +116,7 @@ public class IssueNotificationManager {
 
 			@Override
 			protected Collection<? extends QuerySetting<?>> getQuerySettings() {
-				return userManager.query().stream().map(it->it.getIssueQuerySetting()).collect(Collectors.toList());
+				return queryWatcherIndex.getIssueQueryWatchers().stream().map(it->it.getIssueQuerySetting()).collect(Collectors.toList());
 			}
 
 			@Override
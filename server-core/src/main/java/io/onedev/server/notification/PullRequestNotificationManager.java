@@ -67,10 +67,13 @@ public class PullRequestNotificationManager {
 	
 	private final SettingManager settingManager;
 	
+	private final QueryWatcherIndex queryWatcherIndex;
+	
 	@Inject
 	public PullRequestNotificationManager(MailManager mailManager, UrlManager urlManager, 
 			MarkdownManager markdownManager, PullRequestWatchManager pullRequestWatchManager, 
-			UserInfoManager userInfoManager, UserManager userManager, SettingManager settingManager) {
+			UserInfoManager userInfoManager, UserManager userManager, SettingManager settingManager, 
+			QueryWatcherIndex queryWatcherIndex) {
 		this.mailManager = mailManager;
 		this.urlManager = urlManager;
 		this.markdownManager = markdownManager;
@@ -78,6 +81,7 @@ public class PullRequestNotificationManager {
 		this.userInfoManager = userInfoManager;
 		this.userManager = userManager;
 		this.settingManager = settingManager;
+		this.queryWatcherIndex = queryWatcherIndex;
 	}
 	
 	@Transactional
@@ -121,7 +125,7 @@ public class PullRequestNotificationManager {
 
 			@Override
 			protected Collection<? extends QuerySetting<?>> getQuerySettings() {
-				return userManager.query().stream().map(it->it.getPullRequestQuerySetting()).collect(Collectors.toList());
+				return queryWatcherIndex.getPullRequestQueryWatchers().stream().map(it->it.getPullRequestQuerySetting()).collect(Collectors.toList());
 			}
 
 			@Override
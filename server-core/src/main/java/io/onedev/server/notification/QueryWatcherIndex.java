@@ -0,0 +1,137 @@
+package io.onedev.server.notification;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.hibernate.query.Query;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.User;
+import io.onedev.server.model.UserSetting;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.dao.Dao;
+
+/**
+ * Index of users watching global issue or pull request queries, so that notification of
+ * each issue or pull request event only evaluates queries of these users instead of
+ * all users. The index is rebuilt lazily after some user is changed, as query watches are
+ * stored with user settings.
+ */
+@Singleton
+public class QueryWatcherIndex {
+
+	private final UserManager userManager;
+
+	private final TransactionManager transactionManager;
+
+	private final Dao dao;
+
+	private long version;
+
+	private Collection<Long> issueWatcherIds;
+
+	private Collection<Long> pullRequestWatcherIds;
+
+	@Inject
+	public QueryWatcherIndex(UserManager userManager, TransactionManager transactionManager, Dao dao) {
+		this.userManager = userManager;
+		this.transactionManager = transactionManager;
+		this.dao = dao;
+	}
+
+	@Sessional
+	public Collection<User> getIssueQueryWatchers() {
+		return getUsers(getIds(true));
+	}
+
+	@Sessional
+	public Collection<User> getPullRequestQueryWatchers() {
+		return getUsers(getIds(false));
+	}
+
+	private Collection<User> getUsers(Collection<Long> userIds) {
+		return userIds.stream()
+				.map(it->userManager.get(it))
+				.filter(it->it!=null)
+				.collect(Collectors.toList());
+	}
+
+	@SuppressWarnings("unchecked")
+	private Collection<Long> getIds(boolean issue) {
+		long currentVersion;
+		synchronized (this) {
+			Collection<Long> ids = issue?issueWatcherIds:pullRequestWatcherIds;
+			if (ids != null)
+				return ids;
+			currentVersion = version;
+		}
+
+		Collection<Long> newIssueWatcherIds = new HashSet<>();
+		Collection<Long> newPullRequestWatcherIds = new HashSet<>();
+		// query watches directly instead of loading settings of each user separately
+		Query<?> query = dao.getSession().createQuery("select user.id, setting.issueQueryWatches, "
+				+ "setting.userIssueQueryWatches, setting.pullRequestQueryWatches, "
+				+ "setting.userPullRequestQueryWatches from User user join user.setting setting");
+		for (Object[] row: (List<Object[]>) query.list()) {
+			if (isWatching((Map<?, ?>) row[1], (Map<?, ?>) row[2]))
+				newIssueWatcherIds.add((Long) row[0]);
+			if (isWatching((Map<?, ?>) row[3], (Map<?, ?>) row[4]))
+				newPullRequestWatcherIds.add((Long) row[0]);
+		}
+
+		synchronized (this) {
+			// discard the result if some user is changed while calculating
+			if (version == currentVersion) {
+				issueWatcherIds = newIssueWatcherIds;
+				pullRequestWatcherIds = newPullRequestWatcherIds;
+			}
+		}
+		return issue?newIssueWatcherIds:newPullRequestWatcherIds;
+	}
+
+	private boolean isWatching(Map<?, ?> queryWatches, Map<?, ?> userQueryWatches) {
+		return queryWatches != null && !queryWatches.isEmpty() 
+				|| userQueryWatches != null && !userQueryWatches.isEmpty();
+	}
+
+	private synchronized void invalidate() {
+		version++;
+		issueWatcherIds = null;
+		pullRequestWatcherIds = null;
+	}
+
+	@Listen
+	public void on(EntityPersisted event) {
+		if (event.getEntity() instanceof User || event.getEntity() instanceof UserSetting)
+			onUserChanged();
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof User)
+			onUserChanged();
+	}
+
+	private void onUserChanged() {
+		invalidate();
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				invalidate();
+			}
+
+		});
+	}
+
+}
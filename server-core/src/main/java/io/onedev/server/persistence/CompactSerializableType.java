@@ -0,0 +1,184 @@
+package io.onedev.server.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.internal.util.SerializationHelper;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.usertype.UserType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Hibernate type to store serializable settings in a blob column with a compact encoding.
+ * Stored value starts with a format version byte followed by deflated Java serialization
+ * of the value. Values stored with plain Java serialization (the default Hibernate
+ * encoding of serializable types) can still be read.
+ * <p>
+ * Hibernate checks dirty of mutable values by comparing current value against a snapshot
+ * taken via {@link #deepCopy(Object)}. Serialized form of snapshot is remembered when
+ * the snapshot is taken, so that checking dirty only needs to serialize current value.
+ * Second level cache holds encoded value instead of a deep copy.
+ * <p>
+ * Use it via <tt>@Type(type="io.onedev.server.persistence.CompactSerializableType")</tt>.
+ */
+public class CompactSerializableType implements UserType {
+
+	private static final byte FORMAT_VERSION = 1;
+
+	private static final byte[] JAVA_SERIALIZATION_MAGIC = new byte[] {(byte)0xAC, (byte)0xED};
+
+	/*
+	 * Snapshots are never modified, so their serialized form can be reused. Weak keys
+	 * are compared by identity
+	 */
+	private static final Cache<Object, byte[]> snapshotBytes = CacheBuilder.newBuilder().weakKeys().build();
+
+	@Override
+	public int[] sqlTypes() {
+		return new int[] {Types.BLOB};
+	}
+
+	@Override
+	public Class<?> returnedClass() {
+		return Serializable.class;
+	}
+
+	@Override
+	public boolean equals(Object x, Object y) throws HibernateException {
+		if (x == y)
+			return true;
+		else if (x == null || y == null)
+			return false;
+		else
+			return Arrays.equals(getBytes(x), getBytes(y));
+	}
+
+	@Override
+	public int hashCode(Object x) throws HibernateException {
+		return Arrays.hashCode(getBytes(x));
+	}
+
+	@Override
+	public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session,
+			Object owner) throws HibernateException, SQLException {
+		byte[] encoded = StandardBasicTypes.MATERIALIZED_BLOB.nullSafeGet(rs, names[0], session);
+		if (encoded != null)
+			return decode(encoded);
+		else
+			return null;
+	}
+
+	@Override
+	public void nullSafeSet(PreparedStatement st, Object value, int index,
+			SharedSessionContractImplementor session) throws HibernateException, SQLException {
+		if (value != null)
+			StandardBasicTypes.MATERIALIZED_BLOB.nullSafeSet(st, encode(value), index, session);
+		else
+			StandardBasicTypes.MATERIALIZED_BLOB.nullSafeSet(st, null, index, session);
+	}
+
+	@Override
+	public Object deepCopy(Object value) throws HibernateException {
+		if (value != null) {
+			byte[] bytes = serialize(value);
+			Object copy = SerializationHelper.deserialize(bytes);
+			snapshotBytes.put(copy, bytes);
+			return copy;
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean isMutable() {
+		return true;
+	}
+
+	@Override
+	public Serializable disassemble(Object value) throws HibernateException {
+		if (value != null)
+			return encode(value);
+		else
+			return null;
+	}
+
+	@Override
+	public Object assemble(Serializable cached, Object owner) throws HibernateException {
+		if (cached != null)
+			return decode((byte[]) cached);
+		else
+			return null;
+	}
+
+	/*
+	 * Copy is assigned to target entity and may be modified later, so it should not be
+	 * treated as a snapshot
+	 */
+	@Override
+	public Object replace(Object original, Object target, Object owner) throws HibernateException {
+		if (original != null)
+			return SerializationHelper.deserialize(serialize(original));
+		else
+			return null;
+	}
+
+	private byte[] getBytes(Object value) {
+		byte[] bytes = snapshotBytes.getIfPresent(value);
+		if (bytes == null)
+			bytes = serialize(value);
+		return bytes;
+	}
+
+	private byte[] serialize(Object value) {
+		return SerializationHelper.serialize((Serializable) value);
+	}
+
+	public static byte[] encode(Object value) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(FORMAT_VERSION);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			try (OutputStream os = new DeflaterOutputStream(baos, deflater)) {
+				SerializationHelper.serialize((Serializable) value, os);
+			}
+		} catch (IOException e) {
+			throw new HibernateException(e);
+		} finally {
+			deflater.end();
+		}
+		return baos.toByteArray();
+	}
+
+	public static Object decode(byte[] encoded) {
+		if (encoded.length >= 2 && encoded[0] == JAVA_SERIALIZATION_MAGIC[0]
+				&& encoded[1] == JAVA_SERIALIZATION_MAGIC[1]) {
+			return SerializationHelper.deserialize(encoded);
+		} else if (encoded.length != 0 && encoded[0] == FORMAT_VERSION) {
+			try (InputStream is = new InflaterInputStream(
+					new ByteArrayInputStream(encoded, 1, encoded.length-1))) {
+				return SerializationHelper.deserialize(is);
+			} catch (IOException e) {
+				throw new HibernateException(e);
+			}
+		} else {
+			throw new HibernateException("Unexpected encoding format of serialized value");
+		}
+	}
+
+}
@@ -1,34 +1,54 @@
 package io.onedev.server.persistence;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import javax.annotation.Nullable;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.ManyToOne;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
 import javax.persistence.metamodel.EntityType;
 
+import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.XMLWriter;
 import org.hibernate.Interceptor;
-import org.hibernate.ReplicationMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
 import org.hibernate.boot.Metadata;
 import org.hibernate.boot.MetadataBuilder;
@@ -37,20 +57,27 @@ import org.hibernate.boot.model.naming.Identifier;
 import org.hibernate.boot.model.naming.PhysicalNamingStrategy;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.hibernate.query.Query;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 import org.hibernate.tool.schema.TargetType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import io.onedev.commons.utils.ClassUtils;
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.StringUtils;
+import io.onedev.server.migration.DataFileReader;
 import io.onedev.server.migration.DataMigrator;
 import io.onedev.server.migration.MigrationHelper;
 import io.onedev.server.migration.VersionedDocument;
@@ -66,6 +93,12 @@ public class DefaultPersistManager implements PersistManager {
 
 	private static final int BACKUP_BATCH_SIZE = 1000;
 	
+	private static final int MAX_EXPORT_THREADS = 4;
+	
+	private static final int CONVERSION_CHUNK_SIZE = 100;
+	
+	protected static final String INCREMENT_FILE = "Increment.xml";
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultPersistManager.class);
 	
 	protected final PhysicalNamingStrategy physicalNamingStrategy;
@@ -98,7 +131,14 @@ public class DefaultPersistManager implements PersistManager {
 		this.dao = dao;
 		this.validator = validator;
 		this.transactionManager = transactionManager;
-		serviceRegistry = new StandardServiceRegistryBuilder().applySettings(properties).build();
+		
+		Map<Object, Object> settings = new HashMap<>(properties);
+		/*
+		 * Statistics are reported as metrics if enabled in Hibernate properties. Logging of 
+		 * session statistics is disabled as it happens each time a session is closed
+		 */
+		settings.putIfAbsent(AvailableSettings.LOG_SESSION_METRICS, "false");
+		serviceRegistry = new StandardServiceRegistryBuilder().applySettings(settings).build();
 	}
 	
 	protected String getDialect() {
@@ -385,120 +425,501 @@ public class DefaultPersistManager implements PersistManager {
 		exportData(exportDir, BACKUP_BATCH_SIZE);
 	}
 	
-	@Sessional
 	@Override
 	public void exportData(File exportDir, int batchSize) {
-		Session session = sessionFactory.openSession();
-		for (Class<?> entityType: getEntityTypes(sessionFactory)) {
-			logger.info("Exporting table '" + entityType.getSimpleName() + "'...");
-			
-			logger.info("Querying table ids...");
-			
-			CriteriaBuilder builder = sessionFactory.getCriteriaBuilder();
-			CriteriaQuery<Number> query = builder.createQuery(Number.class);
-			Root<?> root = query.from(entityType);
-			query.select(root.get("id")).orderBy(builder.asc(root.get("id")));
-			
-			List<Number> ids = session.createQuery(query).list();
-			
-			int count = ids.size();
-			
-			for (int i=0; i<count/batchSize; i++) {
-				exportEntity(session, entityType, ids, i*batchSize, batchSize, batchSize, exportDir);
-				// clear session to free memory
-				session.clear();
+		exportData(new DataFileWriter() {
+
+			@Override
+			public void write(String fileName, byte[] content) throws IOException {
+				FileUtils.writeByteArrayToFile(new File(exportDir, fileName), content);
 			}
 			
-			if (count%batchSize != 0) {
-				exportEntity(session, entityType, ids, count/batchSize*batchSize, count%batchSize, batchSize, exportDir);
+		}, batchSize, null);
+	}
+
+	@Override
+	public void exportData(ZipOutputStream zos) {
+		exportData(zos, BACKUP_BATCH_SIZE);
+	}
+	
+	@Override
+	public void exportData(ZipOutputStream zos, int batchSize) {
+		exportData(newDataFileWriter(zos), batchSize, null);
+		try {
+			zos.finish();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public void exportChanges(ZipOutputStream zos, EntityChanges changes) {
+		DataFileWriter writer = newDataFileWriter(zos);
+		exportData(writer, BACKUP_BATCH_SIZE, changes);
+		
+		List<String> entityNames = new ArrayList<>();
+		Set<String> fullEntityNames = new HashSet<>();
+		for (Class<?> entityType: getEntityTypes(sessionFactory)) {
+			entityNames.add(entityType.getSimpleName());
+			if (isFullyChanged(entityType, changes))
+				fullEntityNames.add(entityType.getSimpleName());
+		}
+		Document increment = newIncrement(entityNames, fullEntityNames, changes);
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			XMLWriter xmlWriter = newXMLWriter(baos);
+			xmlWriter.write(increment);
+			xmlWriter.flush();
+			writer.write(INCREMENT_FILE, baos.toByteArray());
+			zos.finish();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/*
+	 * Build content of increment file, listing ids of updated and deleted entities. Entities 
+	 * in specified full entity names will be replaced as a whole when increment is imported
+	 */
+	static Document newIncrement(List<String> entityNames, Set<String> fullEntityNames, EntityChanges changes) {
+		Document increment = DocumentHelper.createDocument();
+		Element incrementElement = increment.addElement("increment");
+		for (String entityName: entityNames) {
+			if (fullEntityNames.contains(entityName)) {
+				incrementElement.addElement(entityName).addAttribute("full", "true");
+			} else {
+				Collection<Long> updatedIds = changes.getUpdatedIds(entityName);
+				Collection<Long> deletedIds = changes.getDeletedIds(entityName);
+				if (!updatedIds.isEmpty() || !deletedIds.isEmpty()) {
+					Element entityElement = incrementElement.addElement(entityName);
+					entityElement.addElement("updated").setText(StringUtils.join(updatedIds, ","));
+					entityElement.addElement("deleted").setText(StringUtils.join(deletedIds, ","));
+				}
 			}
-			logger.info("");
 		}
+		return increment;
 	}
+	
+	/*
+	 * Read changes from content of increment file. Names of entities to be replaced as a 
+	 * whole are added to specified full entity names 
+	 */
+	static EntityChanges readIncrement(Element incrementElement, Collection<String> fullEntityNames) {
+		EntityChanges changes = new EntityChanges();
+		for (Element entityElement: incrementElement.elements()) {
+			String entityName = entityElement.getName();
+			if ("true".equals(entityElement.attributeValue("full"))) {
+				fullEntityNames.add(entityName);
+			} else {
+				for (String id: StringUtils.split(entityElement.elementText("updated"), ","))
+					changes.update(entityName, Long.valueOf(id));
+				for (String id: StringUtils.split(entityElement.elementText("deleted"), ","))
+					changes.delete(entityName, Long.valueOf(id));
+			}
+		}
+		return changes;
+	}
+	
+	/*
+	 * Data version is always included in incremental backup so that it can be migrated
+	 */
+	private boolean isFullyChanged(Class<?> entityType, EntityChanges changes) {
+		String tableName = ((AbstractEntityPersister)((SessionFactoryImplementor)sessionFactory)
+				.getMetamodel().entityPersister(entityType)).getTableName().toLowerCase();
+		return entityType == ModelVersion.class || changes.getChangedTables().contains(tableName);
+	}
+	
+	private DataFileWriter newDataFileWriter(ZipOutputStream zos) {
+		return new DataFileWriter() {
 
-	private void exportEntity(Session session, Class<?> entityType, List<Number> ids, int start, int count, int batchSize, File exportDir) {
-		logger.info("Loading table rows ({}->{}) from database...", String.valueOf(start+1), (start + count));
-		
-		Query<?> query = session.createQuery("from " + entityType.getSimpleName() + " where id>=:fromId and id<=:toId");
-		query.setParameter("fromId", ids.get(start));
-		query.setParameter("toId", ids.get(start+count-1));
-		
-		logger.info("Converting table rows to XML...");
-		VersionedDocument dom = new VersionedDocument();
-		Element rootElement = dom.addElement("list");
-		for (Object entity: query.list())
-			rootElement.appendContent(VersionedDocument.fromBean(entity));
-		String fileName;
+			@Override
+			public void write(String fileName, byte[] content) throws IOException {
+				synchronized (zos) {
+					zos.putNextEntry(new ZipEntry(fileName));
+					zos.write(content);
+					zos.closeEntry();
+				}
+			}
+			
+		};
+	}
+	
+	/*
+	 * Each table is exported with its own session in a separate thread, as tables are 
+	 * independent of each other in the backup. Number of threads is capped so that export 
+	 * does not take up too many connections of the pool. Rows are paged by id instead of 
+	 * loading all ids upfront, and every batch of rows is serialized into a single data 
+	 * file, so that memory usage is bounded by batch size times number of threads regardless 
+	 * of database size. If entity changes are specified, only updated entities will be 
+	 * exported
+	 */
+	private void exportData(DataFileWriter writer, int batchSize, @Nullable EntityChanges changes) {
+		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
+		int threads = Math.min(MAX_EXPORT_THREADS, Runtime.getRuntime().availableProcessors());
+		threads = Math.max(1, Math.min(entityTypes.size(), threads));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			long time = System.currentTimeMillis();
+			List<Future<Long>> futures = new ArrayList<>();
+			for (Class<?> entityType: entityTypes) {
+				Collection<Long> ids;
+				if (changes != null && !isFullyChanged(entityType, changes)) {
+					ids = changes.getUpdatedIds(entityType.getSimpleName());
+					if (ids.isEmpty())
+						continue;
+				} else {
+					ids = null;
+				}
+				futures.add(executor.submit(new Callable<Long>() {
 
-		if (start == 0)
-			fileName = entityType.getSimpleName() + "s.xml";
+					@Override
+					public Long call() throws Exception {
+						return exportEntities(entityType, ids, writer, batchSize);
+					}
+					
+				}));
+			}
+			long rows = 0;
+			for (Future<Long> future: futures)
+				rows += future.get();
+			time = System.currentTimeMillis() - time;
+			logger.info("Exported {} rows in {} ms ({} rows/sec)", rows, time, rows*1000/Math.max(time, 1));
+		} catch (InterruptedException | ExecutionException e) {
+			throw ExceptionUtils.unchecked(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private long exportEntities(Class<?> entityType, @Nullable Collection<Long> ids, 
+			DataFileWriter writer, int batchSize) throws IOException {
+		logger.info("Exporting table '" + entityType.getSimpleName() + "'...");
+		long time = System.currentTimeMillis();
+		DataFilesBuilder builder = new DataFilesBuilder(entityType, writer, batchSize);
+		Session session = sessionFactory.openSession();
+		session.setDefaultReadOnly(true);
+		Transaction transaction = session.beginTransaction();
+		try {
+			if (ids == null) {
+				/* 
+				 * Page by id instead of scrolling a cursor, as some JDBC drivers (PostgreSQL 
+				 * and MySQL for instance) load the whole result set into memory regardless 
+				 * of fetch size unless certain connection settings are in effect
+				 */
+				Long lastId = null;
+				while (true) {
+					Query<?> query;
+					if (lastId != null) {
+						query = session.createQuery("from " + entityType.getSimpleName() + " where id > :lastId order by id");
+						query.setParameter("lastId", lastId);
+					} else {
+						query = session.createQuery("from " + entityType.getSimpleName() + " order by id");
+					}
+					query.setMaxResults(batchSize);
+					List<?> entities = query.list();
+					for (Object entity: entities) 
+						builder.add(entity);
+					// clear session to free memory
+					session.clear();
+					if (entities.size() < batchSize)
+						break;
+					lastId = ((AbstractEntity) entities.get(entities.size()-1)).getId();
+				}
+			} else {
+				List<Long> sortedIds = new ArrayList<>(ids);
+				Collections.sort(sortedIds);
+				for (List<Long> partition: Lists.partition(sortedIds, batchSize)) {
+					Query<?> query = session.createQuery("from " + entityType.getSimpleName() + " where id in (:ids) order by id");
+					query.setReadOnly(true);
+					query.setParameterList("ids", partition);
+					for (Object entity: query.list())
+						builder.add(entity);
+					session.clear();
+				}
+			}
+			builder.finish();
+		} finally {
+			transaction.rollback();
+			session.close();
+		}
+		time = System.currentTimeMillis() - time;
+		logger.info("Exported {} rows of table '{}' in {} ms ({} rows/sec)", 
+				builder.count, entityType.getSimpleName(), time, builder.count*1000/Math.max(time, 1));
+		return builder.count;
+	}
+	
+	private XMLWriter newXMLWriter(OutputStream os) throws UnsupportedEncodingException {
+		OutputFormat format = new OutputFormat();
+		format.setIndent(true);
+		format.setNewlines(true);
+		format.setEncoding(StandardCharsets.UTF_8.name());
+		return new XMLWriter(os, format);
+	}
+	
+	private String getDataFileName(Class<?> entityType, long fileIndex) {
+		if (fileIndex == 1)
+			return entityType.getSimpleName() + "s.xml";
 		else
-			fileName = entityType.getSimpleName() + "s.xml." + (start/batchSize + 1);
+			return entityType.getSimpleName() + "s.xml." + fileIndex;
+	}
+	
+	private static interface DataFileWriter {
+		
+		void write(String fileName, byte[] content) throws IOException;
+		
+	}
+	
+	/**
+	 * Build data files of an entity type, with each data file containing a batch of 
+	 * entities
+	 */
+	private class DataFilesBuilder {
+		
+		private final Class<?> entityType;
+		
+		private final DataFileWriter writer;
+		
+		private final int batchSize;
+		
+		private final Element listElement = DocumentHelper.createElement("list");
+		
+		private ByteArrayOutputStream baos;
+		
+		private XMLWriter xmlWriter;
+		
+		private long count;
+		
+		DataFilesBuilder(Class<?> entityType, DataFileWriter writer, int batchSize) {
+			this.entityType = entityType;
+			this.writer = writer;
+			this.batchSize = batchSize;
+		}
+		
+		/**
+		 * @return
+		 * 			<tt>true</tt> if a data file is written after adding the entity
+		 */
+		boolean add(Object entity) throws IOException {
+			try {
+				if (xmlWriter == null) {
+					baos = new ByteArrayOutputStream();
+					xmlWriter = newXMLWriter(baos);
+					xmlWriter.startDocument();
+					xmlWriter.writeOpen(listElement);
+				}
+				xmlWriter.write(VersionedDocument.fromBean(entity).getRootElement());
+				count++;
+				if (count % batchSize == 0) {
+					writeDataFile(count/batchSize);
+					return true;
+				} else {
+					return false;
+				}
+			} catch (SAXException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		void finish() throws IOException {
+			if (xmlWriter != null) {
+				try {
+					writeDataFile(count/batchSize + 1);
+				} catch (SAXException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		
+		private void writeDataFile(long fileIndex) throws IOException, SAXException {
+			xmlWriter.writeClose(listElement);
+			xmlWriter.endDocument();
+			xmlWriter.flush();
+			writer.write(getDataFileName(entityType, fileIndex), baos.toByteArray());
+			xmlWriter = null;
+			baos = null;
+		}
 		
-		logger.info("Writing resulting XML to file '" + fileName + "...");
-		dom.writeToFile(new File(exportDir, fileName), true);
 	}
 
 	/*
-	 * We do not use @Transactional annotation and will manage the session and transaction manually 
-	 * in this method to reduce memory usage if importing a large database.
+	 * Data files are parsed element by element, converted to entities in a worker pool, 
+	 * and inserted in original order via a stateless session with JDBC batching. This 
+	 * method should be called before applying constraints, and every batch of rows is 
+	 * committed in its own transaction to keep memory usage and transaction size bounded. 
+	 * Batch size can be configured via hibernate property "hibernate.jdbc.batch_size"
 	 */
-	@Sessional
 	@Override
 	public void importData(Metadata metadata, File dataDir) {
-		Session session = dao.getSession();
-		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
-		Collections.reverse(entityTypes);
-		for (Class<?> entityType: entityTypes) {
-			File[] dataFiles = dataDir.listFiles(new FilenameFilter() {
-
-				@Override
-				public boolean accept(File dir, String name) {
-					return name.startsWith(entityType.getSimpleName() + "s.xml");
+		importDataFiles(dataDir);
+	}
+	
+	/**
+	 * Import changes of an incremental backup. Entities updated or deleted in the increment
+	 * are deleted first, and updated entities are then imported from data files. Tables
+	 * changed by bulk statements are replaced as a whole. This method should also be 
+	 * called before applying constraints
+	 */
+	protected void importChanges(Metadata metadata, File dataDir) {
+		Map<String, Class<?>> entityTypes = new HashMap<>();
+		for (Class<?> entityType: getEntityTypes(sessionFactory))
+			entityTypes.put(entityType.getSimpleName(), entityType);
+		
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			VersionedDocument increment = VersionedDocument.fromFile(new File(dataDir, INCREMENT_FILE));
+			Set<String> fullEntityNames = new HashSet<>();
+			EntityChanges changes = readIncrement(increment.getRootElement(), fullEntityNames);
+			Set<String> entityNames = new LinkedHashSet<>(fullEntityNames);
+			entityNames.addAll(changes.getUpdatedIds().keySet());
+			entityNames.addAll(changes.getDeletedIds().keySet());
+			for (String entityName: entityNames) {
+				if (!entityTypes.containsKey(entityName)) {
+					logger.warn("Ignoring changes of unknown entity '{}'", entityName);
+					continue;
 				}
-				
-			});
-			for (File file: dataFiles) {
 				Transaction transaction = session.beginTransaction();
 				try {
-					logger.info("Importing from data file '" + file.getName() + "'...");
-					VersionedDocument dom = VersionedDocument.fromFile(file);
-					
-					for (Element element: dom.getRootElement().elements()) {
-						element.detach();
-						AbstractEntity entity = (AbstractEntity) new VersionedDocument(DocumentHelper.createDocument(element)).toBean();
-						session.replicate(entity, ReplicationMode.EXCEPTION);
+					if (fullEntityNames.contains(entityName)) {
+						logger.info("Replacing table '{}'...", entityName);
+						session.createQuery("delete from " + entityName).executeUpdate();
+					} else {
+						List<Long> ids = new ArrayList<>(changes.getUpdatedIds(entityName));
+						ids.addAll(changes.getDeletedIds(entityName));
+						logger.info("Deleting {} changed rows of table '{}'...", ids.size(), entityName);
+						for (List<Long> partition: Lists.partition(ids, BACKUP_BATCH_SIZE)) {
+							session.createQuery("delete from " + entityName + " where id in (:ids)")
+									.setParameterList("ids", partition)
+									.executeUpdate();
+						}
 					}
-					session.flush();
-					session.clear();
 					transaction.commit();
 				} catch (Exception e) {
 					transaction.rollback();
 					throw ExceptionUtils.unchecked(e);
 				}
 			}
-		}	
+		} finally {
+			session.close();
+		}
+		
+		importDataFiles(dataDir);
 	}
 	
-	protected void validateData(Metadata metadata, File dataDir) {
+	private void importDataFiles(File dataDir) {
+		int batchSize = properties.getJdbcBatchSize(BACKUP_BATCH_SIZE);
 		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
 		Collections.reverse(entityTypes);
-		for (Class<?> entityType: entityTypes) {
-			File[] dataFiles = dataDir.listFiles(new FilenameFilter() {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			session.setJdbcBatchSize(batchSize);
+			long time = System.currentTimeMillis();
+			long count = 0;
+			for (Class<?> entityType: entityTypes) {
+				for (File file: getDataFiles(dataDir, entityType)) 
+					count += importEntities(session, executor, file, batchSize);
+			}
+			time = System.currentTimeMillis() - time;
+			logger.info("Imported {} rows in {} ms ({} rows/sec)", count, time, count*1000/Math.max(time, 1));
+		} finally {
+			session.close();
+			executor.shutdownNow();
+		}
+	}
+	
+	private long importEntities(StatelessSession session, ExecutorService executor, File file, int batchSize) {
+		logger.info("Importing from data file '" + file.getName() + "'...");
+		long time = System.currentTimeMillis();
+		long count = 0;
+		
+		// Keep conversion of next batch running while current batch is being inserted
+		Queue<Future<List<AbstractEntity>>> pendingChunks = new ArrayDeque<>();
+		try (DataFileReader reader = new DataFileReader(file)) {
+			List<Element> chunk = new ArrayList<>();
+			Element element;
+			while ((element = reader.next()) != null) {
+				chunk.add(element);
+				if (chunk.size() == CONVERSION_CHUNK_SIZE) {
+					pendingChunks.add(convertEntities(executor, chunk));
+					chunk = new ArrayList<>();
+					if (pendingChunks.size()*CONVERSION_CHUNK_SIZE >= 2*batchSize)
+						count += insertEntities(session, pendingChunks, batchSize);
+				}
+			}
+			if (!chunk.isEmpty())
+				pendingChunks.add(convertEntities(executor, chunk));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		while (!pendingChunks.isEmpty())
+			count += insertEntities(session, pendingChunks, batchSize);
+		
+		time = System.currentTimeMillis() - time;
+		logger.info("Imported {} rows from data file '{}' in {} ms ({} rows/sec)", 
+				count, file.getName(), time, count*1000/Math.max(time, 1));
+		return count;
+	}
+	
+	private Future<List<AbstractEntity>> convertEntities(ExecutorService executor, List<Element> elements) {
+		return executor.submit(new Callable<List<AbstractEntity>>() {
 
-				@Override
-				public boolean accept(File dir, String name) {
-					return name.startsWith(entityType.getSimpleName() + "s.xml");
+			@Override
+			public List<AbstractEntity> call() throws Exception {
+				return toEntities(elements);
+			}
+			
+		});
+	}
+	
+	/*
+	 * Session is required here as many-to-one fields are resolved via Dao.load
+	 */
+	@Sessional
+	protected List<AbstractEntity> toEntities(List<Element> elements) {
+		List<AbstractEntity> entities = new ArrayList<>();
+		for (Element element: elements) 
+			entities.add((AbstractEntity) new VersionedDocument(DocumentHelper.createDocument(element)).toBean());
+		return entities;
+	}
+	
+	private int insertEntities(StatelessSession session, Queue<Future<List<AbstractEntity>>> pendingChunks, int batchSize) {
+		Transaction transaction = session.beginTransaction();
+		try {
+			int count = 0;
+			while (count < batchSize && !pendingChunks.isEmpty()) {
+				for (AbstractEntity entity: pendingChunks.remove().get()) {
+					session.insert(entity);
+					count++;
 				}
-				
-			});
-			for (File file: dataFiles) {
-				try {
-					logger.info("Validating data file '" + file.getName() + "'...");
-					VersionedDocument dom = VersionedDocument.fromFile(file);
-					
-					for (Element element: dom.getRootElement().elements()) {
-						element.detach();
+			}
+			transaction.commit();
+			return count;
+		} catch (Exception e) {
+			transaction.rollback();
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+	
+	private File[] getDataFiles(File dataDir, Class<?> entityType) {
+		return dataDir.listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(entityType.getSimpleName() + "s.xml");
+			}
+			
+		});
+	}
+	
+	protected void validateData(Metadata metadata, File dataDir) {
+		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
+		Collections.reverse(entityTypes);
+		for (Class<?> entityType: entityTypes) {
+			for (File file: getDataFiles(dataDir, entityType)) {
+				logger.info("Validating data file '" + file.getName() + "'...");
+				try (DataFileReader reader = new DataFileReader(file)) {
+					Element element;
+					while ((element = reader.next()) != null) {
 						AbstractEntity entity = (AbstractEntity) new VersionedDocument(DocumentHelper.createDocument(element)).toBean();
 						validator.validate(entity);
 					}
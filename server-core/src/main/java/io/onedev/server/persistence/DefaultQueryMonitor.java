@@ -0,0 +1,245 @@
+package io.onedev.server.persistence;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.CallbackException;
+import org.hibernate.SessionEventListener;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
+
+@Singleton
+public class DefaultQueryMonitor implements QueryMonitor, PersistListener, MetricSource {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultQueryMonitor.class);
+
+	private static final String UNNAMED_OPERATION = "Unnamed";
+
+	private static final long SLOW_THRESHOLD = 3000;
+
+	private static final int N_PLUS_ONE_THRESHOLD = 50;
+
+	private static final int MAX_QUERIES = 500;
+
+	private static final int TOP_QUERIES = 5;
+
+	private final ThreadLocal<UnitOfWork> unitOfWorkHolder = new ThreadLocal<>();
+
+	private final Map<String, OperationStatistics> statistics = new ConcurrentHashMap<>();
+
+	private final Set<String> reportedNPlusOnes = ConcurrentHashMap.newKeySet();
+
+	@Override
+	public SessionEventListener begin() {
+		UnitOfWork unitOfWork = new UnitOfWork();
+		unitOfWorkHolder.set(unitOfWork);
+		return unitOfWork;
+	}
+
+	@Override
+	public void setOperation(String operation) {
+		UnitOfWork unitOfWork = unitOfWorkHolder.get();
+		if (unitOfWork != null)
+			unitOfWork.operation = operation;
+	}
+
+	@Nullable
+	@Override
+	public String getOperation() {
+		UnitOfWork unitOfWork = unitOfWorkHolder.get();
+		if (unitOfWork != null)
+			return unitOfWork.operation;
+		else
+			return null;
+	}
+
+	@Override
+	public Collection<OperationStatistics> getStatistics() {
+		return new ArrayList<>(statistics.values());
+	}
+
+	@Override
+	public void collect(MetricCollector collector) {
+		for (OperationStatistics each: statistics.values()) {
+			String operation = each.getOperation();
+			long[] statementBounds = each.getStatementBounds();
+			double[] bounds = new double[statementBounds.length];
+			for (int i=0; i<bounds.length; i++)
+				bounds[i] = statementBounds[i];
+			collector.histogram("onedev_operation_statements", "Number of SQL statements per unit of work", 
+					bounds, each.getStatementHistogram(), each.getStatements(), "operation", operation);
+			
+			long[] durationBounds = each.getDurationBounds();
+			bounds = new double[durationBounds.length];
+			for (int i=0; i<bounds.length; i++)
+				bounds[i] = durationBounds[i] / 1000.0;
+			collector.histogram("onedev_operation_duration_seconds", "Duration of unit of work", 
+					bounds, each.getDurationHistogram(), each.getDuration() / 1000.0, "operation", operation);
+			
+			collector.counter("onedev_operation_jdbc_seconds_total", "JDBC time of units of work", 
+					each.getJdbcTime() / 1000.0, "operation", operation);
+			collector.counter("onedev_operation_entity_loads_total", "Number of entities loaded by units of work", 
+					each.getEntityLoads(), "operation", operation);
+		}
+	}
+	
+	private void end(UnitOfWork unitOfWork) {
+		if (unitOfWorkHolder.get() == unitOfWork)
+			unitOfWorkHolder.remove();
+
+		String operation = unitOfWork.operation;
+		if (operation == null)
+			operation = UNNAMED_OPERATION;
+		long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - unitOfWork.startTime);
+		long jdbcTime = TimeUnit.NANOSECONDS.toMillis(unitOfWork.jdbcTime);
+
+		statistics.computeIfAbsent(operation, OperationStatistics::new)
+				.record(unitOfWork.statements, unitOfWork.entityLoads, jdbcTime, duration);
+
+		for (Map.Entry<String, QueryStatistics> entry: unitOfWork.queries.entrySet()) {
+			int count = entry.getValue().count;
+			if (count >= N_PLUS_ONE_THRESHOLD && reportedNPlusOnes.add(operation + ":" + entry.getKey())) {
+				logger.warn("Possible N+1 queries (operation: {}, executions: {}, statement: {})",
+						operation, count, entry.getKey());
+			}
+		}
+
+		if (duration >= SLOW_THRESHOLD && unitOfWork.statements != 0) {
+			List<Map.Entry<String, QueryStatistics>> queries = new ArrayList<>(unitOfWork.queries.entrySet());
+			queries.sort(Comparator.comparingLong(it -> -it.getValue().time));
+			StringBuilder builder = new StringBuilder();
+			for (Map.Entry<String, QueryStatistics> entry: queries.subList(0, Math.min(TOP_QUERIES, queries.size()))) {
+				builder.append(String.format("\n    %d ms, %d executions: %s",
+						TimeUnit.NANOSECONDS.toMillis(entry.getValue().time), entry.getValue().count, entry.getKey()));
+			}
+			logger.warn("Slow operation (operation: {}, duration: {} ms, statements: {}, jdbc time: {} ms, entity loads: {}), top queries:{}",
+					operation, duration, unitOfWork.statements, jdbcTime, unitOfWork.entityLoads, builder);
+		}
+	}
+
+	@Override
+	public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types)
+			throws CallbackException {
+		UnitOfWork unitOfWork = unitOfWorkHolder.get();
+		if (unitOfWork != null)
+			unitOfWork.entityLoads++;
+		return false;
+	}
+
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+			String[] propertyNames, Type[] types) throws CallbackException {
+		return false;
+	}
+
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types)
+			throws CallbackException {
+		return false;
+	}
+
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types)
+			throws CallbackException {
+	}
+
+	@Override
+	public String onPrepareStatement(String sql) {
+		UnitOfWork unitOfWork = unitOfWorkHolder.get();
+		if (unitOfWork != null) {
+			unitOfWork.statements++;
+			QueryStatistics query = unitOfWork.queries.get(sql);
+			if (query == null && unitOfWork.queries.size() < MAX_QUERIES) {
+				query = new QueryStatistics();
+				unitOfWork.queries.put(sql, query);
+			}
+			if (query != null)
+				query.count++;
+			unitOfWork.currentQuery = query;
+		}
+		return sql;
+	}
+
+	private static class QueryStatistics {
+
+		int count;
+
+		long time;
+
+	}
+
+	/*
+	 * Statements are always prepared right before executed, so JDBC time of an execution
+	 * is accounted to the statement prepared last
+	 */
+	private class UnitOfWork extends BaseSessionEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		final long startTime = System.nanoTime();
+
+		final Map<String, QueryStatistics> queries = new HashMap<>();
+
+		String operation;
+
+		int statements;
+
+		int entityLoads;
+
+		long jdbcTime;
+
+		QueryStatistics currentQuery;
+
+		long executionStartTime;
+
+		@Override
+		public void jdbcExecuteStatementStart() {
+			executionStartTime = System.nanoTime();
+		}
+
+		@Override
+		public void jdbcExecuteStatementEnd() {
+			executionEnd();
+		}
+
+		@Override
+		public void jdbcExecuteBatchStart() {
+			executionStartTime = System.nanoTime();
+		}
+
+		@Override
+		public void jdbcExecuteBatchEnd() {
+			executionEnd();
+		}
+
+		private void executionEnd() {
+			long elapsed = System.nanoTime() - executionStartTime;
+			jdbcTime += elapsed;
+			if (currentQuery != null)
+				currentQuery.time += elapsed;
+		}
+
+		@Override
+		public void end() {
+			DefaultQueryMonitor.this.end(this);
+		}
+
+	}
+
+}
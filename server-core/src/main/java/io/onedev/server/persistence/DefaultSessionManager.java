@@ -25,6 +25,8 @@ public class DefaultSessionManager implements SessionManager {
 	
 	private final ExecutorService executorService;
 	
+	private final QueryMonitor queryMonitor;
+	
 	private final ThreadLocal<ObjectReference<Session>> sessionReferenceHolder = new ThreadLocal<ObjectReference<Session>>() {
 
 		@Override
@@ -33,7 +35,9 @@ public class DefaultSessionManager implements SessionManager {
 
 				@Override
 				protected Session openObject() {
-					Session session = persistManagerProvider.get().getSessionFactory().openSession();
+					Session session = persistManagerProvider.get().getSessionFactory().withOptions()
+							.eventListeners(queryMonitor.begin())
+							.openSession();
 					// Session is supposed to be able to write only in transactional methods
 					session.setHibernateFlushMode(FlushMode.MANUAL);
 					
@@ -51,9 +55,11 @@ public class DefaultSessionManager implements SessionManager {
 	};
 	
 	@Inject
-	public DefaultSessionManager(Provider<PersistManager> persistManagerProvider, ExecutorService executorService) {
+	public DefaultSessionManager(Provider<PersistManager> persistManagerProvider, ExecutorService executorService, 
+			QueryMonitor queryMonitor) {
 		this.persistManagerProvider = persistManagerProvider;
 		this.executorService = executorService;
+		this.queryMonitor = queryMonitor;
 	}
 
 	@Override
@@ -0,0 +1,69 @@
+package io.onedev.server.persistence;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entities changed since last backup. Entities are identified by simple name of entity
+ * class and entity id. Tables changed by bulk update or delete statements can not be
+ * tracked per entity, and are recorded as a whole.
+ */
+public class EntityChanges {
+
+	private final Map<String, Set<Long>> updatedIds = new HashMap<>();
+
+	private final Map<String, Set<Long>> deletedIds = new HashMap<>();
+
+	private final Set<String> changedTables = new HashSet<>();
+
+	public void update(String entityName, Long entityId) {
+		getIds(deletedIds, entityName).remove(entityId);
+		getIds(updatedIds, entityName).add(entityId);
+	}
+
+	public void delete(String entityName, Long entityId) {
+		getIds(updatedIds, entityName).remove(entityId);
+		getIds(deletedIds, entityName).add(entityId);
+	}
+
+	public void changeTable(String tableName) {
+		changedTables.add(tableName.toLowerCase());
+	}
+
+	private Set<Long> getIds(Map<String, Set<Long>> ids, String entityName) {
+		Set<Long> idsOfEntity = ids.get(entityName);
+		if (idsOfEntity == null) {
+			idsOfEntity = new HashSet<>();
+			ids.put(entityName, idsOfEntity);
+		}
+		return idsOfEntity;
+	}
+
+	public Collection<Long> getUpdatedIds(String entityName) {
+		return getIds(updatedIds, entityName);
+	}
+
+	public Collection<Long> getDeletedIds(String entityName) {
+		return getIds(deletedIds, entityName);
+	}
+
+	/**
+	 * @return
+	 * 			lower-cased names of tables changed by bulk statements
+	 */
+	public Set<String> getChangedTables() {
+		return changedTables;
+	}
+
+	public Map<String, Set<Long>> getUpdatedIds() {
+		return updatedIds;
+	}
+
+	public Map<String, Set<Long>> getDeletedIds() {
+		return deletedIds;
+	}
+
+}
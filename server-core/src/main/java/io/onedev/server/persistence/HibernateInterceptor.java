@@ -65,4 +65,11 @@ public class HibernateInterceptor extends EmptyInterceptor {
 			listener.onDelete(entity, id, state, propertyNames, types);
 	}
 
+	@Override
+	public String onPrepareStatement(String sql) {
+		for (PersistListener listener: listeners)
+			sql = listener.onPrepareStatement(sql);
+		return sql;
+	}
+
 }
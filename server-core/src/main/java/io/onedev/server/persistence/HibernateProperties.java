@@ -34,4 +34,12 @@ public class HibernateProperties extends Properties {
 		return getProperty(Environment.PASS);
 	}
 	
+	public int getJdbcBatchSize(int defaultValue) {
+		String jdbcBatchSize = getProperty(Environment.STATEMENT_BATCH_SIZE);
+		if (jdbcBatchSize != null)
+			return Integer.parseInt(jdbcBatchSize.trim());
+		else
+			return defaultValue;
+	}
+	
 }
@@ -0,0 +1,58 @@
+package io.onedev.server.persistence;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
+
+/**
+ * Report Hibernate statistics such as second level cache hits and misses. Nothing is 
+ * reported unless statistics are enabled via property <tt>hibernate.generate_statistics</tt> 
+ * in Hibernate properties
+ */
+@Singleton
+public class HibernateStatisticsSource implements MetricSource {
+
+	private final Provider<PersistManager> persistManagerProvider;
+
+	@Inject
+	public HibernateStatisticsSource(Provider<PersistManager> persistManagerProvider) {
+		this.persistManagerProvider = persistManagerProvider;
+	}
+
+	@Override
+	public void collect(MetricCollector collector) {
+		SessionFactory sessionFactory = persistManagerProvider.get().getSessionFactory();
+		if (sessionFactory != null && sessionFactory.getStatistics().isStatisticsEnabled()) {
+			Statistics statistics = sessionFactory.getStatistics();
+			collector.counter("onedev_hibernate_sessions_opened_total", "Number of opened Hibernate sessions",
+					statistics.getSessionOpenCount());
+			collector.counter("onedev_hibernate_statements_prepared_total", "Number of prepared SQL statements",
+					statistics.getPrepareStatementCount());
+			collector.counter("onedev_hibernate_entity_loads_total", "Number of loaded entities",
+					statistics.getEntityLoadCount());
+			collector.counter("onedev_hibernate_query_cache_hits_total", "Number of query cache hits",
+					statistics.getQueryCacheHitCount());
+			collector.counter("onedev_hibernate_query_cache_misses_total", "Number of query cache misses",
+					statistics.getQueryCacheMissCount());
+			for (String regionName: statistics.getSecondLevelCacheRegionNames()) {
+				CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(regionName);
+				if (regionStatistics != null) {
+					collector.counter("onedev_hibernate_cache_hits_total", "Number of second level cache hits",
+							regionStatistics.getHitCount(), "region", regionName);
+					collector.counter("onedev_hibernate_cache_misses_total", "Number of second level cache misses",
+							regionStatistics.getMissCount(), "region", regionName);
+					collector.counter("onedev_hibernate_cache_puts_total", "Number of second level cache puts",
+							regionStatistics.getPutCount(), "region", regionName);
+				}
+			}
+		}
+	}
+
+}
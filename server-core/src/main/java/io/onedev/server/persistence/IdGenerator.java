@@ -5,6 +5,7 @@ import java.util.Properties;
 
 import org.hibernate.HibernateException;
 import org.hibernate.MappingException;
+import org.hibernate.StatelessSession;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.id.Configurable;
 import org.hibernate.id.IdentifierGenerator;
@@ -12,6 +13,7 @@ import org.hibernate.service.ServiceRegistry;
 import org.hibernate.type.Type;
 
 import io.onedev.commons.launcher.loader.AppLoader;
+import io.onedev.server.model.AbstractEntity;
 
 public class IdGenerator implements IdentifierGenerator, Configurable {
 
@@ -21,7 +23,12 @@ public class IdGenerator implements IdentifierGenerator, Configurable {
 
 	@Override
 	public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
-		return AppLoader.getInstance(IdManager.class).nextId(object.getClass());
+		// Stateless session is only used to import data, and id of imported entity should be kept
+		Long id = ((AbstractEntity)object).getId();
+		if (session instanceof StatelessSession && id != null)
+			return id;
+		else
+			return AppLoader.getInstance(IdManager.class).nextId(object.getClass());
 	}
 
 }
\ No newline at end of file
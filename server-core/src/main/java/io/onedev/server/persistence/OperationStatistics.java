@@ -0,0 +1,122 @@
+package io.onedev.server.persistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated query statistics of units of work of an operation. Histograms hold count
+ * of units of work falling into each bucket, with an extra last bucket for values
+ * exceeding the largest bound.
+ */
+public class OperationStatistics {
+
+	private static final long[] STATEMENT_BOUNDS = new long[] {0, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+
+	private static final long[] DURATION_BOUNDS = new long[] {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+	private final String operation;
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder statements = new LongAdder();
+
+	private final LongAdder entityLoads = new LongAdder();
+
+	private final LongAdder jdbcTime = new LongAdder();
+
+	private final LongAdder duration = new LongAdder();
+
+	private final AtomicLong maxDuration = new AtomicLong();
+
+	private final AtomicLongArray statementHistogram = new AtomicLongArray(STATEMENT_BOUNDS.length+1);
+
+	private final AtomicLongArray durationHistogram = new AtomicLongArray(DURATION_BOUNDS.length+1);
+
+	public OperationStatistics(String operation) {
+		this.operation = operation;
+	}
+
+	void record(int statements, int entityLoads, long jdbcTime, long duration) {
+		count.increment();
+		this.statements.add(statements);
+		this.entityLoads.add(entityLoads);
+		this.jdbcTime.add(jdbcTime);
+		this.duration.add(duration);
+		maxDuration.accumulateAndGet(duration, Math::max);
+		statementHistogram.incrementAndGet(getBucket(STATEMENT_BOUNDS, statements));
+		durationHistogram.incrementAndGet(getBucket(DURATION_BOUNDS, duration));
+	}
+
+	private int getBucket(long[] bounds, long value) {
+		for (int i=0; i<bounds.length; i++) {
+			if (value <= bounds[i])
+				return i;
+		}
+		return bounds.length;
+	}
+
+	private long[] toArray(AtomicLongArray histogram) {
+		long[] counts = new long[histogram.length()];
+		for (int i=0; i<counts.length; i++)
+			counts[i] = histogram.get(i);
+		return counts;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getStatements() {
+		return statements.sum();
+	}
+
+	public long getEntityLoads() {
+		return entityLoads.sum();
+	}
+
+	/**
+	 * @return
+	 * 			total JDBC time in milliseconds
+	 */
+	public long getJdbcTime() {
+		return jdbcTime.sum();
+	}
+
+	/**
+	 * @return
+	 * 			total duration in milliseconds
+	 */
+	public long getDuration() {
+		return duration.sum();
+	}
+
+	public long getMaxDuration() {
+		return maxDuration.get();
+	}
+
+	public long[] getStatementBounds() {
+		return STATEMENT_BOUNDS.clone();
+	}
+
+	public long[] getStatementHistogram() {
+		return toArray(statementHistogram);
+	}
+
+	/**
+	 * @return
+	 * 			upper bounds of duration buckets in milliseconds
+	 */
+	public long[] getDurationBounds() {
+		return DURATION_BOUNDS.clone();
+	}
+
+	public long[] getDurationHistogram() {
+		return toArray(durationHistogram);
+	}
+
+}
@@ -19,4 +19,6 @@ public interface PersistListener {
 	void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames,
 			Type[] types) throws CallbackException;
 	
+	String onPrepareStatement(String sql);
+	
 }
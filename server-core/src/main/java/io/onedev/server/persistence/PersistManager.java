@@ -1,6 +1,7 @@
 package io.onedev.server.persistence;
 
 import java.io.File;
+import java.util.zip.ZipOutputStream;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.Metadata;
@@ -17,6 +18,21 @@ public interface PersistManager {
 
 	void exportData(File dataDir);
 	
+	/**
+	 * Export data into specified zip stream directly without using intermediate files. 
+	 * The stream will be finished but not closed
+	 */
+	void exportData(ZipOutputStream zos, int batchSize);
+	
+	void exportData(ZipOutputStream zos);
+	
+	/**
+	 * Export specified entity changes into specified zip stream as an incremental backup, 
+	 * which can be replayed on top of a full backup when restoring database. The stream 
+	 * will be finished but not closed
+	 */
+	void exportChanges(ZipOutputStream zos, EntityChanges changes);
+	
 	// This method should only be called by a bootstrap action. That is, when the 
 	// server is stopped. So it does not need an exclusive database lock.
 	void importData(Metadata metadata, File dataDir);
@@ -0,0 +1,44 @@
+package io.onedev.server.persistence;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Monitors SQL statements issued in units of work. A unit of work starts when outermost
+ * session of current thread is opened and ends when that session is closed, which
+ * normally corresponds to a web request, a RESTful call or a background task. Number
+ * of statements, JDBC time and entity loads are collected for each unit of work, and
+ * aggregated per operation.
+ */
+public interface QueryMonitor {
+
+	/**
+	 * Start monitoring a unit of work in current thread.
+	 *
+	 * @return
+	 * 			listener to be registered to the session of the unit of work. Unit of work
+	 * 			ends when the session is closed
+	 */
+	SessionEventListener begin();
+
+	/**
+	 * Name operation of current unit of work, for instance page class of a web request,
+	 * or resource method of a RESTful call. Statistics are aggregated per operation.
+	 * This does nothing if there is no unit of work in current thread
+	 */
+	void setOperation(String operation);
+
+	/**
+	 * @return
+	 * 			operation of current unit of work, or <tt>null</tt> if there is no unit
+	 * 			of work in current thread or it is not named yet
+	 */
+	@Nullable
+	String getOperation();
+
+	Collection<OperationStatistics> getStatistics();
+
+}
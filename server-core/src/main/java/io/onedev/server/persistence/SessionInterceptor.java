@@ -13,12 +13,19 @@ public class SessionInterceptor implements MethodInterceptor {
 
 	@Inject
 	private SessionManager sessionManager;
+	
+	@Inject
+	private QueryMonitor queryMonitor;
 
 	public Object invoke(MethodInvocation mi) throws Throwable {
 		return sessionManager.call(new Callable<Object>() {
 
 			@Override
 			public Object call() throws Exception {
+				if (queryMonitor.getOperation() == null) {
+					queryMonitor.setOperation(mi.getMethod().getDeclaringClass().getSimpleName() 
+							+ "." + mi.getMethod().getName());
+				}
 				try {
 					return mi.proceed();
 				} catch (Throwable e) {
@@ -1,19 +1,30 @@
 package io.onedev.server.persistence.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.hibernate.Cache;
 import org.hibernate.Session;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
 import org.hibernate.query.Query;
 
+import com.google.common.collect.Lists;
+
 import io.onedev.server.model.AbstractEntity;
 import io.onedev.server.model.Project;
 import io.onedev.server.util.ReflectionUtils;
 
 public abstract class AbstractEntityManager<T extends AbstractEntity> implements EntityManager<T> {
 
+	private static final int BULK_LOAD_SIZE = 1000;
+	
 	private final Class<T> entityClass;
 	
 	protected final Dao dao;
@@ -130,4 +141,35 @@ public abstract class AbstractEntityManager<T extends AbstractEntity> implements
 		return dao.getSession();
 	}
 
+	/**
+	 * Load specified entities with a fixed number of queries if they are uninitialized 
+	 * proxies and are not available in second level cache. Proxies will then be 
+	 * initialized from current session without querying database one by one
+	 * 
+	 * @param entityClass
+	 * 			class of entities to load
+	 * @param entities
+	 * 			entities to load, may contain <tt>null</tt> and duplicate elements
+	 */
+	protected <E extends AbstractEntity> void loadInBulk(Class<E> entityClass, Collection<E> entities) {
+		Cache cache = getSession().getSessionFactory().getCache();
+		Set<Long> ids = new HashSet<>();
+		for (E entity: entities) {
+			if (entity instanceof HibernateProxy) {
+				LazyInitializer initializer = ((HibernateProxy) entity).getHibernateLazyInitializer();
+				if (initializer.isUninitialized()) {
+					// do not call getId() as it initializes proxy with field access  
+					Long id = (Long) initializer.getIdentifier();
+					if (!cache.containsEntity(entityClass, id))
+						ids.add(id);
+				}
+			}
+		}
+		for (List<Long> partition: Lists.partition(new ArrayList<>(ids), BULK_LOAD_SIZE)) {
+			getSession().createQuery("from " + entityClass.getSimpleName() + " where id in (:ids)")
+					.setParameterList("ids", partition)
+					.list();
+		}
+	}
+
 }
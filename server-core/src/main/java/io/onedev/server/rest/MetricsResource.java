@@ -0,0 +1,40 @@
+package io.onedev.server.rest;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.shiro.authz.UnauthorizedException;
+
+import io.onedev.server.util.SecurityUtils;
+import io.onedev.server.util.metrics.MetricRegistry;
+
+/**
+ * Expose server metrics in Prometheus text format. Scrapers should authenticate as an 
+ * administrator via http basic authentication
+ */
+@Path("/metrics")
+@Consumes(MediaType.WILDCARD)
+@Produces("text/plain; version=0.0.4; charset=utf-8")
+@Singleton
+public class MetricsResource {
+
+	private final MetricRegistry metricRegistry;
+	
+	@Inject
+	public MetricsResource(MetricRegistry metricRegistry) {
+		this.metricRegistry = metricRegistry;
+	}
+	
+	@GET
+	public String export() {
+		if (!SecurityUtils.isAdministrator())
+			throw new UnauthorizedException("Unauthorized access to server metrics");
+		return metricRegistry.export();
+	}
+	
+}
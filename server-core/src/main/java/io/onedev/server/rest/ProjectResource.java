@@ -1,5 +1,6 @@
 package io.onedev.server.rest;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 import javax.inject.Inject;
@@ -22,6 +23,7 @@ import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.dao.EntityCriteria;
 import io.onedev.server.rest.jersey.ValidQueryParams;
+import io.onedev.server.security.permission.AccessProject;
 import io.onedev.server.util.SecurityUtils;
 
 @Path("/projects")
@@ -45,6 +47,13 @@ public class ProjectResource {
 		if (projectName != null)
 			criteria.add(Restrictions.eq("name", projectName));
 		
+		Collection<Long> projectIds = SecurityUtils.getPermittedProjectIds(new AccessProject());
+		if (projectIds != null) {
+			if (projectIds.isEmpty())
+				return Response.ok(new ArrayList<>(), RestConstants.JSON_UTF8).build();
+			criteria.add(Restrictions.in(Project.PROP_ID, projectIds));
+		}
+		
     	if (offset == null)
     		offset = 0;
     	
@@ -52,11 +61,6 @@ public class ProjectResource {
     		count = RestConstants.PAGE_SIZE;
 
     	Collection<Project> projects = projectManager.query(criteria, offset, count);
-		for (Project project: projects) {
-			if (!SecurityUtils.canAccess(project))
-				throw new UnauthorizedException("Unable to access project '" + project.getName() + "'");
-		}
-		
 		return Response.ok(projects, RestConstants.JSON_UTF8).build();
     }
     
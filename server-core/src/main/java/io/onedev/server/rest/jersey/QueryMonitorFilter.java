@@ -0,0 +1,37 @@
+package io.onedev.server.rest.jersey;
+
+import java.lang.reflect.Method;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import io.onedev.server.persistence.QueryMonitor;
+
+/**
+ * Name query monitor operation of RESTful calls after the resource method
+ */
+@Provider
+public class QueryMonitorFilter implements ContainerRequestFilter {
+
+	private final QueryMonitor queryMonitor;
+	
+	@Context
+	private ResourceInfo resourceInfo;
+	
+	@Inject
+	public QueryMonitorFilter(QueryMonitor queryMonitor) {
+		this.queryMonitor = queryMonitor;
+	}
+	
+	@Override
+	public void filter(ContainerRequestContext requestContext) {
+		Method method = resourceInfo.getResourceMethod();
+		if (method != null) 
+			queryMonitor.setOperation(resourceInfo.getResourceClass().getSimpleName() + "." + method.getName());
+	}
+
+}
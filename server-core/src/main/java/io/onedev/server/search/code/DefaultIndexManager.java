@@ -24,6 +24,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -84,11 +85,13 @@ import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ContentDetector;
 import io.onedev.server.util.IndexResult;
 import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
 import io.onedev.server.util.work.BatchWorkManager;
 import io.onedev.server.util.work.BatchWorker;
 
 @Singleton
-public class DefaultIndexManager implements IndexManager {
+public class DefaultIndexManager implements IndexManager, MetricSource {
 	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultIndexManager.class);
 
@@ -108,6 +111,14 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private final ListenerRegistry listenerRegistry;
 	
+	private final LongAdder indexedCommits = new LongAdder();
+	
+	private final LongAdder checkedBlobs = new LongAdder();
+	
+	private final LongAdder indexedBlobs = new LongAdder();
+	
+	private final LongAdder indexingTime = new LongAdder();
+	
 	@Inject
 	public DefaultIndexManager(ListenerRegistry listenerRegistry, StorageManager storageManager, 
 			BatchWorkManager batchWorkManager, SessionManager sessionManager, ProjectManager projectManager) {
@@ -309,7 +320,12 @@ public class DefaultIndexManager implements IndexManager {
 
 						Project project = projectManager.load(projectId);
 						ObjectId commitId = ((IndexWork) works.iterator().next()).getCommitId();
-						doIndex(project, commitId);
+						long time = System.currentTimeMillis();
+						IndexResult indexResult = doIndex(project, commitId);
+						indexedCommits.increment();
+						checkedBlobs.add(indexResult.getChecked());
+						indexedBlobs.add(indexResult.getIndexed());
+						indexingTime.add(System.currentTimeMillis() - time);
 						
 						listenerRegistry.post(new CommitIndexed(project, commitId.copy()));
 					}
@@ -356,6 +372,21 @@ public class DefaultIndexManager implements IndexManager {
 		}
 	}
 
+	/*
+	 * Pending indexing works are reported by batch work manager with worker type "indexBlob"
+	 */
+	@Override
+	public void collect(MetricCollector collector) {
+		collector.counter("onedev_code_index_commits_total", "Number of commits processed by code indexer", 
+				indexedCommits.sum());
+		collector.counter("onedev_code_index_checked_blobs_total", "Number of blobs checked by code indexer", 
+				checkedBlobs.sum());
+		collector.counter("onedev_code_index_indexed_blobs_total", "Number of blobs indexed by code indexer", 
+				indexedBlobs.sum());
+		collector.counter("onedev_code_index_seconds_total", "Time spent on code indexing", 
+				indexingTime.sum() / 1000.0);
+	}
+	
 	@Override
 	public String getIndexVersion() {
 		return DigestUtils.md5Hex(DATA_VERSION + ";" + SymbolExtractorRegistry.getVersion());
@@ -2,6 +2,7 @@ package io.onedev.server.search.entity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Predicate;
@@ -58,6 +59,12 @@ public class AndEntityCriteria<T extends AbstractEntity> extends EntityCriteria<
 		return builder.and(predicates.toArray(new Predicate[0]));
 	}
 
+	@Override
+	public void collectTexts(Map<String, List<String>> texts) {
+		for (EntityCriteria<T> criteria: criterias)
+			criteria.collectTexts(texts);
+	}
+
 	@Override
 	public String asString() {
 		return new AndCriteria<T>(criterias).asString();
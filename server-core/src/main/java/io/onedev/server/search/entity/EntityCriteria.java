@@ -3,15 +3,19 @@ package io.onedev.server.search.entity;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 
-import edu.emory.mathcs.backport.java.util.Collections;
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.StagedValueManager;
 import io.onedev.server.model.AbstractEntity;
-import io.onedev.server.util.RangeBuilder;
+import io.onedev.server.model.StagedValue;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.criteria.Criteria;
 
 public abstract class EntityCriteria<T extends AbstractEntity> extends Criteria<T> {
@@ -22,22 +26,69 @@ public abstract class EntityCriteria<T extends AbstractEntity> extends Criteria<
 	
 	public abstract Predicate getPredicate(Root<T> root, CriteriaBuilder builder);
 
+	/**
+	 * Collect texts this criteria is looking for, keyed by name of the entity property being 
+	 * matched. Collected texts are used to order entities by relevance. Texts of negated 
+	 * criterias should not be collected
+	 */
+	public void collectTexts(Map<String, List<String>> texts) {
+	}
+	
+	/**
+	 * Narrow down specified text predicate with entity ids looked up from entity text index, 
+	 * so that database does not need to evaluate the predicate against every entity. The 
+	 * original predicate is still applied as index lookup only returns candidates. 
+	 */
+	protected Predicate narrowWithTextIndex(Root<T> root, CriteriaBuilder builder, String property, 
+			String text, Predicate textPredicate) {
+		Collection<Long> ids = OneDev.getInstance(EntityTextManager.class).query(
+				root.getJavaType(), property, text, IN_CLAUSE_LIMIT);
+		if (ids == null)
+			return textPredicate;
+		else if (ids.isEmpty())
+			return builder.disjunction();
+		else
+			return builder.and(root.get("id").in(ids), textPredicate);
+	}
+
+	/**
+	 * Build predicate matching specified values out of a known set of all values. Values 
+	 * are represented as ranges of consecutive values in the set of all values, or as 
+	 * negation of ranges of the complement set if that is cheaper, see {@link ValueRanges}. 
+	 * If the values are too fragmented to be represented this way within {@link #IN_CLAUSE_LIMIT} 
+	 * values, they are staged via {@link StagedValueManager} and matched with a subquery, 
+	 * so that size of generated SQL does not grow with number of values. 
+	 */
 	protected Predicate inManyValues(CriteriaBuilder builder, Path<Long> attribute, Collection<Long> inValues, 
 			Collection<Long> allValues) {
-		List<Long> listOfInValues = new ArrayList<>(inValues);
-		Collections.sort(listOfInValues);
-		List<Long> listOfAllValues = new ArrayList<>(allValues);
-		Collections.sort(listOfAllValues);
-		
+		ValueRanges ranges = new ValueRanges(inValues, allValues);
+		if (ranges.getCost() <= IN_CLAUSE_LIMIT) {
+			Predicate rangesPredicate = getRangesPredicate(builder, attribute, ranges.getRanges());
+			if (ranges.isNegated()) {
+				return builder.and(
+						builder.between(attribute, ranges.getLowerBound(), ranges.getUpperBound()), 
+						builder.not(rangesPredicate));
+			} else {
+				return rangesPredicate;
+			}
+		} else {
+			String stage = OneDev.getInstance(StagedValueManager.class).stage(inValues);
+			Subquery<Long> subquery = builder.createQuery().subquery(Long.class);
+			Root<StagedValue> staged = subquery.from(StagedValue.class);
+			subquery.select(staged.get(StagedValue.PROP_VALUE));
+			subquery.where(builder.equal(staged.get(StagedValue.PROP_STAGE), stage));
+			return attribute.in(subquery);
+		}
+	}
+	
+	private Predicate getRangesPredicate(CriteriaBuilder builder, Path<Long> attribute, List<List<Long>> ranges) {
 		List<Predicate> predicates = new ArrayList<>();
 		List<Long> discreteValues = new ArrayList<>();
-		for (List<Long> range: new RangeBuilder(listOfInValues, listOfAllValues).getRanges()) {
+		for (List<Long> range: ranges) {
 			if (range.size() <= 2) {
 				discreteValues.addAll(range);
 			} else {
-				predicates.add(builder.and(
-						builder.greaterThanOrEqualTo(attribute, range.get(0)), 
-						builder.lessThanOrEqualTo(attribute, range.get(range.size()-1))));
+				predicates.add(builder.between(attribute, range.get(0), range.get(range.size()-1)));
 			}
 		}
 
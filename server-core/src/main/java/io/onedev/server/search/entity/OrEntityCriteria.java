@@ -2,6 +2,7 @@ package io.onedev.server.search.entity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Predicate;
@@ -63,6 +64,12 @@ public class OrEntityCriteria<T extends AbstractEntity> extends EntityCriteria<T
 		return new OrCriteria<T>(criterias).matches(t);
 	}
 
+	@Override
+	public void collectTexts(Map<String, List<String>> texts) {
+		for (EntityCriteria<T> criteria: criterias)
+			criteria.collectTexts(texts);
+	}
+
 	@Override
 	public String asString() {
 		return new OrCriteria<T>(criterias).asString();
@@ -18,15 +18,24 @@ import io.onedev.server.model.support.NamedQuery;
 import io.onedev.server.model.support.QuerySetting;
 
 
+/**
+ * Calculate users watching an entity via watched queries. Each distinct query is parsed once, 
+ * and is evaluated once against the entity if its result does not depend on current user 
+ * (queries such as "submitted by me" throw exception when evaluated without a current user). 
+ * Only queries depending on current user are evaluated per user.
+ */
 public abstract class QueryWatchBuilder<T extends AbstractEntity> {
 	
 	private static final Logger logger = LoggerFactory.getLogger(QueryWatchBuilder.class);
 	
 	private final Map<String, Optional<EntityQuery<T>>> parsedQueries = new HashMap<>();
 	
+	private final Map<String, Optional<Boolean>> userIndependentMatches = new HashMap<>();
+	
 	private final Map<User, Boolean> watches = new HashMap<>();
 
 	public QueryWatchBuilder() {
+		Collection<? extends NamedQuery> namedQueries = null;
 		for (QuerySetting<?> querySetting: getQuerySettings()) {
 			boolean watched = false;
 			for (Map.Entry<String, Boolean> entry: querySetting.getQueryWatchSupport().getUserQueryWatches().entrySet()) {
@@ -38,7 +47,9 @@ public abstract class QueryWatchBuilder<T extends AbstractEntity> {
 			}
 			if (!watched) {
 				for (Map.Entry<String, Boolean> entry: querySetting.getQueryWatchSupport().getQueryWatches().entrySet()) {
-					if (matches(NamedQuery.find(getNamedQueries(), entry.getKey()), querySetting.getUser())) {
+					if (namedQueries == null)
+						namedQueries = getNamedQueries();
+					if (matches(NamedQuery.find(namedQueries, entry.getKey()), querySetting.getUser())) {
 						watches.putIfAbsent(querySetting.getUser(), entry.getValue());
 						watched = true;
 						break;
@@ -50,18 +61,37 @@ public abstract class QueryWatchBuilder<T extends AbstractEntity> {
 	
 	private boolean matches(@Nullable NamedQuery namedQuery, User user) {
 		if (namedQuery != null) {
+			Optional<EntityQuery<T>> entityQuery = parsedQueries.get(namedQuery.getQuery());
+			if (entityQuery == null) {
+				try {
+					entityQuery = Optional.of(parse(namedQuery.getQuery()));
+				} catch (Exception e) {
+					entityQuery = Optional.empty();
+				}
+				parsedQueries.put(namedQuery.getQuery(), entityQuery);
+			}
+			if (!entityQuery.isPresent())
+				return false;
+			
+			Optional<Boolean> userIndependentMatch = userIndependentMatches.get(namedQuery.getQuery());
+			if (userIndependentMatch == null) {
+				User.push(null);
+				try {
+					userIndependentMatch = Optional.of(entityQuery.get().matches(getEntity()));
+				} catch (Exception e) {
+					// query depends on current user, or fails for some reason, evaluate it per user  
+					userIndependentMatch = Optional.empty();
+				} finally {
+					User.pop();
+				}
+				userIndependentMatches.put(namedQuery.getQuery(), userIndependentMatch);
+			}
+			if (userIndependentMatch.isPresent())
+				return userIndependentMatch.get();
+			
 			User.push(user);
 			try {
-				Optional<EntityQuery<T>> entityQuery = parsedQueries.get(namedQuery.getQuery());
-				if (entityQuery == null) {
-					try {
-						entityQuery = Optional.of(parse(namedQuery.getQuery()));
-					} catch (Exception e) {
-						entityQuery = Optional.empty();
-					}
-					parsedQueries.put(namedQuery.getQuery(), entityQuery);
-				}
-				return entityQuery.isPresent() && entityQuery.get().matches(getEntity()); 
+				return entityQuery.get().matches(getEntity()); 
 			} catch (Exception e) {
 				String message;
 				if (getEntity() instanceof Issue) {
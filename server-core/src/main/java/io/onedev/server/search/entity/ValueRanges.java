@@ -0,0 +1,118 @@
+package io.onedev.server.search.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.util.RangeBuilder;
+
+/**
+ * Represents values out of a known set of all values as ranges of consecutive values in 
+ * the set of all values. If the complement set can be represented with fewer ranges, 
+ * ranges of the complement set are used instead and values are matched by negation, 
+ * bounded by the smallest and largest of all values. 
+ */
+class ValueRanges {
+
+	private final List<List<Long>> ranges;
+	
+	private final Long lowerBound;
+	
+	private final Long upperBound;
+	
+	public ValueRanges(Collection<Long> inValues, Collection<Long> allValues) {
+		List<Long> listOfInValues = new ArrayList<>(inValues);
+		Collections.sort(listOfInValues);
+		List<Long> listOfAllValues = new ArrayList<>(allValues);
+		Collections.sort(listOfAllValues);
+		
+		Set<Long> setOfInValues = new HashSet<>(inValues);
+		List<Long> listOfOutValues = new ArrayList<>();
+		for (Long value: listOfAllValues) {
+			if (!setOfInValues.contains(value))
+				listOfOutValues.add(value);
+		}
+		
+		List<List<Long>> inRanges = new RangeBuilder(listOfInValues, listOfAllValues).getRanges();
+		List<List<Long>> outRanges = new RangeBuilder(listOfOutValues, listOfAllValues).getRanges();
+		if (!listOfAllValues.isEmpty() && getCost(outRanges) < getCost(inRanges)) {
+			ranges = outRanges;
+			lowerBound = listOfAllValues.get(0);
+			upperBound = listOfAllValues.get(listOfAllValues.size()-1);
+		} else {
+			ranges = inRanges;
+			lowerBound = null;
+			upperBound = null;
+		}
+	}
+	
+	private static int getCost(List<List<Long>> ranges) {
+		int cost = 0;
+		for (List<Long> range: ranges) {
+			if (range.size() <= 2)
+				cost += range.size();
+			else
+				cost += 2;
+		}
+		return cost;
+	}
+	
+	/**
+	 * Ranges longer than two are represented with their first and last values, and the 
+	 * others with all their values
+	 */
+	public List<List<Long>> getRanges() {
+		return ranges;
+	}
+
+	public boolean isNegated() {
+		return lowerBound != null;
+	}
+	
+	/**
+	 * Values added after all values are collected are neither in nor out, and negated 
+	 * ranges exclude them with the bounds as they normally come after existing values
+	 */
+	@Nullable
+	public Long getLowerBound() {
+		return lowerBound;
+	}
+
+	@Nullable
+	public Long getUpperBound() {
+		return upperBound;
+	}
+	
+	/**
+	 * @return
+	 * 			number of values needed to represent the ranges
+	 */
+	public int getCost() {
+		return getCost(ranges);
+	}
+	
+	/**
+	 * Check whether specified value is matched the same way as the predicate built 
+	 * from these ranges
+	 */
+	public boolean matches(long value) {
+		boolean inRanges = false;
+		for (List<Long> range: ranges) {
+			if (range.size() <= 2 && range.contains(value) 
+					|| range.size() > 2 && value >= range.get(0) && value <= range.get(range.size()-1)) {
+				inRanges = true;
+				break;
+			}
+		}
+		if (isNegated())
+			return value >= lowerBound && value <= upperBound && !inRanges;
+		else
+			return inRanges;
+	}
+	
+}
@@ -1,5 +1,9 @@
 package io.onedev.server.search.entity.issue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
@@ -25,7 +29,12 @@ public class CommentCriteria extends IssueCriteria {
 		Join<?, ?> join = root.join(Issue.PROP_COMMENTS, JoinType.LEFT);
 		Path<String> attribute = join.get(IssueComment.PATH_CONTENT);
 		join.on(builder.like(builder.lower(attribute), "%" + value.toLowerCase() + "%"));
-		return join.isNotNull();
+		return narrowWithTextIndex(root, builder, Issue.PROP_COMMENTS, value, join.isNotNull());
+	}
+
+	@Override
+	public void collectTexts(Map<String, List<String>> texts) {
+		texts.computeIfAbsent(Issue.PROP_COMMENTS, it -> new ArrayList<>()).add(value);
 	}
 
 	@Override
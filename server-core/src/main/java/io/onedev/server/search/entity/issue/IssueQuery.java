@@ -311,7 +311,7 @@ public class IssueQuery extends EntityQuery<Issue> {
 			List<EntitySort> issueSorts = new ArrayList<>();
 			for (OrderContext order: queryContext.order()) {
 				String fieldName = getValue(order.Quoted().getText());
-				if (validate && !Issue.ORDER_FIELDS.containsKey(fieldName)) {
+				if (validate && !Issue.ORDER_FIELDS.containsKey(fieldName) && !isRelevance(fieldName)) {
 					FieldSpec fieldSpec = getGlobalIssueSetting().getFieldSpec(fieldName);
 					if (!(fieldSpec instanceof ChoiceField) && !(fieldSpec instanceof DateField) 
 							&& !(fieldSpec instanceof NumberField)) {
@@ -341,6 +341,15 @@ public class IssueQuery extends EntityQuery<Issue> {
 			return OneDev.getInstance(SettingManager.class).getIssueSetting();
 	}
 	
+	/**
+	 * Relevance is not reserved as field name, and custom field with the same name takes 
+	 * precedence, so that queries ordering by existing custom field named "Relevance" still 
+	 * work as before
+	 */
+	public static boolean isRelevance(String fieldName) {
+		return fieldName.equals(Issue.FIELD_RELEVANCE) && getGlobalIssueSetting().getFieldSpec(fieldName) == null;
+	}
+	
 	private static OneException newOperatorException(String fieldName, int operator) {
 		return new OneException("Field '" + fieldName + "' is not applicable for operator '" + getRuleName(operator) + "'");
 	}
@@ -454,7 +463,7 @@ public class IssueQuery extends EntityQuery<Issue> {
 		if (criteria != null)
 			undefinedFields.addAll(criteria.getUndefinedFields());
 		for (EntitySort sort: sorts) {
-			if (!Issue.QUERY_FIELDS.contains(sort.getField()) 
+			if (!Issue.QUERY_FIELDS.contains(sort.getField()) && !isRelevance(sort.getField())
 					&& getGlobalIssueSetting().getFieldSpec(sort.getField()) == null) {
 				undefinedFields.add(sort.getField());
 			}
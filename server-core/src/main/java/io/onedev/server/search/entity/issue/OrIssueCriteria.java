@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.criteria.CriteriaBuilder;
@@ -36,6 +37,11 @@ public class OrIssueCriteria extends IssueCriteria {
 		return new OrEntityCriteria<Issue>(criterias).matches(issue);
 	}
 
+	@Override
+	public void collectTexts(Map<String, List<String>> texts) {
+		new OrEntityCriteria<Issue>(criterias).collectTexts(texts);
+	}
+
 	@Override
 	public String asString() {
 		return new OrEntityCriteria<Issue>(criterias).asString();
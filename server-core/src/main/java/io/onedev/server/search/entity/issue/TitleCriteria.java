@@ -1,5 +1,9 @@
 package io.onedev.server.search.entity.issue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
@@ -21,7 +25,13 @@ public class TitleCriteria extends IssueCriteria {
 	@Override
 	public Predicate getPredicate(Root<Issue> root, CriteriaBuilder builder) {
 		Expression<String> attribute = root.get(Issue.PROP_TITLE);
-		return builder.like(builder.lower(attribute), "%" + value.toLowerCase().replace('*', '%') + "%");
+		Predicate predicate = builder.like(builder.lower(attribute), "%" + value.toLowerCase().replace('*', '%') + "%");
+		return narrowWithTextIndex(root, builder, Issue.PROP_TITLE, value, predicate);
+	}
+
+	@Override
+	public void collectTexts(Map<String, List<String>> texts) {
+		texts.computeIfAbsent(Issue.PROP_TITLE, it -> new ArrayList<>()).add(value);
 	}
 
 	@Override
@@ -1,5 +1,9 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
@@ -26,7 +30,12 @@ public class CommentCriteria extends EntityCriteria<PullRequest> {
 		Join<?, ?> join = root.join(PullRequest.PROP_COMMENTS, JoinType.LEFT);
 		Path<String> attribute = join.get(PullRequestComment.PROP_CONTENT);
 		join.on(builder.like(builder.lower(attribute), "%" + value.toLowerCase() + "%"));
-		return join.isNotNull();
+		return narrowWithTextIndex(root, builder, PullRequest.PROP_COMMENTS, value, join.isNotNull());
+	}
+
+	@Override
+	public void collectTexts(Map<String, List<String>> texts) {
+		texts.computeIfAbsent(PullRequest.PROP_COMMENTS, it -> new ArrayList<>()).add(value);
 	}
 
 	@Override
@@ -1,5 +1,9 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
@@ -22,7 +26,13 @@ public class DescriptionCriteria extends EntityCriteria<PullRequest> {
 	@Override
 	public Predicate getPredicate(Root<PullRequest> root, CriteriaBuilder builder) {
 		Expression<String> attribute = root.get(PullRequest.PROP_DESCRIPTION);
-		return builder.like(builder.lower(attribute), "%" + value.toLowerCase().replace('*', '%') + "%");
+		Predicate predicate = builder.like(builder.lower(attribute), "%" + value.toLowerCase().replace('*', '%') + "%");
+		return narrowWithTextIndex(root, builder, PullRequest.PROP_DESCRIPTION, value, predicate);
+	}
+
+	@Override
+	public void collectTexts(Map<String, List<String>> texts) {
+		texts.computeIfAbsent(PullRequest.PROP_DESCRIPTION, it -> new ArrayList<>()).add(value);
 	}
 
 	@Override
@@ -237,8 +237,10 @@ public class PullRequestQuery extends EntityQuery<PullRequest> {
 			List<EntitySort> requestSorts = new ArrayList<>();
 			for (OrderContext order: queryContext.order()) {
 				String fieldName = getValue(order.Quoted().getText());
-				if (!PullRequest.ORDER_FIELDS.containsKey(fieldName))
+				if (!PullRequest.ORDER_FIELDS.containsKey(fieldName) 
+						&& !fieldName.equals(PullRequest.FIELD_RELEVANCE)) {
 					throw new OneException("Can not order by field: " + fieldName);
+				}
 				
 				EntitySort requestSort = new EntitySort();
 				requestSort.setField(fieldName);
@@ -0,0 +1,665 @@
+package io.onedev.server.search.entitytext;
+
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaBuilder.SimpleCase;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.IssueComment;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.PullRequestComment;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.search.code.NGramAnalyzer;
+import io.onedev.server.search.code.query.NGramLuceneQuery;
+import io.onedev.server.search.entity.EntityCriteria;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorker;
+
+@Singleton
+public class DefaultEntityTextManager implements EntityTextManager, MetricSource {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultEntityTextManager.class);
+
+	private static final int INDEX_VERSION = 2;
+
+	private static final String VERSION_FILE = "version.txt";
+
+	private static final String FIELD_ID = "id";
+
+	private static final String FIELD_PROJECT_ID = "projectId";
+
+	private static final int BATCH_SIZE = EntityCriteria.IN_CLAUSE_LIMIT;
+
+	private static final int MAX_RANKED = 100;
+
+	private static final int UPDATE_PRIORITY = 50;
+
+	private static final int REBUILD_PRIORITY = 100;
+
+	private static final String WILDCARDS = "[*%_]";
+
+	private final StorageManager storageManager;
+
+	private final SessionManager sessionManager;
+
+	private final TransactionManager transactionManager;
+
+	private final BatchWorkManager batchWorkManager;
+
+	private final Map<Class<?>, Index> indexes = new LinkedHashMap<>();
+
+	@Inject
+	public DefaultEntityTextManager(StorageManager storageManager, SessionManager sessionManager,
+			TransactionManager transactionManager, BatchWorkManager batchWorkManager) {
+		this.storageManager = storageManager;
+		this.sessionManager = sessionManager;
+		this.transactionManager = transactionManager;
+		this.batchWorkManager = batchWorkManager;
+
+		indexes.put(Issue.class, new Index(Issue.class, IssueComment.class, "issue"));
+		indexes.put(PullRequest.class, new Index(PullRequest.class, PullRequestComment.class, "request"));
+	}
+
+	@Nullable
+	static Query buildQuery(String field, String text) {
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		boolean hasClause = false;
+		for (String segment: text.split(WILDCARDS)) {
+			if (segment.length() >= NGRAM_SIZE) {
+				builder.add(new NGramLuceneQuery(field, segment, NGRAM_SIZE), Occur.MUST);
+				hasClause = true;
+			}
+		}
+		if (hasClause)
+			return builder.build();
+		else
+			return null;
+	}
+
+	private List<Long> search(Index index, Query query, int count) {
+		try {
+			IndexSearcher searcher = index.searcherManager.acquire();
+			try {
+				List<Long> ids = new ArrayList<>();
+				TopDocs topDocs = searcher.search(query, count);
+				for (ScoreDoc scoreDoc: topDocs.scoreDocs)
+					ids.add(Long.valueOf(searcher.doc(scoreDoc.doc, Collections.singleton(FIELD_ID)).get(FIELD_ID)));
+				return ids;
+			} finally {
+				index.searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Nullable
+	@Override
+	public Collection<Long> query(Class<? extends AbstractEntity> entityClass, String field, String text, int count) {
+		Index index = indexes.get(entityClass);
+		if (index != null) {
+			Query query = buildQuery(field, text);
+			if (query != null && index.isAvailable()) {
+				// Entities with pending updates may not match the index yet, include them
+				// as candidates to keep the result a superset
+				Set<Long> ids = new HashSet<>(index.pendingIds.keySet());
+				if (ids.size() <= count) {
+					ids.addAll(search(index, query, count+1));
+					if (ids.size() <= count) {
+						index.queries.increment();
+						return ids;
+					}
+				}
+			}
+			index.fallbacks.increment();
+		}
+		return null;
+	}
+
+	@Nullable
+	private Query buildQuery(EntityCriteria<?> criteria) {
+		Map<String, List<String>> texts = new HashMap<>();
+		criteria.collectTexts(texts);
+
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		boolean hasClause = false;
+		for (Map.Entry<String, List<String>> entry: texts.entrySet()) {
+			for (String text: entry.getValue()) {
+				Query query = buildQuery(entry.getKey(), text);
+				if (query != null) {
+					builder.add(query, Occur.SHOULD);
+					hasClause = true;
+				}
+			}
+		}
+		if (hasClause)
+			return builder.build();
+		else
+			return null;
+	}
+	
+	private <T extends AbstractEntity> List<Long> queryIds(Class<T> entityClass, CriteriaBuilder builder, 
+			Function<Root<T>, Predicate[]> predicates, @Nullable Collection<Long> ids, int count) {
+		CriteriaQuery<Long> query = builder.createQuery(Long.class);
+		Root<T> root = query.from(entityClass);
+		List<Predicate> predicateList = new ArrayList<>(Arrays.asList(predicates.apply(root)));
+		if (ids != null)
+			predicateList.add(root.get(FIELD_ID).in(ids));
+		query.select(root.<Long>get(FIELD_ID));
+		query.where(predicateList.toArray(new Predicate[0]));
+		return sessionManager.getSession().createQuery(query).setMaxResults(count).getResultList();
+	}
+	
+	@Nullable
+	@Override
+	public <T extends AbstractEntity> Expression<Integer> getRelevance(Root<T> root, CriteriaBuilder builder,
+			@Nullable EntityCriteria<T> criteria, Function<Root<T>, Predicate[]> predicates) {
+		Class<T> entityClass = root.getModel().getJavaType();
+		Index index = indexes.get(entityClass);
+		if (criteria != null && index != null && index.isAvailable()) {
+			Query textQuery = buildQuery(criteria);
+			if (textQuery != null) {
+				List<Long> ids;
+				List<Long> candidateIds = queryIds(entityClass, builder, predicates, null, BATCH_SIZE+1);
+				if (candidateIds.size() <= BATCH_SIZE) {
+					// Rank matching entities only, so that entities excluded by project scope, 
+					// permission or other criterias do not take up ranking slots
+					BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder();
+					queryBuilder.add(textQuery, Occur.MUST);
+					queryBuilder.add(new TermInSetQuery(FIELD_ID, candidateIds.stream()
+							.map(it->new BytesRef(String.valueOf(it)))
+							.collect(Collectors.toList())), Occur.FILTER);
+					ids = search(index, queryBuilder.build(), MAX_RANKED);
+				} else {
+					// Too many matching entities to filter the index with. Take top hits of the 
+					// index and keep those matching the query instead
+					List<Long> hits = search(index, textQuery, BATCH_SIZE);
+					if (!hits.isEmpty()) {
+						Set<Long> matchedIds = new HashSet<>(queryIds(entityClass, builder, predicates, hits, BATCH_SIZE));
+						ids = hits.stream().filter(matchedIds::contains).limit(MAX_RANKED).collect(Collectors.toList());
+					} else {
+						ids = hits;
+					}
+				}
+				if (!ids.isEmpty()) {
+					Path<Long> id = root.get("id");
+					SimpleCase<Long, Integer> relevance = builder.selectCase(id);
+					for (int i=0; i<ids.size(); i++)
+						relevance.when(ids.get(i), ids.size()-i);
+					return relevance.otherwise(0);
+				}
+			}
+		}
+		return null;
+	}
+
+	private File getIndexDir(Index index) {
+		File indexDir = new File(storageManager.getEntityTextIndexDir(), index.entityClass.getSimpleName());
+		FileUtils.createDir(indexDir);
+		return indexDir;
+	}
+
+	static boolean checkVersion(File indexDir) throws IOException {
+		File versionFile = new File(indexDir, VERSION_FILE);
+		if (versionFile.exists()) {
+			String version = FileUtils.readFileToString(versionFile, Charset.defaultCharset()).trim();
+			// Version file is only present when index is closed cleanly. Remove it while the
+			// index is open so that index will be rebuilt if server is not stopped normally
+			FileUtils.deleteFile(versionFile);
+			return version.equals(String.valueOf(INDEX_VERSION));
+		} else {
+			return false;
+		}
+	}
+
+	static void writeVersion(File indexDir) {
+		FileUtils.writeFile(new File(indexDir, VERSION_FILE), String.valueOf(INDEX_VERSION));
+	}
+
+	static Document newDocument(Long id, Long projectId, @Nullable String title, @Nullable String description) {
+		Document document = new Document();
+		document.add(new StringField(FIELD_ID, String.valueOf(id), Store.YES));
+		document.add(new StringField(FIELD_PROJECT_ID, String.valueOf(projectId), Store.NO));
+		if (title != null)
+			document.add(new TextField(Issue.PROP_TITLE, title, Store.NO));
+		if (description != null)
+			document.add(new TextField(Issue.PROP_DESCRIPTION, description, Store.NO));
+		return document;
+	}
+
+	private Map<Long, Document> getDocuments(Index index, List<Object[]> rows) {
+		Map<Long, Document> documents = new LinkedHashMap<>();
+		for (Object[] row: rows) {
+			Document document = newDocument((Long) row[0], (Long) row[1], (String) row[2], (String) row[3]);
+			documents.put((Long) row[0], document);
+		}
+
+		if (!documents.isEmpty()) {
+			org.hibernate.query.Query<?> query = sessionManager.getSession().createQuery(
+					"select " + index.commentOwner + ".id, content from " + index.commentClass.getSimpleName()
+					+ " where " + index.commentOwner + ".id in (:ids)");
+			query.setParameterList("ids", documents.keySet());
+			for (Object result: query.list()) {
+				Object[] row = (Object[]) result;
+				documents.get(row[0]).add(new TextField(Issue.PROP_COMMENTS, (String) row[1], Store.NO));
+			}
+		}
+		return documents;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rebuild(Index index) throws IOException {
+		logger.info("Indexing texts of {}...", index.entityClass.getSimpleName());
+		long time = System.currentTimeMillis();
+
+		Session session = sessionManager.getSession();
+		index.writer.deleteAll();
+		Long lastId = 0L;
+		int count = 0;
+		while (true) {
+			org.hibernate.query.Query<?> query = session.createQuery("select id, project.id, title, description from "
+					+ index.entityClass.getSimpleName() + " where id > :lastId order by id");
+			query.setParameter("lastId", lastId);
+			query.setMaxResults(BATCH_SIZE);
+			List<Object[]> rows = (List<Object[]>) query.list();
+			if (rows.isEmpty())
+				break;
+			for (Document document: getDocuments(index, rows).values())
+				index.writer.addDocument(document);
+			count += rows.size();
+			lastId = (Long) rows.get(rows.size()-1)[0];
+		}
+		index.writer.commit();
+		index.searcherManager.maybeRefresh();
+		index.built = true;
+
+		logger.info("Indexed texts of {} {} in {} ms", count, index.entityClass.getSimpleName(),
+				System.currentTimeMillis() - time);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void update(Index index, Collection<Long> ids) throws IOException {
+		Session session = sessionManager.getSession();
+		for (List<Long> partition: Lists.partition(new ArrayList<>(ids), BATCH_SIZE)) {
+			org.hibernate.query.Query<?> query = session.createQuery("select id, project.id, title, description from "
+					+ index.entityClass.getSimpleName() + " where id in (:ids)");
+			query.setParameterList("ids", partition);
+			Map<Long, Document> documents = getDocuments(index, (List<Object[]>) query.list());
+			for (Long id: partition) {
+				Document document = documents.get(id);
+				if (document != null)
+					index.writer.updateDocument(new Term(FIELD_ID, String.valueOf(id)), document);
+				else
+					index.writer.deleteDocuments(new Term(FIELD_ID, String.valueOf(id)));
+			}
+		}
+		index.writer.commit();
+		index.searcherManager.maybeRefresh();
+	}
+
+	/*
+	 * Entities of a removed project are deleted by cascade without firing removal events, 
+	 * so their documents are removed by project
+	 */
+	private void removeProjects(Index index, Collection<Long> projectIds) throws IOException {
+		for (Long projectId: projectIds)
+			index.writer.deleteDocuments(new Term(FIELD_PROJECT_ID, String.valueOf(projectId)));
+		index.writer.commit();
+		index.searcherManager.maybeRefresh();
+	}
+
+	@Nullable
+	private Long getIndexedId(Index index, AbstractEntity entity) {
+		if (index.entityClass == Issue.class) {
+			if (entity instanceof Issue)
+				return entity.getId();
+			else if (entity instanceof IssueComment)
+				return ((IssueComment) entity).getIssue().getId();
+		} else if (index.entityClass == PullRequest.class) {
+			if (entity instanceof PullRequest)
+				return entity.getId();
+			else if (entity instanceof PullRequestComment)
+				return ((PullRequestComment) entity).getRequest().getId();
+		}
+		return null;
+	}
+
+	/*
+	 * Changed entity is marked as pending before transaction commits, so that there is no 
+	 * window where the change is visible in database but not considered by index queries
+	 */
+	private void onChange(AbstractEntity entity) {
+		for (Index index: indexes.values()) {
+			Long id = getIndexedId(index, entity);
+			if (id != null) {
+				if (index.writer != null) {
+					index.addPending(id);
+					if (transactionManager.getTransaction().isActive()) {
+						transactionManager.getTransaction().registerSynchronization(new Synchronization() {
+
+							@Override
+							public void beforeCompletion() {
+							}
+
+							@Override
+							public void afterCompletion(int status) {
+								if (status == Status.STATUS_COMMITTED)
+									batchWorkManager.submit(index.worker, new UpdateWork(id));
+								else
+									index.removePending(id);
+							}
+
+						});
+					} else {
+						batchWorkManager.submit(index.worker, new UpdateWork(id));
+					}
+				} else {
+					index.stale = true;
+				}
+			}
+		}
+	}
+
+	private void onProjectRemoved(Long projectId) {
+		for (Index index: indexes.values()) {
+			if (index.writer != null) {
+				if (transactionManager.getTransaction().isActive()) {
+					transactionManager.getTransaction().registerSynchronization(new Synchronization() {
+
+						@Override
+						public void beforeCompletion() {
+						}
+
+						@Override
+						public void afterCompletion(int status) {
+							if (status == Status.STATUS_COMMITTED)
+								batchWorkManager.submit(index.worker, new RemoveProjectWork(projectId));
+						}
+
+					});
+				} else {
+					batchWorkManager.submit(index.worker, new RemoveProjectWork(projectId));
+				}
+			} else {
+				index.stale = true;
+			}
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		onChange(event.getEntity());
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			onProjectRemoved(event.getEntity().getId());
+		else
+			onChange(event.getEntity());
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		for (Index index: indexes.values()) {
+			File indexDir = getIndexDir(index);
+			try {
+				boolean rebuild = !checkVersion(indexDir) || index.stale;
+				if (rebuild)
+					FileUtils.cleanDir(indexDir);
+				IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE));
+				writerConfig.setOpenMode(OpenMode.CREATE_OR_APPEND);
+				index.writer = new IndexWriter(FSDirectory.open(indexDir.toPath()), writerConfig);
+				index.searcherManager = new SearcherManager(index.writer, null);
+				if (rebuild)
+					batchWorkManager.submit(index.worker, new RebuildWork());
+				else
+					index.built = true;
+			} catch (IOException e) {
+				logger.error("Error opening text index of " + index.entityClass.getSimpleName()
+						+ ", will query database directly", e);
+				index.failed = true;
+			}
+		}
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		for (Index index: indexes.values()) {
+			try {
+				if (index.searcherManager != null)
+					index.searcherManager.close();
+				if (index.writer != null) {
+					index.writer.close();
+					if (index.built && !index.failed && index.pendingIds.isEmpty())
+						writeVersion(getIndexDir(index));
+				}
+			} catch (IOException e) {
+				logger.error("Error closing text index of " + index.entityClass.getSimpleName(), e);
+			}
+		}
+	}
+
+	/*
+	 * Pending index updates are reported by batch work manager with worker type "indexText"
+	 */
+	@Override
+	public void collect(MetricCollector collector) {
+		for (Index index: indexes.values()) {
+			String type = index.entityClass.getSimpleName();
+			collector.gauge("onedev_entity_text_index_available", "Whether text index of entities can be queried",
+					index.isAvailable()? 1: 0, "type", type);
+			collector.counter("onedev_entity_text_index_queries_total", "Number of text criterias resolved by index",
+					index.queries.sum(), "type", type);
+			collector.counter("onedev_entity_text_index_fallbacks_total",
+					"Number of text criterias falling back to database scan", index.fallbacks.sum(), "type", type);
+		}
+	}
+
+	private class Index {
+
+		final Class<? extends AbstractEntity> entityClass;
+
+		final Class<? extends AbstractEntity> commentClass;
+
+		final String commentOwner;
+
+		final BatchWorker worker;
+
+		/*
+		 * Ids of entities changed but not indexed yet, mapped to number of pending updates
+		 */
+		final Map<Long, Integer> pendingIds = new ConcurrentHashMap<>();
+
+		final LongAdder queries = new LongAdder();
+
+		final LongAdder fallbacks = new LongAdder();
+
+		volatile IndexWriter writer;
+
+		volatile SearcherManager searcherManager;
+
+		volatile boolean built;
+
+		volatile boolean stale;
+
+		volatile boolean failed;
+
+		Index(Class<? extends AbstractEntity> entityClass, Class<? extends AbstractEntity> commentClass,
+				String commentOwner) {
+			this.entityClass = entityClass;
+			this.commentClass = commentClass;
+			this.commentOwner = commentOwner;
+			worker = new BatchWorker("entity-" + entityClass.getSimpleName() + "-indexText", BATCH_SIZE) {
+
+				@Override
+				public void doWorks(Collection<Prioritized> works) {
+					boolean hasRebuildWork = false;
+					List<Long> ids = new ArrayList<>();
+					Set<Long> projectIds = new HashSet<>();
+					for (Prioritized work: works) {
+						if (work instanceof RebuildWork)
+							hasRebuildWork = true;
+						else if (work instanceof RemoveProjectWork)
+							projectIds.add(((RemoveProjectWork) work).getProjectId());
+						else
+							ids.add(((UpdateWork) work).getEntityId());
+					}
+
+					boolean rebuildIndex = hasRebuildWork;
+					try {
+						sessionManager.run(new Runnable() {
+
+							@Override
+							public void run() {
+								try {
+									if (rebuildIndex) {
+										rebuild(Index.this);
+									} else {
+										update(Index.this, new HashSet<>(ids));
+										if (!projectIds.isEmpty())
+											removeProjects(Index.this, projectIds);
+									}
+								} catch (IOException e) {
+									throw new RuntimeException(e);
+								}
+							}
+
+						});
+					} catch (Exception e) {
+						// Index is out of sync now. Stop using it until it is rebuilt at next
+						// server startup
+						logger.error("Error indexing texts of " + entityClass.getSimpleName()
+								+ ", will query database directly", e);
+						failed = true;
+					} finally {
+						for (Long id: ids)
+							removePending(id);
+					}
+				}
+
+			};
+		}
+
+		boolean isAvailable() {
+			return searcherManager != null && built && !failed;
+		}
+
+		void addPending(Long id) {
+			pendingIds.merge(id, 1, Integer::sum);
+		}
+
+		void removePending(Long id) {
+			pendingIds.computeIfPresent(id, (key, value) -> value>1? value-1: null);
+		}
+
+	}
+
+	private static class UpdateWork extends Prioritized {
+
+		private final Long entityId;
+
+		public UpdateWork(Long entityId) {
+			super(UPDATE_PRIORITY);
+			this.entityId = entityId;
+		}
+
+		public Long getEntityId() {
+			return entityId;
+		}
+
+	}
+
+	private static class RemoveProjectWork extends Prioritized {
+
+		private final Long projectId;
+
+		public RemoveProjectWork(Long projectId) {
+			super(UPDATE_PRIORITY);
+			this.projectId = projectId;
+		}
+
+		public Long getProjectId() {
+			return projectId;
+		}
+
+	}
+
+	private static class RebuildWork extends Prioritized {
+
+		public RebuildWork() {
+			super(REBUILD_PRIORITY);
+		}
+
+	}
+
+}
@@ -0,0 +1,63 @@
+package io.onedev.server.search.entitytext;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.search.entity.EntityCriteria;
+
+/**
+ * Maintains a Lucene n-gram index of title, description and comments of issues and pull
+ * requests, so that text criteria can be resolved without scanning the whole table with
+ * <tt>like</tt> clauses. The index is updated asynchronously after entity changes are
+ * committed. Entities with pending updates are always returned as candidates, and the 
+ * index is considered unavailable while it is being built.
+ */
+public interface EntityTextManager {
+
+	/**
+	 * Query ids of entities whose specified field contains specified text. Result is a
+	 * superset of exact matches, and should be combined with the original <tt>like</tt>
+	 * predicate to get exact result.
+	 *
+	 * @param field
+	 * 			name of the entity property, one of <tt>title</tt>, <tt>description</tt> and
+	 * 			<tt>comments</tt>
+	 * @param text
+	 * 			text to query, with <tt>*</tt>, <tt>%</tt> and <tt>_</tt> treated as
+	 * 			wildcards
+	 * @param count
+	 * 			maximum number of ids to return
+	 * @return
+	 * 			ids of matching entities, or <tt>null</tt> if the index can not be used for
+	 * 			this query, for instance if it is not available, the text does not contain
+	 * 			any segment long enough to be looked up, or there are more than <tt>count</tt>
+	 * 			matching entities. Caller should fall back to database scan in this case
+	 */
+	@Nullable
+	Collection<Long> query(Class<? extends AbstractEntity> entityClass, String field, String text, int count);
+
+	/**
+	 * Get expression to order entities by relevance to texts of specified criteria. Top
+	 * ranked entities get larger values, and other entities get value 0, so entities are
+	 * ordered from most relevant to least relevant in descending order. Only entities
+	 * satisfying predicates of the query are ranked.
+	 *
+	 * @param predicates
+	 * 			function to build predicates of the query against specified root. It is used 
+	 * 			to find out entities to be ranked
+	 * @return
+	 * 			relevance expression, or <tt>null</tt> if criteria does not contain any text
+	 * 			or the index is not available
+	 */
+	@Nullable
+	<T extends AbstractEntity> Expression<Integer> getRelevance(Root<T> root, CriteriaBuilder builder,
+			@Nullable EntityCriteria<T> criteria, Function<Root<T>, Predicate[]> predicates);
+
+}
@@ -0,0 +1,112 @@
+package io.onedev.server.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.shiro.authz.Permission;
+
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Project;
+import io.onedev.server.security.permission.ProjectPermission;
+
+/**
+ * Permissions of a user compiled for fast checking. Project privileges are indexed by project 
+ * id, so that checking a project permission only evaluates privileges of that project, and 
+ * privileges granted for all projects are stored once instead of once per project.
+ */
+public class CompiledPermissions implements Permission {
+
+	private final Collection<Permission> permissions = new ArrayList<>();
+	
+	private final Collection<Permission> allProjectPrivileges = new ArrayList<>();
+	
+	private final Map<Long, Collection<Permission>> projectPrivileges = new HashMap<>();
+	
+	public void add(Permission permission) {
+		if (permission instanceof ProjectPermission) {
+			ProjectPermission projectPermission = (ProjectPermission) permission;
+			Long projectId = AbstractEntity.idOf(projectPermission.getProject());
+			Collection<Permission> privileges = projectPrivileges.get(projectId);
+			if (privileges == null) {
+				privileges = new ArrayList<>();
+				projectPrivileges.put(projectId, privileges);
+			}
+			privileges.add(projectPermission.getPrivilege());
+		} else {
+			permissions.add(permission);
+		}
+	}
+	
+	public void addForAllProjects(Permission privilege) {
+		allProjectPrivileges.add(privilege);
+	}
+	
+	@Override
+	public boolean implies(Permission p) {
+		for (Permission permission: permissions) {
+			if (permission.implies(p))
+				return true;
+		}
+		if (p instanceof ProjectPermission) {
+			ProjectPermission projectPermission = (ProjectPermission) p;
+			for (Permission privilege: allProjectPrivileges) {
+				if (privilege.implies(projectPermission.getPrivilege()))
+					return true;
+			}
+			Collection<Permission> privileges = projectPrivileges.get(
+					AbstractEntity.idOf(projectPermission.getProject()));
+			if (privileges != null) {
+				for (Permission privilege: privileges) {
+					if (privilege.implies(projectPermission.getPrivilege()))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Check whether there are privileges granted specifically for specified project
+	 */
+	public boolean hasProjectPrivileges(Long projectId) {
+		return projectPrivileges.containsKey(projectId);
+	}
+	
+	/**
+	 * Get ids of projects with specified privilege
+	 * 
+	 * @param privilege
+	 * 			privilege to check 
+	 * @return
+	 * 			ids of projects with specified privilege, or <tt>null</tt> if all projects 
+	 * 			have specified privilege
+	 */
+	@Nullable
+	public Collection<Long> getPermittedProjectIds(Permission privilege) {
+		ProjectPermission anyProjectPermission = new ProjectPermission(new Project(), privilege);
+		for (Permission permission: permissions) {
+			if (permission.implies(anyProjectPermission))
+				return null;
+		}
+		for (Permission each: allProjectPrivileges) {
+			if (each.implies(privilege))
+				return null;
+		}
+		Collection<Long> projectIds = new HashSet<>();
+		for (Map.Entry<Long, Collection<Permission>> entry: projectPrivileges.entrySet()) {
+			for (Permission each: entry.getValue()) {
+				if (each.implies(privilege)) {
+					projectIds.add(entry.getKey());
+					break;
+				}
+			}
+		}
+		return projectIds;
+	}
+	
+}
@@ -1,12 +1,11 @@
 package io.onedev.server.security;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -22,32 +21,36 @@ import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
-import org.apache.wicket.MetaDataKey;
-import org.apache.wicket.request.cycle.RequestCycle;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.AppLoader;
+import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.ExceptionUtils;
-import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.GroupManager;
 import io.onedev.server.entitymanager.MembershipManager;
-import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.issue.fieldspec.FieldSpec;
+import io.onedev.server.model.AbstractEntity;
 import io.onedev.server.model.Group;
 import io.onedev.server.model.GroupAuthorization;
 import io.onedev.server.model.Membership;
 import io.onedev.server.model.Project;
+import io.onedev.server.model.Role;
+import io.onedev.server.model.Setting;
 import io.onedev.server.model.User;
 import io.onedev.server.model.UserAuthorization;
 import io.onedev.server.model.support.administration.authenticator.Authenticated;
 import io.onedev.server.model.support.administration.authenticator.Authenticator;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.security.permission.AccessBuildLog;
 import io.onedev.server.security.permission.CreateProjects;
 import io.onedev.server.security.permission.EditIssueField;
@@ -57,7 +60,13 @@ import io.onedev.server.security.permission.ProjectPermission;
 import io.onedev.server.security.permission.ReadCode;
 import io.onedev.server.security.permission.SystemAdministration;
 import io.onedev.server.security.permission.UserAdministration;
+import io.onedev.server.util.SecurityUtils;
 
+/**
+ * Authorization info of users are cached process wide, and are invalidated when related 
+ * entities are changed. Permissions are compiled into {@link CompiledPermissions}, so that 
+ * checking a project permission does not iterate permissions of other projects. 
+ */
 @Singleton
 public class OneAuthorizingRealm extends AuthorizingRealm {
 
@@ -71,20 +80,18 @@ public class OneAuthorizingRealm extends AuthorizingRealm {
     
     private final GroupManager groupManager;
     
-    private final ProjectManager projectManager;
-    
     private final SessionManager sessionManager;
     
     private final TransactionManager transactionManager;
     
-    @SuppressWarnings("serial")
-	private final MetaDataKey<Map<Long, AuthorizationInfo>> authorizationInfosKey = 
-			new MetaDataKey<Map<Long, AuthorizationInfo>>() {};    
+    private final Map<Long, AuthorizationInfo> authorizationInfos = new ConcurrentHashMap<>();
+    
+    private long version;
     
 	@Inject
     public OneAuthorizingRealm(UserManager userManager, SettingManager settingManager, 
     		MembershipManager membershipManager, GroupManager groupManager, 
-    		ProjectManager projectManager, SessionManager sessionManager, 
+    		SessionManager sessionManager, 
     		TransactionManager transactionManager) {
 	    PasswordMatcher passwordMatcher = new PasswordMatcher();
 	    passwordMatcher.setPasswordService(AppLoader.getInstance(PasswordService.class));
@@ -94,38 +101,42 @@ public class OneAuthorizingRealm extends AuthorizingRealm {
     	this.settingManager = settingManager;
     	this.membershipManager = membershipManager;
     	this.groupManager = groupManager;
-    	this.projectManager = projectManager;
     	this.sessionManager = sessionManager;
     	this.transactionManager = transactionManager;
     }
 
-	private Collection<Permission> getGroupPermissions(Group group, @Nullable User user) {
-		Collection<Permission> permissions = new ArrayList<>();
+	/*
+	 * Role is initialized as it will be used to check permissions after current session 
+	 * is closed 
+	 */
+	private Role initialize(Role role) {
+		Hibernate.initialize(role);
+		return role;
+	}
+	
+	private void addGroupPermissions(CompiledPermissions permissions, Group group, @Nullable User user) {
 		if (group.isAdministrator()) {
 			if (user != null) {
 				permissions.add(new SystemAdministration());
 			} else {
-				for (Project project: projectManager.query()) {
-					permissions.add(new ProjectPermission(project, new ReadCode()));
-					for (FieldSpec field: OneDev.getInstance(SettingManager.class).getIssueSetting().getFieldSpecs())
-						permissions.add(new ProjectPermission(project, new EditIssueField(Sets.newHashSet(field.getName()))));
-					permissions.add(new ProjectPermission(project, new JobPermission("*", new AccessBuildLog())));
-				}
+				permissions.addForAllProjects(new ReadCode());
+				for (FieldSpec field: settingManager.getIssueSetting().getFieldSpecs())
+					permissions.addForAllProjects(new EditIssueField(Sets.newHashSet(field.getName())));
+				permissions.addForAllProjects(new JobPermission("*", new AccessBuildLog()));
 			}
 		}
 		if (user != null && group.isCreateProjects())
 			permissions.add(new CreateProjects());
 		for (GroupAuthorization authorization: group.getProjectAuthorizations()) 
-			permissions.add(new ProjectPermission(authorization.getProject(), authorization.getRole()));
-		return permissions;
+			permissions.add(new ProjectPermission(authorization.getProject(), initialize(authorization.getRole())));
 	}
 	
 	private AuthorizationInfo newAuthorizationInfo(Long userId) {
-		Collection<Permission> permissions = sessionManager.call(new Callable<Collection<Permission>>() {
+		CompiledPermissions permissions = sessionManager.call(new Callable<CompiledPermissions>() {
 
 			@Override
-			public Collection<Permission> call() throws Exception {
-				Collection<Permission> permissions = new ArrayList<>();
+			public CompiledPermissions call() throws Exception {
+				CompiledPermissions permissions = new CompiledPermissions();
 
 				User user = null;
 		        if (userId != 0L) { 
@@ -134,19 +145,20 @@ public class OneAuthorizingRealm extends AuthorizingRealm {
 		        		permissions.add(new SystemAdministration());
 		        	permissions.add(new UserAdministration(user));
 		           	for (Group group: user.getGroups())
-		           		permissions.addAll(getGroupPermissions(group, user));
+		           		addGroupPermissions(permissions, group, user);
 		        	for (UserAuthorization authorization: user.getProjectAuthorizations()) 
-    					permissions.add(new ProjectPermission(authorization.getProject(), authorization.getRole()));
+    					permissions.add(new ProjectPermission(authorization.getProject(), initialize(authorization.getRole())));
 		        	for (Project project: user.getProjects()) 
 		        		permissions.add(new ProjectPermission(project, new ManageProject()));
 		        } 
 	        	Group group = groupManager.findAnonymous();
 	        	if (group != null)
-	           		permissions.addAll(getGroupPermissions(group, user));
+	           		addGroupPermissions(permissions, group, user);
 				return permissions;
 			}
 			
 		});
+		Collection<Permission> objectPermissions = Sets.newHashSet(permissions);
 		
 		return new AuthorizationInfo() {
 			
@@ -164,7 +176,7 @@ public class OneAuthorizingRealm extends AuthorizingRealm {
 			
 			@Override
 			public Collection<Permission> getObjectPermissions() {
-				return permissions;
+				return objectPermissions;
 			}
 		};		
 	}
@@ -172,24 +184,134 @@ public class OneAuthorizingRealm extends AuthorizingRealm {
 	@Override
 	protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
 		Long userId = (Long) principals.getPrimaryPrincipal();						
-		RequestCycle requestCycle = RequestCycle.get();
-		if (requestCycle != null) {
-			Map<Long, AuthorizationInfo> authorizationInfos = requestCycle.getMetaData(authorizationInfosKey);
-			if (authorizationInfos == null) {
-				authorizationInfos = new HashMap<>();
-				requestCycle.setMetaData(authorizationInfosKey, authorizationInfos);
+		AuthorizationInfo authorizationInfo = authorizationInfos.get(userId);
+		if (authorizationInfo == null) {
+			long currentVersion;
+			synchronized (this) {
+				currentVersion = version;
+			}
+			authorizationInfo = newAuthorizationInfo(userId);
+			synchronized (this) {
+				// do not cache if related entities are changed while calculating
+				if (version == currentVersion)
+					authorizationInfos.put(userId, authorizationInfo);
+			}
+		}
+		return authorizationInfo;
+	}
+	
+	/**
+	 * Get ids of projects specified user has specified privilege
+	 * 
+	 * @param userId
+	 * 			id of user to check, <tt>0</tt> for anonymous user
+	 * @param privilege
+	 * 			privilege to check
+	 * @return
+	 * 			ids of projects specified user has specified privilege, or <tt>null</tt> if 
+	 * 			user has specified privilege to all projects
+	 */
+	@Nullable
+	public Collection<Long> getPermittedProjectIds(Long userId, Permission privilege) {
+		AuthorizationInfo authorizationInfo = getAuthorizationInfo(SecurityUtils.asPrincipal(userId));
+		return getCompiledPermissions(authorizationInfo).getPermittedProjectIds(privilege);
+	}
+	
+	private CompiledPermissions getCompiledPermissions(AuthorizationInfo authorizationInfo) {
+		return (CompiledPermissions) authorizationInfo.getObjectPermissions().iterator().next();
+	}
+	
+	private synchronized void doInvalidate(@Nullable Long userId) {
+		version++;
+		if (userId != null)
+			authorizationInfos.remove(userId);
+		else
+			authorizationInfos.clear();
+	}
+	
+	private synchronized void doInvalidateProject(Long projectId, @Nullable Long ownerId) {
+		version++;
+		if (ownerId != null)
+			authorizationInfos.remove(ownerId);
+		authorizationInfos.values().removeIf(it->getCompiledPermissions(it).hasProjectPrivileges(projectId));
+	}
+	
+	/**
+	 * Invalidate cached authorization info immediately, and again after transaction completes 
+	 * in case other threads cache authorization info calculated from uncommitted data 
+	 * 
+	 * @param userId
+	 * 			id of user to invalidate authorization info, or <tt>null</tt> to invalidate all
+	 */
+	private void invalidate(@Nullable Long userId) {
+		doInvalidate(userId);
+		transactionManager.mustRunAfterTransaction(new Runnable() {
+
+			@Override
+			public void run() {
+				doInvalidate(userId);
+			}
+			
+		});
+	}
+	
+	/**
+	 * Invalidate cached authorization info of users with privileges granted specifically for 
+	 * specified project, as well as the project owner. Other users are not affected, as their
+	 * privileges on this project, if any, are granted for all projects
+	 */
+	private void invalidateProject(Long projectId, @Nullable Long ownerId) {
+		doInvalidateProject(projectId, ownerId);
+		transactionManager.mustRunAfterTransaction(new Runnable() {
+
+			@Override
+			public void run() {
+				doInvalidateProject(projectId, ownerId);
 			}
-			AuthorizationInfo authorizationInfo = authorizationInfos.get(userId);
-			if (authorizationInfo == null) {
-				authorizationInfo = newAuthorizationInfo(userId);
-				authorizationInfos.put(userId, authorizationInfo);
+			
+		});
+	}
+	
+	private void onEntityChanged(AbstractEntity entity) {
+		if (entity instanceof Membership) {
+			invalidate(AbstractEntity.idOf(((Membership) entity).getUser()));
+		} else if (entity instanceof UserAuthorization) {
+			invalidate(AbstractEntity.idOf(((UserAuthorization) entity).getUser()));
+		} else if (entity instanceof User) {
+			invalidate(entity.getId());
+		} else if (entity instanceof Group || entity instanceof GroupAuthorization) {
+			Group group;
+			if (entity instanceof Group)
+				group = (Group) entity;
+			else
+				group = ((GroupAuthorization) entity).getGroup();
+			if (group.equals(groupManager.findAnonymous())) {
+				// permissions of anonymous group are granted to all users
+				invalidate(null);
+			} else {
+				for (Membership membership: group.getMemberships())
+					invalidate(AbstractEntity.idOf(membership.getUser()));
 			}
-			return authorizationInfo;
-		} else {
-			return newAuthorizationInfo(userId);
+		} else if (entity instanceof Project) {
+			// previous owner holds manage privilege of the project if ownership is transferred
+			invalidateProject(entity.getId(), AbstractEntity.idOf(((Project) entity).getOwner()));
+		} else if (entity instanceof Role || entity instanceof Setting) {
+			invalidate(null);
 		}
 	}
 	
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		onEntityChanged(event.getEntity());
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		onEntityChanged(event.getEntity());
+	}
+	
 	@Override
 	protected final AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
 		return transactionManager.call(new Callable<AuthenticationInfo>() {
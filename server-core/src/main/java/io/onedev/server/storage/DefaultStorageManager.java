@@ -163,4 +163,11 @@ public class DefaultStorageManager implements StorageManager {
 		return buildDir;
 	}
 
+	@Override
+	public File getEntityTextIndexDir() {
+		File indexDir = new File(Bootstrap.getSiteDir(), "index/entity-text");
+		FileUtils.createDir(indexDir);
+		return indexDir;
+	}
+	
 }
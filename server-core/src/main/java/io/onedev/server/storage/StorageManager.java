@@ -47,4 +47,13 @@ public interface StorageManager {
      */
     File getBuildDir(Long projectId, Long buildNumber);
     
+    /**
+     * Get directory to store Lucene index of texts of entities such as issues and pull requests
+     * 
+     * @return
+     * 			directory to store text index of entities. The directory will be exist after calling 
+     * 			this method
+     */
+    File getEntityTextIndexDir();
+    
 }
@@ -0,0 +1,168 @@
+package io.onedev.server.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.util.facade.BuildFacade;
+
+/**
+ * In-memory index of build ids by project and by commit. Builds of each project are kept in
+ * a sorted primitive array plus a map of commit to build ids, and each project is guarded by
+ * its own lock, so that lookup cost only depends on number of builds of the queried project.
+ */
+public class BuildIndex {
+
+	private final Map<Long, ProjectBuilds> projectBuilds = new ConcurrentHashMap<>();
+
+	public void add(BuildFacade build) {
+		ProjectBuilds builds = projectBuilds.computeIfAbsent(build.getProjectId(), k -> new ProjectBuilds());
+		builds.lock.writeLock().lock();
+		try {
+			builds.add(build.getId(), ObjectId.fromString(build.getCommitHash()));
+		} finally {
+			builds.lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(BuildFacade build) {
+		ProjectBuilds builds = projectBuilds.get(build.getProjectId());
+		if (builds != null) {
+			builds.lock.writeLock().lock();
+			try {
+				builds.remove(build.getId(), ObjectId.fromString(build.getCommitHash()));
+			} finally {
+				builds.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	public void removeProject(Long projectId) {
+		projectBuilds.remove(projectId);
+	}
+
+	/**
+	 * @return
+	 * 			ids of builds of specified project in ascending order
+	 */
+	public List<Long> getIds(Long projectId) {
+		ProjectBuilds builds = projectBuilds.get(projectId);
+		if (builds != null) {
+			long[] ids;
+			builds.lock.readLock().lock();
+			try {
+				ids = Arrays.copyOf(builds.ids, builds.size);
+			} finally {
+				builds.lock.readLock().unlock();
+			}
+			return new AbstractList<Long>() {
+
+				@Override
+				public Long get(int index) {
+					return ids[index];
+				}
+
+				@Override
+				public int size() {
+					return ids.length;
+				}
+
+			};
+		} else {
+			return new ArrayList<>();
+		}
+	}
+
+	public Collection<Long> getIds(Long projectId, Collection<String> commitHashes) {
+		Collection<Long> buildIds = new HashSet<>();
+		ProjectBuilds builds = projectBuilds.get(projectId);
+		if (builds != null) {
+			builds.lock.readLock().lock();
+			try {
+				for (String commitHash: commitHashes) {
+					if (ObjectId.isId(commitHash)) {
+						long[] idsOfCommit = builds.idsByCommit.get(ObjectId.fromString(commitHash));
+						if (idsOfCommit != null) {
+							for (long id: idsOfCommit)
+								buildIds.add(id);
+						}
+					}
+				}
+			} finally {
+				builds.lock.readLock().unlock();
+			}
+		}
+		return buildIds;
+	}
+
+	private static class ProjectBuilds {
+
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		private long[] ids = new long[16];
+
+		private int size;
+
+		private final Map<ObjectId, long[]> idsByCommit = new HashMap<>();
+
+		void add(long id, ObjectId commitId) {
+			int index;
+			if (size == 0 || ids[size-1] < id)
+				index = -(size+1);
+			else
+				index = Arrays.binarySearch(ids, 0, size, id);
+			if (index < 0) {
+				index = -(index+1);
+				if (size == ids.length)
+					ids = Arrays.copyOf(ids, size*2);
+				System.arraycopy(ids, index, ids, index+1, size-index);
+				ids[index] = id;
+				size++;
+
+				long[] idsOfCommit = idsByCommit.get(commitId);
+				if (idsOfCommit != null) {
+					idsOfCommit = Arrays.copyOf(idsOfCommit, idsOfCommit.length+1);
+					idsOfCommit[idsOfCommit.length-1] = id;
+				} else {
+					idsOfCommit = new long[] {id};
+				}
+				idsByCommit.put(commitId, idsOfCommit);
+			}
+		}
+
+		void remove(long id, ObjectId commitId) {
+			int index = Arrays.binarySearch(ids, 0, size, id);
+			if (index >= 0) {
+				System.arraycopy(ids, index+1, ids, index, size-index-1);
+				size--;
+
+				long[] idsOfCommit = idsByCommit.get(commitId);
+				if (idsOfCommit != null) {
+					if (idsOfCommit.length == 1) {
+						idsByCommit.remove(commitId);
+					} else {
+						long[] newIdsOfCommit = new long[idsOfCommit.length-1];
+						int i = 0;
+						for (long each: idsOfCommit) {
+							if (each != id && i < newIdsOfCommit.length)
+								newIdsOfCommit[i++] = each;
+						}
+						idsByCommit.put(commitId, newIdsOfCommit);
+					}
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,202 @@
+package io.onedev.server.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.google.common.base.Objects;
+
+import io.onedev.server.model.Build.Status;
+
+/**
+ * LRU cache of build statuses of commits. Each cached commit holds status of all its builds,
+ * so that overall status of each job can be rolled up without querying database. Cached
+ * commits are updated as builds change, and commits not in cache are ignored as they will
+ * be loaded from database when accessed.
+ */
+public class CommitStatusCache {
+
+	private final int maxCommits;
+
+	private final Map<Key, Map<Long, BuildStatus>> cache;
+
+	private final Map<Long, Long> changes;
+
+	private long generation;
+
+	private long evictedChange;
+
+	public CommitStatusCache(int maxCommits) {
+		this.maxCommits = maxCommits;
+		changes = new LinkedHashMap<Long, Long>(16, 0.75f, false) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+				if (size() > CommitStatusCache.this.maxCommits) {
+					evictedChange = Math.max(evictedChange, eldest.getValue());
+					return true;
+				} else {
+					return false;
+				}
+			}
+
+		};
+		cache = new LinkedHashMap<Key, Map<Long, BuildStatus>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Map<Long, BuildStatus>> eldest) {
+				return size() > CommitStatusCache.this.maxCommits;
+			}
+
+		};
+	}
+
+	/**
+	 * @return
+	 * 			overall status of each job of specified commit, or <tt>null</tt> if commit
+	 * 			is not cached
+	 */
+	@Nullable
+	public synchronized Map<String, Status> get(Long projectId, ObjectId commitId) {
+		Map<Long, BuildStatus> buildStatuses = cache.get(new Key(projectId, commitId));
+		if (buildStatuses != null)
+			return getOverallStatuses(buildStatuses.values());
+		else
+			return null;
+	}
+
+	/**
+	 * Roll up statuses of builds into overall status of each job
+	 */
+	public static Map<String, Status> getOverallStatuses(Collection<BuildStatus> buildStatuses) {
+		Map<String, Collection<Status>> jobStatuses = new HashMap<>();
+		for (BuildStatus buildStatus: buildStatuses) {
+			Collection<Status> statuses = jobStatuses.get(buildStatus.jobName);
+			if (statuses == null) {
+				statuses = new HashSet<>();
+				jobStatuses.put(buildStatus.jobName, statuses);
+			}
+			statuses.add(buildStatus.status);
+		}
+		Map<String, Status> overallStatuses = new HashMap<>();
+		for (Map.Entry<String, Collection<Status>> entry: jobStatuses.entrySet())
+			overallStatuses.put(entry.getKey(), Status.getOverallStatus(entry.getValue()));
+		return overallStatuses;
+	}
+
+	/**
+	 * Get current generation. Generation is increased whenever a build changes, and should be 
+	 * passed to {@link #seed(Long, ObjectId, Map, long)} to detect changes of specified project 
+	 * happening while loading statuses from database
+	 */
+	public synchronized long getGeneration(Long projectId) {
+		return generation;
+	}
+	
+	/*
+	 * Only generations of recently changed projects are remembered. Projects whose record is 
+	 * evicted are considered to be changed at the last evicted generation, which may discard 
+	 * some statuses unnecessarily, but never accepts outdated ones
+	 */
+	private long getLastChange(Long projectId) {
+		Long lastChange = changes.get(projectId);
+		return lastChange != null? lastChange: evictedChange;
+	}
+
+	private void increaseGeneration(Long projectId) {
+		generation++;
+		changes.remove(projectId);
+		changes.put(projectId, generation);
+	}
+
+	/**
+	 * Seed statuses of builds of specified commit loaded from database
+	 *
+	 * @param builds
+	 * 			map of build id to job name and status
+	 * @param generation
+	 * 			generation before loading statuses from database. Statuses
+	 * 			will be discarded if some build of the project changes after that
+	 */
+	public synchronized void seed(Long projectId, ObjectId commitId, Map<Long, BuildStatus> builds,
+			long generation) {
+		if (getLastChange(projectId) <= generation)
+			cache.put(new Key(projectId, commitId.copy()), new HashMap<>(builds));
+	}
+
+	public synchronized void update(Long projectId, ObjectId commitId, Long buildId,
+			String jobName, Status status) {
+		increaseGeneration(projectId);
+		Map<Long, BuildStatus> buildStatuses = cache.get(new Key(projectId, commitId));
+		if (buildStatuses != null)
+			buildStatuses.put(buildId, new BuildStatus(jobName, status));
+	}
+
+	public synchronized void remove(Long projectId, ObjectId commitId, Long buildId) {
+		increaseGeneration(projectId);
+		Map<Long, BuildStatus> buildStatuses = cache.get(new Key(projectId, commitId));
+		if (buildStatuses != null)
+			buildStatuses.remove(buildId);
+	}
+
+	public synchronized void removeProject(Long projectId) {
+		increaseGeneration(projectId);
+		for (Iterator<Key> it = cache.keySet().iterator(); it.hasNext();) {
+			if (it.next().projectId.equals(projectId))
+				it.remove();
+		}
+	}
+
+	public static class BuildStatus {
+
+		private final String jobName;
+
+		private final Status status;
+
+		public BuildStatus(String jobName, Status status) {
+			this.jobName = jobName;
+			this.status = status;
+		}
+
+	}
+
+	private static class Key {
+
+		private final Long projectId;
+
+		private final ObjectId commitId;
+
+		Key(Long projectId, ObjectId commitId) {
+			this.projectId = projectId;
+			this.commitId = commitId;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Key) {
+				Key otherKey = (Key) other;
+				return projectId.equals(otherKey.projectId) && commitId.equals(otherKey.commitId);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(projectId, commitId);
+		}
+
+	}
+
+}
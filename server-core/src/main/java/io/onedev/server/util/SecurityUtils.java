@@ -40,6 +40,7 @@ import io.onedev.server.model.PullRequestComment;
 import io.onedev.server.model.Role;
 import io.onedev.server.model.User;
 import io.onedev.server.model.UserAuthorization;
+import io.onedev.server.security.OneAuthorizingRealm;
 import io.onedev.server.security.permission.AccessBuild;
 import io.onedev.server.security.permission.AccessBuildLog;
 import io.onedev.server.security.permission.AccessBuildReports;
@@ -186,6 +187,19 @@ public class SecurityUtils extends org.apache.shiro.SecurityUtils {
 		return getSubject().isPermitted(new ProjectPermission(project, new AccessProject()));
 	}
 	
+	/**
+	 * Get ids of projects current user has specified privilege. This is much faster than 
+	 * checking privilege of each project when there are many projects
+	 * 
+	 * @return
+	 * 			ids of projects current user has specified privilege, or <tt>null</tt> if 
+	 * 			current user has specified privilege to all projects
+	 */
+	@Nullable
+	public static Collection<Long> getPermittedProjectIds(Permission privilege) {
+		return OneDev.getInstance(OneAuthorizingRealm.class).getPermittedProjectIds(getUserId(), privilege);
+	}
+	
 	public static boolean canReadCode(Project project) {
 		return getSubject().isPermitted(new ProjectPermission(project, new ReadCode()));
 	}
@@ -38,4 +38,12 @@ public interface ServerConfig {
 	 */
 	int getSessionTimeout();
 	
+	/**
+	 * Get interval in milliseconds to push new build log entries to browsers.
+	 * <p>
+	 * @return
+	 * 			build log push interval in milliseconds
+	 */
+	int getBuildLogPushInterval();
+	
 }
@@ -5,11 +5,16 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
+import org.eclipse.jgit.lib.ObjectId;
+
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 
@@ -21,6 +26,7 @@ import io.onedev.commons.jsyntax.Tokenizer;
 import io.onedev.commons.jsyntax.TokenizerRegistry;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.OneDev;
 import io.onedev.server.util.diff.DiffMatchPatch.Diff;
 import io.onedev.server.util.diff.DiffMatchPatch.Operation;
 
@@ -30,8 +36,18 @@ public class DiffUtils {
 	
 	public static final int MAX_DIFF_SIZE = 65535;
 	
+	/*
+	 * Files with more lines than this threshold will only be syntax highlighted up to 
+	 * last changed line (plus a margin) at first, with full result cached in background  
+	 */
+	private static final int PARTIAL_TOKENIZE_THRESHOLD = 5000;
+	
+	private static final int PARTIAL_TOKENIZE_MARGIN = 500;
+	
 	private static final Pattern pattern = Pattern.compile("\\w+");
 	
+	private static final Set<String> tokenizingBlobs = ConcurrentHashMap.newKeySet();
+	
 	private static List<Long> splitByWord(String line, long token) {
 		int beginPos = TokenUtils.getBeginPos(token);
 		int endPos = TokenUtils.getEndPos(token);
@@ -61,29 +77,89 @@ public class DiffUtils {
 		return lines;
 	}
 	
-	private static List<Tokenized> tokenize(List<String> lines, @Nullable String fileName) {
+	private static List<Tokenized> refine(List<String> lines, List<Tokenized> tokenizedLines) {
+		List<Tokenized> refinedTokens = new ArrayList<>();
+		int index = 0;
+		for (Tokenized tokenizedLine: tokenizedLines) {
+			List<Long> refinedLine = new ArrayList<>();
+			for (long token: tokenizedLine.getTokens()) {
+				int typeId = TokenUtils.getTypeId(token);
+				if (typeId == 0 || (typeId & TokenTypes.COMMENT) != 0 || (typeId & TokenTypes.STRING) != 0 
+						|| (typeId & TokenTypes.STRING2) != 0 || (typeId & TokenTypes.META) != 0
+						|| (typeId & TokenTypes.LINK) != 0 || (typeId & TokenTypes.ATTRIBUTE) != 0
+						|| (typeId & TokenTypes.PROPERTY) != 0) {
+					refinedLine.addAll(splitByWord(lines.get(index), token));
+				} else {
+					refinedLine.add(token);
+				}
+			}
+			refinedTokens.add(new Tokenized(tokenizedLine.getText(), TokenUtils.toArray(refinedLine)));
+			index++;
+		}
+		return refinedTokens;
+	}
+	
+	/**
+	 * Tokenize specified lines. 
+	 * 
+	 * @param blobId
+	 * 			id of the blob containing specified lines, used to cache tokenization result. 
+	 * 			Pass <tt>null</tt> if lines are not from a blob
+	 * @param lastChangedLine
+	 * 			index of last changed line. For large files, lines after this line (plus a 
+	 * 			margin) will not be syntax highlighted in current call, and tokenization 
+	 * 			of the whole file will be done in background to fill the cache instead
+	 */
+	private static List<Tokenized> tokenize(List<String> lines, @Nullable String fileName, 
+			@Nullable ObjectId blobId, int lastChangedLine) {
 		Tokenizer tokenizer = TokenizerRegistry.getTokenizer(fileName);
 		if (tokenizer != null) {
-			List<Tokenized> tokenizedLines = tokenizer.tokenize(lines);
-			List<Tokenized> refinedTokens = new ArrayList<>();
-			int index = 0;
-			for (Tokenized tokenizedLine: tokenizedLines) {
-				List<Long> refinedLine = new ArrayList<>();
-				for (long token: tokenizedLine.getTokens()) {
-					int typeId = TokenUtils.getTypeId(token);
-					if (typeId == 0 || (typeId & TokenTypes.COMMENT) != 0 || (typeId & TokenTypes.STRING) != 0 
-							|| (typeId & TokenTypes.STRING2) != 0 || (typeId & TokenTypes.META) != 0
-							|| (typeId & TokenTypes.LINK) != 0 || (typeId & TokenTypes.ATTRIBUTE) != 0
-							|| (typeId & TokenTypes.PROPERTY) != 0) {
-						refinedLine.addAll(splitByWord(lines.get(index), token));
-					} else {
-						refinedLine.add(token);
+			if (blobId != null && blobId.equals(ObjectId.zeroId()))
+				blobId = null;
+			String tokenizerName = tokenizer.getClass().getName();
+			if (blobId != null) {
+				List<Tokenized> tokenizedLines = TokenizedCache.get(blobId, tokenizerName, lines);
+				if (tokenizedLines != null)
+					return tokenizedLines;
+			}
+			
+			int highlightLines = lastChangedLine + PARTIAL_TOKENIZE_MARGIN + 1;
+			if (blobId != null && lines.size() > PARTIAL_TOKENIZE_THRESHOLD && highlightLines < lines.size()) {
+				List<String> highlightPart = lines.subList(0, highlightLines);
+				List<Tokenized> tokenizedLines = refine(highlightPart, tokenizer.tokenize(highlightPart));
+				for (String line: lines.subList(highlightLines, lines.size())) {
+					long[] tokens = TokenUtils.toArray(splitByWord(line, TokenUtils.getToken(0, line.length(), 0)));
+					tokenizedLines.add(new Tokenized(line, tokens));
+				}
+				
+				ObjectId blobIdCopy = blobId.copy();
+				String tokenizingKey = blobIdCopy.name() + ":" + tokenizerName;
+				if (tokenizingBlobs.add(tokenizingKey)) {
+					try {
+						OneDev.getInstance(ExecutorService.class).execute(new Runnable() {
+	
+							@Override
+							public void run() {
+								try {
+									TokenizedCache.put(blobIdCopy, tokenizerName, refine(lines, tokenizer.tokenize(lines)));
+								} finally {
+									tokenizingBlobs.remove(tokenizingKey);
+								}
+							}
+							
+						});
+					} catch (Exception e) {
+						tokenizingBlobs.remove(tokenizingKey);
+						throw e;
 					}
 				}
-				refinedTokens.add(new Tokenized(tokenizedLine.getText(), TokenUtils.toArray(refinedLine)));
-				index++;
+				return tokenizedLines;
+			} else {
+				List<Tokenized> tokenizedLines = refine(lines, tokenizer.tokenize(lines));
+				if (blobId != null)
+					TokenizedCache.put(blobId, tokenizerName, tokenizedLines);
+				return tokenizedLines;
 			}
-			return refinedTokens;
 		} else {
 			List<Tokenized> tokenizedLines = new ArrayList<>();
 			for (String line: lines) {
@@ -105,6 +181,15 @@ public class DiffUtils {
 	 */
 	public static List<DiffBlock<Tokenized>> diff(List<String> oldLines, @Nullable String oldFileName, 
 			List<String> newLines, @Nullable String newFileName, WhitespaceOption whitespaceOption) {
+		return diff(oldLines, oldFileName, null, newLines, newFileName, null, whitespaceOption);
+	}
+	
+	/**
+	 * Diff two list of strings. Tokenization result will be cached if blob id is specified.
+	 */
+	public static List<DiffBlock<Tokenized>> diff(List<String> oldLines, @Nullable String oldFileName, 
+			@Nullable ObjectId oldBlobId, List<String> newLines, @Nullable String newFileName, 
+			@Nullable ObjectId newBlobId, WhitespaceOption whitespaceOption) {
 		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
 				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
 		
@@ -116,14 +201,31 @@ public class DiffUtils {
 		for (String line: newLines) 
 			processedNewLines.add(whitespaceOption.process(line));
 		
-		List<Tokenized> oldTokenizedLines = tokenize(oldLines, oldFileName);
-		List<Tokenized> newTokenizedLines = tokenize(newLines, newFileName);
-
 		DiffMatchPatch dmp = new DiffMatchPatch();
 		TokensToCharsResult<String> result1 = tokensToChars(processedOldLines, processedNewLines);
 		
 		List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result1.chars1, result1.chars2, false);
 
+		int lastChangedOldLine = -1;
+		int lastChangedNewLine = -1;
+		int oldIndex = 0;
+		int newIndex = 0;
+		for (Diff diff: diffs) {
+			if (diff.operation == Operation.EQUAL) {
+				oldIndex += diff.text.length();
+				newIndex += diff.text.length();
+			} else if (diff.operation == Operation.INSERT) {
+				newIndex += diff.text.length();
+				lastChangedNewLine = newIndex-1;
+			} else {
+				oldIndex += diff.text.length();
+				lastChangedOldLine = oldIndex-1;
+			}
+		}
+		
+		List<Tokenized> oldTokenizedLines = tokenize(oldLines, oldFileName, oldBlobId, lastChangedOldLine);
+		List<Tokenized> newTokenizedLines = tokenize(newLines, newFileName, newBlobId, lastChangedNewLine);
+
 		List<DiffBlock<Tokenized>> diffBlocks = new ArrayList<>();
 		int oldLineNo = 0;
 		int newLineNo = 0;
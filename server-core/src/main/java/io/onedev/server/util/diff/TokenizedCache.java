@@ -0,0 +1,111 @@
+package io.onedev.server.util.diff;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.jsyntax.Tokenized;
+
+/**
+ * Process wide cache of tokenization result of blobs. Tokens of each line are kept as
+ * a long array, and line text is not cached as it can be re-constructed from the blob
+ * cheaply. Total number of cached tokens is capped, and least recently used entries
+ * will be evicted when cap is exceeded.
+ */
+public class TokenizedCache {
+
+	private static final long MAX_CACHED_TOKENS = 4*1024*1024;
+
+	private static final Map<Key, long[][]> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+	private static long cachedTokens;
+
+	@Nullable
+	public static List<Tokenized> get(ObjectId blobId, String tokenizerName, List<String> lines) {
+		long[][] tokens;
+		synchronized (cache) {
+			tokens = cache.get(new Key(blobId, tokenizerName));
+		}
+		if (tokens != null && tokens.length == lines.size()) {
+			List<Tokenized> tokenizedLines = new ArrayList<>(lines.size());
+			for (int i=0; i<lines.size(); i++)
+				tokenizedLines.add(new Tokenized(lines.get(i), tokens[i]));
+			return tokenizedLines;
+		} else {
+			return null;
+		}
+	}
+
+	public static void put(ObjectId blobId, String tokenizerName, List<Tokenized> tokenizedLines) {
+		long[][] tokens = new long[tokenizedLines.size()][];
+		long count = 0;
+		for (int i=0; i<tokens.length; i++) {
+			tokens[i] = tokenizedLines.get(i).getTokens();
+			count += tokens[i].length;
+		}
+		if (count > MAX_CACHED_TOKENS/4)
+			return;
+
+		synchronized (cache) {
+			long[][] prevTokens = cache.put(new Key(blobId, tokenizerName), tokens);
+			if (prevTokens != null)
+				cachedTokens -= count(prevTokens);
+			cachedTokens += count;
+			Iterator<long[][]> it = cache.values().iterator();
+			while (cachedTokens > MAX_CACHED_TOKENS && it.hasNext()) {
+				cachedTokens -= count(it.next());
+				it.remove();
+			}
+		}
+	}
+
+	private static long count(long[][] tokens) {
+		long count = 0;
+		for (long[] lineTokens: tokens)
+			count += lineTokens.length;
+		return count;
+	}
+
+	private static class Key {
+
+		private final ObjectId blobId;
+
+		private final String tokenizerName;
+
+		Key(ObjectId blobId, String tokenizerName) {
+			this.blobId = blobId.copy();
+			this.tokenizerName = tokenizerName;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+			if (this == other)
+				return true;
+			Key otherKey = (Key) other;
+			return new EqualsBuilder()
+					.append(blobId, otherKey.blobId)
+					.append(tokenizerName, otherKey.tokenizerName)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+					.append(blobId)
+					.append(tokenizerName)
+					.toHashCode();
+		}
+
+	}
+
+}
@@ -28,6 +28,9 @@ public class BuildProcessor extends ReferenceParser implements MarkdownProcessor
 	protected String toHtml(ProjectScopedNumber referenceable, String referenceText) {
 		CharSequence url = RequestCycle.get().urlFor(
 				BuildDashboardPage.class, BuildDashboardPage.paramsOf(referenceable, null)); 
+		ProcessContext context = ProcessContext.get();
+		if (context != null)
+			context.addBuild(referenceable.getProject(), referenceable.getNumber());
 		Build build = OneDev.getInstance(BuildManager.class).find(referenceable);
 		if (build != null && build.getVersion() != null)
 			referenceText += " (" + HtmlEscape.escapeHtml5(build.getVersion()) + ")";
@@ -1,17 +1,24 @@
 package io.onedev.server.util.markdown;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.jsoup.nodes.Document;
 
+import com.google.common.base.Objects;
 import com.vladsch.flexmark.Extension;
 import com.vladsch.flexmark.ast.Node;
 import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
@@ -26,24 +33,58 @@ import com.vladsch.flexmark.parser.ParserEmulationProfile;
 import com.vladsch.flexmark.util.options.MutableDataHolder;
 import com.vladsch.flexmark.util.options.MutableDataSet;
 
+import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.HtmlUtils;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Build;
 import io.onedev.server.model.Project;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Sessional;
 
+/**
+ * Parser and renderer are thread-safe and are created once. Rendered html is cached by
+ * markdown content, and processed html is cached by project, content and base url of
+ * current request (references are rendered as urls relative to current page). Processors
+ * report referenced entities via {@link ProcessContext}, and processed html is removed from 
+ * cache when entities it refers to are changed:
+ * <ul>
+ * <li>Commits: processed html of the project is removed when refs of the project are updated
+ * <li>Builds: processed html referencing a build is removed when the build is changed, as 
+ * build version is displayed in the reference
+ * <li>Projects: processed html of a project, or referencing a project by id or by name, is 
+ * removed when the project is changed, as project name is used in urls of references
+ * </ul>
+ * Users are not resolved while processing, so user changes do not affect cache. Processing 
+ * with a context is not cached, as it may be specific to current user.
+ */
 @Singleton
 public class DefaultMarkdownManager implements MarkdownManager {
-	
-	private final Set<Extension> contributedExtensions;
-	
+
+	private static final int MAX_CACHE_ENTRIES = 10000;
+
 	private final Set<MarkdownProcessor> htmlTransformers;
-	
+
+	private final TransactionManager transactionManager;
+
+	private final Parser parser;
+
+	private final HtmlRenderer htmlRenderer;
+
+	private final Map<String, String> renderCache = new LruMap<>();
+
+	private final Map<ProcessKey, Processed> processCache = new LruMap<>();
+
+	private long processGeneration;
+
 	@Inject
-	public DefaultMarkdownManager(Set<Extension> contributedExtensions, Set<MarkdownProcessor> htmlTransformers) {
-		this.contributedExtensions = contributedExtensions;
+	public DefaultMarkdownManager(Set<Extension> contributedExtensions, Set<MarkdownProcessor> htmlTransformers,
+			TransactionManager transactionManager) {
 		this.htmlTransformers = htmlTransformers;
-	}
+		this.transactionManager = transactionManager;
 
-	@Override
-	public String render(String markdown) {
 		List<Extension> extensions = new ArrayList<>();
 		extensions.add(AnchorLinkExtension.create());
 		extensions.add(TablesExtension.create());
@@ -66,12 +107,25 @@ public class DefaultMarkdownManager implements MarkdownManager {
 				.set(TablesExtension.HEADER_SEPARATOR_COLUMN_MATCH, true)
 				.set(Parser.EXTENSIONS, extensions);
 
-		Parser parser = Parser.builder(options).build();
+		parser = Parser.builder(options).build();
+		htmlRenderer = HtmlRenderer.builder(options).build();
+	}
 
-		HtmlRenderer htmlRenderer = HtmlRenderer.builder(options).build();
-		
-		Node document = parser.parse(markdown);
-		return htmlRenderer.render(document);
+	@Override
+	public String render(String markdown) {
+		String key = DigestUtils.sha256Hex(markdown);
+		String rendered;
+		synchronized (renderCache) {
+			rendered = renderCache.get(key);
+		}
+		if (rendered == null) {
+			Node document = parser.parse(markdown);
+			rendered = htmlRenderer.render(document);
+			synchronized (renderCache) {
+				renderCache.put(key, rendered);
+			}
+		}
+		return rendered;
 	}
 
 	@Override
@@ -83,10 +137,159 @@ public class DefaultMarkdownManager implements MarkdownManager {
 
 	@Override
 	public String process(@Nullable Project project, String rendered, @Nullable Object context) {
+		if (context != null)
+			return doProcess(project, rendered, context);
+
+		RequestCycle requestCycle = RequestCycle.get();
+		String baseUrl;
+		if (requestCycle != null)
+			baseUrl = requestCycle.getUrlRenderer().getBaseUrl().getPath();
+		else
+			baseUrl = null;
+		ProcessKey key = new ProcessKey(AbstractEntity.idOf(project), baseUrl, DigestUtils.sha256Hex(rendered));
+
+		long generation;
+		Processed processed;
+		synchronized (processCache) {
+			processed = processCache.get(key);
+			generation = processGeneration;
+		}
+		if (processed == null) {
+			ProcessContext processContext = new ProcessContext();
+			ProcessContext.push(processContext);
+			try {
+				processed = new Processed(doProcess(project, rendered, null), processContext);
+			} finally {
+				ProcessContext.pop();
+			}
+			synchronized (processCache) {
+				// discard the result if some referenced entity is changed while processing
+				if (processGeneration == generation)
+					processCache.put(key, processed);
+			}
+		}
+		return processed.html;
+	}
+
+	private String doProcess(@Nullable Project project, String rendered, @Nullable Object context) {
 		Document document = HtmlUtils.clean(rendered);
 		for (MarkdownProcessor htmlTransformer: htmlTransformers)
 			htmlTransformer.process(project, document, context);
 		return document.body().html();
 	}
 
+	private void invalidate(Predicate<Map.Entry<ProcessKey, Processed>> affected) {
+		synchronized (processCache) {
+			processGeneration++;
+			for (Iterator<Map.Entry<ProcessKey, Processed>> it = processCache.entrySet().iterator(); it.hasNext();) {
+				if (affected.test(it.next()))
+					it.remove();
+			}
+		}
+	}
+
+	/*
+	 * Processing started before commit but finished after invalidation is discarded via 
+	 * generation check, so it is enough to invalidate after commit 
+	 */
+	private void invalidateAfterCommit(Predicate<Map.Entry<ProcessKey, Processed>> affected) {
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				invalidate(affected);
+			}
+
+		});
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		Long projectId = event.getProject().getId();
+		invalidateAfterCommit(it->projectId.equals(it.getKey().projectId));
+	}
+
+	private void onEntityChanged(AbstractEntity entity) {
+		if (entity instanceof Project) {
+			Project project = (Project) entity;
+			invalidateAfterCommit(it->project.getId().equals(it.getKey().projectId) 
+					|| it.getValue().context.isAffectedBy(project));
+		} else if (entity instanceof Build) {
+			Build build = (Build) entity;
+			invalidateAfterCommit(it->it.getValue().context.isAffectedBy(build));
+		}
+	}
+
+	@Listen
+	public void on(EntityPersisted event) {
+		onEntityChanged(event.getEntity());
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		onEntityChanged(event.getEntity());
+	}
+
+	private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		public LruMap() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > MAX_CACHE_ENTRIES;
+		}
+
+	}
+
+	private static class Processed {
+		
+		private final String html;
+		
+		private final ProcessContext context;
+		
+		Processed(String html, ProcessContext context) {
+			this.html = html;
+			this.context = context;
+		}
+		
+	}
+	
+	private static class ProcessKey {
+
+		private final Long projectId;
+
+		private final String baseUrl;
+
+		private final String hash;
+
+		ProcessKey(@Nullable Long projectId, @Nullable String baseUrl, String hash) {
+			this.projectId = projectId;
+			this.baseUrl = baseUrl;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof ProcessKey) {
+				ProcessKey otherKey = (ProcessKey) other;
+				return Objects.equal(projectId, otherKey.projectId)
+						&& Objects.equal(baseUrl, otherKey.baseUrl)
+						&& hash.equals(otherKey.hash);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(projectId, baseUrl, hash);
+		}
+
+	}
+
 }
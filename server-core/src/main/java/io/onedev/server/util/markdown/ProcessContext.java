@@ -0,0 +1,85 @@
+package io.onedev.server.util.markdown;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Stack;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
+
+/**
+ * Records entities referenced while processing markdown, so that cached result of the 
+ * processing can be invalidated only when these entities are changed. Markdown processors 
+ * should report references to current context if there is one.
+ */
+public class ProcessContext {
+
+	private static ThreadLocal<Stack<ProcessContext>> stack =  new ThreadLocal<Stack<ProcessContext>>() {
+
+		@Override
+		protected Stack<ProcessContext> initialValue() {
+			return new Stack<ProcessContext>();
+		}
+	
+	};
+	
+	private final Set<Long> projectIds = new HashSet<>();
+	
+	private final Set<String> projectNames = new HashSet<>();
+	
+	private final Set<String> builds = new HashSet<>();
+	
+	public static void push(ProcessContext context) {
+		stack.get().push(context);
+	}
+
+	public static void pop() {
+		stack.get().pop();
+	}
+
+	@Nullable
+	public static ProcessContext get() {
+		if (!stack.get().isEmpty()) 
+			return stack.get().peek();
+		else 
+			return null;
+	}
+	
+	/**
+	 * Report that processed html contains information of specified project, for instance 
+	 * its name in urls
+	 */
+	public void addProject(Project project) {
+		projectIds.add(project.getId());
+	}
+	
+	/**
+	 * Report that a project is looked up by specified name, no matter whether it is found 
+	 * or not
+	 */
+	public void addProjectName(String projectName) {
+		projectNames.add(projectName);
+	}
+	
+	/**
+	 * Report that processed html contains information of specified build
+	 */
+	public void addBuild(Project project, Long buildNumber) {
+		builds.add(getBuildKey(project.getId(), buildNumber));
+	}
+	
+	public boolean isAffectedBy(Project project) {
+		return projectIds.contains(project.getId()) || projectNames.contains(project.getName());
+	}
+	
+	public boolean isAffectedBy(Build build) {
+		return builds.contains(getBuildKey(build.getProject().getId(), build.getNumber()));
+	}
+	
+	private String getBuildKey(Long projectId, Long buildNumber) {
+		return projectId + "#" + buildNumber;
+	}
+	
+}
@@ -74,14 +74,19 @@ public class ReferenceParser {
 				String referenceProjectName = matcher.group(3);
 				Long referenceNumber = Long.valueOf(matcher.group(5));
 
+				ProcessContext context = ProcessContext.get();
 				Project referenceProject;
 				if (referenceProjectName != null) {
 					referenceProject = OneDev.getInstance(ProjectManager.class).find(referenceProjectName);
 					referenceText += referenceProjectName;
+					if (context != null)
+						context.addProjectName(referenceProjectName);
 				} else {
 					referenceProject = project;
 				}
 				referenceText += "#" + referenceNumber;
+				if (referenceProject != null && context != null)
+					context.addProject(referenceProject);
 				
 				String referenceTag;
 				if (referenceProject != null) {
@@ -0,0 +1,36 @@
+package io.onedev.server.util.metrics;
+
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Singleton
+public class DefaultMetricRegistry implements MetricRegistry {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultMetricRegistry.class);
+	
+	private final Set<MetricSource> sources;
+	
+	@Inject
+	public DefaultMetricRegistry(Set<MetricSource> sources) {
+		this.sources = sources;
+	}
+	
+	@Override
+	public String export() {
+		MetricCollector collector = new MetricCollector();
+		for (MetricSource source: sources) {
+			try {
+				source.collect(collector);
+			} catch (Exception e) {
+				logger.error("Error collecting metrics from " + source.getClass().getName(), e);
+			}
+		}
+		return collector.toString();
+	}
+
+}
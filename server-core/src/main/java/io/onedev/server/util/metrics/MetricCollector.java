@@ -0,0 +1,119 @@
+package io.onedev.server.util.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Collects metric samples and renders them in Prometheus text exposition format.
+ * Samples of same metric are grouped together regardless of the order they are
+ * collected. Labels are specified as alternating names and values.
+ */
+public class MetricCollector {
+
+	private final Map<String, Family> families = new LinkedHashMap<>();
+
+	public void gauge(String name, String help, double value, String...labels) {
+		getFamily(name, help, "gauge").samples.add(name + format(labels, null) + " " + format(value));
+	}
+
+	public void counter(String name, String help, double value, String...labels) {
+		getFamily(name, help, "counter").samples.add(name + format(labels, null) + " " + format(value));
+	}
+
+	/**
+	 * @param bounds
+	 * 			upper bounds of buckets
+	 * @param counts
+	 * 			count of observations falling into each bucket (not cumulative), with an
+	 * 			extra last element for observations exceeding the largest bound
+	 * @param sum
+	 * 			sum of all observations
+	 */
+	public void histogram(String name, String help, double[] bounds, long[] counts, double sum,
+			String...labels) {
+		Preconditions.checkArgument(counts.length == bounds.length+1);
+		Family family = getFamily(name, help, "histogram");
+		long count = 0;
+		for (int i=0; i<bounds.length; i++) {
+			count += counts[i];
+			family.samples.add(name + "_bucket" + format(labels, format(bounds[i])) + " " + count);
+		}
+		count += counts[bounds.length];
+		family.samples.add(name + "_bucket" + format(labels, "+Inf") + " " + count);
+		family.samples.add(name + "_sum" + format(labels, null) + " " + format(sum));
+		family.samples.add(name + "_count" + format(labels, null) + " " + count);
+	}
+
+	private Family getFamily(String name, String help, String type) {
+		Family family = families.get(name);
+		if (family == null) {
+			family = new Family(help, type);
+			families.put(name, family);
+		} else {
+			Preconditions.checkState(family.type.equals(type), "Metric '%s' is already collected as %s",
+					name, family.type);
+		}
+		return family;
+	}
+
+	private String format(String[] labels, String le) {
+		Preconditions.checkArgument(labels.length % 2 == 0);
+		if (labels.length != 0 || le != null) {
+			List<String> pairs = new ArrayList<>();
+			for (int i=0; i<labels.length; i+=2)
+				pairs.add(labels[i] + "=\"" + escape(labels[i+1]) + "\"");
+			if (le != null)
+				pairs.add("le=\"" + le + "\"");
+			return "{" + String.join(",", pairs) + "}";
+		} else {
+			return "";
+		}
+	}
+
+	private String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private String format(double value) {
+		if (Double.isInfinite(value))
+			return value>0? "+Inf": "-Inf";
+		else if (value == Math.rint(value))
+			return String.valueOf((long) value);
+		else
+			return String.valueOf(value);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, Family> entry: families.entrySet()) {
+			Family family = entry.getValue();
+			builder.append("# HELP ").append(entry.getKey()).append(" ")
+					.append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append("\n");
+			builder.append("# TYPE ").append(entry.getKey()).append(" ").append(family.type).append("\n");
+			for (String sample: family.samples)
+				builder.append(sample).append("\n");
+		}
+		return builder.toString();
+	}
+
+	private static class Family {
+
+		final String help;
+
+		final String type;
+
+		final List<String> samples = new ArrayList<>();
+
+		Family(String help, String type) {
+			this.help = help;
+			this.type = type;
+		}
+
+	}
+
+}
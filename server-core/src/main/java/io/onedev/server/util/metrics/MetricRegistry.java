@@ -0,0 +1,13 @@
+package io.onedev.server.util.metrics;
+
+public interface MetricRegistry {
+
+	/**
+	 * Collect metrics from all contributed metric sources
+	 * 
+	 * @return
+	 * 			metrics in Prometheus text exposition format
+	 */
+	String export();
+	
+}
@@ -0,0 +1,15 @@
+package io.onedev.server.util.metrics;
+
+import io.onedev.commons.launcher.loader.ExtensionPoint;
+
+/**
+ * Source of server metrics. Metrics are collected only when requested, so sources 
+ * should report state they already maintain instead of tracking extra state in hot 
+ * paths.
+ */
+@ExtensionPoint
+public interface MetricSource {
+	
+	void collect(MetricCollector collector);
+	
+}
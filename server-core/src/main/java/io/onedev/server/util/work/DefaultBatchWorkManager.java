@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.stream.Collectors;
@@ -12,6 +13,7 @@ import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.slf4j.Logger;
@@ -23,9 +25,11 @@ import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.util.SecurityUtils;
 import io.onedev.server.util.concurrent.Prioritized;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
 
 @Singleton
-public class DefaultBatchWorkManager implements BatchWorkManager, Runnable {
+public class DefaultBatchWorkManager implements BatchWorkManager, Runnable, MetricSource {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultBatchWorkManager.class);
 	
@@ -117,6 +121,35 @@ public class DefaultBatchWorkManager implements BatchWorkManager, Runnable {
 		notify();
 	}
 
+	/*
+	 * Worker ids are in form of <scope>-<scope id>-<type>, and metrics are reported per 
+	 * worker type, for instance "indexBlob", "collectCommitInfo" or "previewMerge"
+	 */
+	private String getWorkerType(BatchWorker worker) {
+		return StringUtils.substringAfterLast(worker.getId(), "-");
+	}
+	
+	@Override
+	public void collect(MetricCollector collector) {
+		Map<String, int[]> countsOfTypes = new TreeMap<>();
+		synchronized (this) {
+			for (Map.Entry<BatchWorker, Works> entry: works.entrySet()) {
+				int[] counts = countsOfTypes.computeIfAbsent(getWorkerType(entry.getKey()), k -> new int[3]);
+				counts[0]++;
+				counts[1] += entry.getValue().queued.size();
+				counts[2] += entry.getValue().working.size();
+			}
+		}
+		for (Map.Entry<String, int[]> entry: countsOfTypes.entrySet()) {
+			collector.gauge("onedev_batch_workers", "Number of batch workers having works", 
+					entry.getValue()[0], "type", entry.getKey());
+			collector.gauge("onedev_batch_works_queued", "Number of queued batch works", 
+					entry.getValue()[1], "type", entry.getKey());
+			collector.gauge("onedev_batch_works_working", "Number of batch works being worked on", 
+					entry.getValue()[2], "type", entry.getKey());
+		}
+	}
+	
 	private static class Works {
 		BlockingQueue<Prioritized> queued = new PriorityBlockingQueue<>();
 		
@@ -4,7 +4,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RunnableFuture;
@@ -20,11 +19,13 @@ import io.onedev.server.util.SecurityUtils;
 import io.onedev.server.util.concurrent.PrioritizedCallable;
 import io.onedev.server.util.concurrent.PrioritizedFutureTask;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
 
 @Singleton
-public class DefaultWorkExecutor implements WorkExecutor {
+public class DefaultWorkExecutor implements WorkExecutor, MetricSource {
 
-	private final ExecutorService delegator = new ThreadPoolExecutor(
+	private final ThreadPoolExecutor delegator = new ThreadPoolExecutor(
 			Runtime.getRuntime().availableProcessors(), 
 			Runtime.getRuntime().availableProcessors(), 
 			0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>()) {
@@ -87,6 +88,18 @@ public class DefaultWorkExecutor implements WorkExecutor {
 		return delegator.invokeAny(SecurityUtils.inheritSubject(tasks), timeout, unit);
 	}
 
+	@Override
+	public void collect(MetricCollector collector) {
+		collector.gauge("onedev_work_executor_threads", "Number of threads of work executor", 
+				delegator.getPoolSize());
+		collector.gauge("onedev_work_executor_active_threads", "Number of threads running works", 
+				delegator.getActiveCount());
+		collector.gauge("onedev_work_executor_queued_works", "Number of works waiting for a thread", 
+				delegator.getQueue().size());
+		collector.counter("onedev_work_executor_completed_works_total", "Number of completed works", 
+				delegator.getCompletedTaskCount());
+	}
+	
 	@Listen
 	public void on(SystemStopping event) {
 		delegator.shutdown();
@@ -25,6 +25,7 @@ import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
 import org.apache.wicket.application.IComponentInstantiationListener;
 import org.apache.wicket.core.request.handler.ComponentNotFoundException;
 import org.apache.wicket.core.request.handler.EmptyAjaxRequestHandler;
+import org.apache.wicket.core.request.handler.IPageClassRequestHandler;
 import org.apache.wicket.core.request.handler.ListenerInvocationNotAllowedException;
 import org.apache.wicket.core.request.handler.PageProvider;
 import org.apache.wicket.core.request.handler.RenderPageRequestHandler;
@@ -43,6 +44,7 @@ import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.UrlRenderer;
+import org.apache.wicket.request.cycle.AbstractRequestCycleListener;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.cycle.RequestCycleContext;
 import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
@@ -56,6 +58,7 @@ import de.agilecoders.wicket.core.settings.BootstrapSettings;
 import io.onedev.commons.launcher.bootstrap.Bootstrap;
 import io.onedev.commons.launcher.loader.AppLoader;
 import io.onedev.server.OneDev;
+import io.onedev.server.persistence.QueryMonitor;
 import io.onedev.server.web.page.base.BasePage;
 import io.onedev.server.web.page.error.ErrorPage;
 import io.onedev.server.web.page.layout.UICustomization;
@@ -152,6 +155,18 @@ public class OneWebApplication extends WebApplication {
 			
 		});
 
+		getRequestCycleListeners().add(new AbstractRequestCycleListener() {
+
+			@Override
+			public void onRequestHandlerResolved(RequestCycle cycle, IRequestHandler handler) {
+				if (handler instanceof IPageClassRequestHandler) {
+					Class<?> pageClass = ((IPageClassRequestHandler) handler).getPageClass();
+					OneDev.getInstance(QueryMonitor.class).setOperation(pageClass.getSimpleName());
+				}
+			}
+			
+		});
+		
 		WebSocketSettings.Holder.set(this, new WebSocketSettings() {
 
 			@Override
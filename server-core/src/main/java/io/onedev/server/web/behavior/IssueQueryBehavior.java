@@ -132,6 +132,8 @@ public class IssueQueryBehavior extends ANTLRAssistBehavior {
 							List<String> candidates = new ArrayList<>(Issue.ORDER_FIELDS.keySet());
 							if (getProject() != null)
 								candidates.remove(Issue.FIELD_PROJECT);
+							if (issueSetting.getFieldSpec(Issue.FIELD_RELEVANCE) == null)
+								candidates.add(Issue.FIELD_RELEVANCE);
 							for (FieldSpec field: issueSetting.getFieldSpecs()) {
 								if (field instanceof NumberField || field instanceof ChoiceField || field instanceof DateField) 
 									candidates.add(field.getName());
@@ -70,6 +70,7 @@ public class PullRequestQueryBehavior extends ANTLRAssistBehavior {
 							List<String> candidates = new ArrayList<>(PullRequest.ORDER_FIELDS.keySet());
 							if (getProject() != null)
 								candidates.remove(PullRequest.FIELD_TARGET_PROJECT);
+							candidates.add(PullRequest.FIELD_RELEVANCE);
 							return SuggestionUtils.suggest(candidates, matchWith);
 						} else if ("criteriaValue".equals(spec.getLabel())) {
 							List<Element> fieldElements = terminalExpect.getState().findMatchedElementsByLabel("criteriaField", true);
@@ -44,6 +44,13 @@ public class BuildLogPanel extends GenericPanel<Build> {
 				if (!logEntries.isEmpty()) {
 					nextOffset += logEntries.size();
 					
+					/*
+					 * Browser only displays recent entries. Do not send entries to be discarded 
+					 * if browser falls far behind a chatty build
+					 */
+					if (logEntries.size() > MAX_LOG_ENTRIES)
+						logEntries = logEntries.subList(logEntries.size()-MAX_LOG_ENTRIES, logEntries.size());
+					
 					String script = String.format("onedev.server.buildLog.appendLogEntries('%s', %s, %d);", 
 							getMarkupId(), asJSON(logEntries), MAX_LOG_ENTRIES);
 					handler.appendJavaScript(script);
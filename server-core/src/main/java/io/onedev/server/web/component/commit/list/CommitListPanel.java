@@ -59,6 +59,8 @@ import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.RefInfo;
+import io.onedev.server.git.RevListWalker;
+import io.onedev.server.git.RevWalkPool;
 import io.onedev.server.git.command.RevListCommand;
 import io.onedev.server.model.Project;
 import io.onedev.server.search.commit.CommitCriteria;
@@ -152,7 +154,8 @@ public abstract class CommitListPanel extends Panel {
 					if (command.revisions().isEmpty() && getCompareWith() != null)
 						command.revisions(Lists.newArrayList(getCompareWith()));
 					
-					commitHashes = command.call();
+					commitHashes = new RevListWalker(OneDev.getInstance(RevWalkPool.class), 
+							getProject().getRepository()).call(command);
 				} catch (Exception e) {
 					if (e.getMessage() != null)
 						error(e.getMessage());
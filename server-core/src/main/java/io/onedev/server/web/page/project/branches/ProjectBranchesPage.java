@@ -1,18 +1,15 @@
 package io.onedev.server.web.page.project.branches;
 
-import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -53,8 +50,6 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.revwalk.filter.RevFilter;
 
 import com.google.common.base.Preconditions;
 
@@ -64,9 +59,11 @@ import io.onedev.server.OneException;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.PullRequestManager;
+import io.onedev.server.git.AheadBehind;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.RefInfo;
+import io.onedev.server.infomanager.AheadBehindInfoManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.support.BranchProtection;
@@ -156,83 +153,11 @@ public class ProjectBranchesPage extends ProjectPage {
 	private final IModel<Map<ObjectId, AheadBehind>> aheadBehindsModel = 
 			new LoadableDetachableModel<Map<ObjectId, AheadBehind>>() {
 
-		@SuppressWarnings("unused")
 		@Override
 		protected Map<ObjectId, AheadBehind> load() {
-			List<ObjectId> compareIds = getCommitIdsToDisplay();
-
 			Ref baseRef = Preconditions.checkNotNull(getProject().getBranchRef(baseBranch));
-			Map<ObjectId, AheadBehind> aheadBehinds = new HashMap<>();
-			
-			try (RevWalk revWalk = new RevWalk(getProject().getRepository())) {
-				RevCommit baseCommit = revWalk.lookupCommit(baseRef.getObjectId());
-				revWalk.markStart(baseCommit);
-				Map<ObjectId, RevCommit> compareCommits = new HashMap<>();
-				for (ObjectId compareId: compareIds) {
-					RevCommit compareCommit = revWalk.lookupCommit(compareId);
-					compareCommits.put(compareId, compareCommit);
-					revWalk.markStart(compareCommit);
-				}
-				revWalk.setRevFilter(RevFilter.MERGE_BASE);
-				RevCommit mergeBase = revWalk.next();
-				
-				revWalk.reset();
-				revWalk.setRevFilter(RevFilter.ALL);
-
-				if (mergeBase != null) {
-					revWalk.markStart(baseCommit);
-					revWalk.markUninteresting(mergeBase);
-					Set<ObjectId> baseSet = new HashSet<>();
-					for (RevCommit commit: revWalk) 
-						baseSet.add(commit.copy());
-					revWalk.reset();
-					
-					for (ObjectId compareId: compareIds) {
-						RevCommit compareCommit = Preconditions.checkNotNull(compareCommits.get(compareId));
-						revWalk.markStart(compareCommit);
-						revWalk.markUninteresting(mergeBase);
-						Set<ObjectId> compareSet = new HashSet<>();
-						for (RevCommit commit: revWalk) 
-							compareSet.add(commit.copy());
-						revWalk.reset();
-						
-						int ahead = 0;
-						for (ObjectId each: compareSet) {
-							if (!baseSet.contains(each))
-								ahead++;
-						}
-						int behind = 0;
-						for (ObjectId each: baseSet) {
-							if (!compareSet.contains(each))
-								behind++;
-						}
-						aheadBehinds.put(compareId, new AheadBehind(ahead, behind));
-					}					
-				} else {
-					for (ObjectId compareId: compareIds) {
-						RevCommit compareCommit = Preconditions.checkNotNull(compareCommits.get(compareId));
-						revWalk.markUninteresting(baseCommit);
-						revWalk.markStart(compareCommit);
-						int ahead = 0;
-						for (RevCommit commit: revWalk)
-							ahead++;
-						revWalk.reset();
-						
-						revWalk.markUninteresting(compareCommit);
-						revWalk.markStart(baseCommit);
-						int behind = 0;
-						for (RevCommit commit: revWalk)
-							behind++;
-						revWalk.reset();
-						
-						aheadBehinds.put(compareId, new AheadBehind(ahead, behind));
-					}					
-				}
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
-			
-			return aheadBehinds;
+			return OneDev.getInstance(AheadBehindInfoManager.class).getAheadBehinds(
+					getProject(), baseRef.getObjectId(), getCommitIdsToDisplay());
 		}
 	};
 	
@@ -2,12 +2,16 @@ package io.onedev.server.web.websocket;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -26,23 +30,32 @@ import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Sets;
-
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.util.metrics.MetricCollector;
+import io.onedev.server.util.metrics.MetricSource;
 import io.onedev.server.util.schedule.SchedulableTask;
 import io.onedev.server.util.schedule.TaskScheduler;
 import io.onedev.server.web.page.base.BasePage;
 
+/**
+ * Pages observing each observable are indexed, so that change of an observable only 
+ * looks up its observing pages instead of checking all connections. Only pages with 
+ * open connections are indexed, and changes notified before a page connects are 
+ * replayed on connect. Changes are coalesced within a short window, and each connection 
+ * gets at most one message containing all its changed observables in the window.
+ */
 @Singleton
-public class DefaultWebSocketManager implements WebSocketManager {
+public class DefaultWebSocketManager implements WebSocketManager, MetricSource {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultWebSocketManager.class);
 	
+	private static final long NOTIFY_WINDOW = 50;
+	
 	private final Application application;
 	
 	private final TransactionManager transactionManager;
@@ -55,10 +68,18 @@ public class DefaultWebSocketManager implements WebSocketManager {
 	
 	private final Map<String, Map<IKey, Collection<String>>> registeredObservables = new ConcurrentHashMap<>();
 	
+	private final Map<String, Set<PageKey>> observingPages = new ConcurrentHashMap<>();
+	
+	private final Set<String> pendingObservables = ConcurrentHashMap.newKeySet();
+	
+	private final AtomicBoolean dispatching = new AtomicBoolean(false);
+	
 	private final IWebSocketConnectionRegistry connectionRegistry = new SimpleWebSocketConnectionRegistry();
 	
 	private final Map<String, Date> notifiedObservables = new ConcurrentHashMap<>();
 	
+	private final LongAdder sentMessages = new LongAdder();
+	
 	private String keepAliveTaskId;
 
 	private String notifiedObservableCleanupTaskId;
@@ -77,45 +98,83 @@ public class DefaultWebSocketManager implements WebSocketManager {
 	public void observe(BasePage page) {
 		String sessionId = page.getSession().getId();
 		if (sessionId != null) {
-			Map<IKey, Collection<String>> sessionPages = registeredObservables.get(sessionId);
-			if (sessionPages == null) {
-				sessionPages = new ConcurrentHashMap<>();
-				registeredObservables.put(sessionId, sessionPages);
-			}
 			IKey pageKey = new PageIdKey(page.getPageId());
-			Collection<String> observables = page.findWebSocketObservables();
-			Collection<String> prevObservables = sessionPages.put(pageKey, observables);
-			if (prevObservables != null && !prevObservables.containsAll(observables)) {
-				IWebSocketConnection connection = connectionRegistry.getConnection(application, sessionId, pageKey);
-				if (connection != null)
-					notifyPastObservables(connection);
+			observe(new PageKey(sessionId, pageKey), page.findWebSocketObservables());
+		}
+	}
+	
+	void observe(PageKey pageKey, Collection<String> observables) {
+		Map<IKey, Collection<String>> sessionPages = registeredObservables.get(pageKey.getSessionId());
+		if (sessionPages == null) {
+			sessionPages = new ConcurrentHashMap<>();
+			registeredObservables.put(pageKey.getSessionId(), sessionPages);
+		}
+		Collection<String> prevObservables = sessionPages.put(pageKey.getPageId(), observables);
+		IWebSocketConnection connection = connectionRegistry.getConnection(application, 
+				pageKey.getSessionId(), pageKey.getPageId());
+		if (connection != null && connection.isOpen()) {
+			index(pageKey, prevObservables, observables);
+			if (prevObservables != null && !prevObservables.containsAll(observables))
+				notifyPastObservables(connection);
+		}
+	}
+	
+	private void index(PageKey pageKey, @Nullable Collection<String> prevObservables, 
+			Collection<String> observables) {
+		if (prevObservables != null) {
+			for (String observable: prevObservables) {
+				if (!observables.contains(observable)) 
+					unindex(pageKey, observable);
 			}
 		}
+		for (String observable: observables) {
+			observingPages.compute(observable, (k, v) -> {
+				if (v == null)
+					v = ConcurrentHashMap.newKeySet();
+				v.add(pageKey);
+				return v;
+			});
+		}
+	}
+	
+	private void unindex(PageKey pageKey, String observable) {
+		observingPages.computeIfPresent(observable, (k, v) -> {
+			v.remove(pageKey);
+			return v.isEmpty()? null: v;
+		});
 	}
 	
 	@Override
 	public void onDestroySession(String sessionId) {
-		registeredObservables.remove(sessionId);
+		Map<IKey, Collection<String>> sessionPages = registeredObservables.remove(sessionId);
+		if (sessionPages != null) {
+			for (Map.Entry<IKey, Collection<String>> entry: sessionPages.entrySet())
+				index(new PageKey(sessionId, entry.getKey()), entry.getValue(), new HashSet<>());
+		}
+	}
+	
+	@Nullable
+	private Collection<String> getRegisteredObservables(PageKey pageKey) {
+		Map<IKey, Collection<String>> sessionPages = registeredObservables.get(pageKey.getSessionId());
+		if (sessionPages != null) 
+			return sessionPages.get(pageKey.getPageId());
+		else
+			return null;
 	}
 	
 	@Nullable
 	private Collection<String> getRegisteredObservables(IWebSocketConnection connection) {
-		PageKey pageKey = ((WebSocketConnection) connection).getPageKey();
-		if (connection.isOpen()) {
-			Map<IKey, Collection<String>> sessionPages = registeredObservables.get(pageKey.getSessionId());
-			if (sessionPages != null) 
-				return sessionPages.get(pageKey.getPageId());
-			else
-				return null;
-		} else {
+		if (connection.isOpen()) 
+			return getRegisteredObservables(((WebSocketConnection) connection).getPageKey());
+		else 
 			return null;
-		}
 	}
 	
 	private void notifyObservables(IWebSocketConnection connection, Collection<String> observables) {
 		String message = OBSERVABLE_CHANGED + ":" + StringUtils.join(observables, "\n"); 
 		try {
 			connection.sendMessage(message);
+			sentMessages.increment();
 		} catch (Exception e) {
 			logger.error("Error sending websocket message: " + message, e);
 		}
@@ -128,24 +187,83 @@ public class DefaultWebSocketManager implements WebSocketManager {
 
 			@Override
 			public void run() {
-				executorService.execute(new Runnable() {
-
-					@Override
-					public void run() {
-						notifiedObservables.put(observable, new Date());
-						for (IWebSocketConnection connection: connectionRegistry.getConnections(application)) {
-							Collection<String> registeredObservables = getRegisteredObservables(connection); 
-							if (registeredObservables != null && registeredObservables.contains(observable))
-								notifyObservables(connection, Sets.newHashSet(observable));
-						}
+				notifiedObservables.put(observable, new Date());
+				pendingObservables.add(observable);
+				if (dispatching.compareAndSet(false, true)) {
+					try {
+						executorService.execute(new Runnable() {
+		
+							@Override
+							public void run() {
+								dispatchPendingObservables();
+							}
+							
+						});
+					} catch (RejectedExecutionException e) {
+						// Pending observables will be dispatched with next change
+						dispatching.set(false);
+						logger.error("Error dispatching websocket notifications", e);
 					}
-					
-				});
+				}
 			}
 			
 		});
 	}
 	
+	private void dispatchPendingObservables() {
+		do {
+			try {
+				try {
+					Thread.sleep(NOTIFY_WINDOW);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				
+				Map<PageKey, Collection<String>> changedObservablesOfPages = new HashMap<>();
+				for (Iterator<String> it = pendingObservables.iterator(); it.hasNext();) {
+					String observable = it.next();
+					it.remove();
+					Set<PageKey> pageKeys = observingPages.get(observable);
+					if (pageKeys != null) {
+						for (PageKey pageKey: pageKeys) {
+							Collection<String> changedObservables = changedObservablesOfPages.get(pageKey);
+							if (changedObservables == null) {
+								changedObservables = new HashSet<>();
+								changedObservablesOfPages.put(pageKey, changedObservables);
+							}
+							changedObservables.add(observable);
+						}
+					}
+				}
+				
+				for (Map.Entry<PageKey, Collection<String>> entry: changedObservablesOfPages.entrySet()) 
+					dispatch(entry.getKey(), entry.getValue());
+			} catch (Exception e) {
+				logger.error("Error dispatching websocket notifications", e);
+			} finally {
+				dispatching.set(false);
+			}
+			
+			// observables might be added after draining but before resetting the flag 
+		} while (!pendingObservables.isEmpty() && dispatching.compareAndSet(false, true));
+	}
+	
+	private void dispatch(PageKey pageKey, Collection<String> observables) {
+		try {
+			IWebSocketConnection connection = connectionRegistry.getConnection(application, 
+					pageKey.getSessionId(), pageKey.getPageId());
+			if (connection != null && connection.isOpen()) {
+				notifyObservables(connection, observables);
+			} else {
+				// Page might be indexed while its connection is closing
+				for (String observable: observables)
+					unindex(pageKey, observable);
+			}
+		} catch (Exception e) {
+			logger.error("Error notifying websocket connection", e);
+		}
+	}
+	
 	@Listen
 	public void on(SystemStarted event) {
 		keepAliveTaskId = taskScheduler.schedule(new SchedulableTask() {
@@ -203,9 +321,39 @@ public class DefaultWebSocketManager implements WebSocketManager {
 	 */
 	@Override
 	public void onConnect(IWebSocketConnection connection) {
+		PageKey pageKey = ((WebSocketConnection) connection).getPageKey();
+		Collection<String> observables = getRegisteredObservables(pageKey);
+		if (observables != null)
+			index(pageKey, null, observables);
 		notifyPastObservables(connection);
 	}
 
+	@Override
+	public void onClose(IWebSocketConnection connection) {
+		PageKey pageKey = ((WebSocketConnection) connection).getPageKey();
+		Collection<String> observables = getRegisteredObservables(pageKey);
+		if (observables != null)
+			index(pageKey, observables, new HashSet<>());
+	}
+
+	@Override
+	public void collect(MetricCollector collector) {
+		int openConnections = 0;
+		for (IWebSocketConnection connection: connectionRegistry.getConnections(application)) {
+			if (connection.isOpen())
+				openConnections++;
+		}
+		collector.gauge("onedev_websocket_connections", "Number of open websocket connections", openConnections);
+		collector.gauge("onedev_websocket_observed_sessions", "Number of web sessions observing changes", 
+				registeredObservables.size());
+		collector.gauge("onedev_websocket_observables", "Number of observables being observed", 
+				observingPages.size());
+		collector.gauge("onedev_websocket_pending_observables", "Number of changed observables pending notification", 
+				pendingObservables.size());
+		collector.counter("onedev_websocket_notifications_total", "Number of observable change notifications sent", 
+				sentMessages.sum());
+	}
+	
 	private void notifyPastObservables(IWebSocketConnection connection) {
 		Collection<String> registeredObservables = getRegisteredObservables(connection);
 		if (registeredObservables != null) {
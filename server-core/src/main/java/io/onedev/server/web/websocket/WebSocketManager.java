@@ -19,4 +19,6 @@ public interface WebSocketManager {
 	void notifyObservableChange(String observable);
 	
 	void onConnect(IWebSocketConnection connection);
+	
+	void onClose(IWebSocketConnection connection);
 }
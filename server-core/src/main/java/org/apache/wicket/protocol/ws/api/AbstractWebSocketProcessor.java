@@ -191,7 +191,10 @@ public abstract class AbstractWebSocketProcessor implements IWebSocketProcessor
 	{
 		IKey key = getRegistryKey();
 		broadcastMessage(new ClosedMessage(getApplication(), getSessionId(), key));
+		IWebSocketConnection connection = connectionRegistry.getConnection(getApplication(), getSessionId(), key);
 		connectionRegistry.removeConnection(getApplication(), getSessionId(), key);
+		if (connection != null)
+			OneDev.getInstance(WebSocketManager.class).onClose(connection);
 	}
 
 	/**
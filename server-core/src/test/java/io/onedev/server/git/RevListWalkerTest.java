@@ -0,0 +1,94 @@
+package io.onedev.server.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.command.RevListCommand;
+import io.onedev.server.model.Project;
+import io.onedev.server.storage.StorageManager;
+
+public class RevListWalkerTest extends AbstractGitTest {
+
+	private static final int COMMITS = 300;
+
+	private RevListCommand newCommand() {
+		RevListCommand command = new RevListCommand(git.getRepository().getDirectory());
+		command.ignoreCase(true);
+		return command;
+	}
+
+	@Test
+	public void shouldMatchForkedCommand() {
+		for (int i=0; i<COMMITS; i++) {
+			addFileAndCommit("dir" + (i%3) + "/file" + (i%7), "content " + i,
+					(i%5==0? "Fix issue #": "Work on #") + i);
+		}
+
+		RevListWalker walker = new RevListWalker(new RevWalkPool(Mockito.mock(StorageManager.class)), 
+				git.getRepository());
+
+		RevListCommand command = newCommand();
+		assertEquals(command.call(), walker.call(command));
+
+		command = newCommand().count(50).skip(10);
+		assertEquals(command.call(), walker.call(command));
+
+		command = newCommand().revisions(Lists.newArrayList("master~20", "^master~100"));
+		assertEquals(command.call(), walker.call(command));
+
+		command = newCommand().paths(Lists.newArrayList("dir1"));
+		assertEquals(command.call(), walker.call(command));
+
+		command = newCommand().messages(Lists.newArrayList("fix issue"));
+		List<String> commitHashes = walker.call(command);
+		assertEquals(COMMITS/5, commitHashes.size());
+		assertEquals(command.call(), commitHashes);
+
+		command = newCommand().authors(Lists.newArrayList("<foo@example.com>"));
+		assertEquals(command.call(), walker.call(command));
+
+		command = newCommand().firstParent(true);
+		assertTrue(!RevListWalker.isSupported(command));
+		assertEquals(command.call(), walker.call(command));
+	}
+
+	@Test
+	public void shouldReuseWalksUntilProjectRemoved() {
+		addFileAndCommit("file", "content", "initial commit");
+
+		Project project = new Project();
+		project.setId(1L);
+		StorageManager storageManager = Mockito.mock(StorageManager.class);
+		Mockito.when(storageManager.getProjectGitDir(project.getId())).thenReturn(git.getRepository().getDirectory());
+		RevWalkPool pool = new RevWalkPool(storageManager);
+
+		RevWalk revWalk = pool.borrow(git.getRepository());
+		pool.release(revWalk);
+		assertSame(revWalk, pool.borrow(git.getRepository()));
+		
+		// walk borrowed by others should not be handed out again
+		assertNotSame(revWalk, pool.borrow(git.getRepository()));
+		pool.release(revWalk);
+
+		pool.on(new EntityRemoved(project));
+		assertNotSame(revWalk, pool.borrow(git.getRepository()));
+
+		revWalk = pool.borrow(git.getRepository());
+		pool.release(revWalk);
+		pool.on(new SystemStopping());
+		assertNotSame(revWalk, pool.borrow(git.getRepository()));
+	}
+
+}
@@ -0,0 +1,81 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.infomanager.AbstractEnvironmentManager.StringByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+
+public class AbstractEnvironmentManagerTest {
+
+	private File envDir;
+	
+	private AbstractEnvironmentManager manager;
+	
+	@Before
+	public void before() {
+		envDir = FileUtils.createTempDir();
+		manager = new AbstractEnvironmentManager() {
+
+			@Override
+			protected File getEnvDir(String envKey) {
+				return envDir;
+			}
+
+			@Override
+			protected int getEnvVersion() {
+				return 1;
+			}
+			
+		};
+	}
+	
+	@After
+	public void after() {
+		manager.on(new SystemStopping());
+		FileUtils.deleteDir(envDir);
+	}
+	
+	@Test
+	public void shouldRemoveEarliestEntriesWhenBoundExceeded() {
+		Environment env = manager.getEnv("test");
+		Store store = manager.getStore(env, "default");
+		Store sequenceStore = manager.getStore(env, "sequence");
+		
+		env.executeInTransaction(txn -> {
+			for (int i=1; i<=5; i++) {
+				manager.putBounded(store, sequenceStore, txn, new StringByteIterable("key" + i), 
+						new StringByteIterable("value" + i), 3);
+			}
+		});
+		env.executeInReadonlyTransaction(txn -> {
+			assertNull(store.get(txn, new StringByteIterable("key1")));
+			assertNull(store.get(txn, new StringByteIterable("key2")));
+			for (int i=3; i<=5; i++)
+				assertNotNull(store.get(txn, new StringByteIterable("key" + i)));
+			assertEquals(3, store.count(txn));
+			assertEquals(3, sequenceStore.count(txn));
+		});
+		
+		// Updating an existing entry neither adds a sequence nor evicts other entries
+		env.executeInTransaction(txn -> {
+			manager.putBounded(store, sequenceStore, txn, new StringByteIterable("key3"), 
+					new StringByteIterable("updated"), 3);
+		});
+		env.executeInReadonlyTransaction(txn -> {
+			assertEquals("updated", new String(manager.readBytes(store, txn, 
+					new StringByteIterable("key3"))));
+			assertEquals(3, store.count(txn));
+			assertEquals(3, sequenceStore.count(txn));
+		});
+	}
+	
+}
@@ -0,0 +1,128 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.git.AheadBehind;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.storage.StorageManager;
+
+public class DefaultAheadBehindInfoManagerTest extends AbstractGitTest {
+
+	private static final Long PROJECT_ID = 1L;
+	
+	private File infoDir;
+	
+	private Project project;
+	
+	private DefaultAheadBehindInfoManager manager;
+	
+	@Override
+	protected void setup() {
+		super.setup();
+		infoDir = FileUtils.createTempDir();
+		
+		project = Mockito.mock(Project.class);
+		Mockito.when(project.getId()).thenReturn(PROJECT_ID);
+		Mockito.when(project.getRepository()).thenReturn(git.getRepository());
+		Mockito.when(project.getDefaultBranch()).thenReturn("master");
+		Mockito.when(project.getObjectId("master", false)).thenAnswer(invocation -> resolve("master"));
+		
+		StorageManager storageManager = Mockito.mock(StorageManager.class);
+		Mockito.when(storageManager.getProjectInfoDir(PROJECT_ID)).thenReturn(infoDir);
+		ProjectManager projectManager = Mockito.mock(ProjectManager.class);
+		Mockito.when(projectManager.get(PROJECT_ID)).thenReturn(project);
+		
+		// Derive in calling thread so that results can be checked once event is handled
+		SessionManager sessionManager = Mockito.mock(SessionManager.class);
+		Mockito.doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(sessionManager).runAsync(Mockito.any(Runnable.class));
+		
+		manager = new DefaultAheadBehindInfoManager(storageManager, projectManager, sessionManager);
+	}
+
+	@Override
+	protected void teardown() {
+		manager.on(new SystemStopping());
+		FileUtils.deleteDir(infoDir);
+		super.teardown();
+	}
+	
+	private ObjectId resolve(String revision) {
+		try {
+			return git.getRepository().resolve(revision);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private int count(ObjectId start, ObjectId exclude) throws IOException {
+		try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+			revWalk.markStart(revWalk.parseCommit(start));
+			revWalk.markUninteresting(revWalk.parseCommit(exclude));
+			int count = 0;
+			while (revWalk.next() != null)
+				count++;
+			return count;
+		}
+	}
+	
+	private void assertAheadBehind(ObjectId baseId, ObjectId compareId, AheadBehind aheadBehind) 
+			throws IOException {
+		assertNotNull(aheadBehind);
+		assertEquals(count(compareId, baseId), aheadBehind.getAhead());
+		assertEquals(count(baseId, compareId), aheadBehind.getBehind());
+	}
+	
+	@Test
+	public void shouldDeriveAheadBehindOnRefUpdated() throws Exception {
+		addFileAndCommit("file1", "1", "master 1");
+		addFileAndCommit("file2", "2", "master 2");
+		ObjectId master2 = resolve("master");
+		addFileAndCommit("feature1", "1", "feature 1");
+		ObjectId feature1 = resolve("master");
+		addFileAndCommit("feature2", "2", "feature 2");
+		ObjectId feature2 = resolve("master");
+		updateRef("refs/heads/feature", feature1.name(), null);
+		updateRef("refs/heads/master", master2.name(), null);
+		
+		manager.getAheadBehinds(project, master2, Lists.newArrayList(feature1));
+		
+		// Fast-forward of a branch derives counts against default branch
+		updateRef("refs/heads/feature", feature2.name(), feature1.name());
+		manager.on(new RefUpdated(project, "refs/heads/feature", feature1, feature2));
+		assertAheadBehind(master2, feature2, manager.readAheadBehind(PROJECT_ID, master2, feature2));
+		
+		// Move of default branch derives counts of other branches against it
+		addFileAndCommit("file3", "3", "master 3");
+		ObjectId master3 = resolve("master");
+		manager.on(new RefUpdated(project, "refs/heads/master", master2, master3));
+		assertAheadBehind(master3, feature2, manager.readAheadBehind(PROJECT_ID, master3, feature2));
+		
+		// Force-push is not derived, and counts are calculated when queried
+		ObjectId forced = resolve("master~2");
+		updateRef("refs/heads/feature", forced.name(), feature2.name());
+		manager.on(new RefUpdated(project, "refs/heads/feature", feature2, forced));
+		assertNull(manager.readAheadBehind(PROJECT_ID, master3, forced));
+		assertAheadBehind(master3, forced, 
+				manager.getAheadBehinds(project, master3, Lists.newArrayList(forced)).get(forced));
+	}
+	
+}
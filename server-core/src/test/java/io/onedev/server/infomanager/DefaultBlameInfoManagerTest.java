@@ -0,0 +1,109 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.git.BlameBlock;
+import io.onedev.server.git.command.BlameCommand;
+import io.onedev.server.model.Project;
+import io.onedev.server.storage.StorageManager;
+
+public class DefaultBlameInfoManagerTest extends AbstractGitTest {
+
+	private static final Long PROJECT_ID = 1L;
+	
+	private File infoDir;
+	
+	private Project project;
+	
+	private DefaultBlameInfoManager manager;
+	
+	@Override
+	protected void setup() {
+		super.setup();
+		infoDir = FileUtils.createTempDir();
+		
+		project = Mockito.mock(Project.class);
+		Mockito.when(project.getId()).thenReturn(PROJECT_ID);
+		Mockito.when(project.getRepository()).thenReturn(git.getRepository());
+		Mockito.when(project.getGitDir()).thenReturn(git.getRepository().getDirectory());
+		
+		StorageManager storageManager = Mockito.mock(StorageManager.class);
+		Mockito.when(storageManager.getProjectInfoDir(PROJECT_ID)).thenReturn(infoDir);
+		manager = new DefaultBlameInfoManager(storageManager) {
+
+			@Override
+			int getMaxEntries() {
+				return 2;
+			}
+			
+		};
+	}
+
+	@Override
+	protected void teardown() {
+		manager.on(new SystemStopping());
+		FileUtils.deleteDir(infoDir);
+		super.teardown();
+	}
+	
+	private ObjectId resolve(String revision) {
+		try {
+			return git.getRepository().resolve(revision);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private Set<String> toStrings(Collection<BlameBlock> blocks) {
+		Set<String> strings = new HashSet<>();
+		for (BlameBlock block: blocks)
+			strings.add(block.toString());
+		return strings;
+	}
+	
+	@Test
+	public void shouldDeriveBlameFromCachedParent() {
+		addFileAndCommit("file", "1st line\n2nd line\n3rd line\n4th line\n", "initial commit");
+		ObjectId commitId = resolve("master");
+		manager.getBlame(project, commitId, "file", null);
+		assertNotNull(manager.readBlame(PROJECT_ID, commitId, "file"));
+		
+		addFileAndCommit("file", "first line\n2nd line\n3rd line\nfourth line\nfifth line\n", "second commit");
+		commitId = resolve("master");
+		Collection<BlameBlock> blame = manager.getBlame(project, commitId, "file", null);
+		Collection<BlameBlock> nativeBlame = new BlameCommand(git.getRepository().getDirectory())
+				.commitHash(commitId.name()).file("file").call();
+		assertEquals(toStrings(nativeBlame), toStrings(blame));
+		assertEquals(toStrings(blame), toStrings(manager.readBlame(PROJECT_ID, commitId, "file")));
+	}
+	
+	@Test
+	public void shouldRemoveEarliestBlamesWhenBoundExceeded() {
+		addFileAndCommit("file1", "file1", "add file1");
+		addFileAndCommit("file2", "file2", "add file2");
+		addFileAndCommit("file3", "file3", "add file3");
+		ObjectId commitId = resolve("master");
+		
+		manager.getBlame(project, commitId, "file1", null);
+		manager.getBlame(project, commitId, "file2", null);
+		manager.getBlame(project, commitId, "file3", null);
+		
+		assertNull(manager.readBlame(PROJECT_ID, commitId, "file1"));
+		assertNotNull(manager.readBlame(PROJECT_ID, commitId, "file2"));
+		assertNotNull(manager.readBlame(PROJECT_ID, commitId, "file3"));
+	}
+	
+}
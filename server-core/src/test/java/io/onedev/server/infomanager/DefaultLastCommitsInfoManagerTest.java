@@ -0,0 +1,125 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.storage.StorageManager;
+
+public class DefaultLastCommitsInfoManagerTest extends AbstractGitTest {
+
+	private static final Long PROJECT_ID = 1L;
+	
+	private File infoDir;
+	
+	private Project project;
+	
+	private DefaultLastCommitsInfoManager manager;
+	
+	@Override
+	protected void setup() {
+		super.setup();
+		infoDir = FileUtils.createTempDir();
+		
+		project = Mockito.mock(Project.class);
+		Mockito.when(project.getId()).thenReturn(PROJECT_ID);
+		Mockito.when(project.getRepository()).thenReturn(git.getRepository());
+		Mockito.when(project.getDefaultBranch()).thenReturn("master");
+		
+		StorageManager storageManager = Mockito.mock(StorageManager.class);
+		Mockito.when(storageManager.getProjectInfoDir(PROJECT_ID)).thenReturn(infoDir);
+		ProjectManager projectManager = Mockito.mock(ProjectManager.class);
+		Mockito.when(projectManager.get(PROJECT_ID)).thenReturn(project);
+		
+		// Warm up in calling thread so that results can be checked once event is handled
+		SessionManager sessionManager = Mockito.mock(SessionManager.class);
+		Mockito.doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(sessionManager).runAsync(Mockito.any(Runnable.class));
+		
+		manager = new DefaultLastCommitsInfoManager(storageManager, projectManager, sessionManager) {
+
+			@Override
+			int getMaxEntries() {
+				return 2;
+			}
+			
+		};
+	}
+
+	@Override
+	protected void teardown() {
+		manager.on(new SystemStopping());
+		FileUtils.deleteDir(infoDir);
+		super.teardown();
+	}
+	
+	private ObjectId resolve(String revision) {
+		try {
+			return git.getRepository().resolve(revision);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private Map<String, ObjectId> toIds(Map<String, Value> lastCommits) {
+		Map<String, ObjectId> ids = new HashMap<>();
+		for (Map.Entry<String, Value> entry: lastCommits.entrySet())
+			ids.put(entry.getKey(), entry.getValue().getId());
+		return ids;
+	}
+	
+	@Test
+	public void shouldWarmUpDefaultBranchOnRefUpdated() {
+		addFileAndCommit("file1", "file1", "add file1");
+		addFileAndCommit("dir/file2", "file2", "add file2");
+		ObjectId oldCommitId = resolve("master");
+		addFileAndCommit("file1", "file1 changed", "change file1");
+		ObjectId newCommitId = resolve("master");
+		
+		// Updates of other branches are not warmed up
+		manager.on(new RefUpdated(project, "refs/heads/feature", oldCommitId, newCommitId));
+		assertNull(manager.readLastCommits(PROJECT_ID, newCommitId, ""));
+		
+		manager.on(new RefUpdated(project, "refs/heads/master", oldCommitId, newCommitId));
+		Map<String, Value> warmedUp = manager.readLastCommits(PROJECT_ID, newCommitId, "");
+		assertNotNull(warmedUp);
+		Map<String, ObjectId> ids = toIds(new LastCommitsOfChildren(git.getRepository(), newCommitId));
+		assertEquals(ids, toIds(warmedUp));
+		assertEquals(newCommitId, ids.get("file1"));
+		assertEquals(ids, toIds(manager.getLastCommitsOfChildren(project, newCommitId, null)));
+	}
+	
+	@Test
+	public void shouldRemoveEarliestEntriesWhenBoundExceeded() {
+		addFileAndCommit("file1", "file1", "add file1");
+		addFileAndCommit("dir/file2", "file2", "add file2");
+		ObjectId commitId = resolve("master");
+		
+		manager.getLastCommitsOfChildren(project, commitId, null);
+		manager.getLastCommitsOfChildren(project, commitId, "dir");
+		manager.getLastCommitsOfChildren(project, resolve("master~1"), null);
+		
+		assertNull(manager.readLastCommits(PROJECT_ID, commitId, ""));
+		assertNotNull(manager.readLastCommits(PROJECT_ID, commitId, "dir"));
+		assertNotNull(manager.readLastCommits(PROJECT_ID, resolve("master~1"), ""));
+	}
+	
+}
@@ -0,0 +1,80 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.model.Project;
+import io.onedev.server.storage.StorageManager;
+
+public class DefaultLineMappingInfoManagerTest extends AbstractGitTest {
+
+	private static final Long PROJECT_ID = 1L;
+	
+	private ObjectId insertBlob(String content) throws IOException {
+		try (ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+			ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+			inserter.flush();
+			return blobId;
+		}
+	}
+	
+	private DefaultLineMappingInfoManager newManager(File infoDir) {
+		StorageManager storageManager = Mockito.mock(StorageManager.class);
+		Mockito.when(storageManager.getProjectInfoDir(PROJECT_ID)).thenReturn(infoDir);
+		return new DefaultLineMappingInfoManager(storageManager);
+	}
+	
+	@Test
+	public void shouldReturnCachedMappingSameAsCalculated() throws Exception {
+		ObjectId oldBlobId = insertBlob("line1\nline2\nline3\nline4\nline5");
+		ObjectId newBlobId = insertBlob("line0\nline1\nline2\nline4\nline5\nline6");
+		
+		Project project = Mockito.mock(Project.class);
+		Mockito.when(project.getId()).thenReturn(PROJECT_ID);
+		
+		// Repository is only available for the first call, so later calls must hit the cache
+		Mockito.when(project.getRepository()).thenReturn(git.getRepository())
+				.thenThrow(new IllegalStateException("Line mapping should be cached"));
+		
+		File infoDir = FileUtils.createTempDir();
+		File freshInfoDir = FileUtils.createTempDir();
+		try {
+			DefaultLineMappingInfoManager manager = newManager(infoDir);
+			Map<Integer, Integer> lineMapping = manager.getLineMapping(project, oldBlobId, newBlobId);
+			assertEquals(lineMapping, manager.getLineMapping(project, oldBlobId, newBlobId));
+			manager.on(new SystemStopping());
+			
+			// Cached mapping survives reopening of the store
+			manager = newManager(infoDir);
+			Map<Integer, Integer> cachedLineMapping = manager.getLineMapping(project, oldBlobId, newBlobId);
+			manager.on(new SystemStopping());
+			
+			Mockito.when(project.getRepository()).thenReturn(git.getRepository());
+			manager = newManager(freshInfoDir);
+			Map<Integer, Integer> freshLineMapping = manager.getLineMapping(project, oldBlobId, newBlobId);
+			manager.on(new SystemStopping());
+			
+			assertEquals(freshLineMapping, cachedLineMapping);
+			assertEquals(4, freshLineMapping.size());
+			assertEquals(Integer.valueOf(1), freshLineMapping.get(0));
+			assertEquals(Integer.valueOf(4), freshLineMapping.get(4));
+		} finally {
+			FileUtils.deleteDir(infoDir);
+			FileUtils.deleteDir(freshInfoDir);
+		}
+	}
+	
+}
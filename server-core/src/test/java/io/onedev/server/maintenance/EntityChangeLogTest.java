@@ -0,0 +1,59 @@
+package io.onedev.server.maintenance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.server.persistence.EntityChanges;
+
+public class EntityChangeLogTest {
+
+	private final Map<String, String> idColumns = ImmutableMap.of("o_issue", "o_id", "o_issuefield", "o_id");
+
+	@Test
+	public void shouldNotTreatSingleEntityStatementsAsBulk() {
+		assertNull(EntityChangeLog.getBulkTable("update o_Issue set o_title=?, o_number=? where o_id=?", idColumns));
+		assertNull(EntityChangeLog.getBulkTable("delete from o_Issue where o_id=?", idColumns));
+		assertNull(EntityChangeLog.getBulkTable("DELETE FROM o_Issue WHERE o_id=?", idColumns));
+		assertNull(EntityChangeLog.getBulkTable("update\n    o_Issue \n set\n    o_title=? \n where\n    o_id = ?", idColumns));
+		assertNull(EntityChangeLog.getBulkTable("insert into o_Issue (o_title, o_id) values (?, ?)", idColumns));
+		assertNull(EntityChangeLog.getBulkTable("select o_id from o_Issue where o_id=?", idColumns));
+	}
+
+	@Test
+	public void shouldDetectBulkStatements() {
+		assertEquals("o_issuefield", EntityChangeLog.getBulkTable(
+				"delete from o_IssueField where o_issue_id=?", idColumns));
+		assertEquals("o_issue", EntityChangeLog.getBulkTable(
+				"update o_Issue set o_milestone_id=null where o_milestone_id=?", idColumns));
+		assertEquals("o_issue", EntityChangeLog.getBulkTable(
+				"UPDATE o_Issue SET o_title=? WHERE o_project_id=?", idColumns));
+		// table not mapped to an entity is always treated as changed as a whole
+		assertEquals("o_unknown", EntityChangeLog.getBulkTable(
+				"delete from o_Unknown where o_id=?", idColumns));
+	}
+
+	@Test
+	public void shouldParseLoggedChanges() {
+		Map<String, Long> highWaterMarks = new HashMap<>();
+		EntityChanges changes = EntityChangeLog.parse(Lists.newArrayList(
+				"M Issue 10", "M Build 0", "C", "O", 
+				"U Issue 11", "U Issue 5", "D Issue 5", "D Build 1", "U Build 1", "T o_IssueField", "C"), 
+				highWaterMarks);
+		assertEquals(ImmutableMap.of("Issue", 10L, "Build", 0L), highWaterMarks);
+		assertEquals(Sets.newHashSet(11L), changes.getUpdatedIds("Issue"));
+		assertEquals(Sets.newHashSet(5L), changes.getDeletedIds("Issue"));
+		assertEquals(Sets.newHashSet(1L), changes.getUpdatedIds("Build"));
+		assertEquals(Sets.newHashSet(), changes.getDeletedIds("Build"));
+		assertEquals(Sets.newHashSet("o_issuefield"), changes.getChangedTables());
+	}
+
+}
@@ -0,0 +1,124 @@
+package io.onedev.server.migration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.dom4j.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class DataFilesTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(DataFilesTest.class);
+
+	private static final int FILES = 20;
+
+	private static final int ELEMENTS_PER_FILE = 1000;
+
+	private File domDir;
+
+	private File streamingDir;
+
+	private final ElementMigrator migrator = new ElementMigrator() {
+
+		@Override
+		public void migrate(Element element) {
+			element.element("updateDate").detach();
+			Element submitDateElement = element.element("submitDate");
+			Element lastUpdateElement = element.addElement("lastUpdate");
+			lastUpdateElement.addElement("user").setText(element.elementTextTrim("submitter"));
+			lastUpdateElement.addElement("activity").setText("opened");
+			lastUpdateElement.addElement("date").setText(submitDateElement.getTextTrim());
+			if (element.elementTextTrim("confidential").equals("true"))
+				element.detach();
+		}
+
+	};
+
+	@Before
+	public void before() {
+		domDir = FileUtils.createTempDir("dom");
+		streamingDir = FileUtils.createTempDir("streaming");
+		long id = 1;
+		for (int i=1; i<=FILES; i++) {
+			VersionedDocument dom = new VersionedDocument();
+			Element rootElement = dom.addElement("list");
+			for (int j=0; j<ELEMENTS_PER_FILE; j++, id++) {
+				Element element = rootElement.addElement("io.onedev.server.model.Issue");
+				element.addAttribute("revision", "0.0");
+				element.addElement("id").setText(String.valueOf(id));
+				element.addElement("title").setText("Issue " + id + " <with> & escaped \"characters\"");
+				element.addElement("description").setText(StringUtils.repeat("description of issue " + id + "\n", 20));
+				element.addElement("submitter").setText(String.valueOf(id%100 + 1));
+				element.addElement("submitDate").setText("2019-12-01 10:00:00.0 UTC");
+				element.addElement("updateDate").setText("2019-12-02 10:00:00.0 UTC");
+				element.addElement("confidential").setText(String.valueOf(id%10 == 0));
+			}
+			String fileName = i==1? "Issues.xml": "Issues.xml." + i;
+			dom.writeToFile(new File(domDir, fileName), false);
+			dom.writeToFile(new File(streamingDir, fileName), false);
+		}
+
+		VersionedDocument dom = new VersionedDocument();
+		dom.addElement("list").addElement("io.onedev.server.model.Project")
+				.addElement("updateDate").setText("2019-12-02 10:00:00.0 UTC");
+		dom.writeToFile(new File(domDir, "Projects.xml"), false);
+		dom.writeToFile(new File(streamingDir, "Projects.xml"), false);
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(domDir);
+		FileUtils.deleteDir(streamingDir);
+	}
+
+	@Test
+	public void shouldMigrateSameAsDom() {
+		long domTime = System.currentTimeMillis();
+		for (File file: domDir.listFiles()) {
+			if (file.getName().startsWith("Issues.xml")) {
+				VersionedDocument dom = VersionedDocument.fromFile(file);
+				for (Element element: dom.getRootElement().elements())
+					migrator.migrate(element);
+				dom.writeToFile(file, false);
+			}
+		}
+		domTime = System.currentTimeMillis() - domTime;
+
+		long streamingTime = System.currentTimeMillis();
+		Map<String, ElementMigrator> migrators = new HashMap<>();
+		migrators.put("Issues.xml", migrator);
+		DataFiles.migrateElements(streamingDir, migrators);
+		streamingTime = System.currentTimeMillis() - streamingTime;
+
+		assertEquals(domDir.list().length, streamingDir.list().length);
+		for (File domFile: domDir.listFiles()) {
+			File streamingFile = new File(streamingDir, domFile.getName());
+			assertEquals(toXMLs(domFile), toXMLs(streamingFile));
+		}
+		assertEquals(ELEMENTS_PER_FILE*9/10,
+				VersionedDocument.fromFile(new File(streamingDir, "Issues.xml")).getRootElement().elements().size());
+
+		logger.info("Migrated {} elements in {} data files: {} ms with dom, {} ms with streaming",
+				FILES*ELEMENTS_PER_FILE, FILES, domTime, streamingTime);
+	}
+
+	private List<String> toXMLs(File file) {
+		List<String> xmls = new ArrayList<>();
+		for (Element element: VersionedDocument.fromFile(file).getRootElement().elements())
+			xmls.add(element.asXML());
+		return xmls;
+	}
+
+}
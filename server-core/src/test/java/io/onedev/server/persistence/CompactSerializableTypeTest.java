@@ -0,0 +1,52 @@
+package io.onedev.server.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Test;
+
+public class CompactSerializableTypeTest {
+
+	private LinkedHashMap<String, Boolean> newWatches() {
+		LinkedHashMap<String, Boolean> watches = new LinkedHashMap<>();
+		for (int i=0; i<100; i++)
+			watches.put("Query " + i, i%2 == 0);
+		return watches;
+	}
+
+	@Test
+	public void shouldDecodeEncodedAndLegacyValues() {
+		LinkedHashMap<String, Boolean> watches = newWatches();
+		byte[] encoded = CompactSerializableType.encode(watches);
+		byte[] legacy = SerializationUtils.serialize(watches);
+		assertTrue(encoded.length < legacy.length);
+		assertEquals(watches, CompactSerializableType.decode(encoded));
+		assertEquals(watches, CompactSerializableType.decode(legacy));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void shouldDetectChangesAgainstSnapshot() {
+		CompactSerializableType type = new CompactSerializableType();
+		ArrayList<LinkedHashMap<String, Boolean>> value = new ArrayList<>();
+		value.add(newWatches());
+
+		Object snapshot = type.deepCopy(value);
+		assertNotSame(value, snapshot);
+		assertTrue(type.equals(snapshot, value));
+
+		value.get(0).put("Query 0", false);
+		assertFalse(type.equals(snapshot, value));
+
+		ArrayList<LinkedHashMap<String, Boolean>> assembled =
+				(ArrayList<LinkedHashMap<String, Boolean>>) type.assemble(type.disassemble(value), null);
+		assertEquals(value, assembled);
+	}
+
+}
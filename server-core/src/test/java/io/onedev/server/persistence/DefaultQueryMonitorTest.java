@@ -0,0 +1,42 @@
+package io.onedev.server.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.hibernate.SessionEventListener;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+
+public class DefaultQueryMonitorTest {
+
+	@Test
+	public void shouldAggregateUnitsOfWorkPerOperation() {
+		DefaultQueryMonitor monitor = new DefaultQueryMonitor();
+		
+		for (int i=0; i<2; i++) {
+			SessionEventListener listener = monitor.begin();
+			monitor.setOperation("IssueListPage");
+			for (int j=0; j<3; j++) {
+				monitor.onPrepareStatement("select * from o_Issue where o_id=?");
+				listener.jdbcExecuteStatementStart();
+				listener.jdbcExecuteStatementEnd();
+				monitor.onLoad(null, null, null, null, null);
+			}
+			listener.end();
+		}
+		assertNull(monitor.getOperation());
+		
+		// statements issued outside of unit of work should be ignored
+		monitor.onPrepareStatement("select * from o_Issue");
+		
+		OperationStatistics statistics = Iterables.getOnlyElement(monitor.getStatistics());
+		assertEquals("IssueListPage", statistics.getOperation());
+		assertEquals(2, statistics.getCount());
+		assertEquals(6, statistics.getStatements());
+		assertEquals(6, statistics.getEntityLoads());
+		assertArrayEquals(new long[] {0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0}, statistics.getStatementHistogram());
+	}
+	
+}
@@ -0,0 +1,69 @@
+package io.onedev.server.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class EntityChangesTest {
+
+	@Test
+	public void shouldKeepLastChangeOfEntity() {
+		EntityChanges changes = new EntityChanges();
+		changes.update("Issue", 1L);
+		changes.delete("Issue", 1L);
+		changes.delete("Issue", 2L);
+		changes.update("Issue", 2L);
+		changes.update("Issue", 3L);
+		changes.update("Issue", 3L);
+		changes.update("PullRequest", 1L);
+		changes.changeTable("o_IssueField");
+
+		assertEquals(Sets.newHashSet(2L, 3L), changes.getUpdatedIds("Issue"));
+		assertEquals(Sets.newHashSet(1L), changes.getDeletedIds("Issue"));
+		assertEquals(Sets.newHashSet(1L), changes.getUpdatedIds("PullRequest"));
+		assertTrue(changes.getDeletedIds("PullRequest").isEmpty());
+		assertTrue(changes.getUpdatedIds("Build").isEmpty());
+		assertEquals(Sets.newHashSet("o_issuefield"), changes.getChangedTables());
+	}
+
+	@Test
+	public void shouldReadIncrementAsWritten() throws DocumentException {
+		EntityChanges changes = new EntityChanges();
+		changes.update("Issue", 1L);
+		changes.update("Issue", 2L);
+		changes.delete("Issue", 3L);
+		changes.delete("Milestone", 1L);
+		changes.update("Build", 5L);
+
+		List<String> entityNames = Lists.newArrayList("ModelVersion", "Issue", "Milestone", "Build", "PullRequest");
+		Document increment = DefaultPersistManager.newIncrement(entityNames, Sets.newHashSet("ModelVersion", "Build"), changes);
+		increment = DocumentHelper.parseText(increment.asXML());
+
+		Collection<String> fullEntityNames = new ArrayList<>();
+		EntityChanges readChanges = DefaultPersistManager.readIncrement(increment.getRootElement(), fullEntityNames);
+		assertEquals(Lists.newArrayList("ModelVersion", "Build"), fullEntityNames);
+		assertEquals(Sets.newHashSet(1L, 2L), readChanges.getUpdatedIds("Issue"));
+		assertEquals(Sets.newHashSet(3L), readChanges.getDeletedIds("Issue"));
+		assertTrue(readChanges.getUpdatedIds("Milestone").isEmpty());
+		assertEquals(Sets.newHashSet(1L), readChanges.getDeletedIds("Milestone"));
+		// ids of fully changed entities are not listed, and entities without changes are omitted
+		assertTrue(readChanges.getUpdatedIds("Build").isEmpty());
+		List<String> listedEntityNames = new ArrayList<>();
+		for (Element element: increment.getRootElement().elements())
+			listedEntityNames.add(element.getName());
+		assertEquals(Lists.newArrayList("ModelVersion", "Issue", "Milestone", "Build"), listedEntityNames);
+	}
+
+}
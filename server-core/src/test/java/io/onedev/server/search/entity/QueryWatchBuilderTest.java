@@ -0,0 +1,148 @@
+package io.onedev.server.search.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.OneException;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.User;
+import io.onedev.server.model.support.NamedQuery;
+import io.onedev.server.model.support.QuerySetting;
+import io.onedev.server.model.support.issue.NamedIssueQuery;
+
+public class QueryWatchBuilderTest {
+
+	private static final int USERS = 10000;
+
+	private final AtomicInteger parseCount = new AtomicInteger();
+
+	private final AtomicInteger matchCount = new AtomicInteger();
+
+	private final List<NamedIssueQuery> namedQueries = Lists.newArrayList(
+			new NamedIssueQuery("Open", "open"),
+			new NamedIssueQuery("Closed", "closed"),
+			new NamedIssueQuery("Mine", "mine"));
+
+	private List<User> createUsers() {
+		List<User> users = new ArrayList<>();
+		for (long i=1; i<=USERS; i++) {
+			User user = new User();
+			user.setId(i);
+			Map<String, Boolean> watches = user.getIssueQuerySetting().getQueryWatchSupport().getQueryWatches();
+			if (i%3 == 0)
+				watches.put("Open", true);
+			else if (i%3 == 1)
+				watches.put("Closed", true);
+			else
+				watches.put("Mine", false);
+			users.add(user);
+		}
+		return users;
+	}
+
+	private Map<User, Boolean> getWatches(Issue issue, Collection<User> users) {
+		return new QueryWatchBuilder<Issue>() {
+
+			@Override
+			protected Issue getEntity() {
+				return issue;
+			}
+
+			@Override
+			protected Collection<? extends QuerySetting<?>> getQuerySettings() {
+				List<QuerySetting<?>> querySettings = new ArrayList<>();
+				for (User user: users)
+					querySettings.add(user.getIssueQuerySetting());
+				return querySettings;
+			}
+
+			@Override
+			protected EntityQuery<Issue> parse(String queryString) {
+				parseCount.incrementAndGet();
+				return new FakeQuery(queryString);
+			}
+
+			@Override
+			protected Collection<? extends NamedQuery> getNamedQueries() {
+				return namedQueries;
+			}
+
+		}.getWatches();
+	}
+
+	@Test
+	public void shouldEvaluateUserIndependentQueriesOnce() {
+		List<User> users = createUsers();
+		Issue issue = new Issue();
+
+		Map<User, Boolean> watches = getWatches(issue, users);
+
+		for (User user: users) {
+			if (user.getId()%3 == 0)
+				assertEquals(true, watches.get(user));
+			else if (user.getId()%3 == 2 && user.getId()%2 == 0)
+				assertEquals(false, watches.get(user));
+			else
+				assertTrue(!watches.containsKey(user));
+		}
+
+		assertEquals(namedQueries.size(), parseCount.get());
+
+		// "open" and "closed" are evaluated once, and "mine" is evaluated once without user
+		// plus once for every user watching it
+		int usersWatchingMine = 0;
+		for (User user: users) {
+			if (user.getId()%3 == 2)
+				usersWatchingMine++;
+		}
+		assertEquals(3 + usersWatchingMine, matchCount.get());
+	}
+
+	private class FakeQuery extends EntityQuery<Issue> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String queryString;
+
+		public FakeQuery(String queryString) {
+			this.queryString = queryString;
+		}
+
+		@Override
+		public EntityCriteria<Issue> getCriteria() {
+			return null;
+		}
+
+		@Override
+		public List<EntitySort> getSorts() {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public boolean matches(Issue entity) {
+			matchCount.incrementAndGet();
+			if (queryString.equals("open")) {
+				return true;
+			} else if (queryString.equals("closed")) {
+				return false;
+			} else {
+				User user = User.get();
+				if (user == null)
+					throw new OneException("Please login to perform this query");
+				return user.getId()%2 == 0;
+			}
+		}
+
+	}
+
+}
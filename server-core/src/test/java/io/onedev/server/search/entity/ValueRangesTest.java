@@ -0,0 +1,85 @@
+package io.onedev.server.search.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ValueRangesTest {
+
+	private List<Long> getAllValues(long count) {
+		List<Long> allValues = new ArrayList<>();
+		for (long value = 1; value <= count; value++)
+			allValues.add(value);
+		return allValues;
+	}
+	
+	/*
+	 * Check that values are matched exactly as a plain IN clause would match, including 
+	 * values added after all values are collected
+	 */
+	private void assertSameAsIn(ValueRanges ranges, Set<Long> inValues, List<Long> allValues) {
+		for (Long value: allValues) 
+			assertEquals("value: " + value, inValues.contains(value), ranges.matches(value));
+		long lastValue = allValues.get(allValues.size()-1);
+		for (long value = lastValue+1; value <= lastValue+10; value++)
+			assertEquals("value: " + value, inValues.contains(value), ranges.matches(value));
+	}
+	
+	@Test
+	public void shouldUseRangesForContiguousValues() {
+		List<Long> allValues = getAllValues(5000);
+		Set<Long> inValues = new HashSet<>();
+		for (long value = 1000; value < 4000; value++)
+			inValues.add(value);
+		inValues.add(4500L);
+		
+		ValueRanges ranges = new ValueRanges(inValues, allValues);
+		assertFalse(ranges.isNegated());
+		assertEquals(3, ranges.getCost());
+		assertSameAsIn(ranges, inValues, allValues);
+	}
+	
+	@Test
+	public void shouldStageSparseValues() {
+		List<Long> allValues = getAllValues(10000);
+		Set<Long> inValues = new HashSet<>();
+		for (long value = 2; value <= 10000; value += 2)
+			inValues.add(value);
+		
+		ValueRanges ranges = new ValueRanges(inValues, allValues);
+		assertTrue(ranges.getCost() > EntityCriteria.IN_CLAUSE_LIMIT);
+		assertSameAsIn(ranges, inValues, allValues);
+	}
+	
+	@Test
+	public void shouldNegateComplementForMostlyIncludedValues() {
+		List<Long> allValues = getAllValues(5000);
+		Set<Long> inValues = new HashSet<>();
+		for (Long value: allValues) {
+			if (value % 100 != 0)
+				inValues.add(value);
+		}
+		
+		ValueRanges ranges = new ValueRanges(inValues, allValues);
+		assertTrue(ranges.isNegated());
+		assertEquals(50, ranges.getCost());
+		assertEquals(Long.valueOf(1), ranges.getLowerBound());
+		assertEquals(Long.valueOf(5000), ranges.getUpperBound());
+		assertSameAsIn(ranges, inValues, allValues);
+	}
+	
+	@Test
+	public void shouldMatchNothingForEmptyValues() {
+		List<Long> allValues = getAllValues(100);
+		ValueRanges ranges = new ValueRanges(new HashSet<>(), allValues);
+		assertFalse(ranges.isNegated());
+		assertEquals(0, ranges.getCost());
+		assertSameAsIn(ranges, new HashSet<>(), allValues);
+	}
+	
+}
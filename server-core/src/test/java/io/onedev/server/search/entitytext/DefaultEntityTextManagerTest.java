@@ -0,0 +1,269 @@
+package io.onedev.server.search.entitytext;
+
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.hibernate.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.search.code.NGramAnalyzer;
+import io.onedev.server.search.entity.EntityCriteria;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorker;
+
+public class DefaultEntityTextManagerTest {
+
+	private File indexDir;
+
+	private StorageManager storageManager;
+
+	private SessionManager sessionManager;
+
+	private TransactionManager transactionManager;
+
+	private BatchWorkManager batchWorkManager;
+
+	private DefaultEntityTextManager manager;
+
+	@Before
+	public void before() {
+		indexDir = FileUtils.createTempDir("entity-text");
+
+		storageManager = Mockito.mock(StorageManager.class);
+		Mockito.when(storageManager.getEntityTextIndexDir()).thenReturn(indexDir);
+		sessionManager = Mockito.mock(SessionManager.class);
+		Mockito.doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(sessionManager).run(Mockito.any(Runnable.class));
+		transactionManager = Mockito.mock(TransactionManager.class);
+		Mockito.when(transactionManager.getTransaction()).thenReturn(Mockito.mock(Transaction.class));
+		batchWorkManager = Mockito.mock(BatchWorkManager.class);
+
+		manager = newManager();
+	}
+
+	private DefaultEntityTextManager newManager() {
+		return new DefaultEntityTextManager(storageManager, sessionManager, transactionManager, batchWorkManager);
+	}
+
+	@After
+	public void after() {
+		manager.on(new SystemStopping());
+		FileUtils.deleteDir(indexDir);
+	}
+
+	private File getIndexDir(Class<?> entityClass) {
+		File dir = new File(indexDir, entityClass.getSimpleName());
+		FileUtils.createDir(dir);
+		return dir;
+	}
+
+	private void populate(Map<Long, String> titles) throws IOException {
+		Map<Long, Long> projectIds = new HashMap<>();
+		for (Long id: titles.keySet())
+			projectIds.put(id, 1L);
+		populate(titles, projectIds);
+	}
+
+	private void populate(Map<Long, String> titles, Map<Long, Long> projectIds) throws IOException {
+		IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE));
+		try (IndexWriter writer = new IndexWriter(FSDirectory.open(getIndexDir(Issue.class).toPath()), writerConfig)) {
+			for (Map.Entry<Long, String> entry: titles.entrySet())
+				writer.addDocument(DefaultEntityTextManager.newDocument(entry.getKey(), projectIds.get(entry.getKey()),
+						entry.getValue(), null));
+		}
+		DefaultEntityTextManager.writeVersion(getIndexDir(Issue.class));
+		DefaultEntityTextManager.writeVersion(getIndexDir(PullRequest.class));
+	}
+
+	/*
+	 * Emulate database predicate <tt>lower(title) like '%' + lower(value) + '%'</tt> with '*'
+	 * replaced by '%'
+	 */
+	private boolean like(String title, String value) {
+		StringBuilder regex = new StringBuilder(".*");
+		for (char ch: value.toLowerCase().replace('*', '%').toCharArray()) {
+			if (ch == '%')
+				regex.append(".*");
+			else if (ch == '_')
+				regex.append(".");
+			else
+				regex.append(Pattern.quote(String.valueOf(ch)));
+		}
+		regex.append(".*");
+		return Pattern.compile(regex.toString(), Pattern.DOTALL).matcher(title.toLowerCase()).matches();
+	}
+
+	@Test
+	public void shouldBuildQueryFromSegmentsBetweenWildcards() {
+		assertNull(DefaultEntityTextManager.buildQuery(Issue.PROP_TITLE, "ab"));
+		assertNull(DefaultEntityTextManager.buildQuery(Issue.PROP_TITLE, "ab*cd%ef_gh"));
+
+		BooleanQuery query = (BooleanQuery) DefaultEntityTextManager.buildQuery(Issue.PROP_TITLE, "ab*database");
+		assertEquals(1, query.clauses().size());
+
+		query = (BooleanQuery) DefaultEntityTextManager.buildQuery(Issue.PROP_TITLE, "data*base%server_side");
+		assertEquals(4, query.clauses().size());
+		for (BooleanClause clause: query.clauses())
+			assertEquals(Occur.MUST, clause.getOccur());
+	}
+
+	@Test
+	public void shouldReturnSupersetOfLikeMatches() throws IOException {
+		Map<Long, String> titles = new LinkedHashMap<>();
+		titles.put(1L, "Database connection leak");
+		titles.put(2L, "DATABASE migration fails");
+		titles.put(3L, "Fix data base typo");
+		titles.put(4L, "Server side rendering");
+		titles.put(5L, "Service discovery");
+		titles.put(6L, "Disk usage at 100% on build agent");
+		titles.put(7L, "Improve search_index speed");
+		populate(titles);
+		manager.on(new SystemStarted());
+
+		String[] values = new String[] {"database", "DataBase", "data*base", "data%base", "ser_ice",
+				"serv", "100%", "LEAK", "ab*database", "search_index", "search*index"};
+		for (String value: values) {
+			Collection<Long> ids = manager.query(Issue.class, Issue.PROP_TITLE, value, EntityCriteria.IN_CLAUSE_LIMIT);
+			assertNotNull(value, ids);
+			for (Map.Entry<Long, String> entry: titles.entrySet()) {
+				if (like(entry.getValue(), value))
+					assertTrue(value + " should match " + entry.getValue(), ids.contains(entry.getKey()));
+			}
+		}
+
+		// Text without segment long enough should fall back to database scan
+		assertNull(manager.query(Issue.class, Issue.PROP_TITLE, "ab%cd", EntityCriteria.IN_CLAUSE_LIMIT));
+	}
+
+	@Test
+	public void shouldFallBackIfTooManyMatches() throws IOException {
+		Map<Long, String> titles = new LinkedHashMap<>();
+		for (long i=1; i<=EntityCriteria.IN_CLAUSE_LIMIT+1; i++)
+			titles.put(i, "common title " + i);
+		populate(titles);
+		manager.on(new SystemStarted());
+
+		assertNull(manager.query(Issue.class, Issue.PROP_TITLE, "common", EntityCriteria.IN_CLAUSE_LIMIT));
+
+		Collection<Long> ids = manager.query(Issue.class, Issue.PROP_TITLE, "title 1001", EntityCriteria.IN_CLAUSE_LIMIT);
+		assertEquals(1, ids.size());
+		assertTrue(ids.contains(1001L));
+	}
+
+	@Test
+	public void shouldIncludePendingEntities() throws IOException {
+		Map<Long, String> titles = new LinkedHashMap<>();
+		titles.put(1L, "Database connection leak");
+		populate(titles);
+		manager.on(new SystemStarted());
+
+		Issue issue = new Issue();
+		issue.setId(2L);
+		manager.on(new EntityPersisted(issue, true));
+		Mockito.verify(batchWorkManager).submit(Mockito.any(BatchWorker.class), Mockito.any(Prioritized.class));
+
+		Collection<Long> ids = manager.query(Issue.class, Issue.PROP_TITLE, "database", EntityCriteria.IN_CLAUSE_LIMIT);
+		assertEquals(2, ids.size());
+		assertTrue(ids.contains(2L));
+
+		// Index with pending updates should be rebuilt if server stops before they are applied
+		manager.on(new SystemStopping());
+		assertFalse(DefaultEntityTextManager.checkVersion(getIndexDir(Issue.class)));
+		assertTrue(DefaultEntityTextManager.checkVersion(getIndexDir(PullRequest.class)));
+	}
+
+	@Test
+	public void shouldRemoveDocumentsOfRemovedProject() throws IOException {
+		Map<Long, String> titles = new LinkedHashMap<>();
+		Map<Long, Long> projectIds = new HashMap<>();
+		titles.put(1L, "Database connection leak");
+		projectIds.put(1L, 1L);
+		titles.put(2L, "Database migration fails");
+		projectIds.put(2L, 2L);
+		titles.put(3L, "Database index corrupted");
+		projectIds.put(3L, 1L);
+		populate(titles, projectIds);
+		manager.on(new SystemStarted());
+
+		Project project = new Project();
+		project.setId(1L);
+		manager.on(new EntityRemoved(project));
+
+		// Issues and pull requests of the project are removed by cascade without their own events
+		ArgumentCaptor<BatchWorker> worker = ArgumentCaptor.forClass(BatchWorker.class);
+		ArgumentCaptor<Prioritized> work = ArgumentCaptor.forClass(Prioritized.class);
+		Mockito.verify(batchWorkManager, Mockito.times(2)).submit(worker.capture(), work.capture());
+		for (int i=0; i<worker.getAllValues().size(); i++) 
+			worker.getAllValues().get(i).doWorks(Lists.newArrayList(work.getAllValues().get(i)));
+
+		Collection<Long> ids = manager.query(Issue.class, Issue.PROP_TITLE, "database", EntityCriteria.IN_CLAUSE_LIMIT);
+		assertEquals(1, ids.size());
+		assertTrue(ids.contains(2L));
+	}
+
+	@Test
+	public void shouldRebuildIfNotClosedCleanly() throws IOException {
+		File dir = getIndexDir(Issue.class);
+		DefaultEntityTextManager.writeVersion(dir);
+		assertTrue(DefaultEntityTextManager.checkVersion(dir));
+		// version file is removed while index is open
+		assertFalse(DefaultEntityTextManager.checkVersion(dir));
+
+		FileUtils.writeFile(new File(dir, "version.txt"), "0");
+		assertFalse(DefaultEntityTextManager.checkVersion(dir));
+
+		Map<Long, String> titles = new LinkedHashMap<>();
+		titles.put(1L, "Database connection leak");
+		populate(titles);
+		manager.on(new SystemStarted());
+		Mockito.verify(batchWorkManager, Mockito.never()).submit(Mockito.any(BatchWorker.class), Mockito.any(Prioritized.class));
+		assertNotNull(manager.query(Issue.class, Issue.PROP_TITLE, "database", EntityCriteria.IN_CLAUSE_LIMIT));
+		manager.on(new SystemStopping());
+
+		// Simulate crash by removing version file written at stop
+		assertTrue(DefaultEntityTextManager.checkVersion(dir));
+		manager = newManager();
+		manager.on(new SystemStarted());
+		Mockito.verify(batchWorkManager).submit(Mockito.any(BatchWorker.class), Mockito.any(Prioritized.class));
+		assertNull(manager.query(Issue.class, Issue.PROP_TITLE, "database", EntityCriteria.IN_CLAUSE_LIMIT));
+	}
+
+}
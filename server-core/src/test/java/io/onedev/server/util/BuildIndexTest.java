@@ -0,0 +1,42 @@
+package io.onedev.server.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.server.util.facade.BuildFacade;
+
+public class BuildIndexTest {
+
+	private String commitHash(long value) {
+		return ObjectId.fromRaw(new int[] {0, 0, 0, (int)(value>>>32), (int)value}).name();
+	}
+
+	@Test
+	public void shouldIndexBuilds() {
+		BuildIndex index = new BuildIndex();
+		index.add(new BuildFacade(3L, 1L, commitHash(1)));
+		index.add(new BuildFacade(1L, 1L, commitHash(1)));
+		index.add(new BuildFacade(2L, 1L, commitHash(2)));
+		index.add(new BuildFacade(2L, 1L, commitHash(2)));
+		index.add(new BuildFacade(4L, 2L, commitHash(1)));
+
+		assertEquals(Lists.newArrayList(1L, 2L, 3L), index.getIds(1L));
+		assertEquals(Sets.newHashSet(1L, 3L), index.getIds(1L, Lists.newArrayList(commitHash(1))));
+		assertEquals(Sets.newHashSet(4L), index.getIds(2L, Lists.newArrayList(commitHash(1), commitHash(2))));
+
+		index.remove(new BuildFacade(1L, 1L, commitHash(1)));
+		assertEquals(Lists.newArrayList(2L, 3L), index.getIds(1L));
+		assertEquals(Sets.newHashSet(3L), index.getIds(1L, Lists.newArrayList(commitHash(1))));
+
+		index.removeProject(1L);
+		assertTrue(index.getIds(1L).isEmpty());
+		assertEquals(Lists.newArrayList(4L), index.getIds(2L));
+	}
+
+}
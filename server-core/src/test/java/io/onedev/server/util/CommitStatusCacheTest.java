@@ -0,0 +1,72 @@
+package io.onedev.server.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import io.onedev.server.model.Build.Status;
+import io.onedev.server.util.CommitStatusCache.BuildStatus;
+
+public class CommitStatusCacheTest {
+
+	private static final ObjectId COMMIT = ObjectId.fromString("0123456789012345678901234567890123456789");
+	
+	private Map<Long, BuildStatus> getBuilds(Status status) {
+		Map<Long, BuildStatus> builds = new HashMap<>();
+		builds.put(1L, new BuildStatus("ci", status));
+		return builds;
+	}
+	
+	@Test
+	public void shouldDiscardStatusesLoadedBeforeChange() {
+		CommitStatusCache cache = new CommitStatusCache(10);
+		long generation = cache.getGeneration(1L);
+		cache.update(1L, COMMIT, 1L, "ci", Status.SUCCESSFUL);
+		cache.seed(1L, COMMIT, getBuilds(Status.RUNNING), generation);
+		assertNull(cache.get(1L, COMMIT));
+		
+		// Change of other projects should not discard statuses
+		generation = cache.getGeneration(1L);
+		cache.update(2L, COMMIT, 2L, "ci", Status.FAILED);
+		cache.seed(1L, COMMIT, getBuilds(Status.SUCCESSFUL), generation);
+		assertEquals(Status.SUCCESSFUL, cache.get(1L, COMMIT).get("ci"));
+	}
+	
+	@Test
+	public void shouldNotAcceptOutdatedStatusesAfterChangeIsEvicted() {
+		CommitStatusCache cache = new CommitStatusCache(2);
+		long generation = cache.getGeneration(1L);
+		cache.remove(1L, COMMIT, 1L);
+		
+		// Record of project 1 is evicted as more projects change than cache capacity
+		cache.update(2L, COMMIT, 2L, "ci", Status.SUCCESSFUL);
+		cache.update(3L, COMMIT, 3L, "ci", Status.SUCCESSFUL);
+		
+		cache.seed(1L, COMMIT, getBuilds(Status.RUNNING), generation);
+		assertNull(cache.get(1L, COMMIT));
+		
+		cache.seed(1L, COMMIT, getBuilds(Status.SUCCESSFUL), cache.getGeneration(1L));
+		assertNotNull(cache.get(1L, COMMIT));
+	}
+	
+	@Test
+	public void shouldDropStatusesOfRemovedProject() {
+		CommitStatusCache cache = new CommitStatusCache(10);
+		long generation = cache.getGeneration(1L);
+		cache.seed(1L, COMMIT, getBuilds(Status.SUCCESSFUL), generation);
+		cache.seed(2L, COMMIT, getBuilds(Status.SUCCESSFUL), generation);
+		cache.removeProject(1L);
+		assertNull(cache.get(1L, COMMIT));
+		assertNotNull(cache.get(2L, COMMIT));
+		
+		cache.seed(1L, COMMIT, getBuilds(Status.SUCCESSFUL), generation);
+		assertNull(cache.get(1L, COMMIT));
+	}
+	
+}
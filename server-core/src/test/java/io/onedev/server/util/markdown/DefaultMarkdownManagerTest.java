@@ -0,0 +1,154 @@
+package io.onedev.server.util.markdown;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.jsoup.nodes.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Sets;
+
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.User;
+import io.onedev.server.persistence.TransactionManager;
+
+public class DefaultMarkdownManagerTest {
+
+	private Project project1;
+	
+	private Project project2;
+	
+	private int processCount;
+	
+	private DefaultMarkdownManager markdownManager;
+	
+	private Project newProject(Long id, String name) {
+		Project project = new Project();
+		project.setId(id);
+		project.setName(name);
+		return project;
+	}
+	
+	private Build newBuild(Project project, long number) {
+		Build build = new Build();
+		build.setProject(project);
+		build.setNumber(number);
+		return build;
+	}
+	
+	@Before
+	public void before() {
+		project1 = newProject(1L, "project1");
+		project2 = newProject(2L, "project2");
+		
+		TransactionManager transactionManager = Mockito.mock(TransactionManager.class);
+		Mockito.doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(transactionManager).runAfterCommit(Mockito.any(Runnable.class));
+		
+		/*
+		 * Fake processor reporting references according to text: "build" refers to build #1 
+		 * of current project, and "other" refers to project with name "other"
+		 */
+		MarkdownProcessor processor = new MarkdownProcessor() {
+
+			@Override
+			public void process(@Nullable Project project, Document rendered, @Nullable Object context) {
+				processCount++;
+				ProcessContext processContext = ProcessContext.get();
+				if (rendered.text().contains("build"))
+					processContext.addBuild(project, 1L);
+				if (rendered.text().contains("other"))
+					processContext.addProjectName("other");
+			}
+			
+		};
+		markdownManager = new DefaultMarkdownManager(new HashSet<>(), Sets.newHashSet(processor), 
+				transactionManager);
+	}
+	
+	private int process(Project project, String rendered) {
+		int countBefore = processCount;
+		markdownManager.process(project, rendered, null);
+		return processCount - countBefore;
+	}
+	
+	@Test
+	public void shouldCacheProcessedHtml() {
+		assertEquals(1, process(project1, "<p>text</p>"));
+		assertEquals(0, process(project1, "<p>text</p>"));
+		assertEquals(1, process(project2, "<p>text</p>"));
+		
+		// processing with context is not cached
+		int countBefore = processCount;
+		markdownManager.process(project1, "<p>text</p>", new Object());
+		assertEquals(countBefore + 1, processCount);
+	}
+	
+	@Test
+	public void shouldInvalidateOnlyHtmlReferencingChangedBuild() {
+		process(project1, "<p>build</p>");
+		process(project1, "<p>text</p>");
+		process(project2, "<p>build</p>");
+		
+		markdownManager.on(new EntityPersisted(newBuild(project1, 1), false));
+		assertEquals(1, process(project1, "<p>build</p>"));
+		assertEquals(0, process(project1, "<p>text</p>"));
+		assertEquals(0, process(project2, "<p>build</p>"));
+		
+		markdownManager.on(new EntityPersisted(newBuild(project1, 2), false));
+		assertEquals(0, process(project1, "<p>build</p>"));
+	}
+	
+	@Test
+	public void shouldInvalidateHtmlOfChangedProject() {
+		process(project1, "<p>text</p>");
+		process(project2, "<p>text</p>");
+		process(project2, "<p>other</p>");
+		
+		markdownManager.on(new EntityPersisted(project1, false));
+		assertEquals(1, process(project1, "<p>text</p>"));
+		assertEquals(0, process(project2, "<p>text</p>"));
+		assertEquals(0, process(project2, "<p>other</p>"));
+		
+		// project referenced by name is created or renamed
+		markdownManager.on(new EntityPersisted(newProject(3L, "other"), true));
+		assertEquals(0, process(project2, "<p>text</p>"));
+		assertEquals(1, process(project2, "<p>other</p>"));
+		
+		markdownManager.on(new EntityRemoved(project2));
+		assertEquals(1, process(project2, "<p>text</p>"));
+	}
+	
+	@Test
+	public void shouldInvalidateHtmlOfProjectWhenRefUpdated() {
+		process(project1, "<p>text</p>");
+		process(project2, "<p>text</p>");
+		
+		markdownManager.on(new RefUpdated(project1, "refs/heads/master", ObjectId.zeroId(), ObjectId.zeroId()));
+		assertEquals(1, process(project1, "<p>text</p>"));
+		assertEquals(0, process(project2, "<p>text</p>"));
+	}
+	
+	@Test
+	public void shouldNotInvalidateWhenUserChanged() {
+		process(project1, "<p>text</p>");
+		
+		User user = new User();
+		user.setId(1L);
+		markdownManager.on(new EntityPersisted(user, false));
+		assertEquals(0, process(project1, "<p>text</p>"));
+	}
+	
+}
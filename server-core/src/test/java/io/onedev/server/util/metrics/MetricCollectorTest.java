@@ -0,0 +1,36 @@
+package io.onedev.server.util.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MetricCollectorTest {
+
+	@Test
+	public void shouldRenderPrometheusTextFormat() {
+		MetricCollector collector = new MetricCollector();
+		collector.gauge("onedev_batch_works_queued", "Number of queued batch works", 3, "type", "indexBlob");
+		collector.counter("onedev_websocket_notifications_total", "Number of notifications", 10);
+		collector.gauge("onedev_batch_works_queued", "Number of queued batch works", 1, "type", "previewMerge");
+		collector.histogram("onedev_operation_duration_seconds", "Duration", new double[] {0.1, 1}, 
+				new long[] {2, 1, 1}, 2.5, "operation", "Issue\"Page");
+		
+		assertEquals(""
+				+ "# HELP onedev_batch_works_queued Number of queued batch works\n"
+				+ "# TYPE onedev_batch_works_queued gauge\n"
+				+ "onedev_batch_works_queued{type=\"indexBlob\"} 3\n"
+				+ "onedev_batch_works_queued{type=\"previewMerge\"} 1\n"
+				+ "# HELP onedev_websocket_notifications_total Number of notifications\n"
+				+ "# TYPE onedev_websocket_notifications_total counter\n"
+				+ "onedev_websocket_notifications_total 10\n"
+				+ "# HELP onedev_operation_duration_seconds Duration\n"
+				+ "# TYPE onedev_operation_duration_seconds histogram\n"
+				+ "onedev_operation_duration_seconds_bucket{operation=\"Issue\\\"Page\",le=\"0.1\"} 2\n"
+				+ "onedev_operation_duration_seconds_bucket{operation=\"Issue\\\"Page\",le=\"1\"} 3\n"
+				+ "onedev_operation_duration_seconds_bucket{operation=\"Issue\\\"Page\",le=\"+Inf\"} 4\n"
+				+ "onedev_operation_duration_seconds_sum{operation=\"Issue\\\"Page\"} 2.5\n"
+				+ "onedev_operation_duration_seconds_count{operation=\"Issue\\\"Page\"} 4\n", 
+				collector.toString());
+	}
+	
+}
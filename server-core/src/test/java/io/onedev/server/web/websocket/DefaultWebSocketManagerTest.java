@@ -0,0 +1,77 @@
+package io.onedev.server.web.websocket;
+
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.protocol.ws.api.registry.IWebSocketConnectionRegistry;
+import org.apache.wicket.protocol.ws.api.registry.SimpleWebSocketConnectionRegistry;
+import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+public class DefaultWebSocketManagerTest {
+
+	private Application application;
+	
+	private DefaultWebSocketManager manager;
+	
+	private IWebSocketConnectionRegistry connectionRegistry = new SimpleWebSocketConnectionRegistry();
+	
+	@Before
+	public void before() {
+		application = mock(Application.class);
+		TransactionManager transactionManager = mock(TransactionManager.class);
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(transactionManager).runAfterCommit(any(Runnable.class));
+		
+		// Dispatch in calling thread so that notifications are sent when notify returns
+		ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		manager = new DefaultWebSocketManager(application, transactionManager, 
+				mock(WebSocketPolicy.class), mock(TaskScheduler.class), executorService);
+	}
+	
+	private WebSocketConnection connect(PageKey pageKey, String... observables) {
+		WebSocketConnection connection = mock(WebSocketConnection.class);
+		when(connection.getPageKey()).thenReturn(pageKey);
+		when(connection.isOpen()).thenReturn(true);
+		manager.observe(pageKey, Sets.newHashSet(observables));
+		connectionRegistry.setConnection(application, pageKey.getSessionId(), pageKey.getPageId(), connection);
+		manager.onConnect(connection);
+		return connection;
+	}
+	
+	@Test
+	public void shouldKeepNotifyingWhenConnectionFails() throws Exception {
+		WebSocketConnection failing = connect(new PageKey("session1", 1), "issue:1");
+		WebSocketConnection healthy = connect(new PageKey("session2", 1), "issue:1");
+		when(failing.isOpen()).thenThrow(new RuntimeException("broken connection"));
+		
+		manager.notifyObservableChange("issue:1");
+		verify(healthy, times(1)).sendMessage(WebSocketManager.OBSERVABLE_CHANGED + ":issue:1");
+		
+		manager.notifyObservableChange("issue:1");
+		verify(healthy, times(2)).sendMessage(WebSocketManager.OBSERVABLE_CHANGED + ":issue:1");
+	}
+	
+	@Test
+	public void shouldStopNotifyingClosedConnection() throws Exception {
+		PageKey pageKey = new PageKey("session1", 1);
+		WebSocketConnection connection = connect(pageKey, "issue:1");
+		connectionRegistry.removeConnection(application, pageKey.getSessionId(), pageKey.getPageId());
+		manager.onClose(connection);
+		
+		manager.notifyObservableChange("issue:1");
+		verify(connection, never()).sendMessage(anyString());
+	}
+	
+}
@@ -33,10 +33,16 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private static final String PROP_SESSION_TIMEOUT = "session_timeout";
 	
+	private static final String PROP_BUILD_LOG_PUSH_INTERVAL = "build_log_push_interval";
+	
+	private static final int DEFAULT_BUILD_LOG_PUSH_INTERVAL = 500;
+	
 	private int httpPort;
 	
 	private int sessionTimeout;
 	
+	private int buildLogPushInterval;
+	
 	private int httpsPort;
 	
 	private File trustCertsDir;
@@ -115,6 +121,17 @@ public class DefaultServerConfig implements ServerConfig {
 			sessionTimeout = Integer.parseInt(sessionTimeoutStr.trim());
 		else
 			throw new RuntimeException(PROP_SESSION_TIMEOUT + " should be specified");
+		
+		String buildLogPushIntervalStr = System.getenv(PROP_BUILD_LOG_PUSH_INTERVAL);
+		if (StringUtils.isBlank(buildLogPushIntervalStr))
+			buildLogPushIntervalStr = props.getProperty(PROP_BUILD_LOG_PUSH_INTERVAL);
+		if (StringUtils.isNotBlank(buildLogPushIntervalStr)) {
+			buildLogPushInterval = Integer.parseInt(buildLogPushIntervalStr.trim());
+			if (buildLogPushInterval <= 0)
+				throw new RuntimeException(PROP_BUILD_LOG_PUSH_INTERVAL + " should be a positive number of milliseconds");
+		} else {
+			buildLogPushInterval = DEFAULT_BUILD_LOG_PUSH_INTERVAL;
+		}
 	}
 	
 	@Override
@@ -127,6 +144,11 @@ public class DefaultServerConfig implements ServerConfig {
 		return sessionTimeout;
 	}
 
+	@Override
+	public int getBuildLogPushInterval() {
+		return buildLogPushInterval;
+	}
+
 	@Override
 	public int getHttpsPort() {
 		return httpsPort;